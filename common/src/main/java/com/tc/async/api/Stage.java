@@ -31,4 +31,9 @@ public interface Stage extends PrettyPrintable {
 
   public String getName();
 
+  /**
+   * @return queue wait, service time and queue depth history of this stage
+   */
+  public StageLatencyStats getLatencyStats();
+
 }
@@ -0,0 +1,152 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.async.api;
+
+import com.tc.stats.LogLinearHistogram;
+
+import java.io.Serializable;
+
+/**
+ * Point in time view of the always-on instrumentation of a single SEDA stage: how long contexts waited in the stage
+ * queue before a worker picked them up, how long the handler spent on them, and the sampled history of the queue
+ * depth. All latencies are in microseconds.
+ */
+public class StageLatencyStats implements Serializable {
+
+  private final String  name;
+  private final int     depth;
+  private final Latency queueWait;
+  private final Latency serviceTime;
+  private final int[]   depthSamples;
+  private final long    sampleIntervalMillis;
+
+  public StageLatencyStats(String name, int depth, Latency queueWait, Latency serviceTime, int[] depthSamples,
+                           long sampleIntervalMillis) {
+    this.name = name;
+    this.depth = depth;
+    this.queueWait = queueWait;
+    this.serviceTime = serviceTime;
+    this.depthSamples = depthSamples;
+    this.sampleIntervalMillis = sampleIntervalMillis;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the queue depth at the time of the snapshot
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * @return enqueue to dequeue latency
+   */
+  public Latency getQueueWait() {
+    return queueWait;
+  }
+
+  /**
+   * @return time spent in the stage's handler per context
+   */
+  public Latency getServiceTime() {
+    return serviceTime;
+  }
+
+  /**
+   * @return sampled queue depths, oldest first, one every {@link #getSampleIntervalMillis()}
+   */
+  public int[] getDepthSamples() {
+    return depthSamples;
+  }
+
+  public long getSampleIntervalMillis() {
+    return sampleIntervalMillis;
+  }
+
+  @Override
+  public String toString() {
+    return "StageLatencyStats[" + name + ", depth=" + depth + ", queueWait=" + queueWait + ", serviceTime="
+           + serviceTime + "]";
+  }
+
+  public static class Latency implements Serializable {
+    private final long   count;
+    private final double mean;
+    private final long   p50;
+    private final long   p90;
+    private final long   p99;
+    private final long   p999;
+    private final long   max;
+
+    public Latency(long count, double mean, long p50, long p90, long p99, long p999, long max) {
+      this.count = count;
+      this.mean = mean;
+      this.p50 = p50;
+      this.p90 = p90;
+      this.p99 = p99;
+      this.p999 = p999;
+      this.max = max;
+    }
+
+    /**
+     * Summarizes a histogram recorded in nanoseconds.
+     */
+    public static Latency fromNanos(LogLinearHistogram histogram) {
+      return new Latency(histogram.getTotalCount(), histogram.getMean() / 1000.0,
+                         histogram.getValueAtPercentile(50.0) / 1000, histogram.getValueAtPercentile(90.0) / 1000,
+                         histogram.getValueAtPercentile(99.0) / 1000, histogram.getValueAtPercentile(99.9) / 1000,
+                         histogram.getMaxValue() / 1000);
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public double getMean() {
+      return mean;
+    }
+
+    public long get50thPercentile() {
+      return p50;
+    }
+
+    public long get90thPercentile() {
+      return p90;
+    }
+
+    public long get99thPercentile() {
+      return p99;
+    }
+
+    public long get999thPercentile() {
+      return p999;
+    }
+
+    public long getMax() {
+      return max;
+    }
+
+    @Override
+    public String toString() {
+      return "count=" + count + " mean=" + mean + "us p50=" + p50 + "us p90=" + p90 + "us p99=" + p99 + "us p99.9="
+             + p999 + "us max=" + max + "us";
+    }
+  }
+}
@@ -48,4 +48,9 @@ public interface StageManager extends PrettyPrintable, ClearableCallback {
   public Stats[] getStats();
 
   public Collection<Stage> getStages();
+
+  /**
+   * @return a snapshot of the always-on latency instrumentation of every stage, sorted by stage name
+   */
+  public StageLatencyStats[] getLatencyStats();
 }
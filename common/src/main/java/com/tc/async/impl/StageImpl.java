@@ -24,6 +24,7 @@ import com.tc.async.api.Sink;
 import com.tc.async.api.Source;
 import com.tc.async.api.SpecializedEventContext;
 import com.tc.async.api.Stage;
+import com.tc.async.api.StageLatencyStats;
 import com.tc.exception.PlatformRejoinException;
 import com.tc.exception.TCNotRunningException;
 import com.tc.exception.TCRuntimeException;
@@ -34,6 +35,9 @@ import com.tc.text.PrettyPrinter;
 import com.tc.util.concurrent.QueueFactory;
 import com.tc.util.concurrent.ThreadUtil;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * The SEDA Stage
  */
@@ -48,6 +52,7 @@ public class StageImpl implements Stage {
   private final TCLogger       logger;
   private final int            sleepMs;
   private final boolean        pausable;
+  private final int            batchSize;
 
   /**
    * The Constructor.
@@ -67,6 +72,23 @@ public class StageImpl implements Stage {
    */
   public StageImpl(TCLoggerProvider loggerProvider, String name, EventHandler handler, int threadCount,
                    int threadsToQueueRatio, ThreadGroup group, QueueFactory queueFactory, int queueSize) {
+    this(loggerProvider, name, handler, threadCount, threadsToQueueRatio, group, queueFactory, queueSize, 1, false);
+  }
+
+  /**
+   * The Constructor.
+   * 
+   * @param batchSize : Max number of contexts a worker drains per wake up. Anything greater than 1 hands the drained
+   *        contexts to {@link EventHandler#handleEvents(java.util.Collection)} instead of one
+   *        {@link EventHandler#handleEvent(EventContext)} call per context.
+   * @param workStealing : Gives each worker its own queue and lets idle workers steal contexts that are not keyed
+   *        (not a {@link com.tc.async.api.MultiThreadedEventContext}) from their siblings. threadsToQueueRatio is
+   *        ignored in this mode.
+   * @see #StageImpl(TCLoggerProvider, String, EventHandler, int, int, ThreadGroup, QueueFactory, int)
+   */
+  public StageImpl(TCLoggerProvider loggerProvider, String name, EventHandler handler, int threadCount,
+                   int threadsToQueueRatio, ThreadGroup group, QueueFactory queueFactory, int queueSize,
+                   int batchSize, boolean workStealing) {
     this.logger = loggerProvider.getLogger(Stage.class.getName() + ": " + name);
     this.name = name;
     this.handler = handler;
@@ -74,8 +96,13 @@ public class StageImpl implements Stage {
     if (threadsToQueueRatio > threadCount) {
       logger.warn("Thread to Queue Ratio " + threadsToQueueRatio + " > Worker Threads " + threadCount);
     }
+    this.batchSize = Math.max(1, batchSize);
     this.stageQueue = new StageQueueImpl(threadCount, threadsToQueueRatio, queueFactory, loggerProvider, name,
-                                         queueSize);
+                                         queueSize, workStealing);
+    if (this.batchSize > 1 || workStealing) {
+      logger.info("Stage " + name + " draining up to " + this.batchSize + " contexts per wake up, work stealing "
+                  + (workStealing ? "enabled" : "disabled"));
+    }
     this.group = group;
     this.sleepMs = TCPropertiesImpl.getProperties().getInt("seda." + name + ".sleepMs", 0);
     if (this.sleepMs > 0) {
@@ -111,8 +138,13 @@ public class StageImpl implements Stage {
       } else {
         threadName = threadName + ")";
       }
-      threads[i] = new WorkerThread(threadName, this.stageQueue.getSource(i), handler, group, logger, sleepMs,
-                                    pausable, name);
+      if (batchSize > 1 || stageQueue.isWorkStealing()) {
+        threads[i] = new BatchWorkerThread(threadName, this.stageQueue, i, batchSize, handler, group, logger,
+                                           sleepMs, pausable, name);
+      } else {
+        threads[i] = new WorkerThread(threadName, this.stageQueue.getSource(i), this.stageQueue.getInstrumentation(),
+                                      handler, group, logger, sleepMs, pausable, name);
+      }
       threads[i].start();
     }
   }
@@ -130,26 +162,37 @@ public class StageImpl implements Stage {
     return name;
   }
 
+  @Override
+  public StageLatencyStats getLatencyStats() {
+    return stageQueue.getInstrumentation().snapshot(stageQueue.size());
+  }
+
+  void sampleDepth(long intervalMillis) {
+    stageQueue.getInstrumentation().sampleDepth(stageQueue.size(), intervalMillis);
+  }
+
   @Override
   public String toString() {
     return "StageImpl(" + name + ")";
   }
 
   private static class WorkerThread extends Thread {
-    private final Source       source;
-    private final EventHandler handler;
-    private volatile boolean   shutdownRequested = false;
-    private final TCLogger     tcLogger;
-    private final int          sleepMs;
-    private final boolean      pausable;
-    private final String       stageName;
-
-    public WorkerThread(String name, Source source, EventHandler handler, ThreadGroup group, TCLogger logger,
-                        int sleepMs, boolean pausable, String stageName) {
+    private final Source                 source;
+    protected final StageInstrumentation instrumentation;
+    protected final EventHandler         handler;
+    private volatile boolean             shutdownRequested = false;
+    private final TCLogger               tcLogger;
+    private final int                    sleepMs;
+    private final boolean                pausable;
+    private final String                 stageName;
+
+    public WorkerThread(String name, Source source, StageInstrumentation instrumentation, EventHandler handler,
+                        ThreadGroup group, TCLogger logger, int sleepMs, boolean pausable, String stageName) {
       super(group, name);
       tcLogger = logger;
       setDaemon(true);
       this.source = source;
+      this.instrumentation = instrumentation;
       this.handler = handler;
       this.sleepMs = sleepMs;
       this.pausable = pausable;
@@ -160,11 +203,11 @@ public class StageImpl implements Stage {
       this.shutdownRequested = true;
     }
 
-    private boolean shutdownRequested() {
+    protected boolean shutdownRequested() {
       return this.shutdownRequested;
     }
 
-    private void handleStageDebugPauses() {
+    protected void handleStageDebugPauses() {
       if (sleepMs > 0) {
         ThreadUtil.reallySleep(sleepMs);
       }
@@ -182,11 +225,13 @@ public class StageImpl implements Stage {
           ctxt = source.poll(pollTime);
           if (ctxt != null) {
             handleStageDebugPauses();
+            long start = System.nanoTime();
             if (ctxt instanceof SpecializedEventContext) {
               ((SpecializedEventContext) ctxt).execute();
             } else {
               handler.handleEvent(ctxt);
             }
+            instrumentation.recordServiceTime(System.nanoTime() - start, 1);
           }
         } catch (InterruptedException ie) {
           if (shutdownRequested()) { return; }
@@ -195,21 +240,7 @@ public class StageImpl implements Stage {
           if (shutdownRequested()) return;
           throw new TCRuntimeException(ie);
         } catch (Exception e) {
-          if (isTCNotRunningException(e)) {
-            if (shutdownRequested()) {
-              return;
-            }
-            tcLogger.info("Ignoring " + TCNotRunningException.class.getSimpleName() + " while handling context: "
-                          + ctxt);
-          } else if (isRejoinInProgressException(e)) {
-            if (shutdownRequested()) {
-              return;
-            }
-            tcLogger.info("Ignoring " + PlatformRejoinException.class.getSimpleName() + " while handling context: "
-                          + ctxt, e);
-          } else {
-            throw new TCRuntimeException("Uncaught exception in stage", e);
-          }
+          if (!handleException(e, ctxt)) { return; }
         } finally {
           // Aggressively null out the reference before going around the loop again. If you don't do this, the reference
           // to the context will exist until another context comes in. This can potentially keep many objects in memory
@@ -218,6 +249,96 @@ public class StageImpl implements Stage {
         }
       }
     }
+
+    /**
+     * @return false if the worker should exit
+     */
+    protected boolean handleException(Exception e, Object ctxt) {
+      if (isTCNotRunningException(e)) {
+        if (shutdownRequested()) { return false; }
+        tcLogger.info("Ignoring " + TCNotRunningException.class.getSimpleName() + " while handling context: " + ctxt);
+      } else if (isRejoinInProgressException(e)) {
+        if (shutdownRequested()) { return false; }
+        tcLogger.info("Ignoring " + PlatformRejoinException.class.getSimpleName() + " while handling context: "
+                      + ctxt, e);
+      } else {
+        throw new TCRuntimeException("Uncaught exception in stage", e);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Worker that drains a batch of contexts per wake up. Runs of regular contexts are handed to the handler in one
+   * {@link EventHandler#handleEvents(java.util.Collection)} call, specialized contexts are executed in between so the
+   * drain order is kept.
+   */
+  private static class BatchWorkerThread extends WorkerThread {
+    private final StageQueueImpl     stageQueue;
+    private final int                index;
+    private final int                batchSize;
+    private final List<EventContext> batch;
+    private final List<EventContext> run;
+
+    public BatchWorkerThread(String name, StageQueueImpl stageQueue, int index, int batchSize, EventHandler handler,
+                             ThreadGroup group, TCLogger logger, int sleepMs, boolean pausable, String stageName) {
+      super(name, stageQueue.getSource(index), stageQueue.getInstrumentation(), handler, group, logger, sleepMs,
+            pausable, stageName);
+      this.stageQueue = stageQueue;
+      this.index = index;
+      this.batchSize = batchSize;
+      this.batch = new ArrayList<EventContext>(batchSize);
+      this.run = new ArrayList<EventContext>(batchSize);
+    }
+
+    @Override
+    public void run() {
+      while (!shutdownRequested()) {
+        try {
+          int drained = stageQueue.drain(index, batch, batchSize, pollTime);
+          if (drained > 0) {
+            handleStageDebugPauses();
+            long start = System.nanoTime();
+            handleBatch();
+            instrumentation.recordServiceTime(System.nanoTime() - start, drained);
+          }
+        } catch (InterruptedException ie) {
+          if (shutdownRequested()) { return; }
+          throw new TCRuntimeException(ie);
+        } catch (EventHandlerException ie) {
+          if (shutdownRequested()) return;
+          throw new TCRuntimeException(ie);
+        } catch (Exception e) {
+          if (!handleException(e, batch)) { return; }
+        } finally {
+          // same as above, don't hold on to the contexts until the next batch comes in
+          batch.clear();
+          run.clear();
+        }
+      }
+    }
+
+    private void handleBatch() throws EventHandlerException {
+      for (EventContext ctxt : batch) {
+        if (ctxt instanceof SpecializedEventContext) {
+          flushRun();
+          ((SpecializedEventContext) ctxt).execute();
+        } else {
+          run.add(ctxt);
+        }
+      }
+      flushRun();
+    }
+
+    private void flushRun() throws EventHandlerException {
+      if (run.isEmpty()) { return; }
+      if (run.size() == 1) {
+        handler.handleEvent(run.get(0));
+      } else {
+        handler.handleEvents(run);
+      }
+      run.clear();
+    }
   }
 
   private static boolean isTCNotRunningException(Throwable e) {
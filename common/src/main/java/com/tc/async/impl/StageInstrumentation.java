@@ -0,0 +1,95 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.async.impl;
+
+import com.tc.async.api.StageLatencyStats;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
+import com.tc.stats.LogLinearHistogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Always-on latency and depth instrumentation of one stage. Queue wait and service times are recorded by the stage
+ * queue and the worker threads, queue depth is sampled periodically by the {@link StageManagerImpl}.
+ */
+final class StageInstrumentation {
+
+  private static final long        HIGHEST_TRACKABLE_NANOS = TimeUnit.HOURS.toNanos(1);
+  private static final int         DEPTH_HISTORY           = TCPropertiesImpl
+                                                               .getProperties()
+                                                               .getInt(TCPropertiesConsts.TC_STAGE_DEPTH_SAMPLE_HISTORY,
+                                                                       300);
+
+  private final String             stageName;
+  private final LogLinearHistogram queueWait               = new LogLinearHistogram(HIGHEST_TRACKABLE_NANOS);
+  private final LogLinearHistogram serviceTime             = new LogLinearHistogram(HIGHEST_TRACKABLE_NANOS);
+  private final int[]              depthSamples;
+  private int                      nextSample;
+  private boolean                  wrapped;
+  private volatile long            sampleIntervalMillis;
+
+  StageInstrumentation(String stageName) {
+    this.stageName = stageName;
+    this.depthSamples = new int[Math.max(1, DEPTH_HISTORY)];
+  }
+
+  void recordQueueWait(long enqueuedNanos) {
+    queueWait.recordValue(System.nanoTime() - enqueuedNanos);
+  }
+
+  /**
+   * Records the time spent handling <code>count</code> contexts, attributing an equal share to each of them.
+   */
+  void recordServiceTime(long elapsedNanos, int count) {
+    serviceTime.recordValue(elapsedNanos / count, count);
+  }
+
+  synchronized void sampleDepth(int depth, long intervalMillis) {
+    this.sampleIntervalMillis = intervalMillis;
+    depthSamples[nextSample] = depth;
+    nextSample++;
+    if (nextSample == depthSamples.length) {
+      nextSample = 0;
+      wrapped = true;
+    }
+  }
+
+  synchronized int[] getDepthSamples() {
+    if (!wrapped) {
+      int[] rv = new int[nextSample];
+      System.arraycopy(depthSamples, 0, rv, 0, nextSample);
+      return rv;
+    }
+    int[] rv = new int[depthSamples.length];
+    int tail = depthSamples.length - nextSample;
+    System.arraycopy(depthSamples, nextSample, rv, 0, tail);
+    System.arraycopy(depthSamples, 0, rv, tail, nextSample);
+    return rv;
+  }
+
+  StageLatencyStats snapshot(int currentDepth) {
+    return new StageLatencyStats(stageName, currentDepth, StageLatencyStats.Latency.fromNanos(queueWait),
+                                 StageLatencyStats.Latency.fromNanos(serviceTime), getDepthSamples(),
+                                 sampleIntervalMillis);
+  }
+
+  void reset() {
+    queueWait.reset();
+    serviceTime.reset();
+  }
+}
@@ -20,6 +20,7 @@ import com.tc.async.api.ConfigurationContext;
 import com.tc.async.api.EventHandler;
 import com.tc.async.api.PostInit;
 import com.tc.async.api.Stage;
+import com.tc.async.api.StageLatencyStats;
 import com.tc.async.api.StageManager;
 import com.tc.async.api.StageMonitor;
 import com.tc.logging.DefaultLoggerProvider;
@@ -34,6 +35,7 @@ import com.tc.util.Assert;
 import com.tc.util.concurrent.QueueFactory;
 import com.tc.util.concurrent.ThreadUtil;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -53,6 +55,8 @@ public class StageManagerImpl implements StageManager {
                                                      .getBoolean(TCPropertiesConsts.TC_STAGE_MONITOR_ENABLED);
   private static final long        MONITOR_DELAY = TCPropertiesImpl.getProperties()
                                                      .getLong(TCPropertiesConsts.TC_STAGE_MONITOR_DELAY);
+  private static final long        SAMPLE_DELAY  = TCPropertiesImpl.getProperties()
+                                                     .getLong(TCPropertiesConsts.TC_STAGE_DEPTH_SAMPLE_INTERVAL, 1000);
 
   private final Map<String, Stage> stages        = new ConcurrentHashMap<String, Stage>();
   private TCLoggerProvider         loggerProvider;
@@ -60,6 +64,7 @@ public class StageManagerImpl implements StageManager {
   private String[]                 stageNames    = new String[] {};
   private QueueFactory             queueFactory  = null;
   private volatile boolean         started;
+  private Thread                   depthSampler;
 
   public StageManagerImpl(ThreadGroup threadGroup, QueueFactory queueFactory) {
     this.loggerProvider = new DefaultLoggerProvider();
@@ -99,6 +104,36 @@ public class StageManagerImpl implements StageManager {
     t.start();
   }
 
+  private synchronized void startDepthSampler() {
+    if (SAMPLE_DELAY <= 0 || depthSampler != null) { return; }
+    depthSampler = new Thread(group, "SEDA Stage Depth Sampler") {
+      @Override
+      public void run() {
+        while (!isInterrupted()) {
+          for (Stage stage : stages.values()) {
+            if (stage instanceof StageImpl) {
+              ((StageImpl) stage).sampleDepth(SAMPLE_DELAY);
+            }
+          }
+          try {
+            Thread.sleep(SAMPLE_DELAY);
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+      }
+    };
+    depthSampler.setDaemon(true);
+    depthSampler.start();
+  }
+
+  private synchronized void stopDepthSampler() {
+    if (depthSampler != null) {
+      depthSampler.interrupt();
+      depthSampler = null;
+    }
+  }
+
   @Override
   public void setLoggerProvider(TCLoggerProvider loggerProvider) {
     this.loggerProvider = loggerProvider;
@@ -117,8 +152,13 @@ public class StageManagerImpl implements StageManager {
     }
 
     int capacity = maxSize > 0 ? maxSize : Integer.MAX_VALUE;
+    // per stage execution mode, e.g. seda.apply_changes_stage.batch.size = 64 and
+    // seda.apply_changes_stage.workstealing = true
+    int batchSize = TCPropertiesImpl.getProperties().getInt("seda." + name + ".batch.size", 1);
+    boolean workStealing = threads > 1
+                           && TCPropertiesImpl.getProperties().getBoolean("seda." + name + ".workstealing", false);
     Stage s = new StageImpl(loggerProvider, name, handler, threads, threadsToQueueRatio, group, this.queueFactory,
-                            capacity);
+                            capacity, batchSize, workStealing);
     addStage(name, s);
     return s;
   }
@@ -148,6 +188,7 @@ public class StageManagerImpl implements StageManager {
       s.start(context);
     }
     started = true;
+    startDepthSampler();
   }
 
   @Override
@@ -157,6 +198,7 @@ public class StageManagerImpl implements StageManager {
 
   @Override
   public void stopAll() {
+    stopDepthSampler();
     for (Object element : stages.values()) {
       Stage s = (Stage) element;
       s.destroy();
@@ -199,6 +241,19 @@ public class StageManagerImpl implements StageManager {
     return stages.values();
   }
 
+  @Override
+  public StageLatencyStats[] getLatencyStats() {
+    final String[] names = stageNames;
+    final List<StageLatencyStats> stats = new ArrayList<StageLatencyStats>(names.length);
+    for (String name : names) {
+      Stage stage = getStage(name);
+      if (stage != null) {
+        stats.add(stage.getLatencyStats());
+      }
+    }
+    return stats.toArray(new StageLatencyStats[stats.size()]);
+  }
+
   static class StageMonitors {
 
     private final List            monitors  = Collections.synchronizedList(new LinkedList());
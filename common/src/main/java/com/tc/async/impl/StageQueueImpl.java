@@ -32,7 +32,10 @@ import com.tc.util.concurrent.TCQueue;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * This StageQueueImpl represents the sink and gives a handle to the source. We are internally justun using a queue
@@ -41,10 +44,13 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class StageQueueImpl implements Sink {
 
-  private final String            stageName;
-  private final TCLogger          logger;
-  private volatile AddPredicate   predicate = DefaultAddPredicate.getInstance();
-  private final SourceQueueImpl[] sourceQueues;
+  private final String               stageName;
+  private final TCLogger             logger;
+  private volatile AddPredicate      predicate     = DefaultAddPredicate.getInstance();
+  private final SourceQueueImpl[]    sourceQueues;
+  private final boolean              workStealing;
+  private final AtomicInteger        nextStealable = new AtomicInteger();
+  private final StageInstrumentation instrumentation;
 
   /**
    * The Constructor.
@@ -62,11 +68,44 @@ public class StageQueueImpl implements Sink {
    */
   public StageQueueImpl(int threadCount, int threadsToQueueRatio, QueueFactory queueFactory,
                         TCLoggerProvider loggerProvider, String stageName, int queueSize) {
+    this(threadCount, threadsToQueueRatio, queueFactory, loggerProvider, stageName, queueSize, false);
+  }
+
+  /**
+   * The Constructor.
+   * 
+   * @param workStealing : When true every worker gets its own queue (threadsToQueueRatio is ignored). Contexts that
+   *        are not {@link MultiThreadedEventContext}s are spread round robin over a second, stealable queue per worker
+   *        which idle workers drain from their siblings. Keyed contexts keep their per key ordering.
+   */
+  public StageQueueImpl(int threadCount, int threadsToQueueRatio, QueueFactory queueFactory,
+                        TCLoggerProvider loggerProvider, String stageName, int queueSize, boolean workStealing) {
     Assert.eval(threadCount > 0);
     this.logger = loggerProvider.getLogger(Sink.class.getName() + ": " + stageName);
     this.stageName = stageName;
     this.sourceQueues = new SourceQueueImpl[threadCount];
-    createWorkerQueues(threadCount, threadsToQueueRatio, queueFactory, queueSize, loggerProvider, stageName);
+    this.workStealing = workStealing;
+    this.instrumentation = new StageInstrumentation(stageName);
+    if (workStealing) {
+      createWorkStealingQueues(threadCount, queueFactory, queueSize, stageName);
+    } else {
+      createWorkerQueues(threadCount, threadsToQueueRatio, queueFactory, queueSize, loggerProvider, stageName);
+    }
+  }
+
+  private void createWorkStealingQueues(int threads, QueueFactory queueFactory, int queueSize, String stage) {
+    StageQueueStatsCollector statsCollector = new NullStageQueueStatsCollector(stage);
+    if (queueSize != Integer.MAX_VALUE) {
+      // each worker owns two queues, one for keyed contexts and one for stealable contexts
+      queueSize = (int) Math.ceil(((double) queueSize) / (threads * 2));
+    }
+    Assert.eval(queueSize > 0);
+
+    for (int i = 0; i < threads; i++) {
+      this.sourceQueues[i] = new SourceQueueImpl(queueFactory.createInstance(queueSize),
+                                                 queueFactory.createInstance(queueSize), String.valueOf(i),
+                                                 statsCollector, this.instrumentation);
+    }
   }
 
   private void createWorkerQueues(int threads, int threadsToQueueRatio, QueueFactory queueFactory, int queueSize,
@@ -95,7 +134,7 @@ public class StageQueueImpl implements Sink {
         q = queueFactory.createInstance(queueSize);
         queueCount++;
       }
-      this.sourceQueues[i] = new SourceQueueImpl(q, String.valueOf(queueCount), statsCollector);
+      this.sourceQueues[i] = new SourceQueueImpl(q, String.valueOf(queueCount), statsCollector, this.instrumentation);
     }
   }
 
@@ -103,6 +142,92 @@ public class StageQueueImpl implements Sink {
     return this.sourceQueues[index];
   }
 
+  public boolean isWorkStealing() {
+    return this.workStealing;
+  }
+
+  StageInstrumentation getInstrumentation() {
+    return this.instrumentation;
+  }
+
+  /**
+   * Drains up to <code>max</code> contexts for the worker at <code>index</code> into <code>batch</code>, waiting up to
+   * <code>timeout</code> millis for the first one. Keyed contexts of the worker's own queue are always taken first, so
+   * their relative order is preserved. In work stealing mode a worker that finds nothing of its own takes stealable
+   * contexts from its siblings before going to sleep.
+   * 
+   * @return the number of contexts added to the batch
+   */
+  public int drain(int index, List<EventContext> batch, int max, long timeout) throws InterruptedException {
+    Assert.eval(max > 0);
+    SourceQueueImpl own = this.sourceQueues[index];
+    if (!this.workStealing) {
+      EventContext first = own.poll(timeout);
+      if (first == null) { return 0; }
+      batch.add(first);
+      return 1 + own.drainTo(batch, max - 1);
+    }
+
+    own.setWorker(Thread.currentThread());
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    while (true) {
+      int drained = own.drainTo(batch, max);
+      if (drained == 0) {
+        drained = steal(index, batch, max);
+      }
+      if (drained > 0) { return drained; }
+
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) { return 0; }
+      own.setIdle(true);
+      try {
+        // re-check after publishing the idle flag so a concurrent add can not be missed
+        if (own.isEmpty() && !hasStealable(index)) {
+          LockSupport.parkNanos(this, remaining);
+        }
+      } finally {
+        own.setIdle(false);
+      }
+      if (Thread.interrupted()) { throw new InterruptedException(); }
+    }
+  }
+
+  private int steal(int thief, List<EventContext> batch, int max) throws InterruptedException {
+    for (int i = 1; i < this.sourceQueues.length; i++) {
+      SourceQueueImpl victim = this.sourceQueues[(thief + i) % this.sourceQueues.length];
+      int stolen = victim.drainStealableTo(batch, max);
+      if (stolen > 0) { return stolen; }
+    }
+    return 0;
+  }
+
+  private boolean hasStealable(int thief) {
+    for (int i = 1; i < this.sourceQueues.length; i++) {
+      if (!this.sourceQueues[(thief + i) % this.sourceQueues.length].isStealableEmpty()) { return true; }
+    }
+    return false;
+  }
+
+  private void wakeUpIdleSibling(int owner) {
+    for (int i = 1; i < this.sourceQueues.length; i++) {
+      SourceQueueImpl sibling = this.sourceQueues[(owner + i) % this.sourceQueues.length];
+      if (sibling.isIdle()) {
+        sibling.wakeUp();
+        return;
+      }
+    }
+  }
+
+  private void putStealable(EventContext context) throws InterruptedException {
+    int index = Math.abs(this.nextStealable.getAndIncrement() % this.sourceQueues.length);
+    SourceQueueImpl sourceQueue = this.sourceQueues[index];
+    sourceQueue.putStealable(context);
+    sourceQueue.wakeUp();
+    if (!sourceQueue.isIdle()) {
+      wakeUpIdleSibling(index);
+    }
+  }
+
   /**
    * The context will be added if the sink was found to be empty(at somepoint during the call). If the queue was not
    * empty (at somepoint during the call) the context might not be added. This method should only be used where the
@@ -113,6 +238,12 @@ public class StageQueueImpl implements Sink {
     SourceQueueImpl sourceQueue;
     if (context instanceof MultiThreadedEventContext) {
       sourceQueue = getSourceQueueFor((MultiThreadedEventContext) context);
+    } else if (this.workStealing) {
+      if (size() == 0) {
+        add(context);
+        return true;
+      }
+      return false;
     } else {
       sourceQueue = this.sourceQueues[0];
     }
@@ -155,6 +286,11 @@ public class StageQueueImpl implements Sink {
           if (context instanceof MultiThreadedEventContext) {
             SourceQueueImpl sourceQueue = getSourceQueueFor((MultiThreadedEventContext) context);
             sourceQueue.put(context);
+            if (this.workStealing) {
+              sourceQueue.wakeUp();
+            }
+          } else if (this.workStealing) {
+            putStealable(context);
           } else {
             this.sourceQueues[0].put(context);
           }
@@ -259,13 +395,44 @@ public class StageQueueImpl implements Sink {
   private static final class SourceQueueImpl implements Source {
 
     private final TCQueue                     queue;
+    private final TCQueue                     stealable;
     private final String                      sourceName;
     private volatile StageQueueStatsCollector statsCollector;
+    private final StageInstrumentation        instrumentation;
+    private volatile Thread                   worker;
+    private volatile boolean                  idle;
+
+    public SourceQueueImpl(TCQueue queue, String sourceName, StageQueueStatsCollector statsCollector,
+                           StageInstrumentation instrumentation) {
+      this(queue, null, sourceName, statsCollector, instrumentation);
+    }
 
-    public SourceQueueImpl(TCQueue queue, String sourceName, StageQueueStatsCollector statsCollector) {
+    public SourceQueueImpl(TCQueue queue, TCQueue stealable, String sourceName,
+                           StageQueueStatsCollector statsCollector, StageInstrumentation instrumentation) {
       this.queue = queue;
+      this.stealable = stealable;
       this.sourceName = sourceName;
       this.statsCollector = statsCollector;
+      this.instrumentation = instrumentation;
+    }
+
+    void setWorker(Thread worker) {
+      this.worker = worker;
+    }
+
+    boolean isIdle() {
+      return this.idle;
+    }
+
+    void setIdle(boolean idle) {
+      this.idle = idle;
+    }
+
+    void wakeUp() {
+      Thread t = this.worker;
+      if (t != null) {
+        LockSupport.unpark(t);
+      }
     }
 
     public StageQueueStatsCollector getStatsCollector() {
@@ -283,6 +450,12 @@ public class StageQueueImpl implements Sink {
         while (poll(0) != null) {
           cleared++;
         }
+        if (this.stealable != null) {
+          while (this.stealable.poll(0) != null) {
+            this.statsCollector.contextRemoved();
+            cleared++;
+          }
+        }
         return cleared;
       } catch (InterruptedException e) {
         throw new TCRuntimeException(e);
@@ -290,25 +463,68 @@ public class StageQueueImpl implements Sink {
     }
 
     public boolean isEmpty() {
-      return this.queue.isEmpty();
+      return this.queue.isEmpty() && isStealableEmpty();
     }
 
-    @Override
-    public EventContext poll(long timeout) throws InterruptedException {
-      EventContext rv = (EventContext) this.queue.poll(timeout);
-      if (rv != null) {
+    boolean isStealableEmpty() {
+      return this.stealable == null || this.stealable.isEmpty();
+    }
+
+    /**
+     * Non blocking drain of the keyed queue followed by the stealable queue of this source.
+     */
+    int drainTo(List<EventContext> batch, int max) throws InterruptedException {
+      int drained = drain(this.queue, batch, max);
+      if (drained < max && this.stealable != null) {
+        drained += drain(this.stealable, batch, max - drained);
+      }
+      return drained;
+    }
+
+    int drainStealableTo(List<EventContext> batch, int max) throws InterruptedException {
+      if (this.stealable == null) { return 0; }
+      return drain(this.stealable, batch, max);
+    }
+
+    private int drain(TCQueue from, List<EventContext> batch, int max) throws InterruptedException {
+      int drained = 0;
+      while (drained < max) {
+        TimestampedContext rv = (TimestampedContext) from.poll(0);
+        if (rv == null) {
+          break;
+        }
         this.statsCollector.contextRemoved();
+        batch.add(unwrap(rv));
+        drained++;
       }
-      return rv;
+      return drained;
     }
 
-    public void put(Object obj) throws InterruptedException {
-      this.queue.put(obj);
+    @Override
+    public EventContext poll(long timeout) throws InterruptedException {
+      TimestampedContext rv = (TimestampedContext) this.queue.poll(timeout);
+      if (rv == null) { return null; }
+      this.statsCollector.contextRemoved();
+      return unwrap(rv);
+    }
+
+    private EventContext unwrap(TimestampedContext timestamped) {
+      this.instrumentation.recordQueueWait(timestamped.enqueuedNanos);
+      return timestamped.context;
+    }
+
+    public void put(EventContext context) throws InterruptedException {
+      this.queue.put(new TimestampedContext(context));
+      this.statsCollector.contextAdded();
+    }
+
+    void putStealable(EventContext context) throws InterruptedException {
+      this.stealable.put(new TimestampedContext(context));
       this.statsCollector.contextAdded();
     }
 
     public int size() {
-      return this.queue.size();
+      return this.stealable == null ? this.queue.size() : this.queue.size() + this.stealable.size();
     }
 
     @Override
@@ -317,6 +533,19 @@ public class StageQueueImpl implements Sink {
     }
   }
 
+  /**
+   * Queue entry remembering when a context was added, for the queue wait histogram of the stage.
+   */
+  private static final class TimestampedContext {
+    private final EventContext context;
+    private final long         enqueuedNanos;
+
+    TimestampedContext(EventContext context) {
+      this.context = context;
+      this.enqueuedNanos = System.nanoTime();
+    }
+  }
+
   private static abstract class StageQueueStatsCollector implements StageQueueStats {
 
     @Override
@@ -140,10 +140,20 @@ public interface TCPropertiesConsts {
    *                                  active to passive while synching
    * passive.sync.throttle.timeInMillis - Time to wait before sending the next batch of
    *                                  objects to the passive
+   * passive.sync.streaming.enabled - Dehydrate the next batch of objects for a syncing passive while the
+   *                                  previous one is being sent, keeping up to
+   *                                  passive.sync.throttle.maxPendingMessages batches in flight
+   * passive.sync.delta.enabled     - Lets a passive that went down as PASSIVE-STANDBY keep its objects and
+   *                                  have the active resync only the ObjectID ranges whose digests differ
+   *                                  from its own
    * dgc.throttle.timeInMillis     - Throttle time for dgc for each cycle for every requestsPerThrottle
    *                                 requests for references from object manager
    * dgc.throttle.requestsPerThrottle - Number of objects for which object references are requested
    *                                 from object manager after which dgc will throttle
+   * dgc.mark.parallelism          - Number of threads marking live objects in parallel during a dgc cycle,
+   *                                 0 marks on the dgc thread alone
+   * dgc.mark.sliceSize            - Number of objects a parallel marker visits before it checks for a stop
+   *                                 request and yields
    * dgc.inline.enabled             - Enables/disable inline dgc of CDSMs.
    * dgc.inline.intervalInSeconds   - Interval in seconds at which to delete objects selected by inline dgc.
    * dgc.inline.maxObjects          - Maximum inline dgc batch size
@@ -162,8 +172,12 @@ public interface TCPropertiesConsts {
   public static final String L2_OBJECTMANAGER_PASSIVE_SYNC_MESSAGE_MAXSIZE_MB               = "l2.objectmanager.passive.sync.message.maxSizeInMegaBytes";
   public static final String L2_OBJECTMANAGER_PASSIVE_SYNC_THROTTLE_TIME                    = "l2.objectmanager.passive.sync.throttle.timeInMillis";
   public static final String L2_OBJECTMANAGER_PASSIVE_SYNC_THROTTLE_PENDING_MSGS            = "l2.objectmanager.passive.sync.throttle.maxPendingMessages";
+  public static final String L2_OBJECTMANAGER_PASSIVE_SYNC_STREAMING_ENABLED                = "l2.objectmanager.passive.sync.streaming.enabled";
+  public static final String L2_OBJECTMANAGER_PASSIVE_SYNC_DELTA_ENABLED                    = "l2.objectmanager.passive.sync.delta.enabled";
   public static final String L2_OBJECTMANAGER_DGC_THROTTLE_TIME                             = "l2.objectmanager.dgc.throttle.timeInMillis";
   public static final String L2_OBJECTMANAGER_DGC_REQUEST_PER_THROTTLE                      = "l2.objectmanager.dgc.throttle.requestsPerThrottle";
+  public static final String L2_OBJECTMANAGER_DGC_MARK_PARALLELISM                         = "l2.objectmanager.dgc.mark.parallelism";
+  public static final String L2_OBJECTMANAGER_DGC_MARK_SLICE_SIZE                          = "l2.objectmanager.dgc.mark.sliceSize";
   public static final String L2_OBJECTMANAGER_DGC_INLINE_ENABLED                            = "l2.objectmanager.dgc.inline.enabled";
   public static final String L2_OBJECTMANAGER_DGC_INLINE_INTERVAL_SECONDS                   = "l2.objectmanager.dgc.inline.intervalInSeconds";
   public static final String L2_OBJECTMANAGER_DGC_INLINE_MAX_OBJECTS                        = "l2.objectmanager.dgc.inline.maxObjects";
@@ -197,6 +211,39 @@ public interface TCPropertiesConsts {
   public static final String L2_FRS_COMPACTOR_SIZEBASED_AMOUNT                              = L2_FRS_PREFIX
                                                                                               + ".compactor.sizeBased.amount";
 
+  /**
+   * ******************************************************************************************************************
+   * <code>
+   * Section : L2 Write Ahead Log Properties
+   * Description : This section contains configuration for the local disk write ahead log that backs a restartable
+   *               server built on the heap or off-heap storage
+   * fsync.windowMillis                 : Time the log writer waits for more commits to join a group before forcing
+   *                                      it to disk. 0 forces whatever queued up while the previous group was written
+   * group.maxBytes                     : Size of a commit group at which it is forced without waiting out the window
+   * snapshot.intervalSeconds           : How often to check whether the storages should be snapshotted so the log
+   *                                      written before the snapshot can be dropped. 0 disables snapshots
+   * snapshot.minLogBytes               : Log size a snapshot waits for, smaller logs are cheaper to replay than to
+   *                                      snapshot
+   * snapshot.segmentBytes              : Size of the memory mapped segment files a snapshot is split into
+   * backup.bytesPerSecond              : Rate at which an online backup copies the log and snapshot files, 0 copies
+   *                                      as fast as the disks allow
+   * </code>
+   * ******************************************************************************************************************
+   */
+  public static final String L2_WAL_PREFIX                                                  = "l2.wal";
+  public static final String L2_WAL_FSYNC_WINDOW_MILLIS                                     = L2_WAL_PREFIX
+                                                                                              + ".fsync.windowMillis";
+  public static final String L2_WAL_GROUP_MAX_BYTES                                         = L2_WAL_PREFIX
+                                                                                              + ".group.maxBytes";
+  public static final String L2_WAL_SNAPSHOT_INTERVAL_SECONDS                               = L2_WAL_PREFIX
+                                                                                              + ".snapshot.intervalSeconds";
+  public static final String L2_WAL_SNAPSHOT_MIN_LOG_BYTES                                  = L2_WAL_PREFIX
+                                                                                              + ".snapshot.minLogBytes";
+  public static final String L2_WAL_SNAPSHOT_SEGMENT_BYTES                                  = L2_WAL_PREFIX
+                                                                                              + ".snapshot.segmentBytes";
+  public static final String L2_WAL_BACKUP_BYTES_PER_SECOND                                 = L2_WAL_PREFIX
+                                                                                              + ".backup.bytesPerSecond";
+
   /*********************************************************************************************************************
    * <code>
    * Section : L2 Seda stage properties
@@ -210,6 +257,9 @@ public interface TCPropertiesConsts {
    *                                      seda stage
    * stage.sink.capacity                : Capacity of seda stage queue, Integer.MAX_VALUE if not set
    *                                      (experimental, do not change)
+   * broadcast.shards                   : Number of workers the per client part of a transaction broadcast is
+   *                                      spread over, keyed by client. 0 broadcasts to all clients on the
+   *                                      single broadcast stage thread
    * </code>
    ********************************************************************************************************************/
   public static final String L2_SEDA_APPLY_STAGE_THREADS                                    = "l2.seda.apply.stage.threads";
@@ -223,6 +273,7 @@ public interface TCPropertiesConsts {
   public static final String L2_LOCAL_CACHE_TXN_COMPLETE_THREADS                            = "l2.seda.local.cache.transaction.complete.threads";
   public static final String L2_LOCAL_CACHE_TXN_COMPLETE_SINK_CAPACITY                      = "l2.seda.local.cache.transaction.complete.sink.capacity";
   public static final String L2_LOCAL_CACHE_INVALIDATIONS_SINK_CAPACITY                     = "l2.seda.local.cache.invalidations.sink.capacity";
+  public static final String L2_SEDA_BROADCAST_SHARDS                                       = "l2.seda.broadcast.shards";
 
   /*********************************************************************************************************************
    * <code>
@@ -363,6 +414,11 @@ public interface TCPropertiesConsts {
    *                                 care -- This will cause *lots* of logging to occur
    *    timeoutForAckOnExit        - Max wait time in seconds to wait for ACKs before exit.
    *                                 value 0 for infinite wait.
+   *    creditFlowControl.enabled  - If enabled writers are throttled on batch credits instead of
+   *                                 sleeping. A credit is held by every batch that is pending or
+   *                                 not yet acknowledged by the L2 and is given back when the L2
+   *                                 acknowledges a batch it has fully applied.
+   *    creditFlowControl.credits  - Number of batch credits, 0 means maxPendingBatches
    * </code>
    ********************************************************************************************************************/
   public static final String L1_TRANSACTIONMANAGER_LOGGING_ENABLED                          = "l1.transactionmanager.logging.enabled";
@@ -379,6 +435,8 @@ public interface TCPropertiesConsts {
   public static final String L1_TRANSACTIONMANAGER_FOLDING_LOCK_LIMIT                       = "l1.transactionmanager.folding.lock.limit";
   public static final String L1_TRANSACTIONMANAGER_FOLDING_DEBUG                            = "l1.transactionmanager.folding.debug";
   public static final String L1_TRANSACTIONMANAGER_TIMEOUTFORACK_ONEXIT                     = "l1.transactionmanager.timeoutForAckOnExit";
+  public static final String L1_TRANSACTIONMANAGER_CREDIT_FLOW_CONTROL_ENABLED              = "l1.transactionmanager.creditFlowControl.enabled";
+  public static final String L1_TRANSACTIONMANAGER_CREDIT_FLOW_CONTROL_CREDITS              = "l1.transactionmanager.creditFlowControl.credits";
 
   public static final String TC_TRANSPORT_HANDSHAKE_TIMEOUT                                 = "tc.transport.handshake.timeout";
   public static final String TC_CONFIG_SOURCEGET_TIMEOUT                                    = "tc.config.getFromSource.timeout";
@@ -454,14 +512,27 @@ public interface TCPropertiesConsts {
    * remote.maxRequestSentImmediately
    *                         : Maximum number of requests send immediately after which it will be batched
    * remote.batchLookupTimePeriod
-   *                         : Time to wait before sending batch requests
+   *                         : Time to wait before sending batch requests, i.e. the longest a lookup is held back
+   *                           to be coalesced with lookups from other threads
+   * remote.batchMaxKeys     : Number of keys after which a batch is sent without waiting for batchLookupTimePeriod
+   * remote.coalesceLookups  : If enabled concurrent lookups of the same key in the same map share one server request,
+   *                           as long as that request is waiting to be batched and has not been sent
    * faultInvalidatedPinnedEntries : If enabled pinned entries will be faulted again from L2 on invalidations.
+   * localcache.offheap.enabled
+   *                         : If enabled the local cache of every server map is kept off heap instead of in the store
+   *                           provided by the toolkit
+   * localcache.offheap.maxBytes
+   *                         : Off heap memory one server map local cache may use, in bytes
    * 
    * </code>
    ********************************************************************************************************************/
   public static final String L1_SERVERMAPMANAGER_REMOTE_MAX_REQUEST_SENT_IMMEDIATELY        = "l1.servermapmanager.remote.maxRequestSentImmediately";
   public static final String L1_SERVERMAPMANAGER_REMOTE_BATCH_LOOKUP_TIME_PERIOD            = "l1.servermapmanager.remote.batchLookupTimePeriod";
+  public static final String L1_SERVERMAPMANAGER_REMOTE_BATCH_MAX_KEYS                     = "l1.servermapmanager.remote.batchMaxKeys";
+  public static final String L1_SERVERMAPMANAGER_REMOTE_COALESCE_LOOKUPS                    = "l1.servermapmanager.remote.coalesceLookups";
   public static final String L1_SERVERMAPMANAGER_FAULT_INVALIDATED_PINNED_ENTRIES           = "l1.servermapmanager.faultInvalidatedPinnedEntries";
+  public static final String L1_SERVERMAPMANAGER_LOCALCACHE_OFFHEAP_ENABLED                 = "l1.servermapmanager.localcache.offheap.enabled";
+  public static final String L1_SERVERMAPMANAGER_LOCALCACHE_OFFHEAP_MAX_BYTES               = "l1.servermapmanager.localcache.offheap.maxBytes";
 
   /*********************************************************************************************************************
    * <code>
@@ -496,19 +567,32 @@ public interface TCPropertiesConsts {
    * Description : Stage monitoring can be enabled or disabled for debugging.
    * stage.monitor.enabled                : &lt;true/false&gt;    - Enable or Disable Monitoring
    * stage.monitor.delay                  : long            - frequency in milliseconds
+   * stage.depth.sample.interval          : long            - queue depth sampling frequency in milliseconds of the
+   *                                                          always-on stage instrumentation, 0 disables sampling
+   * stage.depth.sample.history           : int             - number of queue depth samples kept per stage
    * bytebuffer.pooling.enabled           : Enable/disable tc byte buffer pooling
    * bytebuffer.common.pool.maxcount      : Max size of pool for tc byte buffer
    * bytebuffer.threadlocal.pool.maxcount : Thread pool size
+   * messages.zerocopy.enabled            : Enable/disable gathering writes of direct buffers straight to the socket
+   * messages.zerocopy.pool.maxcount      : Max number of direct write chunks pooled per comm worker
+   * messages.compression.enabled         : Offer LZ4 compression of message frames in the transport handshake
+   * messages.compression.minSizeBytes    : Frames smaller than this are sent uncompressed
    * </code>
    ********************************************************************************************************************/
   public static final String TC_STAGE_MONITOR_ENABLED                                       = "tc.stage.monitor.enabled";
   public static final String TC_STAGE_MONITOR_DELAY                                         = "tc.stage.monitor.delay";
+  public static final String TC_STAGE_DEPTH_SAMPLE_INTERVAL                                 = "tc.stage.depth.sample.interval";
+  public static final String TC_STAGE_DEPTH_SAMPLE_HISTORY                                  = "tc.stage.depth.sample.history";
   public static final String TC_BYTEBUFFER_POOLING_ENABLED                                  = "tc.bytebuffer.pooling.enabled";
   public static final String TC_BYTEBUFFER_COMMON_POOL_MAXCOUNT                             = "tc.bytebuffer.common.pool.maxcount";
   public static final String TC_BYTEBUFFER_THREADLOCAL_POOL_MAXCOUNT                        = "tc.bytebuffer.threadlocal.pool.maxcount";
   public static final String TC_MESSAGE_GROUPING_ENABLED                                    = "tc.messages.grouping.enabled";
   public static final String TC_MESSAGE_GROUPING_MAXSIZE_KB                                 = "tc.messages.grouping.maxSizeKiloBytes";
   public static final String TC_MESSAGE_PACKUP_ENABLED                                      = "tc.messages.packup.enabled";
+  public static final String TC_MESSAGE_ZEROCOPY_ENABLED                                    = "tc.messages.zerocopy.enabled";
+  public static final String TC_MESSAGE_ZEROCOPY_POOL_MAXCOUNT                              = "tc.messages.zerocopy.pool.maxcount";
+  public static final String TC_MESSAGE_COMPRESSION_ENABLED                                 = "tc.messages.compression.enabled";
+  public static final String TC_MESSAGE_COMPRESSION_MIN_SIZE                                = "tc.messages.compression.minSizeBytes";
 
   /*********************************************************************************************************************
    * <code>
@@ -567,6 +651,9 @@ public interface TCPropertiesConsts {
    *                              segment. It is best for the hash function used in tim-ehcache
    *                              if the concurrency is a power of 2.
    *  evictor.pool.size         : Thread pool size for evictor
+   *  evictor.policy            : How server side eviction picks victims among sampled entries: random (default)
+   *                              or frequency (evict the least frequently read entries). Can be set per cache
+   *                              with evictor.policy.<cacheName>
    *  global.eviction.enable    : Enable/disable global eviction from the cache
    *  global.eviction.frequency : Number of local eviction cycles after which global eviction may
    *                              start
@@ -600,6 +687,7 @@ public interface TCPropertiesConsts {
   public static final String EHCACHE_LOGGING_ENABLED                                        = "ehcache.logging.enabled";
   public static final String EHCACHE_EVICTOR_LOGGING_ENABLED                                = "ehcache.evictor.logging.enabled";
   public static final String EHCACHE_EVICTOR_POOL_SIZE                                      = "ehcache.evictor.pool.size";
+  public static final String EHCACHE_EVICTOR_POLICY                                         = "ehcache.evictor.policy";
   public static final String EHCACHE_CONCURRENCY                                            = "ehcache.concurrency";
   public static final String EHCACHE_GLOBAL_EVICTION_ENABLE                                 = "ehcache.global.eviction.enable";
   public static final String EHCACHE_GLOBAL_EVICTION_FREQUENCY                              = "ehcache.global.eviction.frequency";
@@ -847,6 +935,7 @@ public interface TCPropertiesConsts {
   public static final String L1_SEARCH_MAX_OPEN_RESULT_SETS                                 = "l1.search.max.open.resultSets";
   public static final String L2_SEARCH_MAX_PAGED_RESULT_SETS                                = "l2.search.max.paged.resultSets";
   public static final String L2_SEARCH_MAX_RESULT_PAGE_SIZE                                 = "l2.search.max.result.pageSize";
+  public static final String L2_SEARCH_QUERY_PARALLELISM                                    = "l2.search.query.parallelism";
 
   public static final String SEARCH_QUERY_WAIT_FOR_TXNS                                     = "search.query.wait.for.txns";
   public static final String SEARCH_USE_COMMIT_THREAD                                       = "search.use.commit.thread";
@@ -0,0 +1,137 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram with log-linear buckets, in the spirit of HdrHistogram. Every power of two range is split in
+ * {@value #SUB_BUCKETS} linear sub buckets, so recorded values keep a relative precision of roughly 3% while the whole
+ * histogram stays a fixed size array. Recording a value is a couple of shifts and one atomic increment, cheap enough to
+ * be left on permanently on hot paths.
+ * <p>
+ * Values are plain non negative longs, callers decide on the unit (nanoseconds for the SEDA stage timings). Values
+ * above {@link #getHighestTrackableValue()} are clamped to it.
+ */
+public class LogLinearHistogram {
+
+  private static final int      SUB_BUCKET_BITS = 5;
+  public static final int       SUB_BUCKETS     = 1 << SUB_BUCKET_BITS;
+  private static final int      SUB_BUCKET_MASK = SUB_BUCKETS - 1;
+
+  private final long            highestTrackableValue;
+  private final AtomicLongArray counts;
+  private final AtomicLong      totalCount      = new AtomicLong();
+  private final AtomicLong      totalSum        = new AtomicLong();
+  private final AtomicLong      max             = new AtomicLong();
+
+  /**
+   * @param highestTrackableValue : Largest value that is tracked accurately, anything above is recorded as this value
+   */
+  public LogLinearHistogram(long highestTrackableValue) {
+    if (highestTrackableValue < SUB_BUCKETS) { throw new IllegalArgumentException("highestTrackableValue too small: "
+                                                                                    + highestTrackableValue); }
+    this.highestTrackableValue = highestTrackableValue;
+    this.counts = new AtomicLongArray(indexFor(highestTrackableValue) + 1);
+  }
+
+  public long getHighestTrackableValue() {
+    return highestTrackableValue;
+  }
+
+  public void recordValue(long value) {
+    recordValue(value, 1);
+  }
+
+  /**
+   * Records the same value <code>count</code> times, e.g. the per context share of a batch.
+   */
+  public void recordValue(long value, int count) {
+    if (count <= 0) { return; }
+    if (value < 0) {
+      value = 0;
+    } else if (value > highestTrackableValue) {
+      value = highestTrackableValue;
+    }
+    counts.addAndGet(indexFor(value), count);
+    totalCount.addAndGet(count);
+    totalSum.addAndGet(value * count);
+    long currentMax;
+    while (value > (currentMax = max.get())) {
+      if (max.compareAndSet(currentMax, value)) {
+        break;
+      }
+    }
+  }
+
+  public long getTotalCount() {
+    return totalCount.get();
+  }
+
+  public long getMaxValue() {
+    return max.get();
+  }
+
+  public double getMean() {
+    long count = totalCount.get();
+    return count == 0 ? 0.0 : (double) totalSum.get() / count;
+  }
+
+  /**
+   * @param percentile : in the range [0, 100]
+   * @return the highest value equivalent to the bucket holding the given percentile, 0 if nothing was recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    long count = totalCount.get();
+    if (count == 0) { return 0; }
+    double p = Math.min(Math.max(percentile, 0.0), 100.0);
+    long countAtPercentile = Math.max(1, (long) Math.ceil((p / 100.0) * count));
+    long seen = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      seen += counts.get(i);
+      if (seen >= countAtPercentile) { return Math.min(highestEquivalentValue(i), max.get()); }
+    }
+    return max.get();
+  }
+
+  public void reset() {
+    for (int i = 0; i < counts.length(); i++) {
+      counts.set(i, 0);
+    }
+    totalCount.set(0);
+    totalSum.set(0);
+    max.set(0);
+  }
+
+  int indexFor(long value) {
+    if (value < SUB_BUCKETS) { return (int) value; }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    int subBucket = (int) ((value >>> shift) & SUB_BUCKET_MASK);
+    return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+  }
+
+  long highestEquivalentValue(int index) {
+    if (index < SUB_BUCKETS) { return index; }
+    int exponent = (index >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+    int subBucket = index & SUB_BUCKET_MASK;
+    int shift = exponent - SUB_BUCKET_BITS;
+    long lowest = ((long) (SUB_BUCKETS + subBucket)) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+}
@@ -19,6 +19,7 @@ package com.tc.async.impl;
 import com.tc.async.api.ConfigurationContext;
 import com.tc.async.api.Sink;
 import com.tc.async.api.Stage;
+import com.tc.async.api.StageLatencyStats;
 import com.tc.text.PrettyPrinter;
 
 /**
@@ -67,6 +68,11 @@ public class MockStage implements Stage {
     return name;
   }
 
+  @Override
+  public StageLatencyStats getLatencyStats() {
+    return null;
+  }
+
   @Override
   public PrettyPrinter prettyPrint(PrettyPrinter out) {
     return null;
@@ -0,0 +1,203 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.async.impl;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.tc.async.api.EventContext;
+import com.tc.async.api.MultiThreadedEventContext;
+import com.tc.async.api.StageLatencyStats;
+import com.tc.lang.TCThreadGroup;
+import com.tc.lang.ThrowableHandlerImpl;
+import com.tc.logging.DefaultLoggerProvider;
+import com.tc.logging.TCLogging;
+import com.tc.util.concurrent.QueueFactory;
+import com.tc.util.concurrent.ThreadUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class StageImplTest extends TestCase {
+
+  private TCThreadGroup group;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    group = new TCThreadGroup(new ThrowableHandlerImpl(TCLogging.getLogger(StageImplTest.class)));
+  }
+
+  public void testBatchDraining() throws Exception {
+    BatchRecordingHandler handler = new BatchRecordingHandler();
+    StageImpl stage = new StageImpl(new DefaultLoggerProvider(), "batchStage", handler, 1, 1, group,
+                                    new QueueFactory(), Integer.MAX_VALUE, 16, false);
+    for (int i = 0; i < 64; i++) {
+      stage.getSink().add(new KeyedContext("key", i));
+    }
+    stage.start(new ConfigurationContextImpl(null));
+    handler.waitForEventContextCount(64, 60, SECONDS);
+    assertEquals(64, handler.getContexts().size());
+    assertTrue(handler.getMaxBatchSize() > 1);
+    assertTrue(handler.getMaxBatchSize() <= 16);
+    assertOrdered(handler.getContexts());
+    stage.destroy();
+  }
+
+  public void testWorkStealingKeepsKeyedOrder() throws Exception {
+    BatchRecordingHandler handler = new BatchRecordingHandler();
+    StageImpl stage = new StageImpl(new DefaultLoggerProvider(), "stealingStage", handler, 4, 1, group,
+                                    new QueueFactory(), 1000, 8, true);
+    stage.start(new ConfigurationContextImpl(null));
+    int count = 0;
+    for (int i = 0; i < 100; i++) {
+      stage.getSink().add(new KeyedContext("key-" + (i % 3), i));
+      stage.getSink().add(new UnkeyedContext());
+      count += 2;
+    }
+    handler.waitForEventContextCount(count, 60, SECONDS);
+    assertEquals(count, handler.getContexts().size());
+    assertEquals(0, stage.getSink().size());
+    assertOrdered(handler.getContexts());
+    stage.destroy();
+  }
+
+  public void testIdleWorkersStealUnkeyedContexts() throws Exception {
+    BlockingFirstHandler handler = new BlockingFirstHandler();
+    StageImpl stage = new StageImpl(new DefaultLoggerProvider(), "stealStage", handler, 2, 1, group,
+                                    new QueueFactory(), Integer.MAX_VALUE, 1, true);
+    stage.start(new ConfigurationContextImpl(null));
+    for (int i = 0; i < 10; i++) {
+      stage.getSink().add(new UnkeyedContext());
+    }
+    // one worker is stuck on the first context, the other has to pick up everything else
+    handler.waitForEventContextCount(9, 60, SECONDS);
+    assertEquals(9, handler.getContexts().size());
+    handler.release();
+    handler.waitForEventContextCount(10, 60, SECONDS);
+    stage.destroy();
+  }
+
+  public void testLatencyStats() throws Exception {
+    TestEventHandler handler = new TestEventHandler();
+    StageImpl stage = new StageImpl(new DefaultLoggerProvider(), "latencyStage", handler, 2, 2, group,
+                                    new QueueFactory(), Integer.MAX_VALUE);
+    for (int i = 0; i < 20; i++) {
+      stage.getSink().add(new UnkeyedContext());
+    }
+    stage.sampleDepth(1000);
+    stage.start(new ConfigurationContextImpl(null));
+    handler.waitForEventContextCount(20, 60, SECONDS);
+    stage.sampleDepth(1000);
+
+    // service time is recorded right after the handler returns
+    StageLatencyStats stats = stage.getLatencyStats();
+    for (int i = 0; i < 100 && stats.getServiceTime().getCount() < 20; i++) {
+      ThreadUtil.reallySleep(100);
+      stats = stage.getLatencyStats();
+    }
+    assertEquals("latencyStage", stats.getName());
+    assertEquals(20, stats.getQueueWait().getCount());
+    assertEquals(20, stats.getServiceTime().getCount());
+    assertTrue(stats.getQueueWait().get99thPercentile() <= stats.getQueueWait().getMax());
+    assertEquals(2, stats.getDepthSamples().length);
+    assertEquals(20, stats.getDepthSamples()[0]);
+    assertEquals(1000, stats.getSampleIntervalMillis());
+    stage.destroy();
+  }
+
+  private static void assertOrdered(List<EventContext> contexts) {
+    Map<Object, Integer> last = new HashMap<Object, Integer>();
+    for (EventContext context : contexts) {
+      if (context instanceof KeyedContext) {
+        KeyedContext keyed = (KeyedContext) context;
+        Integer prev = last.put(keyed.getKey(), keyed.sequence);
+        if (prev != null) {
+          assertTrue(prev + " before " + keyed.sequence, prev < keyed.sequence);
+        }
+      }
+    }
+  }
+
+  private static class BatchRecordingHandler extends TestEventHandler {
+    private int maxBatchSize;
+
+    @Override
+    public void handleEvents(Collection contexts) {
+      synchronized (this) {
+        maxBatchSize = Math.max(maxBatchSize, contexts.size());
+      }
+      for (Object context : new ArrayList(contexts)) {
+        handleEvent((EventContext) context);
+      }
+    }
+
+    synchronized int getMaxBatchSize() {
+      return maxBatchSize;
+    }
+  }
+
+  private static class BlockingFirstHandler extends TestEventHandler {
+    private boolean blocked;
+    private boolean released;
+
+    @Override
+    public void handleEvent(EventContext context) {
+      synchronized (this) {
+        if (!blocked) {
+          blocked = true;
+          while (!released) {
+            try {
+              wait();
+            } catch (InterruptedException e) {
+              return;
+            }
+          }
+        }
+      }
+      super.handleEvent(context);
+    }
+
+    synchronized void release() {
+      released = true;
+      notifyAll();
+    }
+  }
+
+  private static class UnkeyedContext implements EventContext {
+    //
+  }
+
+  private static class KeyedContext implements MultiThreadedEventContext {
+    private final Object key;
+    private final int    sequence;
+
+    KeyedContext(Object key, int sequence) {
+      this.key = key;
+      this.sequence = sequence;
+    }
+
+    @Override
+    public Object getKey() {
+      return key;
+    }
+  }
+}
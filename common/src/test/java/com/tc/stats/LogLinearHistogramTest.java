@@ -0,0 +1,66 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.stats;
+
+import junit.framework.TestCase;
+
+public class LogLinearHistogramTest extends TestCase {
+
+  public void testIndexRoundTrip() {
+    LogLinearHistogram histogram = new LogLinearHistogram(1L << 40);
+    int previous = -1;
+    for (long value = 0; value < (1L << 20); value += 7) {
+      int index = histogram.indexFor(value);
+      assertTrue(index >= previous);
+      previous = index;
+      long highest = histogram.highestEquivalentValue(index);
+      assertTrue(value + " > " + highest, value <= highest);
+      // relative precision of a bucket is bounded by 1/32
+      assertTrue(highest - value <= Math.max(0, value / LogLinearHistogram.SUB_BUCKETS));
+    }
+  }
+
+  public void testPercentiles() {
+    LogLinearHistogram histogram = new LogLinearHistogram(1L << 40);
+    for (int i = 1; i <= 10000; i++) {
+      histogram.recordValue(i);
+    }
+    assertEquals(10000, histogram.getTotalCount());
+    assertEquals(10000, histogram.getMaxValue());
+    assertEquals(5000.5, histogram.getMean(), 0.001);
+    assertWithin(5000, histogram.getValueAtPercentile(50.0));
+    assertWithin(9900, histogram.getValueAtPercentile(99.0));
+    assertEquals(10000, histogram.getValueAtPercentile(100.0));
+  }
+
+  public void testRecordCountAndClamp() {
+    LogLinearHistogram histogram = new LogLinearHistogram(1000);
+    histogram.recordValue(50, 4);
+    histogram.recordValue(1000000);
+    assertEquals(5, histogram.getTotalCount());
+    assertEquals(1000, histogram.getMaxValue());
+    assertWithin(50, histogram.getValueAtPercentile(80.0));
+    histogram.reset();
+    assertEquals(0, histogram.getTotalCount());
+    assertEquals(0, histogram.getValueAtPercentile(99.0));
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    assertTrue("expected ~" + expected + " but was " + actual,
+               Math.abs(expected - actual) <= expected / LogLinearHistogram.SUB_BUCKETS + 1);
+  }
+}
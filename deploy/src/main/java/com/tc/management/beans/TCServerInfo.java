@@ -575,6 +575,11 @@ public class TCServerInfo extends AbstractTerracottaMBean implements TCServerInf
     return server.getBackupFailureReason(name);
   }
 
+  @Override
+  public int getBackupProgress(String name) throws IOException {
+    return server.getBackupProgress(name);
+  }
+
   @Override
   public Map<String, String> getBackupStatuses() throws IOException {
     return server.getBackupStatuses();
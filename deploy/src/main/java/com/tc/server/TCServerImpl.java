@@ -1133,6 +1133,11 @@ public class TCServerImpl extends SEDA implements TCServer {
     return dsoServer.getBackupManager().getBackupFailureReason(name);
   }
 
+  @Override
+  public int getBackupProgress(String name) throws IOException {
+    return dsoServer.getBackupManager().getBackupProgress(name);
+  }
+
   @Override
   public Map<String, String> getBackupStatuses() throws IOException {
     Map<String, String> result = new HashMap<String, String>();
@@ -328,6 +328,11 @@ public class NullTCServerInfo extends AbstractTerracottaMBean implements TCServe
     return null;
   }
 
+  @Override
+  public int getBackupProgress(String name) {
+    return 0;
+  }
+
   @Override
   public String getResourceState() {
     return ResourceManager.State.NORMAL.name();
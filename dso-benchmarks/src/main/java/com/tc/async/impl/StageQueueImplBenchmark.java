@@ -0,0 +1,111 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.async.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.tc.async.api.EventContext;
+import com.tc.async.api.MultiThreadedEventContext;
+import com.tc.logging.NullLoggerProvider;
+import com.tc.util.concurrent.QueueFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of handing contexts through a {@link StageQueueImpl}, one at a time and in drained batches. Both
+ * ends run on the benchmark thread so the numbers show the queue overhead rather than thread hand off.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StageQueueImplBenchmark {
+
+  private static final int    BATCH = 64;
+
+  @Param({ "false", "true" })
+  public boolean              workStealing;
+
+  @Param({ "1", "4" })
+  public int                  threads;
+
+  private StageQueueImpl      queue;
+  private EventContext[]      contexts;
+  private final List<EventContext> batch = new ArrayList<EventContext>(BATCH);
+
+  @Setup
+  public void setUp() {
+    queue = new StageQueueImpl(threads, threads, new QueueFactory(), new NullLoggerProvider(), "benchmark",
+                               Integer.MAX_VALUE, workStealing);
+    contexts = new EventContext[BATCH];
+    for (int i = 0; i < BATCH; i++) {
+      // everything is keyed to worker 0 so the single consumer below sees every context
+      contexts[i] = new KeyedContext(0);
+    }
+  }
+
+  @Benchmark
+  public EventContext addAndPoll() throws InterruptedException {
+    queue.add(contexts[0]);
+    return queue.getSource(0).poll(0);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void addAndDrain(Blackhole bh) throws InterruptedException {
+    for (EventContext context : contexts) {
+      queue.add(context);
+    }
+    int drained = 0;
+    while (drained < BATCH) {
+      drained += queue.drain(0, batch, BATCH, 0);
+    }
+    for (int i = 0; i < batch.size(); i++) {
+      bh.consume(batch.get(i));
+    }
+    batch.clear();
+  }
+
+  private static final class KeyedContext implements MultiThreadedEventContext {
+    private final Object key;
+
+    KeyedContext(Object key) {
+      this.key = key;
+    }
+
+    @Override
+    public Object getKey() {
+      return key;
+    }
+  }
+}
@@ -0,0 +1,202 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.net.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.net.TCSocketAddress;
+import com.tc.net.protocol.ProtocolAdaptorFactory;
+import com.tc.net.protocol.TCNetworkMessage;
+import com.tc.net.protocol.TCProtocolAdaptor;
+import com.tc.net.protocol.tcm.MessageMonitor;
+import com.tc.net.protocol.tcm.NullMessageMonitor;
+import com.tc.net.protocol.tcm.TCMessageType;
+import com.tc.net.protocol.transport.WireProtocolAdaptorImpl;
+import com.tc.net.protocol.transport.WireProtocolGroupMessageImpl;
+import com.tc.net.protocol.transport.WireProtocolHeader;
+import com.tc.net.protocol.transport.WireProtocolMessage;
+import com.tc.net.protocol.transport.WireProtocolMessageImpl;
+import com.tc.net.protocol.transport.WireProtocolMessageSink;
+import com.tc.object.msg.DSOMessageBase;
+import com.tc.object.session.SessionID;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes bursts of messages through a {@link TCConnectionImpl} to a listener on the loopback interface and waits for
+ * the last one to arrive, so the score is the time a burst takes end to end. Each burst goes out either as one
+ * {@link WireProtocolMessage} per message or batched into a single group message, framed the same way the connection
+ * frames them, so the {@link WireProtocolAdaptorImpl} on the other end parses real wire protocol headers. Bursts of
+ * small messages are where batching matters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TCConnectionImplBenchmark {
+
+  private static final long      RECEIVE_TIMEOUT = 30000;
+
+  @Param({ "true", "false" })
+  public boolean                 grouping;
+
+  @Param({ "1", "32" })
+  public int                     burst;
+
+  @Param({ "64", "4096" })
+  public int                     payloadSize;
+
+  private final MessageMonitor   monitor         = new NullMessageMonitor();
+  private final Object           receivedLock    = new Object();
+  private long                   receivedMessages;
+  private long                   sentMessages;
+
+  private TCConnectionManager    connMgr;
+  private TCListener             server;
+  private TCConnection           clientConn;
+  private byte[]                 payload;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    payload = new byte[payloadSize];
+    Arrays.fill(payload, (byte) 'x');
+
+    connMgr = new TCConnectionManagerImpl();
+    server = connMgr.createListener(new TCSocketAddress(0), new ProtocolAdaptorFactory() {
+      @Override
+      public TCProtocolAdaptor getInstance() {
+        return new WireProtocolAdaptorImpl(new ServerSink());
+      }
+    });
+    clientConn = connMgr.createConnection(new WireProtocolAdaptorImpl(new WireProtocolMessageSink() {
+      @Override
+      public void putMessage(WireProtocolMessage message) {
+        message.recycle();
+      }
+    }));
+    clientConn.connect(new TCSocketAddress(server.getBindPort()), 3000);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    connMgr.shutdown();
+    server.stop();
+  }
+
+  @Benchmark
+  public long sendBurst() throws InterruptedException {
+    if (grouping && burst > 1) {
+      ArrayList<TCNetworkMessage> messages = new ArrayList<TCNetworkMessage>(burst);
+      for (int i = 0; i < burst; i++) {
+        messages.add(newMessage());
+      }
+      clientConn.putMessage(WireProtocolGroupMessageImpl.wrapMessages(messages, clientConn));
+    } else {
+      for (int i = 0; i < burst; i++) {
+        clientConn.putMessage(WireProtocolMessageImpl.wrapMessage(newMessage(), clientConn));
+      }
+    }
+    sentMessages += burst;
+    return awaitReceived(sentMessages);
+  }
+
+  private long awaitReceived(long expected) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + RECEIVE_TIMEOUT;
+    synchronized (receivedLock) {
+      while (receivedMessages < expected) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) { throw new IllegalStateException("Received " + receivedMessages + " of " + expected
+                                                               + " messages"); }
+        receivedLock.wait(remaining);
+      }
+      return receivedMessages;
+    }
+  }
+
+  private TCNetworkMessage newMessage() {
+    BenchmarkMessage message = new BenchmarkMessage(monitor);
+    message.initialize(new TCByteBuffer[] { TCByteBufferFactory.wrap(payload) });
+    message.seal();
+    return message;
+  }
+
+  private class ServerSink implements WireProtocolMessageSink {
+    @Override
+    public void putMessage(WireProtocolMessage message) {
+      // a group message carries the count of the messages it batches in its header
+      final int count = ((WireProtocolHeader) message.getHeader()).getMessageCount();
+      message.recycle();
+      synchronized (receivedLock) {
+        receivedMessages += count;
+        receivedLock.notifyAll();
+      }
+    }
+  }
+
+  private static class BenchmarkMessage extends DSOMessageBase {
+    private static final byte DATA = 1;
+    private TCByteBuffer[]    data;
+
+    BenchmarkMessage(MessageMonitor monitor) {
+      super(new SessionID(0), monitor, new TCByteBufferOutputStream(), null, TCMessageType.PING_MESSAGE);
+    }
+
+    void initialize(TCByteBuffer[] buffers) {
+      this.data = buffers;
+      dehydrateValues();
+      final TCByteBuffer[] nvData = getOutputStream().toArray();
+      // one name/value pair follows the count
+      nvData[0].putInt(0, 1);
+      setPayload(nvData);
+    }
+
+    @Override
+    protected void dehydrateValues() {
+      putNVPair(DATA, data);
+      data = null;
+    }
+
+    @Override
+    protected boolean hydrateValue(byte name) throws IOException {
+      if (name == DATA) {
+        this.data = getInputStream().toArray();
+        return true;
+      }
+      return false;
+    }
+  }
+}
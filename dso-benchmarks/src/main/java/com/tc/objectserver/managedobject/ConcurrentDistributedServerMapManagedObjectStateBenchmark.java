@@ -0,0 +1,125 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.managedobject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tc.object.LogicalOperation;
+import com.tc.object.ObjectID;
+import com.tc.objectserver.api.EvictableEntry;
+import com.tc.objectserver.impl.SamplingType;
+import com.tc.objectserver.l1.impl.ClientObjectReferenceSet;
+import com.tc.objectserver.l1.impl.ClientStateManagerImpl;
+import com.tc.objectserver.persistence.HeapStorageManagerFactory;
+import com.tc.objectserver.persistence.Persistor;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies server map puts and samples eviction candidates on a {@link ConcurrentDistributedServerMapManagedObjectState}
+ * backed by heap storage. Puts are applied through <code>applyLogicalAction</code>, which is what a DNA cursor ends up
+ * calling for every logical action of a transaction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentDistributedServerMapManagedObjectStateBenchmark {
+
+  private static final ObjectID                            MAP_ID        = new ObjectID(1);
+  private static final int                                 SAMPLE_COUNT  = 100;
+
+  @Param({ "10000", "100000" })
+  public int                                               mapSize;
+
+  @Param({ "random", "frequency" })
+  public String                                            evictionPolicy;
+
+  private Persistor                                        persistor;
+  private ConcurrentDistributedServerMapManagedObjectState state;
+  private ClientObjectReferenceSet                         clientObjectRefSet;
+  private String[]                                         keys;
+  private int                                              next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.EHCACHE_EVICTOR_POLICY, evictionPolicy);
+    persistor = new Persistor(HeapStorageManagerFactory.INSTANCE);
+    persistor.start();
+    ManagedObjectStateFactory.disableSingleton(true);
+    ManagedObjectStateFactory.createInstance(new ManagedObjectChangeListenerProvider() {
+      private final ManagedObjectChangeListener listener = new ManagedObjectChangeListener() {
+        @Override
+        public void changed(ObjectID changedObject, ObjectID oldReference, ObjectID newReference) {
+          //
+        }
+      };
+
+      @Override
+      public ManagedObjectChangeListener getListener() {
+        return listener;
+      }
+    }, persistor);
+
+    state = new ConcurrentDistributedServerMapManagedObjectState(0, MAP_ID, persistor.getPersistentObjectFactory());
+    clientObjectRefSet = new ClientObjectReferenceSet(new ClientStateManagerImpl());
+    keys = new String[mapSize];
+    for (int i = 0; i < mapSize; i++) {
+      keys[i] = "key-" + i;
+      put(keys[i], new ObjectID(MAP_ID.toLong() + 1 + i));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    persistor.close();
+  }
+
+  @Benchmark
+  public Object applyPut() {
+    int i = next;
+    next = (i + 1) % mapSize;
+    return put(keys[i], new ObjectID(MAP_ID.toLong() + 1 + i));
+  }
+
+  @Benchmark
+  public Map<Object, EvictableEntry> getRandomSamplesForEviction() {
+    return state.getRandomSamples(SAMPLE_COUNT, clientObjectRefSet, SamplingType.FOR_EVICTION);
+  }
+
+  private Object put(String key, ObjectID value) {
+    return state.applyLogicalAction(MAP_ID, new ApplyTransactionInfo(), LogicalOperation.PUT,
+                                    new Object[] { key, value });
+  }
+}
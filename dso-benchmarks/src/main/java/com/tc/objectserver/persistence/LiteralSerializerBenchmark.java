@@ -0,0 +1,83 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.persistence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tc.object.ObjectID;
+import com.tc.object.dna.impl.UTF8ByteDataHolder;
+import com.tc.objectserver.managedobject.CDSMValue;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips the literal types the server map keys and values are stored as through {@link LiteralSerializer}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LiteralSerializerBenchmark {
+
+  @Param({ "long", "string", "utf8", "objectid", "cdsmvalue" })
+  public String      type;
+
+  private Object     literal;
+  private ByteBuffer transformed;
+
+  @Setup
+  public void setUp() {
+    if ("long".equals(type)) {
+      literal = Long.valueOf(123456789L);
+    } else if ("string".equals(type)) {
+      literal = "com.tc.objectserver.persistence.LiteralSerializerBenchmark-key";
+    } else if ("utf8".equals(type)) {
+      literal = new UTF8ByteDataHolder("com.tc.objectserver.persistence.LiteralSerializerBenchmark-key");
+    } else if ("objectid".equals(type)) {
+      literal = new ObjectID(987654321L);
+    } else if ("cdsmvalue".equals(type)) {
+      literal = new CDSMValue(new ObjectID(987654321L), 1000L, 2000L, 300L, 600L, 7L);
+    } else {
+      throw new IllegalArgumentException("Unknown literal type " + type);
+    }
+    transformed = LiteralSerializer.INSTANCE.transform(literal);
+  }
+
+  @Benchmark
+  public ByteBuffer transform() {
+    return LiteralSerializer.INSTANCE.transform(literal);
+  }
+
+  @Benchmark
+  public Object recover() {
+    // recover consumes the buffer, so work on a fresh view of it
+    return LiteralSerializer.INSTANCE.recover(transformed.duplicate());
+  }
+}
@@ -0,0 +1,124 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tc.object.ObjectID;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link BitSetObjectIDSet} and {@link ExpandingBitSetObjectIDSet} on the operations the object manager and
+ * the DGC lean on. Dense ids are allocated back to back, sparse ids leave gaps like a long running cluster does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectIDSetBenchmark {
+
+  private static final int SIZE = 100000;
+
+  @Param({ "bitset", "expanding" })
+  public String            type;
+
+  @Param({ "dense", "sparse" })
+  public String            distribution;
+
+  private ObjectID[]       ids;
+  private ObjectID[]       probes;
+  private ObjectIDSet      set;
+  private int              next;
+
+  @Setup
+  public void setUp() {
+    final int stride = "dense".equals(distribution) ? 1 : 97;
+    ids = new ObjectID[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      ids[i] = new ObjectID((long) i * stride);
+    }
+    // half of the probes hit, half fall in between or past the ids
+    final Random r = new Random(42);
+    probes = new ObjectID[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      probes[i] = (i & 1) == 0 ? ids[r.nextInt(SIZE)] : new ObjectID(r.nextInt(SIZE * stride * 2));
+    }
+    set = fill(newSet());
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SIZE)
+  public ObjectIDSet add() {
+    return fill(newSet());
+  }
+
+  @Benchmark
+  public boolean contains() {
+    final int i = next;
+    next = (i + 1) % SIZE;
+    return set.contains(probes[i]);
+  }
+
+  @Benchmark
+  public boolean removeAndAdd() {
+    final int i = next;
+    next = (i + 1) % SIZE;
+    set.remove(ids[i]);
+    return set.add(ids[i]);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SIZE)
+  public long iterate() {
+    long sum = 0;
+    for (ObjectID id : set) {
+      sum += id.toLong();
+    }
+    return sum;
+  }
+
+  private ObjectIDSet newSet() {
+    if ("bitset".equals(type)) {
+      return new BitSetObjectIDSet();
+    } else if ("expanding".equals(type)) {
+      return new ExpandingBitSetObjectIDSet();
+    }
+    throw new IllegalArgumentException("Unknown ObjectIDSet type " + type);
+  }
+
+  private ObjectIDSet fill(ObjectIDSet target) {
+    for (ObjectID id : ids) {
+      target.add(id);
+    }
+    return target;
+  }
+}
@@ -0,0 +1,159 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.terracotta.toolkit.object.serialization;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tc.platform.PlatformService;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes and deserializes typical cache values through {@link SerializationStrategyImpl}, with and without the
+ * GZIP stream the toolkit wraps around compressed values. The class descriptor mapping is backed by a local map so no
+ * cluster is needed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationStrategyImplBenchmark {
+
+  @Param({ "false", "true" })
+  public boolean                    compression;
+
+  @Param({ "string", "object", "graph" })
+  public String                     payload;
+
+  private SerializationStrategyImpl strategy;
+  private Object                    value;
+  private byte[]                    serialized;
+
+  @Setup
+  public void setUp() {
+    strategy = new SerializationStrategyImpl(localPlatformService(), new LocalSerializerMap<String, Object>(),
+                                             SerializationStrategyImplBenchmark.class.getClassLoader());
+    value = createPayload(payload);
+    serialized = strategy.serialize(value, compression);
+  }
+
+  @Benchmark
+  public byte[] serialize() {
+    return strategy.serialize(value, compression);
+  }
+
+  @Benchmark
+  public Object deserialize() throws IOException, ClassNotFoundException {
+    return strategy.deserialize(serialized, compression, false);
+  }
+
+  private static Object createPayload(String payload) {
+    if ("string".equals(payload)) {
+      return "a typical cache value of a modest length, repeated a little: abcabcabcabcabcabcabcabcabc";
+    } else if ("object".equals(payload)) {
+      return new Entry(42L, "entry-42", 3.14d);
+    } else if ("graph".equals(payload)) {
+      Map<String, List<Entry>> graph = new HashMap<String, List<Entry>>();
+      for (int i = 0; i < 32; i++) {
+        List<Entry> entries = new ArrayList<Entry>();
+        for (int j = 0; j < 8; j++) {
+          entries.add(new Entry(i * 8 + j, "entry-" + i + "-" + j, i / (j + 1d)));
+        }
+        graph.put("bucket-" + i, entries);
+      }
+      return graph;
+    }
+    throw new IllegalArgumentException("Unknown payload " + payload);
+  }
+
+  static class Entry implements Serializable {
+    private final long   id;
+    private final String name;
+    private final double score;
+
+    Entry(long id, String name, double score) {
+      this.id = id;
+      this.name = name;
+      this.score = score;
+    }
+
+    @Override
+    public String toString() {
+      return "Entry[" + id + ", " + name + ", " + score + "]";
+    }
+  }
+
+  /**
+   * The mapping only takes its cluster lock and registers a shutdown hook through the platform service, both of which
+   * can be no-ops when the serializer map is local.
+   */
+  private static PlatformService localPlatformService() {
+    return (PlatformService) Proxy.newProxyInstance(PlatformService.class.getClassLoader(),
+                                                    new Class<?>[] { PlatformService.class }, new InvocationHandler() {
+                                                      @Override
+                                                      public Object invoke(Object proxy, Method method, Object[] args) {
+                                                        return defaultValue(method.getReturnType());
+                                                      }
+                                                    });
+  }
+
+  private static Object defaultValue(Class<?> type) {
+    if (type.isPrimitive() && type != Void.TYPE) { return Array.get(Array.newInstance(type, 1), 0); }
+    return null;
+  }
+
+  private static class LocalSerializerMap<K, V> implements SerializerMap<K, V> {
+    private final Map<K, V> map = new HashMap<K, V>();
+
+    @Override
+    public V put(K key, V value) {
+      return map.put(key, value);
+    }
+
+    @Override
+    public V get(K key) {
+      return map.get(key);
+    }
+
+    @Override
+    public V localGet(K key) {
+      return get(key);
+    }
+  }
+}
@@ -25,6 +25,8 @@ import com.tc.net.core.event.TCConnectionEvent;
 import com.tc.net.core.event.TCConnectionEventListener;
 import com.tc.net.core.event.TCListenerEvent;
 import com.tc.net.core.event.TCListenerEventListener;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 import com.tc.util.Util;
 import com.tc.util.concurrent.SetOnceFlag;
@@ -63,12 +65,19 @@ import java.util.concurrent.atomic.AtomicLong;
 
 class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListener {
   private static final TCLogger                logger        = TCLogging.getLogger(CoreNIOServices.class);
+  private static final int                     WRITE_CHUNK_SIZE = 16 * 1024;
+  private static final int                     WRITE_CHUNK_POOL_MAXCOUNT = TCPropertiesImpl
+                                                                  .getProperties()
+                                                                  .getInt(TCPropertiesConsts.TC_MESSAGE_ZEROCOPY_POOL_MAXCOUNT,
+                                                                          512);
   private final TCWorkerCommManager            workerCommMgr;
   private final String                         commThreadName;
   private final SocketParams                   socketParams;
   private final CommThread                     readerComm;
   private final CommThread                     writerComm;
   private final SetOnceFlag                    stopRequested = new SetOnceFlag();
+  private final DirectBufferPool               writeBufferPool = new DirectBufferPool(WRITE_CHUNK_SIZE,
+                                                                                      WRITE_CHUNK_POOL_MAXCOUNT);
 
   // maintains weight of all L1 Connections which is handled by this WorkerComm
   private final HashMap<TCConnection, Integer> managedConnectionsMap;
@@ -101,6 +110,10 @@ class CoreNIOServices implements TCListenerEventListener, TCConnectionEventListe
     }
   }
 
+  DirectBufferPool getWriteBufferPool() {
+    return writeBufferPool;
+  }
+
   public void cleanupChannel(SocketChannel channel, Runnable callback) {
     readerComm.cleanupChannel(channel, callback);
     writerComm.cleanupChannel(channel, callback);
@@ -0,0 +1,62 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.net.core;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of fixed size direct chunks used to stage heap message data for gathering socket writes. Chunks are handed out
+ * cleared and are only retained up to {@code maxPooled}; anything beyond that is left to the collector.
+ */
+class DirectBufferPool {
+  private final int                               chunkSize;
+  private final int                               maxPooled;
+  private final ConcurrentLinkedQueue<ByteBuffer> chunks = new ConcurrentLinkedQueue<ByteBuffer>();
+  private final AtomicInteger                     pooled = new AtomicInteger();
+
+  DirectBufferPool(int chunkSize, int maxPooled) {
+    this.chunkSize = chunkSize;
+    this.maxPooled = maxPooled;
+  }
+
+  ByteBuffer acquire() {
+    ByteBuffer chunk = chunks.poll();
+    if (chunk == null) { return ByteBuffer.allocateDirect(chunkSize); }
+    pooled.decrementAndGet();
+    chunk.clear();
+    return chunk;
+  }
+
+  void release(ByteBuffer chunk) {
+    if (chunk.capacity() != chunkSize || !chunk.isDirect()) { return; }
+    if (pooled.incrementAndGet() <= maxPooled) {
+      chunks.offer(chunk);
+    } else {
+      pooled.decrementAndGet();
+    }
+  }
+
+  int getChunkSize() {
+    return chunkSize;
+  }
+
+  int getPooledCount() {
+    return pooled.get();
+  }
+}
@@ -0,0 +1,45 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.net.core;
+
+/**
+ * A connection that can wrap the wire protocol stream in length prefixed, optionally compressed frames. The transport
+ * turns framing on for each direction during the handshake, at a point where the peer is known to have nothing in
+ * flight, so both ends switch at the same byte of the stream.
+ */
+public interface FrameCompressingConnection {
+
+  /**
+   * Everything read after this call is expected to be framed.
+   */
+  void startFrameDecoding();
+
+  /**
+   * Lets the first bytes read after this call decide whether the peer frames its writes. If they start a frame they
+   * and everything after them are decoded as after {@link #startFrameDecoding()}, otherwise reads stay unframed.
+   */
+  void detectFrameDecoding();
+
+  /**
+   * Everything written after this call is framed. Large frames are compressed when {@code compress} is set.
+   */
+  void startFrameEncoding(boolean compress);
+
+  boolean isFrameDecoding();
+
+  FrameCompressionStats getFrameCompressionStats();
+}
@@ -0,0 +1,105 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.net.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per connection counters of the frame compression layer. Outgoing counters compare the message bytes handed to the
+ * connection with the framed bytes put on the wire, incoming counters do the same in the other direction.
+ */
+public class FrameCompressionStats {
+  private final AtomicLong rawBytesOut        = new AtomicLong();
+  private final AtomicLong framedBytesOut     = new AtomicLong();
+  private final AtomicLong compressedFrames   = new AtomicLong();
+  private final AtomicLong uncompressedFrames = new AtomicLong();
+  private final AtomicLong compressNanos      = new AtomicLong();
+  private final AtomicLong rawBytesIn         = new AtomicLong();
+  private final AtomicLong framedBytesIn      = new AtomicLong();
+  private final AtomicLong decompressNanos    = new AtomicLong();
+
+  void frameWritten(int rawLength, int framedLength, boolean compressed, long nanos) {
+    rawBytesOut.addAndGet(rawLength);
+    framedBytesOut.addAndGet(framedLength);
+    (compressed ? compressedFrames : uncompressedFrames).incrementAndGet();
+    compressNanos.addAndGet(nanos);
+  }
+
+  void frameRead(int rawLength, int framedLength, long nanos) {
+    rawBytesIn.addAndGet(rawLength);
+    framedBytesIn.addAndGet(framedLength);
+    decompressNanos.addAndGet(nanos);
+  }
+
+  public long getRawBytesOut() {
+    return rawBytesOut.get();
+  }
+
+  public long getFramedBytesOut() {
+    return framedBytesOut.get();
+  }
+
+  public long getCompressedFrames() {
+    return compressedFrames.get();
+  }
+
+  public long getUncompressedFrames() {
+    return uncompressedFrames.get();
+  }
+
+  public long getCompressTimeMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(compressNanos.get());
+  }
+
+  public long getRawBytesIn() {
+    return rawBytesIn.get();
+  }
+
+  public long getFramedBytesIn() {
+    return framedBytesIn.get();
+  }
+
+  public long getDecompressTimeMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(decompressNanos.get());
+  }
+
+  /**
+   * @return message bytes per byte written to the wire, 1.0 when nothing was written yet
+   */
+  public double getCompressionRatioOut() {
+    return ratio(rawBytesOut.get(), framedBytesOut.get());
+  }
+
+  /**
+   * @return message bytes per byte read from the wire, 1.0 when nothing was read yet
+   */
+  public double getCompressionRatioIn() {
+    return ratio(rawBytesIn.get(), framedBytesIn.get());
+  }
+
+  private static double ratio(long raw, long framed) {
+    return framed == 0 ? 1.0 : (double) raw / framed;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("out=%.2f (%d/%d frames compressed, %dms) in=%.2f (%dms)", getCompressionRatioOut(),
+                         getCompressedFrames(), getCompressedFrames() + getUncompressedFrames(),
+                         getCompressTimeMillis(), getCompressionRatioIn(), getDecompressTimeMillis());
+  }
+}
@@ -0,0 +1,107 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.net.core;
+
+import com.tc.net.protocol.TCProtocolException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reassembles the frames written by {@link FrameEncoder} from the bytes read off the socket. Only used from the
+ * connection's reader thread.
+ */
+final class FrameDecoder {
+  private static final int            INITIAL_BUFFER_SIZE = 64 * 1024;
+
+  private final FrameCompressionStats stats;
+  private ByteBuffer                  input               = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+  private byte[]                      output              = new byte[0];
+  private int                         consumed            = 0;
+
+  FrameDecoder(FrameCompressionStats stats) {
+    this.stats = stats;
+  }
+
+  /**
+   * @return true if {@code b} can be the first byte of a frame. A wire protocol message starts with its version, which
+   *         never is.
+   */
+  static boolean isFrameStart(byte b) {
+    return b == FrameEncoder.TYPE_RAW || b == FrameEncoder.TYPE_LZ4;
+  }
+
+  /**
+   * @return the buffer socket data should be read into, always with some space remaining
+   */
+  ByteBuffer getInputBuffer() {
+    return input;
+  }
+
+  /**
+   * Returns the contents of the next complete frame, or null if more data needs to be read first. The returned buffer
+   * is only valid until the next call.
+   */
+  ByteBuffer nextFrame() throws TCProtocolException {
+    if (consumed > 0) {
+      input.flip();
+      input.position(consumed);
+      input.compact();
+      consumed = 0;
+    }
+
+    final int available = input.position();
+    if (available < FrameEncoder.HEADER_SIZE) { return null; }
+
+    final byte type = input.get(0);
+    final int rawLength = input.getInt(1);
+    final int frameLength = input.getInt(5);
+    if ((type != FrameEncoder.TYPE_RAW && type != FrameEncoder.TYPE_LZ4) || rawLength < 0 || frameLength < 0
+        || rawLength > FrameEncoder.MAX_FRAME_LENGTH || frameLength > FrameEncoder.MAX_FRAME_LENGTH
+        || (type == FrameEncoder.TYPE_RAW && rawLength != frameLength)) {
+      throw new TCProtocolException("Invalid frame header: type=" + type + ", raw length=" + rawLength
+                                    + ", frame length=" + frameLength);
+    }
+
+    final int total = FrameEncoder.HEADER_SIZE + frameLength;
+    if (available < total) {
+      if (input.capacity() < total) {
+        final ByteBuffer grown = ByteBuffer.allocate(total);
+        input.flip();
+        grown.put(input);
+        input = grown;
+      }
+      return null;
+    }
+
+    consumed = total;
+    if (type == FrameEncoder.TYPE_RAW) {
+      stats.frameRead(rawLength, total, 0);
+      final ByteBuffer frame = input.duplicate();
+      frame.limit(total).position(FrameEncoder.HEADER_SIZE);
+      return frame;
+    }
+
+    final long start = System.nanoTime();
+    if (output.length < rawLength) {
+      output = new byte[rawLength];
+    }
+    Lz4BlockCodec.decompress(input.array(), input.arrayOffset() + FrameEncoder.HEADER_SIZE, frameLength, output, 0,
+                             rawLength);
+    stats.frameRead(rawLength, total, System.nanoTime() - start);
+    return ByteBuffer.wrap(output, 0, rawLength);
+  }
+}
@@ -0,0 +1,95 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.net.core;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Wraps each outgoing wire protocol message (or message group) in a frame of
+ * 
+ * <pre>
+ * [byte type][int raw length][int frame length][frame length bytes]
+ * </pre>
+ * 
+ * Messages of at least {@code minCompressSize} bytes are LZ4 compressed when that makes them smaller, everything else
+ * is sent as is after the header. Only used from the connection's writer thread.
+ */
+final class FrameEncoder {
+  static final int                    HEADER_SIZE      = 9;
+  static final byte                   TYPE_RAW         = 0;
+  static final byte                   TYPE_LZ4         = 1;
+  static final int                    MAX_FRAME_LENGTH = 1 << 30;
+
+  private final Lz4BlockCodec         codec            = new Lz4BlockCodec();
+  private final boolean               compress;
+  private final int                   minCompressSize;
+  private final FrameCompressionStats stats;
+
+  FrameEncoder(boolean compress, int minCompressSize, FrameCompressionStats stats) {
+    this.compress = compress;
+    this.minCompressSize = minCompressSize;
+    this.stats = stats;
+  }
+
+  TCByteBuffer[] encode(TCByteBuffer[] data) {
+    int length = 0;
+    for (TCByteBuffer buffer : data) {
+      length += buffer.remaining();
+    }
+
+    long compressNanos = 0;
+    if (compress && length >= minCompressSize) {
+      final long start = System.nanoTime();
+      final byte[] raw = new byte[length];
+      int offset = 0;
+      for (TCByteBuffer buffer : data) {
+        final ByteBuffer src = buffer.getNioBuffer().duplicate();
+        final int n = src.remaining();
+        src.get(raw, offset, n);
+        offset += n;
+      }
+
+      final byte[] frame = new byte[HEADER_SIZE + Lz4BlockCodec.maxCompressedLength(length)];
+      final int compressedLength = codec.compress(raw, 0, length, frame, HEADER_SIZE);
+      compressNanos = System.nanoTime() - start;
+      if (compressedLength < length) {
+        writeHeader(ByteBuffer.wrap(frame), TYPE_LZ4, length, compressedLength);
+        stats.frameWritten(length, HEADER_SIZE + compressedLength, true, compressNanos);
+        final TCByteBuffer framed = TCByteBufferFactory.wrap(frame);
+        framed.limit(HEADER_SIZE + compressedLength);
+        return new TCByteBuffer[] { framed };
+      }
+      // not worth it, send the message as it is
+    }
+
+    final byte[] header = new byte[HEADER_SIZE];
+    writeHeader(ByteBuffer.wrap(header), TYPE_RAW, length, length);
+    stats.frameWritten(length, HEADER_SIZE + length, false, compressNanos);
+
+    final TCByteBuffer[] framed = new TCByteBuffer[data.length + 1];
+    framed[0] = TCByteBufferFactory.wrap(header);
+    System.arraycopy(data, 0, framed, 1, data.length);
+    return framed;
+  }
+
+  private static void writeHeader(ByteBuffer buffer, byte type, int rawLength, int frameLength) {
+    buffer.put(type).putInt(rawLength).putInt(frameLength);
+  }
+}
@@ -0,0 +1,207 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.net.core;
+
+import com.tc.net.protocol.TCProtocolException;
+
+import java.util.Arrays;
+
+/**
+ * Compressor and decompressor for the LZ4 block format. The compressor is the plain greedy single-hash variant, which
+ * trades some ratio for speed; the output can be read by any LZ4 block decoder. Instances keep a hash table and are not
+ * thread safe.
+ */
+final class Lz4BlockCodec {
+
+  private static final int MIN_MATCH     = 4;
+  private static final int LAST_LITERALS = 5;
+  private static final int MF_LIMIT      = 12;
+  private static final int MAX_DISTANCE  = 0xFFFF;
+  private static final int HASH_LOG      = 12;
+  private static final int ML_MASK       = 0x0F;
+  private static final int RUN_MASK      = 0x0F;
+
+  private final int[]      table         = new int[1 << HASH_LOG];
+
+  static int maxCompressedLength(int length) {
+    return length + length / 255 + 16;
+  }
+
+  /**
+   * Compresses {@code srcLen} bytes into {@code dst}, which must have room for {@link #maxCompressedLength(int)} bytes.
+   * 
+   * @return number of bytes written to {@code dst}
+   */
+  int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+    final int srcEnd = srcOff + srcLen;
+    final int matchLimit = srcEnd - LAST_LITERALS;
+    final int mfLimit = srcEnd - MF_LIMIT;
+
+    int sOff = srcOff;
+    int dOff = dstOff;
+    int anchor = srcOff;
+
+    if (srcLen > MF_LIMIT) {
+      Arrays.fill(table, -1);
+      while (sOff < mfLimit) {
+        final int sequence = readInt(src, sOff);
+        final int h = hash(sequence);
+        int ref = table[h];
+        table[h] = sOff;
+        if (ref < 0 || sOff - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+          sOff++;
+          continue;
+        }
+
+        while (sOff > anchor && ref > srcOff && src[sOff - 1] == src[ref - 1]) {
+          sOff--;
+          ref--;
+        }
+
+        int matchLen = MIN_MATCH;
+        while (sOff + matchLen < matchLimit && src[sOff + matchLen] == src[ref + matchLen]) {
+          matchLen++;
+        }
+
+        dOff = writeSequence(src, anchor, sOff - anchor, dst, dOff, sOff - ref, matchLen - MIN_MATCH);
+        sOff += matchLen;
+        anchor = sOff;
+      }
+    }
+
+    return writeLastLiterals(src, anchor, srcEnd - anchor, dst, dOff) - dstOff;
+  }
+
+  /**
+   * Decompresses a block that is known to expand to exactly {@code dstLen} bytes.
+   */
+  static void decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen)
+      throws TCProtocolException {
+    final int srcEnd = srcOff + srcLen;
+    final int dstEnd = dstOff + dstLen;
+    int sOff = srcOff;
+    int dOff = dstOff;
+
+    while (sOff < srcEnd) {
+      final int token = src[sOff++] & 0xFF;
+
+      int literalLen = token >>> 4;
+      if (literalLen == RUN_MASK) {
+        int b;
+        do {
+          if (sOff >= srcEnd) { throw corrupt("literal length", sOff - srcOff); }
+          b = src[sOff++] & 0xFF;
+          literalLen += b;
+          // checked as it grows, a long enough run of 0xFF bytes would overflow it
+          if (literalLen > srcEnd - sOff) { throw corrupt("literal length", sOff - srcOff); }
+        } while (b == 0xFF);
+      }
+      if (literalLen > srcEnd - sOff || literalLen > dstEnd - dOff) { throw corrupt("literals", sOff - srcOff); }
+      System.arraycopy(src, sOff, dst, dOff, literalLen);
+      sOff += literalLen;
+      dOff += literalLen;
+
+      if (sOff == srcEnd) {
+        // the last sequence has no match part
+        break;
+      }
+
+      if (srcEnd - sOff < 2) { throw corrupt("match offset", sOff - srcOff); }
+      final int offset = (src[sOff] & 0xFF) | ((src[sOff + 1] & 0xFF) << 8);
+      sOff += 2;
+      if (offset == 0 || offset > dOff - dstOff) { throw corrupt("match offset " + offset, sOff - srcOff); }
+
+      int matchLen = token & ML_MASK;
+      if (matchLen == ML_MASK) {
+        int b;
+        do {
+          if (sOff >= srcEnd) { throw corrupt("match length", sOff - srcOff); }
+          b = src[sOff++] & 0xFF;
+          matchLen += b;
+          if (matchLen > dstEnd - dOff) { throw corrupt("match length", sOff - srcOff); }
+        } while (b == 0xFF);
+      }
+      matchLen += MIN_MATCH;
+      if (matchLen > dstEnd - dOff) { throw corrupt("match length", sOff - srcOff); }
+
+      // byte by byte since the match may overlap the bytes it produces
+      for (int ref = dOff - offset, end = dOff + matchLen; dOff < end;) {
+        dst[dOff++] = dst[ref++];
+      }
+    }
+
+    if (dOff != dstEnd) { throw corrupt("length (" + (dOff - dstOff) + " of " + dstLen + " bytes)", srcLen); }
+  }
+
+  private static int writeSequence(byte[] src, int literalOff, int literalLen, byte[] dst, int dOff, int offset,
+                                   int matchCode) {
+    final int tokenOff = dOff++;
+    int token;
+    if (literalLen >= RUN_MASK) {
+      token = RUN_MASK << 4;
+      dOff = writeLength(dst, dOff, literalLen - RUN_MASK);
+    } else {
+      token = literalLen << 4;
+    }
+    System.arraycopy(src, literalOff, dst, dOff, literalLen);
+    dOff += literalLen;
+
+    dst[dOff++] = (byte) offset;
+    dst[dOff++] = (byte) (offset >>> 8);
+
+    if (matchCode >= ML_MASK) {
+      token |= ML_MASK;
+      dOff = writeLength(dst, dOff, matchCode - ML_MASK);
+    } else {
+      token |= matchCode;
+    }
+    dst[tokenOff] = (byte) token;
+    return dOff;
+  }
+
+  private static int writeLastLiterals(byte[] src, int literalOff, int literalLen, byte[] dst, int dOff) {
+    if (literalLen >= RUN_MASK) {
+      dst[dOff++] = (byte) (RUN_MASK << 4);
+      dOff = writeLength(dst, dOff, literalLen - RUN_MASK);
+    } else {
+      dst[dOff++] = (byte) (literalLen << 4);
+    }
+    System.arraycopy(src, literalOff, dst, dOff, literalLen);
+    return dOff + literalLen;
+  }
+
+  private static int writeLength(byte[] dst, int dOff, int length) {
+    while (length >= 0xFF) {
+      dst[dOff++] = (byte) 0xFF;
+      length -= 0xFF;
+    }
+    dst[dOff++] = (byte) length;
+    return dOff;
+  }
+
+  private static int readInt(byte[] buf, int off) {
+    return (buf[off] & 0xFF) | ((buf[off + 1] & 0xFF) << 8) | ((buf[off + 2] & 0xFF) << 16) | (buf[off + 3] << 24);
+  }
+
+  private static int hash(int sequence) {
+    return (sequence * -1640531535) >>> (32 - HASH_LOG);
+  }
+
+  private static TCProtocolException corrupt(String what, int at) {
+    return new TCProtocolException("Corrupt compressed frame: bad " + what + " at byte " + at);
+  }
+}
@@ -28,6 +28,7 @@ import com.tc.net.core.event.TCConnectionEventListener;
 import com.tc.net.core.security.TCSecurityManager;
 import com.tc.net.protocol.TCNetworkMessage;
 import com.tc.net.protocol.TCProtocolAdaptor;
+import com.tc.net.protocol.TCProtocolException;
 import com.tc.net.protocol.transport.WireProtocolGroupMessageImpl;
 import com.tc.net.protocol.transport.WireProtocolHeader;
 import com.tc.net.protocol.transport.WireProtocolMessage;
@@ -52,6 +53,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
@@ -70,7 +72,7 @@ import javax.net.ssl.SSLHandshakeException;
  * @author teck
  * @author mgovinda
  */
-final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannelWriter {
+final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannelWriter, FrameCompressingConnection {
 
   private static final long                  NO_CONNECT_TIME             = -1L;
   private static final TCLogger              logger                      = TCLogging.getLogger(TCConnection.class);
@@ -115,6 +117,15 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
       .getProperties()
       .getBoolean(TCPropertiesConsts.TC_MESSAGE_PACKUP_ENABLED,
           true);
+  private static final boolean               ZERO_COPY_WRITES            = TCPropertiesImpl
+      .getProperties()
+      .getBoolean(TCPropertiesConsts.TC_MESSAGE_ZEROCOPY_ENABLED,
+          false);
+  private static final int                   MAX_GATHERED_BUFFERS        = 128;
+  private static final int                   COMPRESSION_MIN_SIZE        = TCPropertiesImpl
+      .getProperties()
+      .getInt(TCPropertiesConsts.TC_MESSAGE_COMPRESSION_MIN_SIZE,
+          4096);
   private final Object                       readerLock                  = new Object();
   private final Object                       writerLock                  = new Object();
 
@@ -124,6 +135,11 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
 
   // having this variable at instance level helps reducing memory pressure at VM;
   private final ArrayList<TCNetworkMessage>  messagesToBatch             = new ArrayList<TCNetworkMessage>();
+  private ByteBuffer[]                       gatherBuffers;
+  private final FrameCompressionStats        frameStats                  = new FrameCompressionStats();
+  private volatile FrameEncoder              frameEncoder;
+  private volatile FrameDecoder              frameDecoder;
+  private volatile FrameDecoder              detectingFrameDecoder;
 
   // for creating unconnected client connections
   TCConnectionImpl(final TCConnectionEventListener listener, final TCProtocolAdaptor adaptor,
@@ -339,11 +355,73 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
   public int doReadFromBuffer() throws IOException {
     if (pipeSocket != null) {
       return bufferManager.forwardFromReadBuffer(pipeSocket.getInputPipeSinkChannel());
+    } else if (frameDecoder != null) {
+      return doReadFramesFromBuffer();
+    } else if (detectingFrameDecoder != null) {
+      return doDetectFramesFromBuffer();
     } else {
       return doReadFromBufferInternal();
     }
   }
 
+  private int doReadFramesFromBuffer() {
+    final FrameDecoder decoder = this.frameDecoder;
+    final int read = bufferManager.forwardFromReadBuffer(decoder.getInputBuffer());
+    decodeFrames(decoder);
+    return read;
+  }
+
+  private int doDetectFramesFromBuffer() {
+    final FrameDecoder decoder = this.detectingFrameDecoder;
+    final ByteBuffer input = decoder.getInputBuffer();
+    final int read = bufferManager.forwardFromReadBuffer(input);
+    if (input.position() == 0) { return read; }
+
+    if (FrameDecoder.isFrameStart(input.get(0))) {
+      this.frameDecoder = decoder;
+      this.detectingFrameDecoder = null;
+      decodeFrames(decoder);
+    } else {
+      this.detectingFrameDecoder = null;
+      input.flip();
+      feedNetworkData(input);
+    }
+    return read;
+  }
+
+  private void decodeFrames(final FrameDecoder decoder) {
+    try {
+      ByteBuffer frame;
+      while ((frame = decoder.nextFrame()) != null) {
+        feedNetworkData(frame);
+      }
+    } catch (final TCProtocolException e) {
+      this.eventCaller.fireErrorEvent(this.eventListeners, this, e, null);
+    }
+  }
+
+  private void feedNetworkData(final ByteBuffer src) {
+    while (src.hasRemaining()) {
+      int count = 0;
+
+      final TCByteBuffer[] readBuffers = getReadBuffers();
+      for (final TCByteBuffer readBuffer : readBuffers) {
+        final ByteBuffer dest = extractNioBuffer(readBuffer);
+        final int len = Math.min(src.remaining(), dest.remaining());
+        final int limit = src.limit();
+        src.limit(src.position() + len);
+        dest.put(src);
+        src.limit(limit);
+        count += len;
+        if (!src.hasRemaining()) {
+          break;
+        }
+      }
+
+      addNetworkData(readBuffers, count);
+    }
+  }
+
   @Override
   public int doWrite() throws IOException {
     synchronized (writerLock) {
@@ -352,6 +430,18 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
   }
 
   private int doWriteInternal() throws IOException {
+    if (isGatheringWrites()) {
+      int gathered;
+      try {
+        gathered = doGatheringWrite();
+      } catch (IOException ioe) {
+        closeWriteOnException(ioe);
+        return 0;
+      }
+      this.totalWrite.addAndGet(gathered);
+      return gathered;
+    }
+
     int written;
     try {
       written = doWriteToBuffer();
@@ -418,20 +508,20 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
       // we don't want to group already constructed Transport Handshake WireProtocolMessages
       if (msg instanceof WireProtocolMessage) {
         final TCNetworkMessage ms = finalizeWireProtocolMessage((WireProtocolMessage) msg, 1);
-        this.writeContexts.add(new WriteContext(ms));
+        this.writeContexts.add(newWriteContext(ms));
         continue;
       }
 
       // GenericNetwork messages are used for testing
       if (WireProtocolHeader.PROTOCOL_UNKNOWN == WireProtocolHeader.getProtocolForMessageClass(msg)) {
-        this.writeContexts.add(new WriteContext(msg));
+        this.writeContexts.add(newWriteContext(msg));
         continue;
       }
 
       if (MSG_GROUPING_ENABLED) {
         if (!canBatch(msg, batchSize, batchMsgCount)) {
           if (batchMsgCount > 0) {
-            this.writeContexts.add(new WriteContext(buildWireProtocolMessageGroup(this.messagesToBatch)));
+            this.writeContexts.add(newWriteContext(buildWireProtocolMessageGroup(this.messagesToBatch)));
             batchSize = 0;
             batchMsgCount = 0;
             this.messagesToBatch.clear();
@@ -443,14 +533,14 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
         batchMsgCount++;
         this.messagesToBatch.add(msg);
       } else {
-        this.writeContexts.add(new WriteContext(buildWireProtocolMessage(msg)));
+        this.writeContexts.add(newWriteContext(buildWireProtocolMessage(msg)));
       }
       msg = null;
     }
 
     if (MSG_GROUPING_ENABLED && batchMsgCount > 0) {
       final TCNetworkMessage ms = buildWireProtocolMessageGroup(this.messagesToBatch);
-      this.writeContexts.add(new WriteContext(ms));
+      this.writeContexts.add(newWriteContext(ms));
     }
 
     messagesToWrite = null;
@@ -565,6 +655,81 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     return totalBytesWritten;
   }
 
+  /**
+   * Clear text connections can skip the buffer manager's send buffer and hand the message buffers to the socket in one
+   * gathering write. SSL needs the send buffer to wrap the data and pipe sockets never write to the channel directly.
+   */
+  private boolean isGatheringWrites() {
+    return ZERO_COPY_WRITES && this.pipeSocket == null && this.bufferManager instanceof ClearTextBufferManager;
+  }
+
+  private WriteContext newWriteContext(final TCNetworkMessage message) {
+    TCByteBuffer[] data = message.getEntireMessageData();
+    final FrameEncoder encoder = this.frameEncoder;
+    if (encoder != null) {
+      data = encoder.encode(data);
+    }
+    if (isGatheringWrites()) { return new GatheringWriteContext(message, data, this.commWorker.getWriteBufferPool()); }
+    return new WriteContext(message, data);
+  }
+
+  private int doGatheringWrite() throws IOException {
+    final boolean debug = logger.isDebugEnabled();
+    int totalBytesWritten = 0;
+
+    if (this.writeContexts.size() <= 0) {
+      buildWriteContextsFromMessages();
+    }
+    if (this.gatherBuffers == null) {
+      this.gatherBuffers = new ByteBuffer[MAX_GATHERED_BUFFERS];
+    }
+
+    while (this.writeContexts.size() > 0) {
+      int count = 0;
+      long requested = 0;
+      for (int i = 0, n = this.writeContexts.size(); i < n && count < this.gatherBuffers.length; i++) {
+        final GatheringWriteContext context = (GatheringWriteContext) this.writeContexts.get(i);
+        final int from = count;
+        count = context.gather(this.gatherBuffers, count);
+        for (int j = from; j < count; j++) {
+          requested += this.gatherBuffers[j].remaining();
+        }
+      }
+
+      final long written;
+      try {
+        written = this.channel.write(this.gatherBuffers, 0, count);
+      } finally {
+        Arrays.fill(this.gatherBuffers, 0, count, null);
+      }
+      totalBytesWritten += written;
+
+      if (debug) {
+        logger.debug("Wrote " + written + " of " + requested + " bytes on connection " + this.channel.toString());
+      }
+
+      while (this.writeContexts.size() > 0 && ((GatheringWriteContext) this.writeContexts.get(0)).done()) {
+        final GatheringWriteContext context = (GatheringWriteContext) this.writeContexts.remove(0);
+        context.release();
+        context.writeComplete();
+      }
+
+      if (written < requested) {
+        // socket buffer is full, wait for the next write interest
+        break;
+      }
+    }
+
+    synchronized (this.writeMessages) {
+      if (this.closed.isSet()) { return totalBytesWritten; }
+
+      if (this.writeMessages.isEmpty() && this.writeContexts.isEmpty()) {
+        this.commWorker.removeWriteInterest(this, this.channel);
+      }
+    }
+    return totalBytesWritten;
+  }
+
   static private ByteBuffer extractNioBuffer(final TCByteBuffer buffer) {
     return buffer.getNioBuffer();
   }
@@ -710,6 +875,10 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
 
     buf.append(" [").append(this.totalRead.get()).append(" read, ").append(this.totalWrite.get()).append(" write]");
 
+    if (this.frameEncoder != null || this.frameDecoder != null) {
+      buf.append(" compression=[").append(this.frameStats).append(']');
+    }
+
     return buf.toString();
   }
 
@@ -966,13 +1135,22 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     private final TCByteBuffer[]   entireMessageData;
 
     WriteContext(final TCNetworkMessage message) {
+      this(message, message.getEntireMessageData());
+    }
+
+    /**
+     * @param messageData the message contents, possibly framed, or null if a subclass keeps its own copy
+     */
+    WriteContext(final TCNetworkMessage message, final TCByteBuffer[] messageData) {
       // either WireProtocolMessage or WireProtocolMessageGroup
       this.message = message;
 
-      if (MESSSAGE_PACKUP) {
-        this.entireMessageData = getPackedUpMessage(message.getEntireMessageData());
+      if (messageData == null) {
+        this.entireMessageData = null;
+      } else if (MESSSAGE_PACKUP) {
+        this.entireMessageData = getPackedUpMessage(messageData);
       } else {
-        this.entireMessageData = getClonedMessage(message.getEntireMessageData());
+        this.entireMessageData = getClonedMessage(messageData);
       }
 
     }
@@ -1059,6 +1237,119 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     }
   }
 
+  /**
+   * Write context for gathering writes. Direct message buffers are written as they are; heap data is copied once into
+   * pooled direct chunks so the socket write does not need a temporary direct buffer of its own.
+   */
+  protected static class GatheringWriteContext extends WriteContext {
+    private final ByteBuffer[]     data;
+    private final List<ByteBuffer> staged = new ArrayList<ByteBuffer>();
+    private final DirectBufferPool pool;
+    private int                    index  = 0;
+
+    GatheringWriteContext(final TCNetworkMessage message, final DirectBufferPool pool) {
+      this(message, message.getEntireMessageData(), pool);
+    }
+
+    GatheringWriteContext(final TCNetworkMessage message, final TCByteBuffer[] messageData,
+                          final DirectBufferPool pool) {
+      super(message, null);
+      this.pool = pool;
+      this.data = stage(messageData);
+    }
+
+    private ByteBuffer[] stage(final TCByteBuffer[] sources) {
+      final List<ByteBuffer> out = new ArrayList<ByteBuffer>(sources.length);
+      ByteBuffer chunk = null;
+      for (final TCByteBuffer source : sources) {
+        final ByteBuffer src = source.getNioBuffer().duplicate();
+        if (!src.hasRemaining()) {
+          continue;
+        }
+        if (src.isDirect()) {
+          out.add(src);
+          chunk = null;
+          continue;
+        }
+        while (src.hasRemaining()) {
+          if (chunk == null || !chunk.hasRemaining()) {
+            chunk = pool.acquire();
+            staged.add(chunk);
+            out.add(chunk);
+          }
+          final int n = Math.min(src.remaining(), chunk.remaining());
+          final int limit = src.limit();
+          src.limit(src.position() + n);
+          chunk.put(src);
+          src.limit(limit);
+        }
+      }
+      for (final ByteBuffer b : staged) {
+        b.flip();
+      }
+      return out.toArray(new ByteBuffer[out.size()]);
+    }
+
+    int gather(final ByteBuffer[] into, int offset) {
+      for (int i = index; i < data.length && offset < into.length; i++) {
+        if (data[i].hasRemaining()) {
+          into[offset++] = data[i];
+        }
+      }
+      return offset;
+    }
+
+    @Override
+    boolean done() {
+      while (index < data.length && !data[index].hasRemaining()) {
+        data[index++] = null;
+      }
+      return index == data.length;
+    }
+
+    void release() {
+      for (final ByteBuffer b : staged) {
+        pool.release(b);
+      }
+      staged.clear();
+    }
+
+    ByteBuffer[] getData() {
+      return data;
+    }
+  }
+
+  @Override
+  public void startFrameDecoding() {
+    if (this.frameDecoder == null) {
+      this.frameDecoder = new FrameDecoder(this.frameStats);
+    }
+  }
+
+  @Override
+  public void detectFrameDecoding() {
+    if (this.frameDecoder == null && this.detectingFrameDecoder == null) {
+      this.detectingFrameDecoder = new FrameDecoder(this.frameStats);
+    }
+  }
+
+  @Override
+  public void startFrameEncoding(final boolean compress) {
+    if (this.frameEncoder == null) {
+      this.frameEncoder = new FrameEncoder(compress, COMPRESSION_MIN_SIZE, this.frameStats);
+    }
+  }
+
+  @Override
+  public boolean isFrameDecoding() {
+    return this.frameDecoder != null;
+  }
+
+  @Override
+  public FrameCompressionStats getFrameCompressionStats() {
+    return this.frameStats;
+  }
+
   @Override
   public void addWeight(final int addWeightBy) {
     this.commWorker.addWeight(this, addWeightBy, this.channel);
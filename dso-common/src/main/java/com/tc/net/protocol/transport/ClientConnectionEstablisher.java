@@ -153,7 +153,13 @@ public class ClientConnectionEstablisher {
       try {
         final TCSocketAddress csa = new TCSocketAddress(connInfo);
         rv = connect(csa, cmt);
-        cmt.openConnection(rv);
+        try {
+          cmt.openConnection(rv);
+        } catch (CommStackMismatchException e) {
+          if (!cmt.isFrameCompressionRefused()) { throw e; }
+          rv = connect(csa, cmt);
+          cmt.openConnection(rv);
+        }
         break;
       } catch (TCTimeoutException e) {
         if (!addresses.hasNext()) { throw e; }
@@ -25,6 +25,7 @@ import com.tc.net.MaxConnectionsExceededException;
 import com.tc.net.ReconnectionRejectedException;
 import com.tc.net.core.ConnectionAddressProvider;
 import com.tc.net.core.ConnectionInfo;
+import com.tc.net.core.FrameCompressingConnection;
 import com.tc.net.core.TCConnection;
 import com.tc.net.core.event.TCConnectionEvent;
 import com.tc.net.core.security.TCSecurityManager;
@@ -61,6 +62,12 @@ public class ClientMessageTransport extends MessageTransportBase {
   private final int                         callbackPort;
   private final TCSecurityManager           securityManager;
   private final ConnectionAddressProvider   addressProvider;
+  private static final boolean              FRAME_COMPRESSION_ENABLED          = TCPropertiesImpl
+                                                                                   .getProperties()
+                                                                                   .getBoolean(TCPropertiesConsts.TC_MESSAGE_COMPRESSION_ENABLED,
+                                                                                               false);
+  private boolean                           frameCompressionOffered            = false;
+  private volatile boolean                  frameCompressionRefused            = false;
 
   public ClientMessageTransport(ClientConnectionEstablisher clientConnectionEstablisher,
                                 TransportHandshakeErrorHandler handshakeErrorHandler,
@@ -130,6 +137,14 @@ public class ClientMessageTransport extends MessageTransportBase {
     }
   }
 
+  /**
+   * @return true if the last handshake offered compressed framing and failed with a stack mismatch, which is how servers
+   *         without it answer the offer. The offer is not made again.
+   */
+  boolean isFrameCompressionRefused() {
+    return this.frameCompressionOffered && this.frameCompressionRefused;
+  }
+
   private void handleHandshakeError(HandshakeResult result) throws TransportHandshakeException, MaxConnectionsExceededException,
       CommStackMismatchException, ReconnectionRejectedException {
     if (result.hasErrorContext()) {
@@ -138,6 +153,10 @@ public class ClientMessageTransport extends MessageTransportBase {
           cleanConnectionWithoutNotifyListeners();
           throw new MaxConnectionsExceededException(getMaxConnectionsExceededMessage(result.maxConnections()));
         case TransportHandshakeError.ERROR_STACK_MISMATCH:
+          if (this.frameCompressionOffered) {
+            // servers without compressed framing see the offer as a stack mismatch, the next attempt goes without it
+            this.frameCompressionRefused = true;
+          }
           cleanConnectionWithoutNotifyListeners();
           throw new CommStackMismatchException("Disconnected due to comm stack mismatch");
         case TransportHandshakeError.ERROR_RECONNECTION_REJECTED:
@@ -229,6 +248,11 @@ public class ClientMessageTransport extends MessageTransportBase {
         Assert.eval(!ConnectionID.NULL_ID.equals(this.connectionId));
         Assert.assertNotNull(this.waitForSynAckResult);
       }
+      if (this.frameCompressionOffered && !synAck.hasErrorContext()
+          && ((FrameCompressingConnection) getConnection()).isFrameDecoding()) {
+        // the SYN_ACK came framed, so the server accepted the offer and decodes frames from our ACK on
+        ((FrameCompressingConnection) getConnection()).startFrameEncoding(true);
+      }
       getConnection().setTransportEstablished();
       this.waitForSynAckResult.set(synAck);
       setRemoteCallbackPort(synAck.getCallbackPort());
@@ -288,6 +312,13 @@ public class ClientMessageTransport extends MessageTransportBase {
       this.waitForSynAckResult = new TCFuture(this.status);
       // get the stack layer list and pass it in
       short stackLayerFlags = getCommunicationStackFlags(this);
+      this.frameCompressionOffered = FRAME_COMPRESSION_ENABLED && !this.frameCompressionRefused
+                                     && getConnection() instanceof FrameCompressingConnection;
+      if (this.frameCompressionOffered) {
+        stackLayerFlags |= NetworkLayer.TYPE_FRAME_COMPRESSION;
+        // a server that accepts frames its SYN_ACK, an old or unwilling one answers as usual
+        ((FrameCompressingConnection) getConnection()).detectFrameDecoding();
+      }
       if (connectionId.isSecured() && connectionId.getPassword() == null) {
         // Re-init the password
         ConnectionInfo connectionInfo = addressProvider.getIterator().next();
@@ -20,6 +20,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.tc.logging.TCLogger;
 import com.tc.logging.TCLogging;
+import com.tc.net.core.FrameCompressingConnection;
 import com.tc.net.core.TCConnection;
 import com.tc.net.core.security.TCSecurityManager;
 import com.tc.net.protocol.IllegalReconnectException;
@@ -32,6 +33,8 @@ import com.tc.net.protocol.TCProtocolAdaptor;
 import com.tc.net.protocol.tcm.CommunicationsManager;
 import com.tc.net.protocol.tcm.ServerMessageChannelFactory;
 import com.tc.net.protocol.tcm.msgs.CommsMessageFactory;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 
 import java.security.Principal;
@@ -44,7 +47,11 @@ import java.util.concurrent.locks.ReentrantLock;
  * Provides network stacks on the server side
  */
 public class ServerStackProvider implements NetworkStackProvider, MessageTransportListener, ProtocolAdaptorFactory {
-  private static final TCLogger logger = TCLogging.getLogger(ServerStackProvider.class);
+  private static final TCLogger logger                    = TCLogging.getLogger(ServerStackProvider.class);
+  private static final boolean  FRAME_COMPRESSION_ENABLED = TCPropertiesImpl
+                                                              .getProperties()
+                                                              .getBoolean(TCPropertiesConsts.TC_MESSAGE_COMPRESSION_ENABLED,
+                                                                          false);
 
   private final Map<ConnectionID, NetworkStackHarness> harnesses          = Maps.newConcurrentMap();
   private final NetworkStackHarnessFactory       harnessFactory;
@@ -342,6 +349,8 @@ public class ServerStackProvider implements NetworkStackProvider, MessageTranspo
       this.transport.setRemoteCallbackPort(syn.getCallbackPort());
       // now check that the client side stack and server side stack are both in sync
       short clientStackLayerFlags = syn.getStackLayerFlags();
+      boolean frameCompressionOffered = (clientStackLayerFlags & NetworkLayer.TYPE_FRAME_COMPRESSION) != 0;
+      clientStackLayerFlags &= ~NetworkLayer.TYPE_FRAME_COMPRESSION;
       short serverStackLayerFlags = this.transport.getCommunicationStackFlags(this.transport);
 
       // compare the two and send an error if there is a mismatch
@@ -374,6 +383,13 @@ public class ServerStackProvider implements NetworkStackProvider, MessageTranspo
       }
       logger.info("User " + principal + " successfully authenticated");
       // todo store principal ?
+      if (frameCompressionOffered && FRAME_COMPRESSION_ENABLED
+          && syn.getSource() instanceof FrameCompressingConnection) {
+        // the framed SYN_ACK tells the client the offer was accepted, and it sends nothing before it has seen it
+        FrameCompressingConnection connection = (FrameCompressingConnection) syn.getSource();
+        connection.startFrameDecoding();
+        connection.startFrameEncoding(true);
+      }
       sendSynAck(connectionId, syn.getSource(), isMaxConnectionReached);
     }
 
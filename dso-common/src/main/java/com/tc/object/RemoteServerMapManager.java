@@ -27,12 +27,20 @@ import com.tc.text.PrettyPrintable;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 public interface RemoteServerMapManager extends ClientHandshakeCallback,
     InvalidationsProcessor, PrettyPrintable {
 
   public Object getMappingForKey(ObjectID mapID, Object portableKey) throws AbortedOperationException;
 
+  /**
+   * Sends the lookup for <code>portableKey</code> without waiting for the server, so that a caller can have many
+   * lookups in flight at once. The returned future completes with the same value {@link #getMappingForKey} would have
+   * returned.
+   */
+  public Future<Object> getMappingForKeyAsync(ObjectID mapID, Object portableKey) throws AbortedOperationException;
+
   public Set getAllKeys(ObjectID mapID) throws AbortedOperationException;
 
   public long getAllSize(ObjectID[] mapIDs) throws AbortedOperationException;
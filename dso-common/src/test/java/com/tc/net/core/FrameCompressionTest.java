@@ -0,0 +1,185 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.net.core;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.net.protocol.TCProtocolException;
+import com.tc.test.TCTestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+public class FrameCompressionTest extends TCTestCase {
+
+  private static final int MIN_COMPRESS_SIZE = 1024;
+
+  public void testCodecRoundTrip() throws Exception {
+    Random random = new Random(42);
+    Lz4BlockCodec codec = new Lz4BlockCodec();
+    for (int i = 0; i < 200; i++) {
+      byte[] src = payload(random, random.nextInt(100000), i % 2 == 0);
+      byte[] compressed = new byte[Lz4BlockCodec.maxCompressedLength(src.length)];
+      int length = codec.compress(src, 0, src.length, compressed, 0);
+      byte[] out = new byte[src.length];
+      Lz4BlockCodec.decompress(compressed, 0, length, out, 0, out.length);
+      assertTrue(Arrays.equals(src, out));
+    }
+  }
+
+  public void testCorruptBlockIsRejected() {
+    Random random = new Random(7);
+    for (int i = 0; i < 1000; i++) {
+      byte[] garbage = new byte[1 + random.nextInt(64)];
+      random.nextBytes(garbage);
+      try {
+        Lz4BlockCodec.decompress(garbage, 0, garbage.length, new byte[128], 0, 128);
+      } catch (TCProtocolException expected) {
+        // expected
+      }
+    }
+  }
+
+  public void testOverlongLengthRunsAreRejected() {
+    // enough 0xFF length bytes to overflow an int if they were summed unchecked
+    byte[] literals = new byte[1 + 9 * 1024 * 1024];
+    Arrays.fill(literals, (byte) 0xFF);
+    literals[0] = (byte) 0xF0;
+    try {
+      Lz4BlockCodec.decompress(literals, 0, literals.length, new byte[128], 0, 128);
+      fail();
+    } catch (TCProtocolException expected) {
+      // expected
+    }
+
+    byte[] match = new byte[4 + 9 * 1024 * 1024];
+    Arrays.fill(match, (byte) 0xFF);
+    match[0] = (byte) 0x1F;
+    match[1] = 'a';
+    match[2] = 1;
+    match[3] = 0;
+    try {
+      Lz4BlockCodec.decompress(match, 0, match.length, new byte[128], 0, 128);
+      fail();
+    } catch (TCProtocolException expected) {
+      // expected
+    }
+  }
+
+  public void testFramesAreToldApartFromWireMessages() {
+    FrameEncoder encoder = new FrameEncoder(true, MIN_COMPRESS_SIZE, new FrameCompressionStats());
+    byte[] small = new byte[10];
+    byte[] large = payload(new Random(5), 10 * MIN_COMPRESS_SIZE, true);
+    assertTrue(FrameDecoder.isFrameStart(encoder.encode(new TCByteBuffer[] { TCByteBufferFactory.wrap(small) })[0]
+        .getNioBuffer().get(0)));
+    assertTrue(FrameDecoder.isFrameStart(encoder.encode(new TCByteBuffer[] { TCByteBufferFactory.wrap(large) })[0]
+        .getNioBuffer().get(0)));
+    // a wire protocol header starts with its version in the high nibble and its length in the low one
+    assertFalse(FrameDecoder.isFrameStart((byte) 0x28));
+  }
+
+  public void testFramesSurviveArbitraryReadBoundaries() throws Exception {
+    Random random = new Random(11);
+    FrameCompressionStats stats = new FrameCompressionStats();
+    FrameEncoder encoder = new FrameEncoder(true, MIN_COMPRESS_SIZE, stats);
+
+    ByteArrayOutputStream messages = new ByteArrayOutputStream();
+    ByteArrayOutputStream wire = new ByteArrayOutputStream();
+    for (int i = 0; i < 50; i++) {
+      byte[] message = payload(random, random.nextInt(200000), i % 3 != 0);
+      messages.write(message);
+      int split = message.length / 2;
+      TCByteBuffer[] data = new TCByteBuffer[] { TCByteBufferFactory.wrap(Arrays.copyOfRange(message, 0, split)),
+          TCByteBufferFactory.wrap(Arrays.copyOfRange(message, split, message.length)) };
+      for (TCByteBuffer buffer : encoder.encode(data)) {
+        ByteBuffer nio = buffer.getNioBuffer().duplicate();
+        byte[] bytes = new byte[nio.remaining()];
+        nio.get(bytes);
+        wire.write(bytes);
+      }
+    }
+    assertTrue(stats.getCompressedFrames() > 0);
+    assertTrue(stats.getUncompressedFrames() > 0);
+    assertTrue(stats.getCompressionRatioOut() > 1.0);
+
+    FrameDecoder decoder = new FrameDecoder(stats);
+    ByteBuffer in = ByteBuffer.wrap(wire.toByteArray());
+    ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+    while (in.hasRemaining()) {
+      ByteBuffer target = decoder.getInputBuffer();
+      assertTrue(target.hasRemaining());
+      int n = Math.min(Math.min(in.remaining(), target.remaining()), 1 + random.nextInt(70000));
+      ByteBuffer chunk = in.duplicate();
+      chunk.limit(chunk.position() + n);
+      target.put(chunk);
+      in.position(in.position() + n);
+
+      ByteBuffer frame;
+      while ((frame = decoder.nextFrame()) != null) {
+        byte[] bytes = new byte[frame.remaining()];
+        frame.get(bytes);
+        decoded.write(bytes);
+      }
+    }
+    assertTrue(Arrays.equals(messages.toByteArray(), decoded.toByteArray()));
+    assertEquals(stats.getRawBytesOut(), stats.getRawBytesIn());
+    assertEquals(stats.getFramedBytesOut(), stats.getFramedBytesIn());
+  }
+
+  public void testSmallAndIncompressibleMessagesAreSentRaw() {
+    FrameCompressionStats stats = new FrameCompressionStats();
+    FrameEncoder encoder = new FrameEncoder(true, MIN_COMPRESS_SIZE, stats);
+
+    byte[] small = new byte[MIN_COMPRESS_SIZE - 1];
+    TCByteBuffer[] framed = encoder.encode(new TCByteBuffer[] { TCByteBufferFactory.wrap(small) });
+    assertEquals(2, framed.length);
+    assertEquals(FrameEncoder.TYPE_RAW, framed[0].getNioBuffer().get(0));
+
+    byte[] noise = payload(new Random(3), 10000, false);
+    framed = encoder.encode(new TCByteBuffer[] { TCByteBufferFactory.wrap(noise) });
+    assertEquals(2, framed.length);
+    assertEquals(FrameEncoder.TYPE_RAW, framed[0].getNioBuffer().get(0));
+    assertEquals(0, stats.getCompressedFrames());
+    assertEquals(2, stats.getUncompressedFrames());
+  }
+
+  public void testInvalidFrameHeaderIsRejected() {
+    FrameDecoder decoder = new FrameDecoder(new FrameCompressionStats());
+    decoder.getInputBuffer().put((byte) 7).putInt(10).putInt(10);
+    try {
+      decoder.nextFrame();
+      fail();
+    } catch (TCProtocolException expected) {
+      // expected
+    }
+  }
+
+  private static byte[] payload(Random random, int length, boolean compressible) {
+    byte[] bytes = new byte[length];
+    if (compressible) {
+      byte[] words = "objectID=1234 className=com.example.Foo field=value ".getBytes();
+      for (int i = 0; i < length; i++) {
+        bytes[i] = random.nextInt(20) == 0 ? (byte) random.nextInt() : words[i % words.length];
+      }
+    } else {
+      random.nextBytes(bytes);
+    }
+    return bytes;
+  }
+}
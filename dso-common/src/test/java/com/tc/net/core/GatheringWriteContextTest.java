@@ -0,0 +1,105 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.net.core;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.net.protocol.TCNetworkMessage;
+import com.tc.test.TCTestCase;
+
+import java.nio.ByteBuffer;
+
+public class GatheringWriteContextTest extends TCTestCase {
+
+  private static final int CHUNK_SIZE = 1024;
+
+  public void testStagesHeapDataAndKeepsDirectBuffers() {
+    DirectBufferPool pool = new DirectBufferPool(CHUNK_SIZE, 16);
+    TCByteBuffer[] sources = new TCByteBuffer[] { fill(false, 100, 0), fill(false, 1500, 100), fill(true, 300, 1600),
+        fill(false, 50, 1900) };
+    TCNetworkMessage message = mock(TCNetworkMessage.class);
+    when(message.getEntireMessageData()).thenReturn(sources);
+
+    TCConnectionImpl.GatheringWriteContext context = new TCConnectionImpl.GatheringWriteContext(message, pool);
+    ByteBuffer[] data = context.getData();
+    // 1600 heap bytes in two chunks, the direct buffer as is, then a chunk for the trailing heap bytes
+    assertEquals(4, data.length);
+    assertTrue(data[2].isDirect());
+
+    ByteBuffer[] gathered = new ByteBuffer[8];
+    assertEquals(4, context.gather(gathered, 0));
+    int expected = 0;
+    for (int i = 0; i < 4; i++) {
+      while (gathered[i].hasRemaining()) {
+        assertEquals((byte) expected++, gathered[i].get());
+      }
+    }
+    assertEquals(1950, expected);
+    assertTrue(context.done());
+
+    context.release();
+    assertEquals(3, pool.getPooledCount());
+    context.writeComplete();
+    verify(message).wasSent();
+  }
+
+  public void testGatherResumesAfterPartialWrite() {
+    DirectBufferPool pool = new DirectBufferPool(CHUNK_SIZE, 16);
+    TCNetworkMessage message = mock(TCNetworkMessage.class);
+    when(message.getEntireMessageData()).thenReturn(new TCByteBuffer[] { fill(false, 3000, 0) });
+
+    TCConnectionImpl.GatheringWriteContext context = new TCConnectionImpl.GatheringWriteContext(message, pool);
+    ByteBuffer[] gathered = new ByteBuffer[2];
+    assertEquals(2, context.gather(gathered, 0));
+    gathered[0].position(gathered[0].limit());
+    gathered[1].position(10);
+    assertFalse(context.done());
+
+    assertEquals(2, context.gather(gathered, 0));
+    assertEquals(CHUNK_SIZE - 10, gathered[0].remaining());
+    assertEquals(3000 - 2 * CHUNK_SIZE, gathered[1].remaining());
+  }
+
+  public void testPoolRetainsUpToMax() {
+    DirectBufferPool pool = new DirectBufferPool(CHUNK_SIZE, 1);
+    ByteBuffer a = pool.acquire();
+    ByteBuffer b = pool.acquire();
+    assertTrue(a.isDirect());
+    pool.release(a);
+    pool.release(b);
+    pool.release(ByteBuffer.allocate(CHUNK_SIZE));
+    assertEquals(1, pool.getPooledCount());
+    a.position(5);
+    ByteBuffer c = pool.acquire();
+    assertSame(a, c);
+    assertEquals(0, c.position());
+    assertEquals(0, pool.getPooledCount());
+  }
+
+  private static TCByteBuffer fill(boolean direct, int size, int start) {
+    TCByteBuffer buffer = TCByteBufferFactory.getInstance(direct, size);
+    for (int i = 0; i < size; i++) {
+      buffer.put((byte) (start + i));
+    }
+    buffer.flip();
+    return buffer;
+  }
+}
@@ -26,6 +26,7 @@ import com.tc.server.ServerEventType;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 public interface TCObjectServerMap<L> extends TCObject {
 
@@ -180,6 +181,19 @@ public interface TCObjectServerMap<L> extends TCObject {
    */
   Object getValueUnlocked(final TCServerMap map, final Object key) throws AbortedOperationException;
 
+  /**
+   * Same as {@link #getValueUnlocked(TCServerMap, Object)} except that it does not wait for the server. A value in the
+   * local cache is returned as a completed future. Otherwise the lookup is sent and the returned future resolves it
+   * into the mapped value, caching it like {@link #getValueUnlocked(TCServerMap, Object)} would, so that a caller can
+   * keep many lookups in flight.
+   * 
+   * @param map ServerTCMap
+   * @param key Key Object : Note currently only literal keys or shared keys are supported.
+   * @return future of the value Object in the mapping, null if no mapping present.
+   * @throws AbortedOperationException
+   */
+  Future<Object> getValueUnlockedAsync(final TCServerMap map, final Object key) throws AbortedOperationException;
+
   /**
    * Returns the VersionedObject for a particular key in a TCServerMap. It always fetches it from the server. LocalCache
    * is not read.
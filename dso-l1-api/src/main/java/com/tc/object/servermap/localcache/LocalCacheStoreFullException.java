@@ -20,6 +20,10 @@ import com.tc.exception.TCRuntimeException;
 
 public class LocalCacheStoreFullException extends TCRuntimeException {
 
+  public LocalCacheStoreFullException(String message) {
+    super(message);
+  }
+
   public LocalCacheStoreFullException(Throwable t) {
     super(t);
   }
@@ -511,12 +511,17 @@ public class DistributedObjectClient extends SEDA implements TCClient {
         .createCounter(sampledRateCounterConfig);
     final SampledRateCounter transactionsPerBatchCounter = (SampledRateCounter) this.counterManager
         .createCounter(sampledRateCounterConfig);
+    final SampledRateCounter creditsInUseCounter = (SampledRateCounter) this.counterManager
+        .createCounter(sampledRateCounterConfig);
+    final SampledRateCounter creditStallTimeCounter = (SampledRateCounter) this.counterManager
+        .createCounter(sampledRateCounterConfig);
 
     this.remoteTxnManager = this.dsoClientBuilder
         .createRemoteTransactionManager(this.channel.getClientIDProvider(), encoding,
                                         FoldingConfigHelper.createFromProperties(tcProperties),
                                         new TransactionIDGenerator(), sessionManager, this.channel,
-                                        transactionSizeCounter, transactionsPerBatchCounter, abortableOperationManager,
+                                        transactionSizeCounter, transactionsPerBatchCounter, creditsInUseCounter,
+                                        creditStallTimeCounter, abortableOperationManager,
                                         taskRunner);
 
     this.dumpHandler.registerForDump(new CallbackDumpAdapter(this.remoteTxnManager));
@@ -26,6 +26,8 @@ import com.tc.text.PrettyPrinter;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 
 public final class NullRemoteServerMapManager implements RemoteServerMapManager {
 
@@ -69,6 +71,11 @@ public final class NullRemoteServerMapManager implements RemoteServerMapManager
     return null;
   }
 
+  @Override
+  public Future<Object> getMappingForKeyAsync(final ObjectID oid, final Object portableKey) {
+    return CompletableFuture.completedFuture(null);
+  }
+
   @Override
   public Set getAllKeys(ObjectID oid) {
     //
@@ -21,6 +21,7 @@ import com.tc.abortable.AbortedOperationException;
 import com.tc.exception.PlatformRejoinException;
 import com.tc.exception.TCNotRunningException;
 import com.tc.exception.TCObjectNotFoundException;
+import com.tc.exception.TCRuntimeException;
 import com.tc.invalidation.Invalidations;
 import com.tc.logging.TCLogger;
 import com.tc.net.GroupID;
@@ -50,44 +51,71 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Requests are tracked in a concurrent table keyed by {@link ServerMapRequestID}, each request carrying its own
+ * completion future. Application threads and the response receiving stage therefore never contend on a common monitor,
+ * the monitor of this object is only used to wait for and signal state transitions (pause, unpause, rejoin and
+ * shutdown).
+ */
 public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
 
   // TODO::Make its own property
-  private static final int                                               MAX_OUTSTANDING_REQUESTS_SENT_IMMEDIATELY = TCPropertiesImpl
-                                                                                                                       .getProperties()
-                                                                                                                       .getInt(TCPropertiesConsts.L1_SERVERMAPMANAGER_REMOTE_MAX_REQUEST_SENT_IMMEDIATELY);
-  private static final long                                              BATCH_LOOKUP_TIME_PERIOD                  = TCPropertiesImpl
-                                                                                                                       .getProperties()
-                                                                                                                       .getInt(TCPropertiesConsts.L1_SERVERMAPMANAGER_REMOTE_BATCH_LOOKUP_TIME_PERIOD);
-  private static final long                                              RESULT_WAIT_MAXTIME_MILLIS                = 30 * 1000;
-
-  private static final String                                            SIZE_KEY                                  = "SIZE_KEY";
-  private static final String                                            ALL_KEYS                                  = "ALL-KEYS";
-
-  private final GroupID                                                  groupID;
-  private final ServerMapMessageFactory                                  smmFactory;
-  private final TCLogger                                                 logger;
-  private final SessionManager                                           sessionManager;
-  private final RemoteObjectManager                                      remoteObjectManager;
-  private final Map<ServerMapRequestID, AbstractServerMapRequestContext> outstandingRequests                       = new HashMap<ServerMapRequestID, AbstractServerMapRequestContext>();
-  private final TaskRunner                                               taskRunner;
-  private final AbortableOperationManager                                abortableOperationManager;
-
-  private volatile State                                                 state                                     = State.RUNNING;
-  private long                                                           requestIDCounter                          = 0;
-  private boolean                                                        pendingSendTaskScheduled                  = false;
+  private static final int                                                         MAX_OUTSTANDING_REQUESTS_SENT_IMMEDIATELY = TCPropertiesImpl
+                                                                                                                                 .getProperties()
+                                                                                                                                 .getInt(TCPropertiesConsts.L1_SERVERMAPMANAGER_REMOTE_MAX_REQUEST_SENT_IMMEDIATELY);
+  private static final long                                                        BATCH_LOOKUP_TIME_PERIOD                  = TCPropertiesImpl
+                                                                                                                                 .getProperties()
+                                                                                                                                 .getInt(TCPropertiesConsts.L1_SERVERMAPMANAGER_REMOTE_BATCH_LOOKUP_TIME_PERIOD);
+  private static final int                                                         BATCH_MAX_KEYS                            = TCPropertiesImpl
+                                                                                                                                 .getProperties()
+                                                                                                                                 .getInt(TCPropertiesConsts.L1_SERVERMAPMANAGER_REMOTE_BATCH_MAX_KEYS);
+  private static final boolean                                                     COALESCE_LOOKUPS                          = TCPropertiesImpl
+                                                                                                                                 .getProperties()
+                                                                                                                                 .getBoolean(TCPropertiesConsts.L1_SERVERMAPMANAGER_REMOTE_COALESCE_LOOKUPS);
+  private static final long                                                        RESULT_WAIT_MAXTIME_MILLIS                = 30 * 1000;
+
+  private static final String                                                      SIZE_KEY                                  = "SIZE_KEY";
+  private static final String                                                      ALL_KEYS                                  = "ALL-KEYS";
+
+  private final GroupID                                                            groupID;
+  private final ServerMapMessageFactory                                            smmFactory;
+  private final TCLogger                                                           logger;
+  private final SessionManager                                                     sessionManager;
+  private final RemoteObjectManager                                                remoteObjectManager;
+  private final ConcurrentMap<ServerMapRequestID, AbstractServerMapRequestContext> outstandingRequests                       = new ConcurrentHashMap<ServerMapRequestID, AbstractServerMapRequestContext>();
+  private final Queue<AbstractServerMapRequestContext>                             pendingRequests                           = new ConcurrentLinkedQueue<AbstractServerMapRequestContext>();
+  private final ConcurrentMap<LookupKey, AbstractServerMapRequestContext>          inflightLookups                           = new ConcurrentHashMap<LookupKey, AbstractServerMapRequestContext>();
+  private final TaskRunner                                                         taskRunner;
+  private final AbortableOperationManager                                          abortableOperationManager;
+
+  private volatile State                                                           state                                     = State.RUNNING;
+  private final AtomicLong                                                         requestIDCounter                          = new AtomicLong();
+  private final AtomicBoolean                                                      pendingSendTaskScheduled                  = new AtomicBoolean();
+  private final AtomicInteger                                                      pendingKeyCount                           = new AtomicInteger();
+  private final AtomicLong                                                         coalescedLookups                          = new AtomicLong();
 
   // private final Sink ttiTTLEvitionSink;
-  private final L1ServerMapLocalCacheManager                             globalLocalCacheManager;
-  private ReInvalidateHandler                                            reInvalidateHandler;
+  private final L1ServerMapLocalCacheManager                                       globalLocalCacheManager;
+  private volatile ReInvalidateHandler                                             reInvalidateHandler;
 
-  private final Timer                                                    requestsTimer;
+  private final Timer                                                              requestsTimer;
 
   private enum State {
     PAUSED, RUNNING, REJOIN_IN_PROGRESS, STARTING, STOPPED
@@ -113,8 +141,12 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   @Override
   public synchronized void cleanup() {
     checkAndSetstate();
+    failOutstandingRequests(new PlatformRejoinException());
     outstandingRequests.clear();
-    pendingSendTaskScheduled = false;
+    pendingRequests.clear();
+    inflightLookups.clear();
+    pendingKeyCount.set(0);
+    pendingSendTaskScheduled.set(false);
     globalLocalCacheManager.cleanup();
     reInvalidateHandler.shutdown();
     reInvalidateHandler = new ReInvalidateHandler(globalLocalCacheManager, taskRunner);
@@ -138,33 +170,94 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
     }
   }
 
+  private void failOutstandingRequests(RuntimeException cause) {
+    for (final AbstractServerMapRequestContext context : this.outstandingRequests.values()) {
+      context.fail(cause);
+    }
+  }
+
   /**
    * TODO: Maybe change to getValue()
    * 
    * @throws AbortedOperationException
    */
   @Override
-  public synchronized Object getMappingForKey(final ObjectID oid, final Object portableKey)
-      throws AbortedOperationException {
+  public Object getMappingForKey(final ObjectID oid, final Object portableKey) throws AbortedOperationException {
     assertSameGroupID(oid);
     waitUntilRunningAbortable();
 
-    final AbstractServerMapRequestContext context = createLookupValueRequestContext(oid,
-                                                                                    Collections.singleton(portableKey));
-    context.makeLookupRequest();
-    sendRequest(context);
+    final AbstractServerMapRequestContext context = lookupValue(oid, portableKey);
     Map<Object, Object> result = waitForResult(context);
     return result.get(portableKey);
   }
 
+  /**
+   * Sends the lookup and returns without waiting for the server. Many of these can be in flight at the same time, the
+   * returned future completes from the response receiving stage. A missing map fails the future with a
+   * {@link TCObjectNotFoundException}, a rejoin or shutdown fails it with {@link PlatformRejoinException} or
+   * {@link TCNotRunningException}. Cancelling the future abandons the request.
+   */
+  @Override
+  public Future<Object> getMappingForKeyAsync(final ObjectID oid, final Object portableKey)
+      throws AbortedOperationException {
+    assertSameGroupID(oid);
+    waitUntilRunningAbortable();
+
+    final AbstractServerMapRequestContext context = lookupValue(oid, portableKey);
+    return new ServerMapLookupFuture(context, portableKey);
+  }
+
+  /**
+   * Returns the request that will bring back the value of <code>portableKey</code>. When a lookup for the same key of
+   * the same map is still waiting to be sent the caller joins it instead of sending another one, so any number of
+   * threads missing on a hot key cost a single round trip. A lookup that has already been sent is never joined, the
+   * server may have read the value before the joining thread asked for it.
+   */
+  private AbstractServerMapRequestContext lookupValue(final ObjectID oid, final Object portableKey) {
+    if (!COALESCE_LOOKUPS) {
+      final AbstractServerMapRequestContext context = createLookupValueRequestContext(oid,
+                                                                                      Collections.singleton(portableKey));
+      sendRequest(context);
+      return context;
+    }
+
+    final LookupKey key = new LookupKey(oid, portableKey);
+    while (true) {
+      final AbstractServerMapRequestContext inflight = this.inflightLookups.get(key);
+      if (inflight != null) {
+        if (inflight.join()) {
+          this.coalescedLookups.incrementAndGet();
+          return inflight;
+        }
+        // already sent, or every waiter gave up on it
+        this.inflightLookups.remove(key, inflight);
+        continue;
+      }
+
+      final AbstractServerMapRequestContext context = createLookupValueRequestContext(oid,
+                                                                                      Collections.singleton(portableKey));
+      if (this.inflightLookups.putIfAbsent(key, context) == null) {
+        context.whenDone(new Runnable() {
+          @Override
+          public void run() {
+            inflightLookups.remove(key, context);
+          }
+        });
+        sendRequest(context);
+        return context;
+      }
+      removeRequestContext(context);
+    }
+  }
+
   @Override
-  public synchronized void getMappingForAllKeys(final Map<ObjectID, Set<Object>> mapIdToKeysMap, Map<Object, Object> rv)
+  public void getMappingForAllKeys(final Map<ObjectID, Set<Object>> mapIdToKeysMap, Map<Object, Object> rv)
       throws AbortedOperationException {
     Set<AbstractServerMapRequestContext> contextsToWaitFor = sendRequestForAllKeys(mapIdToKeysMap);
     waitForResults(contextsToWaitFor, rv);
   }
 
-  protected synchronized Set<AbstractServerMapRequestContext> sendRequestForAllKeys(final Map<ObjectID, Set<Object>> mapIdToKeysMap)
+  protected Set<AbstractServerMapRequestContext> sendRequestForAllKeys(final Map<ObjectID, Set<Object>> mapIdToKeysMap)
       throws AbortedOperationException {
     Set<AbstractServerMapRequestContext> contextsToWaitFor = new HashSet<AbstractServerMapRequestContext>();
     waitUntilRunningAbortable();
@@ -173,7 +266,6 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
       Set<Object> keys = entry.getValue();
       assertSameGroupID(mapId);
       final AbstractServerMapRequestContext context = createLookupValueRequestContext(mapId, keys);
-      context.makeLookupRequest();
       contextsToWaitFor.add(context);
       sendRequest(context);
     }
@@ -181,12 +273,11 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   }
 
   @Override
-  public synchronized Set getAllKeys(ObjectID mapID) throws AbortedOperationException {
+  public Set getAllKeys(ObjectID mapID) throws AbortedOperationException {
     assertSameGroupID(mapID);
     waitUntilRunningAbortable();
 
     final AbstractServerMapRequestContext context = createGetAllKeysRequestContext(mapID);
-    context.makeLookupRequest();
     sendRequestNow(context);
     Map<Object, Object> result = waitForResult(context);
     Assert.assertTrue(result.containsKey(ALL_KEYS));
@@ -200,14 +291,13 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   }
 
   @Override
-  public synchronized long getAllSize(final ObjectID[] mapIDs) throws AbortedOperationException {
+  public long getAllSize(final ObjectID[] mapIDs) throws AbortedOperationException {
     for (ObjectID mapId : mapIDs) {
       assertSameGroupID(mapId);
     }
     waitUntilRunningAbortable();
 
     final AbstractServerMapRequestContext context = createGetAllSizeRequestContext(mapIDs);
-    context.makeLookupRequest();
     sendRequestNow(context);
     Map<Object, Object> result = waitForResult(context);
     Assert.assertTrue(result.containsKey(SIZE_KEY));
@@ -226,19 +316,17 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
         if (isStopped()) { throw new TCNotRunningException(); }
         if (isRejoinInProgress()) { throw new PlatformRejoinException(); }
         try {
-          wait(RESULT_WAIT_MAXTIME_MILLIS);
+          Map<Object, Object> result = context.awaitResult(RESULT_WAIT_MAXTIME_MILLIS);
+          if (result != null) {
+            removeRequestContext(context);
+            return result;
+          }
         } catch (final InterruptedException e) {
           checkIfAbortedAndRemoveContexts(context);
           isInterrupted = true;
-        }
-        if (context.isMissing()) {
-          removeRequestContext(context);
-          throw new TCObjectNotFoundException(context.getMapID().toString());
-        }
-        Map<Object, Object> result = context.getResult();
-        if (result != null) {
+        } catch (final TCObjectNotFoundException e) {
           removeRequestContext(context);
-          return result;
+          throw e;
         }
       }
     } finally {
@@ -250,18 +338,32 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
    * Waits in quantums of {@link #RESULT_WAIT_MAXTIME_MILLIS} until results corresponding to contextsToWaitFor are
    * available from the server.
    */
-  protected synchronized void waitForResults(Set<AbstractServerMapRequestContext> contextsToWaitFor,
-                                             Map<Object, Object> rv) throws AbortedOperationException {
+  protected void waitForResults(Set<AbstractServerMapRequestContext> contextsToWaitFor, Map<Object, Object> rv)
+      throws AbortedOperationException {
     boolean isInterrupted = false;
     try {
-      while (!allRequestsDone(contextsToWaitFor, rv)) {
+      while (!contextsToWaitFor.isEmpty()) {
         if (isStopped()) { throw new TCNotRunningException(); }
         if (isRejoinInProgress()) { throw new PlatformRejoinException(); }
+        final AbstractServerMapRequestContext context = contextsToWaitFor.iterator().next();
         try {
-          wait(RESULT_WAIT_MAXTIME_MILLIS);
+          Map<Object, Object> result = context.awaitResult(RESULT_WAIT_MAXTIME_MILLIS);
+          if (result != null) {
+            removeRequestContext(context);
+            contextsToWaitFor.remove(context);
+            synchronized (rv) {
+              rv.putAll(result);
+            }
+          }
         } catch (final InterruptedException e) {
           checkIfAbortedAndRemoveContexts(contextsToWaitFor);
           isInterrupted = true;
+        } catch (final TCObjectNotFoundException e) {
+          removeRequestContext(context);
+          contextsToWaitFor.remove(context);
+          // nobody is going to wait for the rest of them
+          abortContexts(contextsToWaitFor);
+          throw e;
         }
       }
     } finally {
@@ -269,26 +371,6 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
     }
   }
 
-  private boolean allRequestsDone(Set<AbstractServerMapRequestContext> contextsToWaitFor, Map<Object, Object> rv) {
-    for (Iterator<AbstractServerMapRequestContext> iterator = contextsToWaitFor.iterator(); iterator.hasNext();) {
-      AbstractServerMapRequestContext context = iterator.next();
-      if (context.isMissing()) {
-        removeRequestContext(context);
-        iterator.remove();
-        throw new TCObjectNotFoundException(context.getMapID().toString());
-      }
-      Map<Object, Object> result = context.getResult();
-      if (result != null) {
-        removeRequestContext(context);
-        iterator.remove();
-        synchronized (rv) {
-          rv.putAll(result);
-        }
-      }
-    }
-    return contextsToWaitFor.isEmpty();
-  }
-
   private void sendRequest(final AbstractServerMapRequestContext context) {
     final int size = this.outstandingRequests.size();
     if (size % 5000 == 4999) {
@@ -301,11 +383,17 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
     }
   }
 
+  /**
+   * Requests queued here are held for at most {@link #BATCH_LOOKUP_TIME_PERIOD} millis so that lookups from concurrent
+   * threads go out in a single message. Once {@link #BATCH_MAX_KEYS} keys are waiting the batch is sent right away by
+   * the thread that filled it.
+   */
   private void scheduleRequestForLater(final AbstractServerMapRequestContext context) {
-    context.makePending();
-    if (!pendingSendTaskScheduled) {
+    this.pendingRequests.add(context);
+    if (this.pendingKeyCount.addAndGet(context.getKeyCount()) >= BATCH_MAX_KEYS) {
+      sendPendingRequests();
+    } else if (this.pendingSendTaskScheduled.compareAndSet(false, true)) {
       requestsTimer.schedule(new SendPendingRequestsTask(), BATCH_LOOKUP_TIME_PERIOD, TimeUnit.MILLISECONDS);
-      pendingSendTaskScheduled = true;
     }
   }
 
@@ -326,83 +414,102 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   /**
    * Only GET_VALUE_FOR_KEY requests are batched, its a little ugly to assume that here. Needs some refactoring.
    */
-  public synchronized void sendPendingRequests() {
+  public void sendPendingRequests() {
     waitUntilRunning();
-    this.pendingSendTaskScheduled = false;
-    final ServerMapRequestMessage msg = this.smmFactory
-        .newServerMapRequestMessage(this.groupID, ServerMapRequestType.GET_VALUE_FOR_KEY);
-    initializeMessageWithPendingRequests(msg);
-    if (msg.getRequestCount() != 0) {
-      msg.send();
+    this.pendingSendTaskScheduled.set(false);
+    while (!this.pendingRequests.isEmpty()) {
+      final ServerMapRequestMessage msg = this.smmFactory
+          .newServerMapRequestMessage(this.groupID, ServerMapRequestType.GET_VALUE_FOR_KEY);
+      initializeMessageWithPendingRequests(msg);
+      if (msg.getRequestCount() != 0) {
+        msg.send();
+      }
     }
   }
 
+  /**
+   * Fills the message with pending requests until {@link #BATCH_MAX_KEYS} keys are in it or nothing is pending.
+   */
   private void initializeMessageWithPendingRequests(final ServerMapRequestMessage msg) {
-    for (final AbstractServerMapRequestContext context : this.outstandingRequests.values()) {
-      if (context.isPending()) {
-        if (context.getRequestType() != ServerMapRequestType.GET_VALUE_FOR_KEY) {
-          // Only GET_VALUE_FOR_KEY Requests are batched here
-          throw new AssertionError(context.getRequestType()
-                                   + " requests are not batched so it should never be pending : " + context);
-        }
-        context.makeUnPending();
-        context.initializeMessage(msg);
+    int keys = 0;
+    AbstractServerMapRequestContext context;
+    while (keys < BATCH_MAX_KEYS && (context = this.pendingRequests.poll()) != null) {
+      this.pendingKeyCount.addAndGet(-context.getKeyCount());
+      if (context.getRequestType() != ServerMapRequestType.GET_VALUE_FOR_KEY) {
+        // Only GET_VALUE_FOR_KEY Requests are batched here
+        throw new AssertionError(context.getRequestType()
+                                 + " requests are not batched so it should never be pending : " + context);
+      }
+      if (context.isDone() || this.outstandingRequests.get(context.getRequestID()) != context) {
+        // answered after a resend or abandoned in the meantime
+        continue;
       }
+      context.markSent();
+      context.initializeMessage(msg);
+      keys += context.getKeyCount();
     }
   }
 
   private void sendRequestNow(final AbstractServerMapRequestContext context) {
     final ServerMapRequestMessage msg = this.smmFactory.newServerMapRequestMessage(this.groupID,
                                                                                    context.getRequestType());
+    context.markSent();
     context.initializeMessage(msg);
     msg.send();
   }
 
   private AbstractServerMapRequestContext createGetAllSizeRequestContext(final ObjectID[] maps) {
     final ServerMapRequestID requestID = getNextRequestID();
-    final GetAllSizeServerMapRequestContext context = new GetAllSizeServerMapRequestContext(requestID, maps,
-                                                                                            this.groupID);
-    this.outstandingRequests.put(requestID, context);
-    return context;
-  }
-
-  synchronized void requestOutstanding() {
-    logger.info("Sending outstanding servermap requests, num msgs: " + outstandingRequests.size());
-    for (final AbstractServerMapRequestContext context : this.outstandingRequests.values()) {
-      sendRequestNow(context);
-    }
-  }
-
-  private void removeRequestContext(final AbstractServerMapRequestContext context) {
-    final Object old = this.outstandingRequests.remove(context.getRequestID());
-    if (old != context) { throw new AssertionError("Removed wrong context. context = " + context + " old = " + old); }
+    return register(new GetAllSizeServerMapRequestContext(requestID, maps, this.groupID));
   }
 
   private AbstractServerMapRequestContext createLookupValueRequestContext(final ObjectID oid,
                                                                           final Set<Object> portableKeys) {
     final ServerMapRequestID requestID = getNextRequestID();
-    final GetValueServerMapRequestContext context = new GetValueServerMapRequestContext(requestID, oid, portableKeys,
-                                                                                        this.groupID);
-    this.outstandingRequests.put(requestID, context);
-    return context;
+    return register(new GetValueServerMapRequestContext(requestID, oid, portableKeys, this.groupID));
   }
 
   private AbstractServerMapRequestContext createGetAllKeysRequestContext(final ObjectID mapID) {
     final ServerMapRequestID requestID = getNextRequestID();
-    final GetAllKeysServerMapRequestContext context = new GetAllKeysServerMapRequestContext(requestID, mapID,
-                                                                                            this.groupID);
-    this.outstandingRequests.put(requestID, context);
+    return register(new GetAllKeysServerMapRequestContext(requestID, mapID, this.groupID));
+  }
+
+  /**
+   * The context is published before its request is sent so that an {@link #unpause(NodeID, int)} racing with the send
+   * resends it. A rejoin or shutdown that already swept the table is caught by re-checking the state afterwards.
+   */
+  private AbstractServerMapRequestContext register(final AbstractServerMapRequestContext context) {
+    context.makeLookupRequest();
+    this.outstandingRequests.put(context.getRequestID(), context);
+    if (isStopped() || isRejoinInProgress()) {
+      removeRequestContext(context);
+      if (isStopped()) { throw new TCNotRunningException(); }
+      throw new PlatformRejoinException();
+    }
     return context;
   }
 
+  synchronized void requestOutstanding() {
+    logger.info("Sending outstanding servermap requests, num msgs: " + outstandingRequests.size());
+    for (final AbstractServerMapRequestContext context : this.outstandingRequests.values()) {
+      if (!context.isDone()) {
+        sendRequestNow(context);
+      }
+    }
+  }
+
+  private void removeRequestContext(final AbstractServerMapRequestContext context) {
+    // the context may already be gone if a rejoin swept the table
+    this.outstandingRequests.remove(context.getRequestID(), context);
+  }
+
   private AbstractServerMapRequestContext getRequestContext(final ServerMapRequestID requestID) {
     return this.outstandingRequests.get(requestID);
   }
 
   @Override
-  public synchronized void addResponseForKeyValueMapping(final SessionID sessionID, final ObjectID mapID,
-                                                         final Collection<ServerMapGetValueResponse> responses,
-                                                         final NodeID nodeID) {
+  public void addResponseForKeyValueMapping(final SessionID sessionID, final ObjectID mapID,
+                                            final Collection<ServerMapGetValueResponse> responses, final NodeID nodeID) {
     waitUntilRunning();
     if (!this.sessionManager.isCurrentSession(nodeID, sessionID)) {
       this.logger.warn("Ignoring response for ServerMap :  " + mapID + " ,  responses :" + responses.size()
@@ -410,20 +517,15 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
       return;
     }
     for (final ServerMapGetValueResponse r : responses) {
-      setResultForRequest(sessionID, mapID, r.getRequestID(), r.getValues(), nodeID);
+      // the objects must be in the object manager before the waiting thread wakes up and looks them up
       addResponseToObjectManager(r.getValues());
-      if (getRequestContext(r.getRequestID()) == null) {
-        // Request was aborted, so we need to clean up.
-        cleanupObjectManagerOnAbort(r.getValues());
-      }
+      setResultForRequest(sessionID, mapID, r.getRequestID(), r.getValues(), nodeID);
     }
-    notifyAll();
   }
 
   @Override
-  public synchronized void addResponseForGetAllSize(final SessionID sessionID, final GroupID gID,
-                                                    final ServerMapRequestID requestID, final Long size,
-                                                    final NodeID nodeID) {
+  public void addResponseForGetAllSize(final SessionID sessionID, final GroupID gID,
+                                       final ServerMapRequestID requestID, final Long size, final NodeID nodeID) {
     waitUntilRunning();
     if (!this.sessionManager.isCurrentSession(nodeID, sessionID)) {
       this.logger.warn("Ignoring response for ServerMap :  " + requestID + " , size : " + size
@@ -433,13 +535,11 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
     Map<Object, Object> sizeMap = new HashMap<Object, Object>();
     sizeMap.put(SIZE_KEY, size);
     setResultForRequest(sessionID, ObjectID.NULL_ID, requestID, sizeMap, nodeID);
-    notifyAll();
   }
 
   @Override
-  public synchronized void addResponseForGetAllKeys(final SessionID sessionID, final ObjectID mapID,
-                                                    final ServerMapRequestID requestID, final Set keys,
-                                                    final NodeID nodeID) {
+  public void addResponseForGetAllKeys(final SessionID sessionID, final ObjectID mapID,
+                                       final ServerMapRequestID requestID, final Set keys, final NodeID nodeID) {
     waitUntilRunning();
     if (!this.sessionManager.isCurrentSession(nodeID, sessionID)) {
       this.logger.warn("Ignoring response for ServerMap :  " + mapID + " , " + requestID + " , keys.size : "
@@ -449,12 +549,11 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
     Map<Object, Object> allKeysMap = new HashMap<Object, Object>();
     allKeysMap.put(ALL_KEYS, keys);
     setResultForRequest(sessionID, mapID, requestID, allKeysMap, nodeID);
-    notifyAll();
   }
 
   @Override
-  public synchronized void objectNotFoundFor(final SessionID sessionID, final ObjectID mapID,
-                                             final ServerMapRequestID requestID, final NodeID nodeID) {
+  public void objectNotFoundFor(final SessionID sessionID, final ObjectID mapID, final ServerMapRequestID requestID,
+                                final NodeID nodeID) {
     waitUntilRunning();
     if (!this.sessionManager.isCurrentSession(nodeID, sessionID)) {
       this.logger.warn("Ignoring Missing Object IDs " + mapID + " from a different session: " + sessionID + ", "
@@ -462,8 +561,9 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
       return;
     }
     final AbstractServerMapRequestContext context = this.outstandingRequests.get(requestID);
-    context.makeMissingObject();
-    notifyAll();
+    if (context != null) {
+      context.makeMissingObject();
+    }
   }
 
   private void setResultForRequest(final SessionID sessionID, final ObjectID mapID, final ServerMapRequestID requestID,
@@ -471,11 +571,16 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
     final AbstractServerMapRequestContext context = getRequestContext(requestID);
     if (context != null) {
       context.setResult(mapID, rv);
+      if (context.isAborted()) {
+        // aborted while the response was being processed
+        releaseAbortedResult(context);
+      }
     } else {
+      // Request was aborted, so we need to clean up.
+      cleanupObjectManagerOnAbort(rv);
       if (logger.isDebugEnabled()) {
         this.logger.debug("Server Map Request Context is null for " + mapID + " request ID : " + requestID
-                          + " result : "
-                       + rv);
+                          + " result : " + rv);
       }
     }
   }
@@ -506,20 +611,46 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
     }
   }
 
+  /**
+   * Abandons the request once its last waiter gives up on it. Whoever of the aborting thread and the response receiving
+   * thread sees the result last cleans the fetched objects out of the object manager, exactly once.
+   */
+  private void abortContext(final AbstractServerMapRequestContext context) {
+    if (!context.leave()) { return; }
+    context.markAborted();
+    removeRequestContext(context);
+    releaseAbortedResult(context);
+  }
+
+  private void abortContexts(final Collection<AbstractServerMapRequestContext> contexts) {
+    for (AbstractServerMapRequestContext context : contexts) {
+      abortContext(context);
+    }
+  }
+
+  private void releaseAbortedResult(final AbstractServerMapRequestContext context) {
+    if (context.getResult() != null && context.markReleased()) {
+      cleanupObjectManagerOnAbort(context.getResult());
+    }
+  }
+
   /**
    * To be used by methods which are called by the App thread.
    */
   private void waitUntilRunningAbortable() throws AbortedOperationException {
+    if (this.state == State.RUNNING) { return; }
     boolean isInterrupted = false;
     try {
-      while (this.state != State.RUNNING) {
-        try {
-          if (isStopped()) { throw new TCNotRunningException(); }
-          if (isRejoinInProgress()) { throw new PlatformRejoinException(); }
-          wait();
-        } catch (final InterruptedException e) {
-          AbortedOperationUtil.throwExceptionIfAborted(abortableOperationManager);
-          isInterrupted = true;
+      synchronized (this) {
+        while (this.state != State.RUNNING) {
+          try {
+            if (isStopped()) { throw new TCNotRunningException(); }
+            if (isRejoinInProgress()) { throw new PlatformRejoinException(); }
+            wait();
+          } catch (final InterruptedException e) {
+            AbortedOperationUtil.throwExceptionIfAborted(abortableOperationManager);
+            isInterrupted = true;
+          }
         }
       }
     } finally {
@@ -531,15 +662,18 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
    * To be used by methods which are directly called by the Stage thread.
    */
   private void waitUntilRunning() {
+    if (this.state == State.RUNNING) { return; }
     boolean isInterrupted = false;
     try {
-      while (this.state != State.RUNNING) {
-        try {
-          if (isStopped()) { throw new TCNotRunningException(); }
-          if (isRejoinInProgress()) { throw new PlatformRejoinException(); }
-          wait();
-        } catch (final InterruptedException e) {
-          isInterrupted = true;
+      synchronized (this) {
+        while (this.state != State.RUNNING) {
+          try {
+            if (isStopped()) { throw new TCNotRunningException(); }
+            if (isRejoinInProgress()) { throw new PlatformRejoinException(); }
+            wait();
+          } catch (final InterruptedException e) {
+            isInterrupted = true;
+          }
         }
       }
     } finally {
@@ -556,8 +690,7 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   private void checkIfAbortedAndRemoveContexts(AbstractServerMapRequestContext context)
       throws AbortedOperationException {
     if (isAborted()) {
-      removeRequestContext(context);
-      cleanupObjectManagerOnAbort(context.getResult());
+      abortContext(context);
       AbortedOperationUtil.throwExceptionIfAborted(abortableOperationManager);
     }
   }
@@ -571,9 +704,7 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   private void checkIfAbortedAndRemoveContexts(Set<AbstractServerMapRequestContext> contextsToWaitFor)
       throws AbortedOperationException {
     if (isAborted()) {
-      for (AbstractServerMapRequestContext context : contextsToWaitFor) {
-        removeRequestContext(context);
-      }
+      abortContexts(contextsToWaitFor);
       AbortedOperationUtil.throwExceptionIfAborted(abortableOperationManager);
     }
   }
@@ -613,6 +744,7 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   public void shutdown(boolean fromShutdownHook) {
     state = State.STOPPED;
     reInvalidateHandler.shutdown();
+    failOutstandingRequests(new TCNotRunningException());
       synchronized (this) {
         requestsTimer.cancel();
         notifyAll();
@@ -642,18 +774,100 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   }
 
   private ServerMapRequestID getNextRequestID() {
-    return new ServerMapRequestID(this.requestIDCounter++);
+    return new ServerMapRequestID(this.requestIDCounter.getAndIncrement());
+  }
+
+  /**
+   * Future handed out by {@link RemoteServerMapManagerImpl#getMappingForKeyAsync(ObjectID, Object)}. The request is
+   * taken out of the outstanding table as soon as it completes. Cancelling only withdraws this caller, the request is
+   * aborted when nobody else waits for it.
+   */
+  private class ServerMapLookupFuture implements Future<Object> {
+    private final AbstractServerMapRequestContext context;
+    private final Object                          portableKey;
+    private final AtomicBoolean                   cancelled = new AtomicBoolean();
+
+    ServerMapLookupFuture(final AbstractServerMapRequestContext context, final Object portableKey) {
+      this.context = context;
+      this.portableKey = portableKey;
+      context.whenDone(new Runnable() {
+        @Override
+        public void run() {
+          removeRequestContext(context);
+        }
+      });
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      if (context.isDone() || !cancelled.compareAndSet(false, true)) { return false; }
+      abortContext(context);
+      return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return cancelled.get();
+    }
+
+    @Override
+    public boolean isDone() {
+      return isCancelled() || context.isDone();
+    }
+
+    @Override
+    public Object get() throws InterruptedException, ExecutionException {
+      if (isCancelled()) { throw new CancellationException(); }
+      return context.getFuture().get().get(portableKey);
+    }
+
+    @Override
+    public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      if (isCancelled()) { throw new CancellationException(); }
+      return context.getFuture().get(timeout, unit).get(portableKey);
+    }
+  }
+
+  /**
+   * Identifies a single key lookup in a given map, used to find lookups that are already in flight.
+   */
+  private static final class LookupKey {
+    private final ObjectID mapID;
+    private final Object   portableKey;
+
+    LookupKey(final ObjectID mapID, final Object portableKey) {
+      this.mapID = mapID;
+      this.portableKey = portableKey;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * mapID.hashCode() + portableKey.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) { return true; }
+      if (!(obj instanceof LookupKey)) { return false; }
+      LookupKey other = (LookupKey) obj;
+      return mapID.equals(other.mapID) && portableKey.equals(other.portableKey);
+    }
   }
 
   protected static abstract class AbstractServerMapRequestContext extends LookupStateTransitionAdaptor {
 
     // protected final static TCLogger logger = TCLogging.getLogger(AbstractServerMapRequestContext.class);
 
-    protected final ObjectID             oid;
-    protected final GroupID              groupID;
-    protected final ServerMapRequestID   requestID;
-    protected final ServerMapRequestType requestType;
-    protected Map<Object, Object>        result;
+    protected final ObjectID                               oid;
+    protected final GroupID                                groupID;
+    protected final ServerMapRequestID                     requestID;
+    protected final ServerMapRequestType                   requestType;
+    protected volatile Map<Object, Object>                 result;
+    private final CompletableFuture<Map<Object, Object>> future   = new CompletableFuture<Map<Object, Object>>();
+    private final AtomicBoolean                            released = new AtomicBoolean();
+    private final AtomicInteger                            waiters  = new AtomicInteger(1);
+    private volatile boolean                               aborted;
+    private boolean                                        sent;
 
     public AbstractServerMapRequestContext(final ServerMapRequestType requestType, final ServerMapRequestID requestID,
                                            final ObjectID mapID, final GroupID groupID) {
@@ -677,12 +891,104 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
                                                               + " response is for : " + mapID + " type : "
                                                               + getRequestType()); }
       this.result = rv;
+      this.future.complete(rv);
     }
 
     public Map<Object, Object> getResult() {
       return this.result;
     }
 
+    @Override
+    public synchronized LookupState makeLookupRequest() {
+      return super.makeLookupRequest();
+    }
+
+    @Override
+    public synchronized LookupState makeMissingObject() {
+      LookupState lookupState = super.makeMissingObject();
+      this.future.completeExceptionally(new TCObjectNotFoundException(this.oid.toString()));
+      return lookupState;
+    }
+
+    /**
+     * @return the result, or null if it did not arrive within <code>timeoutMillis</code>
+     * @throws TCObjectNotFoundException if the server reported the map as missing
+     */
+    Map<Object, Object> awaitResult(final long timeoutMillis) throws InterruptedException {
+      try {
+        return this.future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        return null;
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) { throw (RuntimeException) cause; }
+        throw new TCRuntimeException(cause);
+      }
+    }
+
+    CompletableFuture<Map<Object, Object>> getFuture() {
+      return this.future;
+    }
+
+    void whenDone(final Runnable callback) {
+      this.future.whenComplete((r, t) -> callback.run());
+    }
+
+    void fail(final RuntimeException cause) {
+      this.future.completeExceptionally(cause);
+    }
+
+    /**
+     * Adds a waiter to a request that has not been sent yet.
+     * 
+     * @return false if the request has been sent or the last waiter already gave up on it
+     */
+    synchronized boolean join() {
+      if (this.sent) { return false; }
+      while (true) {
+        int current = this.waiters.get();
+        if (current == 0) { return false; }
+        if (this.waiters.compareAndSet(current, current + 1)) { return true; }
+      }
+    }
+
+    /**
+     * Closes the request to new waiters, called before it is put in a message.
+     */
+    synchronized void markSent() {
+      this.sent = true;
+    }
+
+    /**
+     * @return true if the calling waiter was the last one
+     */
+    boolean leave() {
+      return this.waiters.decrementAndGet() == 0;
+    }
+
+    int getKeyCount() {
+      return 1;
+    }
+
+    boolean isDone() {
+      return this.future.isDone();
+    }
+
+    void markAborted() {
+      this.aborted = true;
+    }
+
+    boolean isAborted() {
+      return this.aborted;
+    }
+
+    /**
+     * @return true for the one caller that gets to release the fetched objects of an aborted request
+     */
+    boolean markReleased() {
+      return this.released.compareAndSet(false, true);
+    }
+
     @Override
     public int hashCode() {
       return this.requestID.hashCode();
@@ -721,6 +1027,11 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
                                                                               this.portableKeys);
     }
 
+    @Override
+    int getKeyCount() {
+      return this.portableKeys.size();
+    }
+
     @Override
     public String toString() {
       return "GetValueServerMapRequestContext@" + System.identityHashCode(this);
@@ -783,9 +1094,10 @@ public class RemoteServerMapManagerImpl implements RemoteServerMapManager {
   }
 
   @Override
-  public synchronized PrettyPrinter prettyPrint(PrettyPrinter out) {
+  public PrettyPrinter prettyPrint(PrettyPrinter out) {
     out.print(this.getClass().getName()).print("Group Id: ").print(groupID).flush();
     out.indent().print("outstandingRequests count: ").print(Integer.valueOf(this.outstandingRequests.size())).flush();
+    out.indent().print("coalesced lookups: ").print(Long.valueOf(this.coalescedLookups.get())).flush();
     for (Entry<ServerMapRequestID, AbstractServerMapRequestContext> entry : outstandingRequests.entrySet()) {
       out.indent().print(entry.getKey()).print(entry.getValue());
     }
@@ -58,7 +58,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -566,6 +570,47 @@ public class TCObjectServerMapImpl<L> extends TCObjectLogical implements TCObjec
     }
   }
 
+  @Override
+  public Future<Object> getValueUnlockedAsync(final TCServerMap map, final Object key)
+      throws AbortedOperationException {
+    final AbstractLocalCacheStoreValue item = getValueUnlockedFromCache(key);
+    if (item != null) { return CompletableFuture.<Object> completedFuture(item.getValueObject()); }
+
+    final TCObject tcObject = map.__tc_managed();
+    if (tcObject == null) { throw new UnsupportedOperationException(
+                                                                    "getValueUnlockedAsync is not supported in a non-shared ServerMap"); }
+    if (!createdOnServer) { return CompletableFuture.<Object> completedFuture(null); }
+
+    final Future<Object> response = this.serverMapManager.getMappingForKeyAsync(tcObject.getObjectID(),
+                                                                                getPortableKey(key));
+    return new ServerMapValueFuture(map, key, response);
+  }
+
+  /**
+   * Turns the server's response into the mapped value. Runs on the thread that asked for the value, looking up the
+   * value object may have to fault it and must not happen on the stage that receives responses.
+   */
+  private Object resolveValue(final TCServerMap map, final Object key, final CompoundResponse response)
+      throws AbortedOperationException {
+    final Object value;
+    try {
+      value = lookupValue(response);
+    } catch (TCObjectNotFoundException e) {
+      // the value object went away after the server answered, retry the way a blocking get does
+      return getValueUnlocked(map, key);
+    }
+    if (value != null) {
+      final Lock lock = getLockForKey(key);
+      lock.lock();
+      try {
+        updateLocalCacheIfNecessary(key, value);
+      } finally {
+        lock.unlock();
+      }
+    }
+    return value;
+  }
+
   @Override
   public VersionedObject getVersionedValue(final TCServerMap map, final Object key) throws AbortedOperationException {
     if (!isCacheInitialized()) { return null; }
@@ -1189,4 +1234,60 @@ public class TCObjectServerMapImpl<L> extends TCObjectLogical implements TCObjec
     logicalInvoke(LogicalOperation.UNREGISTER_SERVER_EVENT_LISTENER, params.toArray());
   }
 
+  /**
+   * Future handed out by {@link #getValueUnlockedAsync}. The response is resolved into the value once, by the first
+   * caller of {@code get}.
+   */
+  private final class ServerMapValueFuture implements Future<Object> {
+    private final TCServerMap    map;
+    private final Object         key;
+    private final Future<Object> response;
+    private boolean              resolved;
+    private Object               value;
+
+    private ServerMapValueFuture(final TCServerMap map, final Object key, final Future<Object> response) {
+      this.map = map;
+      this.key = key;
+      this.response = response;
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+      return this.response.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return this.response.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+      return this.response.isDone();
+    }
+
+    @Override
+    public Object get() throws InterruptedException, ExecutionException {
+      return resolve(this.response.get());
+    }
+
+    @Override
+    public Object get(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException,
+        TimeoutException {
+      return resolve(this.response.get(timeout, unit));
+    }
+
+    private synchronized Object resolve(final Object rawResponse) throws ExecutionException {
+      if (!this.resolved) {
+        try {
+          this.value = resolveValue(this.map, this.key, (CompoundResponse) rawResponse);
+        } catch (AbortedOperationException e) {
+          throw new ExecutionException(e);
+        }
+        this.resolved = true;
+      }
+      return this.value;
+    }
+  }
+
 }
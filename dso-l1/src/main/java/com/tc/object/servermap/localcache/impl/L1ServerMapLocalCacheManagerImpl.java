@@ -54,6 +54,14 @@ public class L1ServerMapLocalCacheManagerImpl implements L1ServerMapLocalCacheMa
                                                                                                                           .getProperties()
                                                                                                                           .getBoolean(TCPropertiesConsts.L1_SERVERMAPMANAGER_FAULT_INVALIDATED_PINNED_ENTRIES,
                                                                                                                                       true);
+  private static final boolean                                                   OFFHEAP_LOCAL_CACHE_ENABLED          = TCPropertiesImpl
+                                                                                                                          .getProperties()
+                                                                                                                          .getBoolean(TCPropertiesConsts.L1_SERVERMAPMANAGER_LOCALCACHE_OFFHEAP_ENABLED,
+                                                                                                                                      false);
+  private static final long                                                      OFFHEAP_LOCAL_CACHE_MAX_BYTES        = TCPropertiesImpl
+                                                                                                                          .getProperties()
+                                                                                                                          .getLong(TCPropertiesConsts.L1_SERVERMAPMANAGER_LOCALCACHE_OFFHEAP_MAX_BYTES,
+                                                                                                                                   256 * 1024 * 1024);
   /**
    * For invalidations
    */
@@ -123,8 +131,12 @@ public class L1ServerMapLocalCacheManagerImpl implements L1ServerMapLocalCacheMa
     if (localStores.containsKey(serverMapLocalStore)) {
       serverMapLocalCache = localStores.get(serverMapLocalStore);
     } else {
+      L1ServerMapLocalCacheStore localStore = serverMapLocalStore;
+      if (OFFHEAP_LOCAL_CACHE_ENABLED) {
+        localStore = createOffHeapStore(serverMapLocalStore);
+      }
       serverMapLocalCache = new ServerMapLocalCacheImpl(objectManager, platformService, this, localCacheEnabled,
-                                                        removeCallback, serverMapLocalStore);
+                                                        removeCallback, localStore);
 
       if (FAULT_INVALIDATED_PINNED_ENTRIES) {
         serverMapLocalCache.registerPinnedEntryInvalidationListener(pinnedEntryInvalidationListener);
@@ -132,7 +144,7 @@ public class L1ServerMapLocalCacheManagerImpl implements L1ServerMapLocalCacheMa
 
       localStores.put(serverMapLocalStore, serverMapLocalCache);
       localCacheToPinnedEntryFaultCallback.put(serverMapLocalCache, callback);
-      serverMapLocalStore.addListener(new L1ServerMapLocalCacheStoreListenerImpl(serverMapLocalCache));
+      localStore.addListener(new L1ServerMapLocalCacheStoreListenerImpl(serverMapLocalCache));
     }
 
     if (!mapIdTolocalCache.containsKey(mapId)) {
@@ -143,6 +155,40 @@ public class L1ServerMapLocalCacheManagerImpl implements L1ServerMapLocalCacheMa
     return serverMapLocalCache;
   }
 
+  /**
+   * The off heap store stands in for the store given by the toolkit, which stays the key of {@link #localStores}: once
+   * the toolkit disposes of its store the off heap one goes with it.
+   */
+  private L1ServerMapLocalCacheStore createOffHeapStore(final L1ServerMapLocalCacheStore serverMapLocalStore) {
+    final L1ServerMapLocalCacheStore offHeapStore = new OffHeapL1ServerMapLocalCacheStore(
+                                                                                          OFFHEAP_LOCAL_CACHE_MAX_BYTES,
+                                                                                          serverMapLocalStore
+                                                                                              .getMaxElementsInMemory());
+    serverMapLocalStore.addListener(new L1ServerMapLocalCacheStoreListener() {
+      @Override
+      public void notifyElementEvicted(Object key, Object value) {
+        // nothing is ever put in the toolkit store
+      }
+
+      @Override
+      public void notifyElementsEvicted(Map evictedElements) {
+        // nothing is ever put in the toolkit store
+      }
+
+      @Override
+      public void notifyElementExpired(Object key, Object value) {
+        // nothing is ever put in the toolkit store
+      }
+
+      @Override
+      public void notifyDisposed(L1ServerMapLocalCacheStore store) {
+        removeStore(store);
+        offHeapStore.dispose();
+      }
+    });
+    return offHeapStore;
+  }
+
   public void removeStore(L1ServerMapLocalCacheStore store) {
     ServerMapLocalCache localCache = localStores.remove(store);
     if (localCache != null) {
@@ -0,0 +1,530 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.object.servermap.localcache.impl;
+
+import com.tc.exception.TCRuntimeException;
+import com.tc.object.ObjectID;
+import com.tc.object.servermap.localcache.L1ServerMapLocalCacheStore;
+import com.tc.object.servermap.localcache.L1ServerMapLocalCacheStoreListener;
+import com.tc.object.servermap.localcache.LocalCacheStoreFullException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Local cache store keeping all of its mappings off heap, so that a large local cache adds next to nothing to the
+ * garbage collector's work.
+ * <ul>
+ * <li>valueoid -&gt; key mappings live in a table keyed by the primitive object id</li>
+ * <li>key -&gt; value mappings live in a table keyed by a 64 bit hash of the serialized key, equal hashes are told
+ * apart by comparing the serialized keys</li>
+ * </ul>
+ * Keys and values are serialized into records allocated from size bounded slabs (see {@link OffHeapSlabAllocator}).
+ * Keys are compared in serialized form, which is what the String and primitive wrapper keys of server maps need.
+ * <br>
+ * Entries beyond the max elements in memory, or that do not fit in the off heap memory, are evicted clock wise and
+ * reported to the listeners like any other store would.
+ */
+public class OffHeapL1ServerMapLocalCacheStore<K, V> implements L1ServerMapLocalCacheStore<K, V> {
+
+  private static final int                                     SEGMENT_COUNT = 16;
+  // a few slabs per segment at least, so that records of different sizes do not keep evicting each other
+  private static final int                                     MIN_SLABS     = 4;
+  private static final byte                                    STRING_KEY    = 0;
+  private static final byte                                    LONG_KEY      = 1;
+  private static final byte                                    OBJECT_KEY    = 2;
+
+  private final List<L1ServerMapLocalCacheStoreListener<K, V>> listeners     = new CopyOnWriteArrayList<L1ServerMapLocalCacheStoreListener<K, V>>();
+  private final Segment[]                                      segments      = new Segment[SEGMENT_COUNT];
+  private volatile int                                         maxElementsInMemory;
+
+  /**
+   * @param maxBytes            off heap memory the records of this store may take, at least 4 slabs per segment
+   * @param maxElementsInMemory max number of values in the store, 0 for no limit
+   */
+  public OffHeapL1ServerMapLocalCacheStore(long maxBytes, int maxElementsInMemory) {
+    final int slabsPerSegment = (int) Math.max(MIN_SLABS, maxBytes / SEGMENT_COUNT / OffHeapSlabAllocator.SLAB_SIZE);
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      segments[i] = new Segment(slabsPerSegment);
+    }
+    this.maxElementsInMemory = maxElementsInMemory;
+  }
+
+  @Override
+  public V put(K key, V value) throws LocalCacheStoreFullException {
+    final Map<Object, Object> evicted = new HashMap<Object, Object>();
+    final V old;
+    if (key instanceof ObjectID) {
+      final long oid = ((ObjectID) key).toLong();
+      old = (V) segmentFor(oid).putObjectID(oid, serialize(value), evicted);
+    } else {
+      final byte[] keyBytes = serializeKey(key);
+      final long hash = hash(keyBytes);
+      old = (V) segmentFor(hash).putKey(hash, keyBytes, serialize(value), evicted);
+    }
+    evictIfNecessary(evicted);
+    notifyEvicted(evicted);
+    return old;
+  }
+
+  @Override
+  public V get(K key) {
+    if (key instanceof ObjectID) {
+      final long oid = ((ObjectID) key).toLong();
+      return (V) segmentFor(oid).getObjectID(oid);
+    }
+    final byte[] keyBytes = serializeKey(key);
+    final long hash = hash(keyBytes);
+    return (V) segmentFor(hash).getKey(hash, keyBytes);
+  }
+
+  @Override
+  public V remove(K key) {
+    if (key instanceof ObjectID) {
+      final long oid = ((ObjectID) key).toLong();
+      return (V) segmentFor(oid).removeObjectID(oid, null);
+    }
+    final byte[] keyBytes = serializeKey(key);
+    final long hash = hash(keyBytes);
+    return (V) segmentFor(hash).removeKey(hash, keyBytes, null);
+  }
+
+  @Override
+  public Object remove(K key, V value) {
+    if (key instanceof ObjectID) {
+      final long oid = ((ObjectID) key).toLong();
+      return segmentFor(oid).removeObjectID(oid, value);
+    }
+    final byte[] keyBytes = serializeKey(key);
+    final long hash = hash(keyBytes);
+    return segmentFor(hash).removeKey(hash, keyBytes, value);
+  }
+
+  @Override
+  public boolean addListener(L1ServerMapLocalCacheStoreListener<K, V> listener) {
+    return listeners.add(listener);
+  }
+
+  @Override
+  public boolean removeListener(L1ServerMapLocalCacheStoreListener<K, V> listener) {
+    return listeners.remove(listener);
+  }
+
+  @Override
+  public void clear() {
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+  }
+
+  @Override
+  public void cleanLocalState() {
+    clear();
+  }
+
+  @Override
+  public List getKeys() {
+    final List keys = new ArrayList();
+    for (Segment segment : segments) {
+      segment.addKeys(keys);
+    }
+    return keys;
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  @Override
+  public long onHeapSizeInBytes() {
+    return 0;
+  }
+
+  @Override
+  public long offHeapSizeInBytes() {
+    long bytes = 0;
+    for (Segment segment : segments) {
+      bytes += segment.sizeInBytes();
+    }
+    return bytes;
+  }
+
+  @Override
+  public int onHeapSize() {
+    return 0;
+  }
+
+  @Override
+  public int offHeapSize() {
+    return size();
+  }
+
+  @Override
+  public int getMaxElementsInMemory() {
+    return maxElementsInMemory;
+  }
+
+  @Override
+  public void dispose() {
+    for (Segment segment : segments) {
+      segment.release();
+    }
+    for (L1ServerMapLocalCacheStoreListener<K, V> l : listeners) {
+      l.notifyDisposed(this);
+    }
+  }
+
+  @Override
+  public boolean containsKeyOnHeap(K key) {
+    return false;
+  }
+
+  @Override
+  public boolean containsKeyOffHeap(K key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public void setMaxEntriesLocalHeap(int maxEntriesLocalHeap) {
+    this.maxElementsInMemory = maxEntriesLocalHeap;
+  }
+
+  @Override
+  public void setMaxBytesLocalHeap(long maxBytesLocalHeap) {
+    // nothing is kept on heap
+  }
+
+  @Override
+  public void recalculateSize(K key) {
+    // records are sized when they are written
+  }
+
+  @Override
+  public boolean isPinned() {
+    return false;
+  }
+
+  private void evictIfNecessary(Map<Object, Object> evicted) {
+    final int max = maxElementsInMemory;
+    if (max <= 0) { return; }
+    // evict from the segments round robin until the store is back under its max
+    int overshoot = size() - max;
+    for (int i = 0; overshoot > 0 && i < SEGMENT_COUNT * overshoot; i++) {
+      if (segments[i % SEGMENT_COUNT].evictOne(-1, evicted)) {
+        overshoot--;
+      }
+    }
+  }
+
+  private void notifyEvicted(Map<Object, Object> evicted) {
+    if (evicted.isEmpty()) { return; }
+    final Map<K, V> evictedElements = Collections.unmodifiableMap((Map<K, V>) evicted);
+    for (L1ServerMapLocalCacheStoreListener<K, V> l : listeners) {
+      l.notifyElementsEvicted(evictedElements);
+    }
+  }
+
+  private Segment segmentFor(long hash) {
+    return segments[(int) (hash ^ (hash >>> 32)) & (SEGMENT_COUNT - 1)];
+  }
+
+  /**
+   * 64 bit FNV-1a
+   */
+  private static long hash(byte[] bytes) {
+    long h = 0xcbf29ce484222325L;
+    for (byte b : bytes) {
+      h ^= b;
+      h *= 0x100000001b3L;
+    }
+    return h;
+  }
+
+  private static byte[] serializeKey(Object key) {
+    if (key instanceof String) {
+      final byte[] chars = ((String) key).getBytes(StandardCharsets.UTF_8);
+      final byte[] bytes = new byte[chars.length + 1];
+      bytes[0] = STRING_KEY;
+      System.arraycopy(chars, 0, bytes, 1, chars.length);
+      return bytes;
+    } else if (key instanceof Long) {
+      final long l = (Long) key;
+      final byte[] bytes = new byte[9];
+      bytes[0] = LONG_KEY;
+      for (int i = 0; i < 8; i++) {
+        bytes[i + 1] = (byte) (l >>> (56 - 8 * i));
+      }
+      return bytes;
+    }
+    final byte[] serialized = serialize(key);
+    final byte[] bytes = new byte[serialized.length + 1];
+    bytes[0] = OBJECT_KEY;
+    System.arraycopy(serialized, 0, bytes, 1, serialized.length);
+    return bytes;
+  }
+
+  private static Object deserializeKey(byte[] bytes, int offset, int length) {
+    switch (bytes[offset]) {
+      case STRING_KEY:
+        return new String(bytes, offset + 1, length - 1, StandardCharsets.UTF_8);
+      case LONG_KEY:
+        long l = 0;
+        for (int i = 0; i < 8; i++) {
+          l = (l << 8) | (bytes[offset + 1 + i] & 0xff);
+        }
+        return l;
+      default:
+        return deserialize(bytes, offset + 1, length - 1);
+    }
+  }
+
+  private static byte[] serialize(Object o) {
+    try {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final ObjectOutputStream out = new ObjectOutputStream(bytes);
+      out.writeObject(o);
+      out.close();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new TCRuntimeException(e);
+    }
+  }
+
+  private static Object deserialize(byte[] bytes, int offset, int length) {
+    try {
+      return new ObjectInputStream(new ByteArrayInputStream(bytes, offset, length)).readObject();
+    } catch (IOException e) {
+      throw new TCRuntimeException(e);
+    } catch (ClassNotFoundException e) {
+      throw new TCRuntimeException(e);
+    }
+  }
+
+  private static boolean equal(Object value, Object expected) {
+    return expected == null || expected.equals(value);
+  }
+
+  /**
+   * Both tables of a segment share its allocator and are guarded by the segment monitor.
+   * <p>
+   * A key record holds the serialized key, length prefixed, followed by the serialized value. An object id record holds
+   * the serialized value only.
+   */
+  private static final class Segment {
+    private final OffHeapSlabAllocator allocator;
+    private final OffHeapLongHashTable objectIDs = new OffHeapLongHashTable();
+    private final OffHeapLongHashTable keys      = new OffHeapLongHashTable();
+    private int                        keysClock;
+    private int                        objectIDsClock;
+
+    Segment(int maxSlabs) {
+      this.allocator = new OffHeapSlabAllocator(maxSlabs);
+    }
+
+    synchronized Object getObjectID(long oid) {
+      final int slot = findObjectID(oid);
+      return slot < 0 ? null : deserializeValue(allocator.load(objectIDs.refAt(slot)));
+    }
+
+    synchronized Object putObjectID(long oid, byte[] value, Map<Object, Object> evicted) {
+      final Object old = removeObjectID(oid, null);
+      objectIDs.insert(oid, store(value, evicted));
+      return old;
+    }
+
+    synchronized Object removeObjectID(long oid, Object expected) {
+      final int slot = findObjectID(oid);
+      if (slot < 0) { return null; }
+      final long ref = objectIDs.refAt(slot);
+      final Object old = deserializeValue(allocator.load(ref));
+      if (!equal(old, expected)) { return null; }
+      objectIDs.removeAt(slot);
+      allocator.free(ref);
+      return old;
+    }
+
+    synchronized Object getKey(long hash, byte[] key) {
+      final int slot = findKey(hash, key);
+      if (slot < 0) { return null; }
+      return deserializeValue(allocator.load(keys.refAt(slot), 4 + key.length));
+    }
+
+    synchronized Object putKey(long hash, byte[] key, byte[] value, Map<Object, Object> evicted) {
+      final byte[] record = new byte[4 + key.length + value.length];
+      record[0] = (byte) (key.length >>> 24);
+      record[1] = (byte) (key.length >>> 16);
+      record[2] = (byte) (key.length >>> 8);
+      record[3] = (byte) key.length;
+      System.arraycopy(key, 0, record, 4, key.length);
+      System.arraycopy(value, 0, record, 4 + key.length, value.length);
+
+      final Object old = removeKey(hash, key, null);
+      keys.insert(hash, store(record, evicted));
+      return old;
+    }
+
+    synchronized Object removeKey(long hash, byte[] key, Object expected) {
+      final int slot = findKey(hash, key);
+      if (slot < 0) { return null; }
+      final long ref = keys.refAt(slot);
+      final Object old = deserializeValue(allocator.load(ref, 4 + key.length));
+      if (!equal(old, expected)) { return null; }
+      keys.removeAt(slot);
+      allocator.free(ref);
+      return old;
+    }
+
+    synchronized int size() {
+      return keys.size();
+    }
+
+    synchronized long sizeInBytes() {
+      return allocator.reservedBytes() + keys.sizeInBytes() + objectIDs.sizeInBytes();
+    }
+
+    synchronized void addKeys(List keyList) {
+      for (int slot = 0; slot < keys.capacity(); slot++) {
+        if (!keys.isEmpty(slot)) {
+          final byte[] record = allocator.load(keys.refAt(slot));
+          keyList.add(deserializeKey(record, 4, keyLength(record)));
+        }
+      }
+      for (int slot = 0; slot < objectIDs.capacity(); slot++) {
+        if (!objectIDs.isEmpty(slot)) {
+          keyList.add(new ObjectID(objectIDs.keyAt(slot)));
+        }
+      }
+    }
+
+    synchronized void clear() {
+      keys.clear();
+      objectIDs.clear();
+      allocator.reset();
+      keysClock = 0;
+      objectIDsClock = 0;
+    }
+
+    synchronized void release() {
+      clear();
+      allocator.release();
+    }
+
+    /**
+     * Evicts the next entry under the clock hand. Key mappings go first, object id mappings are only evicted once no key
+     * mapping is left.
+     *
+     * @param chunkShift only evict a record of this size class, -1 for any
+     * @return true if an entry was evicted
+     */
+    synchronized boolean evictOne(int chunkShift, Map<Object, Object> evicted) {
+      if (keys.size() > 0) {
+        for (int i = 0; i < keys.capacity(); i++) {
+          keysClock = keys.next(keysClock);
+          if (!keys.isEmpty(keysClock) && matches(keys.refAt(keysClock), chunkShift)) {
+            final long ref = keys.refAt(keysClock);
+            final byte[] record = allocator.load(ref);
+            final int keyLength = keyLength(record);
+            evicted.put(deserializeKey(record, 4, keyLength), deserializeValue(record, 4 + keyLength));
+            keys.removeAt(keysClock);
+            allocator.free(ref);
+            return true;
+          }
+        }
+      }
+      for (int i = 0; i < objectIDs.capacity() && objectIDs.size() > 0; i++) {
+        objectIDsClock = objectIDs.next(objectIDsClock);
+        if (!objectIDs.isEmpty(objectIDsClock) && matches(objectIDs.refAt(objectIDsClock), chunkShift)) {
+          final long ref = objectIDs.refAt(objectIDsClock);
+          evicted.put(new ObjectID(objectIDs.keyAt(objectIDsClock)), deserializeValue(allocator.load(ref)));
+          objectIDs.removeAt(objectIDsClock);
+          allocator.free(ref);
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private boolean matches(long ref, int chunkShift) {
+      return chunkShift < 0 || allocator.chunkShift(ref) == chunkShift;
+    }
+
+    /**
+     * Stores a record, evicting records of the same size class while there is no room for it.
+     */
+    private long store(byte[] record, Map<Object, Object> evicted) {
+      if (record.length > OffHeapSlabAllocator.maxRecordSize()) {
+        throw new LocalCacheStoreFullException("Record of " + record.length + " bytes is too large for the off heap local cache");
+      }
+      final int chunkShift = OffHeapSlabAllocator.chunkShiftFor(record.length);
+      long ref = allocator.store(record);
+      while (ref == 0) {
+        if (!evictOne(chunkShift, evicted) && !evictOne(-1, evicted)) {
+          throw new LocalCacheStoreFullException("Off heap local cache is full");
+        }
+        ref = allocator.store(record);
+      }
+      return ref;
+    }
+
+    private int findObjectID(long oid) {
+      for (int slot = objectIDs.slotFor(oid); !objectIDs.isEmpty(slot); slot = objectIDs.next(slot)) {
+        if (objectIDs.keyAt(slot) == oid) { return slot; }
+      }
+      return -1;
+    }
+
+    /**
+     * Keys with the same hash are compared in place, no record is copied on heap before the key is found.
+     */
+    private int findKey(long hash, byte[] key) {
+      for (int slot = keys.slotFor(hash); !keys.isEmpty(slot); slot = keys.next(slot)) {
+        if (keys.keyAt(slot) == hash) {
+          final long ref = keys.refAt(slot);
+          if (allocator.getInt(ref, 0) == key.length && allocator.regionEquals(ref, 4, key)) { return slot; }
+        }
+      }
+      return -1;
+    }
+
+    private static int keyLength(byte[] record) {
+      return ((record[0] & 0xff) << 24) | ((record[1] & 0xff) << 16) | ((record[2] & 0xff) << 8) | (record[3] & 0xff);
+    }
+
+    private static Object deserializeValue(byte[] record) {
+      return deserialize(record, 0, record.length);
+    }
+
+    private static Object deserializeValue(byte[] record, int offset) {
+      return deserialize(record, offset, record.length - offset);
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.object.servermap.localcache.impl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Open addressing hash table of <code>long</code> keys to record references, with linear probing, kept in a direct
+ * buffer. Keys may repeat: callers probe from {@link #slotFor(long)} and tell equal keys apart themselves. A reference
+ * of 0 marks an empty slot. Not thread safe.
+ */
+final class OffHeapLongHashTable {
+
+  private static final int SLOT_SIZE        = 16;
+  private static final int INITIAL_CAPACITY = 64;
+
+  private ByteBuffer       slots;
+  private int              mask;
+  private int              size;
+
+  OffHeapLongHashTable() {
+    allocate(INITIAL_CAPACITY);
+  }
+
+  int size() {
+    return size;
+  }
+
+  int capacity() {
+    return mask + 1;
+  }
+
+  long sizeInBytes() {
+    return (long) capacity() * SLOT_SIZE;
+  }
+
+  /**
+   * @return the slot probing for <code>key</code> starts from
+   */
+  int slotFor(long key) {
+    return home(key, mask);
+  }
+
+  int next(int slot) {
+    return (slot + 1) & mask;
+  }
+
+  boolean isEmpty(int slot) {
+    return refAt(slot) == 0;
+  }
+
+  long keyAt(int slot) {
+    return slots.getLong(slot * SLOT_SIZE);
+  }
+
+  long refAt(int slot) {
+    return slots.getLong(slot * SLOT_SIZE + 8);
+  }
+
+  /**
+   * Adds a mapping, without looking for an existing one.
+   */
+  void insert(long key, long ref) {
+    if (size + 1 > capacity() - (capacity() >>> 2)) {
+      resize(capacity() << 1);
+    }
+    int slot = slotFor(key);
+    while (!isEmpty(slot)) {
+      slot = next(slot);
+    }
+    write(slot, key, ref);
+    size++;
+  }
+
+  /**
+   * Empties <code>slot</code>, shifting back the entries of the probe run behind it so no tombstone is left.
+   */
+  void removeAt(int slot) {
+    int hole = slot;
+    int i = next(slot);
+    while (!isEmpty(i)) {
+      final long key = keyAt(i);
+      final int home = slotFor(key);
+      if (((i - home) & mask) >= ((i - hole) & mask)) {
+        write(hole, key, refAt(i));
+        hole = i;
+      }
+      i = next(i);
+    }
+    write(hole, 0, 0);
+    size--;
+  }
+
+  void clear() {
+    allocate(INITIAL_CAPACITY);
+    size = 0;
+  }
+
+  private void resize(int newCapacity) {
+    final ByteBuffer old = slots;
+    final int oldCapacity = capacity();
+    allocate(newCapacity);
+    for (int i = 0; i < oldCapacity; i++) {
+      final long ref = old.getLong(i * SLOT_SIZE + 8);
+      if (ref != 0) {
+        final long key = old.getLong(i * SLOT_SIZE);
+        int slot = slotFor(key);
+        while (!isEmpty(slot)) {
+          slot = next(slot);
+        }
+        write(slot, key, ref);
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    slots = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+    mask = capacity - 1;
+  }
+
+  private void write(int slot, long key, long ref) {
+    slots.putLong(slot * SLOT_SIZE, key);
+    slots.putLong(slot * SLOT_SIZE + 8, ref);
+  }
+
+  private static int home(long key, int mask) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    return (int) key & mask;
+  }
+}
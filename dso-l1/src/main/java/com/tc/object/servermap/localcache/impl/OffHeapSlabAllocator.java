@@ -0,0 +1,264 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.object.servermap.localcache.impl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Allocates length prefixed byte records in direct memory. Memory is taken in slabs of {@link #SLAB_SIZE} bytes, each
+ * slab is cut into chunks of one power of two size and freed chunks go back to the free list of their size. A slab
+ * whose chunks are all free can be handed over to another chunk size. No more than <code>maxSlabs</code> slabs are
+ * ever allocated.
+ * <p>
+ * References are never 0, so 0 can be used for "no record". Not thread safe.
+ */
+final class OffHeapSlabAllocator {
+
+  static final int                SLAB_SIZE       = 1 << 20;
+
+  private static final int        MIN_CHUNK_SHIFT = 5;
+  private static final int        MAX_CHUNK_SHIFT = 20;
+  private static final int        HEADER_SIZE     = 4;
+
+  private final int               maxSlabs;
+  private final List<ByteBuffer>  slabs           = new ArrayList<ByteBuffer>();
+  private int[]                   slabChunkShift  = new int[8];
+  private int[]                   slabLiveChunks  = new int[8];
+  private final int[]             currentSlab     = new int[MAX_CHUNK_SHIFT + 1];
+  private final int[]             currentOffset   = new int[MAX_CHUNK_SHIFT + 1];
+  private final long[][]          freeChunks      = new long[MAX_CHUNK_SHIFT + 1][];
+  private final int[]             freeCount       = new int[MAX_CHUNK_SHIFT + 1];
+  private long                    usedBytes;
+
+  OffHeapSlabAllocator(int maxSlabs) {
+    this.maxSlabs = maxSlabs;
+    Arrays.fill(currentSlab, -1);
+  }
+
+  /**
+   * @return the size of the largest record that can be stored
+   */
+  static int maxRecordSize() {
+    return SLAB_SIZE - HEADER_SIZE;
+  }
+
+  /**
+   * @return the chunk size class used for a record of <code>length</code> bytes
+   */
+  static int chunkShiftFor(int length) {
+    return Math.max(MIN_CHUNK_SHIFT, 32 - Integer.numberOfLeadingZeros(length + HEADER_SIZE - 1));
+  }
+
+  /**
+   * Copies <code>data</code> off heap.
+   *
+   * @return a reference to the record, or 0 if there is no room left for a chunk of that size
+   */
+  long store(byte[] data) {
+    if (data.length > maxRecordSize()) { return 0; }
+    final long ref = allocate(chunkShiftFor(data.length));
+    if (ref != 0) {
+      final ByteBuffer slab = slab(ref);
+      final int offset = offset(ref);
+      slab.putInt(offset, data.length);
+      final ByteBuffer dup = slab.duplicate();
+      dup.position(offset + HEADER_SIZE);
+      dup.put(data);
+    }
+    return ref;
+  }
+
+  byte[] load(long ref) {
+    return load(ref, 0);
+  }
+
+  /**
+   * Copies the record from <code>position</code> to its end.
+   */
+  byte[] load(long ref, int position) {
+    final ByteBuffer slab = slab(ref);
+    final int offset = offset(ref);
+    final byte[] data = new byte[slab.getInt(offset) - position];
+    final ByteBuffer dup = slab.duplicate();
+    dup.position(offset + HEADER_SIZE + position);
+    dup.get(data);
+    return data;
+  }
+
+  /**
+   * Reads the <code>int</code> at <code>position</code> of the record in place.
+   */
+  int getInt(long ref, int position) {
+    return slab(ref).getInt(offset(ref) + HEADER_SIZE + position);
+  }
+
+  /**
+   * Compares <code>bytes</code> with the record from <code>position</code> on, in place.
+   */
+  boolean regionEquals(long ref, int position, byte[] bytes) {
+    final ByteBuffer slab = slab(ref);
+    final int offset = offset(ref);
+    if (position + bytes.length > slab.getInt(offset)) { return false; }
+    final int start = offset + HEADER_SIZE + position;
+    for (int i = 0; i < bytes.length; i++) {
+      if (slab.get(start + i) != bytes[i]) { return false; }
+    }
+    return true;
+  }
+
+  void free(long ref) {
+    final int slabIndex = slabIndex(ref);
+    final int shift = slabChunkShift[slabIndex];
+    push(shift, ref);
+    slabLiveChunks[slabIndex]--;
+    usedBytes -= 1 << shift;
+  }
+
+  /**
+   * @return the chunk size class <code>ref</code> was allocated from
+   */
+  int chunkShift(long ref) {
+    return slabChunkShift[slabIndex(ref)];
+  }
+
+  long usedBytes() {
+    return usedBytes;
+  }
+
+  long reservedBytes() {
+    return (long) slabs.size() * SLAB_SIZE;
+  }
+
+  /**
+   * Forgets every record, keeping the slabs around for reuse.
+   */
+  void reset() {
+    Arrays.fill(currentSlab, -1);
+    Arrays.fill(currentOffset, 0);
+    Arrays.fill(freeCount, 0);
+    Arrays.fill(slabLiveChunks, 0);
+    usedBytes = 0;
+  }
+
+  /**
+   * Drops all slabs. Direct memory is given back once the buffers are collected.
+   */
+  void release() {
+    slabs.clear();
+    Arrays.fill(currentSlab, -1);
+    Arrays.fill(currentOffset, 0);
+    Arrays.fill(freeCount, 0);
+    Arrays.fill(slabLiveChunks, 0);
+    usedBytes = 0;
+  }
+
+  private long allocate(int shift) {
+    long ref;
+    if (freeCount[shift] > 0) {
+      ref = freeChunks[shift][--freeCount[shift]];
+    } else {
+      ref = bump(shift);
+      if (ref == 0) { return 0; }
+    }
+    slabLiveChunks[slabIndex(ref)]++;
+    usedBytes += 1 << shift;
+    return ref;
+  }
+
+  private long bump(int shift) {
+    final int chunkSize = 1 << shift;
+    if (currentSlab[shift] < 0 || currentOffset[shift] + chunkSize > SLAB_SIZE) {
+      final int slabIndex = newSlab(shift);
+      if (slabIndex < 0) { return 0; }
+      currentSlab[shift] = slabIndex;
+      currentOffset[shift] = 0;
+    }
+    final long ref = ref(currentSlab[shift], currentOffset[shift]);
+    currentOffset[shift] += chunkSize;
+    return ref;
+  }
+
+  private int newSlab(int shift) {
+    if (slabs.size() < maxSlabs) {
+      final int slabIndex = slabs.size();
+      slabs.add(ByteBuffer.allocateDirect(SLAB_SIZE));
+      if (slabIndex == slabChunkShift.length) {
+        slabChunkShift = Arrays.copyOf(slabChunkShift, slabIndex * 2);
+        slabLiveChunks = Arrays.copyOf(slabLiveChunks, slabIndex * 2);
+      }
+      slabChunkShift[slabIndex] = shift;
+      return slabIndex;
+    }
+
+    // reassign a slab that has no live chunk left
+    for (int i = 0; i < slabs.size(); i++) {
+      if (slabLiveChunks[i] == 0) {
+        retire(i);
+        slabChunkShift[i] = shift;
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Takes the chunks of an unused slab off the free list of its size class.
+   */
+  private void retire(int slabIndex) {
+    final int shift = slabChunkShift[slabIndex];
+    final long[] chunks = freeChunks[shift];
+    int kept = 0;
+    for (int i = 0; i < freeCount[shift]; i++) {
+      if (slabIndex(chunks[i]) != slabIndex) {
+        chunks[kept++] = chunks[i];
+      }
+    }
+    freeCount[shift] = kept;
+    if (currentSlab[shift] == slabIndex) {
+      currentSlab[shift] = -1;
+    }
+  }
+
+  private void push(int shift, long ref) {
+    long[] chunks = freeChunks[shift];
+    if (chunks == null) {
+      chunks = freeChunks[shift] = new long[64];
+    } else if (freeCount[shift] == chunks.length) {
+      chunks = freeChunks[shift] = Arrays.copyOf(chunks, chunks.length * 2);
+    }
+    chunks[freeCount[shift]++] = ref;
+  }
+
+  private ByteBuffer slab(long ref) {
+    return slabs.get(slabIndex(ref));
+  }
+
+  private static long ref(int slabIndex, int offset) {
+    return ((long) (slabIndex + 1) << 32) | offset;
+  }
+
+  private static int slabIndex(long ref) {
+    return (int) (ref >>> 32) - 1;
+  }
+
+  private static int offset(long ref) {
+    return (int) ref;
+  }
+}
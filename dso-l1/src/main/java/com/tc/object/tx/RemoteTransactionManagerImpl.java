@@ -142,6 +142,8 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
                                       final SessionManager sessionManager, final DSOClientMessageChannel channel,
                                       final SampledRateCounter transactionSizeCounter,
                                       final SampledRateCounter transactionsPerBatchCounter,
+                                      final SampledRateCounter creditsInUseCounter,
+                                      final SampledRateCounter creditStallTimeCounter,
                                       final long ackOnExitTimeoutMs,
                                       final AbortableOperationManager abortableOperationManager,
                                       final TaskRunner taskRunner) {
@@ -154,6 +156,7 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
     this.lockAccounting = new LockAccounting(abortableOperationManager, this);
     this.sequencer = new TransactionSequencer(groupID, transactionIDGenerator, batchFactory, this.lockAccounting,
                                               transactionSizeCounter, transactionsPerBatchCounter,
+                                              creditsInUseCounter, creditStallTimeCounter,
                                               abortableOperationManager, this);
     this.remoteTxManagerRunnable = new RemoteTransactionManagerTask();
     this.flusherTimer = taskRunner.newTimer("RemoteTransactionManager Flusher");
@@ -625,6 +628,7 @@ public class RemoteTransactionManagerImpl implements RemoteTransactionManager {
         this.logger.debug(batchManager.toString());
       }
       batchManager.batchAcknowledged();
+      sequencer.batchAcknowledged();
       if ( !isStoppingOrStopped() ) {
         sendBatches(false);
       }
@@ -1111,6 +1115,7 @@ class BatchManager extends Semaphore {
   public PrettyPrinter prettyPrint(final PrettyPrinter out) {
     synchronized (this.lock) {
       out.indent().print("incompleteBatches count: ").print(this.batchManager.size()).flush();
+      out.indent().print("batch credits in use: ").print(this.sequencer.getCreditsInUse()).flush();
       out.indent().print("batchAccounting: ").print(this.batchAccounting).flush();
       out.indent().print("lockAccounting: ").print(this.lockAccounting).flush();
     }
@@ -33,6 +33,7 @@ import com.tc.util.SequenceID;
 import com.tc.util.Util;
 
 import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
 
 public class TransactionSequencer implements ClearableCallback {
 
@@ -43,6 +44,7 @@ public class TransactionSequencer implements ClearableCallback {
   private static final int                                  MAX_BYTE_SIZE_FOR_BATCH;
   private static final int                                  MAX_PENDING_BATCHES;
   private static final long                                 MAX_SLEEP_TIME_BEFORE_HALT;
+  private static final long                                 CREDIT_WAIT_CHECK_MILLIS = 1000;
   private static final int                                  MIN_AVG_TRANSACTION_SIZE = 500;
 
   static {
@@ -61,18 +63,24 @@ public class TransactionSequencer implements ClearableCallback {
   private final TransactionBatchFactory                     batchFactory;
   private final LinkedList<ClientTransactionBatch>       pendingBatches = new LinkedList<ClientTransactionBatch>();
   private int                                               waiters = 0;
+  private int                                               unacknowledgedBatches = 0;
+  private volatile int                                      creditsInUse = 0;
 
   private ClientTransactionBatch                            currentBatch;
   private final Average                                           currentWritten = new Average();
 
   private final int                                         slowDownStartsAt;
   private final double                                      sleepTimeIncrements;
+  private final boolean                                     creditFlowControl;
+  private final int                                         credits;
   private int                                               txnsPerBatch   = 0;
   private volatile boolean                                  shutdown       = false;
 
   private final LockAccounting                              lockAccounting;
   private final SampledRateCounter                          transactionSizeCounter;
   private final SampledRateCounter                          transactionsPerBatchCounter;
+  private final SampledRateCounter                          creditsInUseCounter;
+  private final SampledRateCounter                          creditStallTimeCounter;
 
   private final GroupID                                     groupID;
   private final TransactionIDGenerator                      transactionIDGenerator;
@@ -83,6 +91,8 @@ public class TransactionSequencer implements ClearableCallback {
                               TransactionBatchFactory batchFactory, LockAccounting lockAccounting,
                               SampledRateCounter transactionSizeCounter,
                               SampledRateCounter transactionsPerBatchCounter,
+                              SampledRateCounter creditsInUseCounter,
+                              SampledRateCounter creditStallTimeCounter,
                               AbortableOperationManager abortableOperationManager,
                               RemoteTransactionManagerImpl remoteTxnMgrImpl) {
 
@@ -93,11 +103,18 @@ public class TransactionSequencer implements ClearableCallback {
     createNewBatch();
     this.slowDownStartsAt = (int) (MAX_PENDING_BATCHES / 2);
     this.sleepTimeIncrements = MAX_SLEEP_TIME_BEFORE_HALT / (MAX_PENDING_BATCHES - this.slowDownStartsAt);
+    this.creditFlowControl = TCPropertiesImpl.getProperties()
+        .getBoolean(TCPropertiesConsts.L1_TRANSACTIONMANAGER_CREDIT_FLOW_CONTROL_ENABLED, false);
+    int configuredCredits = TCPropertiesImpl.getProperties()
+        .getInt(TCPropertiesConsts.L1_TRANSACTIONMANAGER_CREDIT_FLOW_CONTROL_CREDITS, 0);
+    this.credits = configuredCredits > 0 ? configuredCredits : MAX_PENDING_BATCHES;
     if (LOGGING_ENABLED) {
       log_settings();
     }
     this.transactionSizeCounter = transactionSizeCounter;
     this.transactionsPerBatchCounter = transactionsPerBatchCounter;
+    this.creditsInUseCounter = creditsInUseCounter;
+    this.creditStallTimeCounter = creditStallTimeCounter;
     this.abortableOperationManager = abortableOperationManager;
     this.remoteTxnMgrImpl = remoteTxnMgrImpl;
   }
@@ -106,6 +123,8 @@ public class TransactionSequencer implements ClearableCallback {
   public synchronized void cleanup() {
     sequence = new SequenceGenerator(1);
     pendingBatches.clear();
+    unacknowledgedBatches = 0;
+    updateCreditsInUse();
     lockAccounting.cleanup();
     createNewBatch();
     notifyAll();
@@ -116,6 +135,7 @@ public class TransactionSequencer implements ClearableCallback {
                 + MAX_PENDING_BATCHES);
     logger.info("Max Sleep time = " + MAX_SLEEP_TIME_BEFORE_HALT + " Slow down starts at = " + this.slowDownStartsAt
                 + " sleep time increments = " + this.sleepTimeIncrements);
+    logger.info("Credit flow control = " + this.creditFlowControl + " Credits = " + this.credits);
   }
   
   int getMaxPendingSize() {
@@ -143,6 +163,11 @@ public class TransactionSequencer implements ClearableCallback {
   }
 
   public boolean throttleIfNecesary() throws AbortedOperationException {
+    if (this.creditFlowControl) {
+      if (this.creditsInUse < this.credits) { return false; }
+      waitForCredit();
+      return true;
+    }
     int diff = this.pendingBatches.size() - this.slowDownStartsAt;
     if (diff >= 0) {
         waitIfNecessary();
@@ -182,6 +207,7 @@ public class TransactionSequencer implements ClearableCallback {
             throw new AssertionError("no transaction in batch " + this.currentWritten + " " + this.currentBatch);
           }
           this.pendingBatches.add(this.currentBatch);
+          updateCreditsInUse();
           if (LOGGING_ENABLED) {
             log_stats();
           }
@@ -248,6 +274,55 @@ public class TransactionSequencer implements ClearableCallback {
     }
   }
   
+  /**
+   * Blocks until a batch credit is free. Credits come back as the L2 acknowledges batches it has applied, see
+   * {@link #batchAcknowledged()}, so the writers run exactly as fast as the L2 drains its backlog.
+   */
+  private synchronized void waitForCredit() throws AbortedOperationException {
+    boolean isInterrupted = false;
+    final long start = System.nanoTime();
+    try {
+      while (this.creditsInUse >= this.credits) {
+        if (remoteTxnMgrImpl.isRejoinInProgress()) { throw new PlatformRejoinException(); }
+        try {
+          waiters++;
+          // timed only to notice a rejoin, a returned credit notifies
+          wait(CREDIT_WAIT_CHECK_MILLIS);
+        } catch (InterruptedException e) {
+          AbortedOperationUtil.throwExceptionIfAborted(abortableOperationManager);
+          isInterrupted = true;
+        } finally {
+          waiters--;
+        }
+      }
+    } finally {
+      this.creditStallTimeCounter.increment(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), 1);
+      Util.selfInterruptIfNeeded(isInterrupted);
+    }
+  }
+
+  /**
+   * Called when the L2 acknowledges a batch, which gives back the credit the batch held.
+   */
+  public synchronized void batchAcknowledged() {
+    if (this.unacknowledgedBatches > 0) {
+      this.unacknowledgedBatches--;
+    }
+    updateCreditsInUse();
+    if (waiters > 0) {
+      notifyAll();
+    }
+  }
+
+  public int getCreditsInUse() {
+    return this.creditsInUse;
+  }
+
+  private void updateCreditsInUse() {
+    this.creditsInUse = this.pendingBatches.size() + this.unacknowledgedBatches;
+    this.creditsInUseCounter.increment(this.creditsInUse, 1);
+  }
+
   private void log_stats() {
     int size = this.pendingBatches.size();
     if (size == MAX_PENDING_BATCHES) {
@@ -268,6 +343,7 @@ public class TransactionSequencer implements ClearableCallback {
       synchronized (this) {
         batch = this.pendingBatches.poll();
         if (batch != null) { 
+          this.unacknowledgedBatches++;
           if ( waiters > 0 ) {
             notify();
           }
@@ -275,6 +351,8 @@ public class TransactionSequencer implements ClearableCallback {
         } else if (!this.currentBatch.isEmpty()) {
           batch = this.currentBatch;
           createNewBatch();
+          this.unacknowledgedBatches++;
+          updateCreditsInUse();
           return batch;
         } else {
         return null;
@@ -292,6 +370,8 @@ public class TransactionSequencer implements ClearableCallback {
    */
   public synchronized void clear() {
     this.pendingBatches.clear();
+    this.unacknowledgedBatches = 0;
+    updateCreditsInUse();
     createNewBatch();
     notifyAll();
   }
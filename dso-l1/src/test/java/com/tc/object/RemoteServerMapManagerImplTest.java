@@ -0,0 +1,376 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.object;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.tc.abortable.AbortableOperationManager;
+import com.tc.abortable.AbortedOperationException;
+import com.tc.exception.PlatformRejoinException;
+import com.tc.exception.TCNotRunningException;
+import com.tc.exception.TCObjectNotFoundException;
+import com.tc.logging.TCLogger;
+import com.tc.net.ClientID;
+import com.tc.net.GroupID;
+import com.tc.net.NodeID;
+import com.tc.object.msg.ClientHandshakeMessage;
+import com.tc.object.msg.GetValueServerMapRequestMessage;
+import com.tc.object.msg.ServerMapMessageFactory;
+import com.tc.object.servermap.localcache.L1ServerMapLocalCacheManager;
+import com.tc.object.session.SessionID;
+import com.tc.object.session.SessionManager;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
+import com.tc.test.TCTestCase;
+import com.tc.util.concurrent.TaskRunner;
+import com.tc.util.concurrent.Timer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class RemoteServerMapManagerImplTest extends TCTestCase {
+
+  private static final GroupID       GROUP   = new GroupID(0);
+  private static final ObjectID      MAP     = new ObjectID(1);
+  private static final SessionID     SESSION = new SessionID(0);
+
+  private final List<SentRequest>    sent    = new ArrayList<SentRequest>();
+  private AbortableOperationManager  abortableOperationManager;
+  private RemoteServerMapManagerImpl manager;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    ServerMapMessageFactory messageFactory = mock(ServerMapMessageFactory.class);
+    when(messageFactory.newServerMapRequestMessage(any(NodeID.class), any(ServerMapRequestType.class)))
+        .thenAnswer(new Answer<GetValueServerMapRequestMessage>() {
+          @Override
+          public GetValueServerMapRequestMessage answer(InvocationOnMock invocation) {
+            return newMessage();
+          }
+        });
+    SessionManager sessionManager = mock(SessionManager.class);
+    when(sessionManager.isCurrentSession(any(NodeID.class), any(SessionID.class))).thenReturn(true);
+    // timers never fire, batched requests are only sent by sendPendingRequests()
+    TaskRunner taskRunner = mock(TaskRunner.class);
+    when(taskRunner.newTimer(anyString())).thenReturn(mock(Timer.class));
+    abortableOperationManager = mock(AbortableOperationManager.class);
+    when(abortableOperationManager.isAborted()).thenReturn(false);
+    manager = new RemoteServerMapManagerImpl(GROUP, mock(TCLogger.class), mock(RemoteObjectManager.class),
+                                             messageFactory, sessionManager,
+                                             mock(L1ServerMapLocalCacheManager.class), abortableOperationManager,
+                                             taskRunner);
+  }
+
+  public void testLookupsJoinARequestWaitingToBeSent() throws Exception {
+    fillImmediateSendWindow();
+    Future<Object> first = manager.getMappingForKeyAsync(MAP, "key");
+    Future<Object> second = manager.getMappingForKeyAsync(MAP, "key");
+    int sentBefore = sentCount();
+
+    manager.sendPendingRequests();
+    assertEquals(sentBefore + 1, sentCount());
+    SentRequest request = lastSent();
+    assertEquals(Collections.singleton("key"), request.keys);
+
+    respond(request, "value");
+    assertEquals("value", first.get(10, TimeUnit.SECONDS));
+    assertEquals("value", second.get(10, TimeUnit.SECONDS));
+  }
+
+  public void testSentLookupIsNotJoined() throws Exception {
+    Future<Object> first = manager.getMappingForKeyAsync(MAP, "key");
+    assertEquals(1, sentCount());
+    Future<Object> second = manager.getMappingForKeyAsync(MAP, "key");
+    assertEquals(2, sentCount());
+    assertFalse(sent.get(0).requestID.equals(sent.get(1).requestID));
+
+    respond(sent.get(0), "old");
+    respond(sent.get(1), "new");
+    assertEquals("old", first.get(10, TimeUnit.SECONDS));
+    assertEquals("new", second.get(10, TimeUnit.SECONDS));
+  }
+
+  public void testLookupWaitsForTheResponse() throws Exception {
+    final AtomicReference<Object> result = new AtomicReference<Object>();
+    Thread lookup = new Thread() {
+      @Override
+      public void run() {
+        try {
+          result.set(manager.getMappingForKey(MAP, "key"));
+        } catch (AbortedOperationException e) {
+          throw new AssertionError(e);
+        }
+      }
+    };
+    lookup.start();
+    awaitSent(1);
+    awaitWaiting(lookup);
+
+    respond(sent.get(0), "value");
+    lookup.join(10000);
+    assertEquals("value", result.get());
+  }
+
+  public void testMissingMapFailsTheLookup() throws Exception {
+    Future<Object> async = manager.getMappingForKeyAsync(MAP, "key");
+    manager.objectNotFoundFor(SESSION, MAP, sent.get(0).requestID, GROUP);
+    try {
+      async.get(10, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof TCObjectNotFoundException);
+    }
+  }
+
+  public void testInterruptWithoutAbortKeepsWaiting() throws Exception {
+    final AtomicReference<Object> result = new AtomicReference<Object>();
+    final AtomicReference<Boolean> interrupted = new AtomicReference<Boolean>();
+    Thread lookup = new Thread() {
+      @Override
+      public void run() {
+        try {
+          result.set(manager.getMappingForKey(MAP, "key"));
+          interrupted.set(Thread.currentThread().isInterrupted());
+        } catch (AbortedOperationException e) {
+          throw new AssertionError(e);
+        }
+      }
+    };
+    lookup.start();
+    awaitSent(1);
+    awaitWaiting(lookup);
+    lookup.interrupt();
+    awaitWaiting(lookup);
+
+    respond(sent.get(0), "value");
+    lookup.join(10000);
+    assertEquals("value", result.get());
+    assertEquals(Boolean.TRUE, interrupted.get());
+  }
+
+  public void testAbortedLookupIsAbandoned() throws Exception {
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread lookup = new Thread() {
+      @Override
+      public void run() {
+        try {
+          manager.getMappingForKey(MAP, "key");
+        } catch (Throwable t) {
+          failure.set(t);
+        }
+      }
+    };
+    lookup.start();
+    awaitSent(1);
+    awaitWaiting(lookup);
+    when(abortableOperationManager.isAborted()).thenReturn(true);
+    lookup.interrupt();
+    lookup.join(10000);
+    assertTrue(failure.get() instanceof AbortedOperationException);
+    when(abortableOperationManager.isAborted()).thenReturn(false);
+
+    // a late response is dropped and the request is not resent after a reconnect
+    respond(sent.get(0), "value");
+    reconnect();
+    assertEquals(1, sentCount());
+  }
+
+  public void testOutstandingLookupsAreResentOnReconnect() throws Exception {
+    Future<Object> async = manager.getMappingForKeyAsync(MAP, "key");
+    Future<Object> answered = manager.getMappingForKeyAsync(MAP, "answered");
+    respond(sent.get(1), "done");
+    assertEquals("done", answered.get(10, TimeUnit.SECONDS));
+
+    reconnect();
+    assertEquals(3, sentCount());
+    SentRequest resent = lastSent();
+    assertEquals(sent.get(0).requestID, resent.requestID);
+
+    respond(resent, "value");
+    assertEquals("value", async.get(10, TimeUnit.SECONDS));
+  }
+
+  public void testRejoinFailsOutstandingLookups() throws Exception {
+    Future<Object> async = manager.getMappingForKeyAsync(MAP, "key");
+    manager.pause(GROUP, 0);
+    manager.cleanup();
+    try {
+      async.get(10, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof PlatformRejoinException);
+    }
+    try {
+      manager.getMappingForKeyAsync(MAP, "key");
+      fail();
+    } catch (PlatformRejoinException e) {
+      // expected
+    }
+  }
+
+  public void testShutdownFailsOutstandingLookups() throws Exception {
+    Future<Object> async = manager.getMappingForKeyAsync(MAP, "key");
+    manager.shutdown(false);
+    try {
+      async.get(10, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof TCNotRunningException);
+    }
+  }
+
+  public void testCancelledAsyncLookupIsAbandoned() throws Exception {
+    Future<Object> async = manager.getMappingForKeyAsync(MAP, "key");
+    assertTrue(async.cancel(true));
+    assertTrue(async.isCancelled());
+    assertTrue(async.isDone());
+    assertFalse(async.cancel(true));
+    try {
+      async.get();
+      fail();
+    } catch (CancellationException e) {
+      // expected
+    }
+
+    respond(sent.get(0), "value");
+    reconnect();
+    assertEquals(1, sentCount());
+  }
+
+  public void testCancellingOneOfTwoJoinedLookups() throws Exception {
+    fillImmediateSendWindow();
+    Future<Object> cancelled = manager.getMappingForKeyAsync(MAP, "key");
+    Future<Object> kept = manager.getMappingForKeyAsync(MAP, "key");
+    assertTrue(cancelled.cancel(false));
+
+    manager.sendPendingRequests();
+    SentRequest request = lastSent();
+    assertEquals(Collections.singleton("key"), request.keys);
+    respond(request, "value");
+    assertEquals("value", kept.get(10, TimeUnit.SECONDS));
+    assertFalse(kept.isCancelled());
+  }
+
+  private void reconnect() {
+    manager.pause(GROUP, 0);
+    manager.initializeHandshake(new ClientID(1), GROUP, mock(ClientHandshakeMessage.class));
+    manager.unpause(GROUP, 0);
+  }
+
+  private void awaitSent(int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (sentCount() < count) {
+      assertTrue(System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  private static void awaitWaiting(Thread thread) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (thread.getState() != Thread.State.TIMED_WAITING) {
+      assertTrue(System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  /**
+   * Sends lookups until the next one is queued for batching instead of being sent right away.
+   */
+  private void fillImmediateSendWindow() throws Exception {
+    int immediate = TCPropertiesImpl.getProperties()
+        .getInt(TCPropertiesConsts.L1_SERVERMAPMANAGER_REMOTE_MAX_REQUEST_SENT_IMMEDIATELY);
+    for (int i = 0; i < immediate; i++) {
+      manager.getMappingForKeyAsync(MAP, "filler-" + i);
+    }
+    assertEquals(immediate, sentCount());
+  }
+
+  private void respond(SentRequest request, Object value) {
+    ServerMapGetValueResponse response = new ServerMapGetValueResponse(request.requestID);
+    response.put(request.keys.iterator().next(), value);
+    manager.addResponseForKeyValueMapping(SESSION, request.mapID,
+                                          Collections.singletonList(response), GROUP);
+  }
+
+  private int sentCount() {
+    synchronized (sent) {
+      return sent.size();
+    }
+  }
+
+  private SentRequest lastSent() {
+    synchronized (sent) {
+      return sent.get(sent.size() - 1);
+    }
+  }
+
+  private GetValueServerMapRequestMessage newMessage() {
+    final List<SentRequest> added = new ArrayList<SentRequest>();
+    GetValueServerMapRequestMessage message = mock(GetValueServerMapRequestMessage.class);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        Object[] args = invocation.getArguments();
+        added.add(new SentRequest((ServerMapRequestID) args[0], (ObjectID) args[1], (Set<?>) args[2]));
+        return null;
+      }
+    }).when(message).addGetValueRequestTo(any(ServerMapRequestID.class), any(ObjectID.class), any(Set.class));
+    when(message.getRequestCount()).thenAnswer(new Answer<Integer>() {
+      @Override
+      public Integer answer(InvocationOnMock invocation) {
+        return added.size();
+      }
+    });
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        synchronized (sent) {
+          sent.addAll(added);
+        }
+        return null;
+      }
+    }).when(message).send();
+    return message;
+  }
+
+  private static final class SentRequest {
+    final ServerMapRequestID requestID;
+    final ObjectID           mapID;
+    final Set<?>             keys;
+
+    SentRequest(ServerMapRequestID requestID, ObjectID mapID, Set<?> keys) {
+      this.requestID = requestID;
+      this.mapID = mapID;
+      this.keys = keys;
+    }
+  }
+}
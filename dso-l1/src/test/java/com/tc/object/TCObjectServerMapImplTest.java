@@ -26,6 +26,7 @@ import static org.mockito.Mockito.anyMap;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -38,6 +39,7 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.SetMultimap;
 import com.tc.abortable.AbortedOperationException;
 import com.tc.net.GroupID;
+import com.tc.object.bytecode.TCServerMap;
 import com.tc.object.servermap.ExpirableMapEntry;
 import com.tc.object.servermap.localcache.L1ServerMapLocalCacheManager;
 import com.tc.object.servermap.localcache.L1ServerMapLocalCacheStore;
@@ -46,6 +48,8 @@ import com.tc.object.servermap.localcache.ServerMapLocalCache;
 import com.tc.platform.PlatformService;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 
 /**
  * @author tim
@@ -106,6 +110,31 @@ public class TCObjectServerMapImplTest {
     assertThat(result, hasEntry((Object) "baz", null));
   }
 
+  @Test
+  public void testGetValueUnlockedAsyncResolvesTheValue() throws Exception {
+    TCObjectServerMap tcObjectServerMap = new TCObjectServerMapImpl(platformService, clientObjectManager,
+        serverMapManager, objectID, null, mock(TCClass.class), false, globalLocalCacheManager);
+    TCServerMap map = mock(TCServerMap.class);
+    when(map.__tc_managed()).thenReturn(tcObjectServerMap);
+
+    when(serverMapManager.getMappingForKeyAsync(objectID, "foo"))
+        .thenReturn(CompletableFuture.<Object>completedFuture(new CompoundResponse(new ObjectID(3), 1, 2, 3, 4, 5)));
+    when(serverMapManager.getMappingForKeyAsync(objectID, "bar"))
+        .thenReturn(CompletableFuture.<Object>completedFuture(new CompoundResponse(ObjectID.NULL_ID, 0, 0, 0, 0, 0)));
+    ExpirableMapEntry expirableMapEntry = mock(ExpirableMapEntry.class);
+    when(clientObjectManager.lookupObjectQuiet(new ObjectID(3))).thenReturn(expirableMapEntry);
+
+    Future<Object> foo = tcObjectServerMap.getValueUnlockedAsync(map, "foo");
+    Future<Object> bar = tcObjectServerMap.getValueUnlockedAsync(map, "bar");
+    // the value is looked up by whoever asks for it, not when the response arrives
+    verify(clientObjectManager, never()).lookupObjectQuiet(any(ObjectID.class));
+
+    assertThat(foo.get(), is((Object) expirableMapEntry));
+    assertThat(foo.get(), is((Object) expirableMapEntry));
+    assertThat(bar.get(), is((Object) null));
+    verify(clientObjectManager).lookupObjectQuiet(new ObjectID(3));
+  }
+
   @Test
   public void testCleanupReplaceOnTimeout() throws Exception {
     TCObjectServerMap tcObjectServerMap = new TCObjectServerMapImpl(platformService, clientObjectManager,
@@ -0,0 +1,185 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.object.servermap.localcache.impl;
+
+import com.tc.object.ObjectID;
+import com.tc.object.servermap.localcache.AbstractLocalCacheStoreValue;
+import com.tc.object.servermap.localcache.L1ServerMapLocalCacheStore;
+import com.tc.object.servermap.localcache.L1ServerMapLocalCacheStoreListener;
+import com.tc.object.servermap.localcache.LocalCacheStoreEventualValue;
+import com.tc.object.servermap.localcache.LocalCacheStoreFullException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class OffHeapL1ServerMapLocalCacheStoreTest extends TestCase {
+
+  private OffHeapL1ServerMapLocalCacheStore<Object, Object> store;
+  private Map<Object, Object>                               evicted;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    evicted = new HashMap<Object, Object>();
+    store = createStore(64 * 1024 * 1024);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    store.dispose();
+    super.tearDown();
+  }
+
+  public void testPutGetRemove() {
+    AbstractLocalCacheStoreValue value = eventualValue("key", 10);
+    assertNull(store.put("key", value));
+    assertNull(store.put(new ObjectID(10), "key"));
+
+    assertEquals(value, store.get("key"));
+    assertEquals("key", store.get(new ObjectID(10)));
+    assertEquals(1, store.size());
+
+    AbstractLocalCacheStoreValue newValue = eventualValue("key", 11);
+    assertEquals(value, store.put("key", newValue));
+    assertEquals(newValue, store.get("key"));
+
+    assertNull(store.remove("key", value));
+    assertEquals(newValue, store.remove("key", newValue));
+    assertEquals("key", store.remove(new ObjectID(10)));
+    assertNull(store.get("key"));
+    assertNull(store.get(new ObjectID(10)));
+    assertEquals(0, store.size());
+  }
+
+  public void testManyKeys() {
+    for (int i = 0; i < 10000; i++) {
+      store.put("key-" + i, eventualValue("key-" + i, i));
+      store.put(new ObjectID(i), "key-" + i);
+      store.put((long) i, "long-" + i);
+    }
+    assertEquals(20000, store.size());
+    List keys = store.getKeys();
+    assertEquals(30000, keys.size());
+    assertTrue(keys.contains("key-42"));
+    assertTrue(keys.contains(42L));
+    assertTrue(keys.contains(new ObjectID(42)));
+
+    for (int i = 0; i < 10000; i += 2) {
+      assertNotNull(store.remove("key-" + i));
+    }
+    for (int i = 0; i < 10000; i++) {
+      assertEquals(i % 2 == 0 ? null : eventualValue("key-" + i, i), store.get("key-" + i));
+      assertEquals("key-" + i, store.get(new ObjectID(i)));
+      assertEquals("long-" + i, store.get((long) i));
+    }
+    assertTrue(evicted.isEmpty());
+
+    store.clear();
+    assertEquals(0, store.size());
+    assertNull(store.get("key-1"));
+  }
+
+  public void testKeysAreComparedInFull() {
+    store.put("ab", "short");
+    store.put("abc", "long");
+    store.put("1", "string");
+    store.put(1L, "number");
+
+    assertEquals("short", store.get("ab"));
+    assertEquals("long", store.get("abc"));
+    assertEquals("string", store.get("1"));
+    assertEquals("number", store.get(1L));
+    assertNull(store.get("a"));
+    assertNull(store.get("abd"));
+    assertNull(store.get(2L));
+
+    assertEquals("short", store.remove("ab"));
+    assertNull(store.get("ab"));
+    assertEquals("long", store.get("abc"));
+  }
+
+  public void testEvictsBeyondMaxElements() {
+    store.setMaxEntriesLocalHeap(100);
+    for (int i = 0; i < 150; i++) {
+      store.put("key-" + i, eventualValue("key-" + i, i));
+    }
+    assertEquals(100, store.size());
+    assertEquals(50, evicted.size());
+    for (Map.Entry<Object, Object> e : evicted.entrySet()) {
+      assertNull(store.get(e.getKey()));
+      assertEquals(e.getKey(), ((AbstractLocalCacheStoreValue) e.getValue()).getValueObject());
+    }
+  }
+
+  public void testEvictsWhenOffHeapIsFull() {
+    store.dispose();
+    // the minimum of 4 slabs per segment
+    store = createStore(0);
+    byte[] payload = new byte[64 * 1024];
+    for (int i = 0; i < 1000; i++) {
+      store.put("key-" + i, new LocalCacheStoreEventualValue(new ObjectID(i), payload));
+    }
+    assertTrue(store.size() < 1000);
+    assertEquals(1000, store.size() + evicted.size());
+    assertTrue(store.offHeapSizeInBytes() <= 16 * (4 * OffHeapSlabAllocator.SLAB_SIZE + 64 * 1024));
+  }
+
+  public void testRecordTooLarge() {
+    try {
+      store.put("key", new LocalCacheStoreEventualValue(new ObjectID(1), new byte[2 * OffHeapSlabAllocator.SLAB_SIZE]));
+      fail();
+    } catch (LocalCacheStoreFullException e) {
+      // expected
+    }
+    assertNull(store.get("key"));
+  }
+
+  private OffHeapL1ServerMapLocalCacheStore<Object, Object> createStore(long maxBytes) {
+    OffHeapL1ServerMapLocalCacheStore<Object, Object> newStore = new OffHeapL1ServerMapLocalCacheStore<Object, Object>(
+                                                                                                                   maxBytes,
+                                                                                                                   0);
+    newStore.addListener(new L1ServerMapLocalCacheStoreListener<Object, Object>() {
+      @Override
+      public void notifyElementEvicted(Object key, Object value) {
+        evicted.put(key, value);
+      }
+
+      @Override
+      public void notifyElementsEvicted(Map<Object, Object> evictedElements) {
+        evicted.putAll(evictedElements);
+      }
+
+      @Override
+      public void notifyElementExpired(Object key, Object value) {
+        evicted.put(key, value);
+      }
+
+      @Override
+      public void notifyDisposed(L1ServerMapLocalCacheStore s) {
+        //
+      }
+    });
+    return newStore;
+  }
+
+  private static AbstractLocalCacheStoreValue eventualValue(String key, long oid) {
+    return new LocalCacheStoreEventualValue(new ObjectID(oid), key);
+  }
+}
@@ -78,6 +78,7 @@ public class RemoteTransactionManagerTest extends TestCase {
   private TransactionBatchAccounting                batchAccounting;
   private CounterManager                            counterManager;
   private SampledRateCounter                        transactionsPerBatchCounter, transactionSizeCounter;
+  private SampledRateCounter                        creditsInUseCounter, creditStallTimeCounter;
 
   private final TCThreadGroup                       threadGroup = new TCThreadGroup(
                                                                                     new ThrowableHandlerImpl(
@@ -94,11 +95,16 @@ public class RemoteTransactionManagerTest extends TestCase {
         .createCounter(new SampledRateCounterConfig(1, 900, true));
     this.transactionsPerBatchCounter = (SampledRateCounter) this.counterManager
         .createCounter(new SampledRateCounterConfig(1, 900, true));
+    this.creditsInUseCounter = (SampledRateCounter) this.counterManager
+        .createCounter(new SampledRateCounterConfig(1, 900, true));
+    this.creditStallTimeCounter = (SampledRateCounter) this.counterManager
+        .createCounter(new SampledRateCounterConfig(1, 900, true));
 
     this.manager = new RemoteTransactionManagerImpl(GroupID.NULL_ID, logger, this.batchFactory,
                                                     new TransactionIDGenerator(), new NullSessionManager(),
                                                     new MockChannel(), this.transactionSizeCounter,
-                                                    this.transactionsPerBatchCounter, 0,
+                                                    this.transactionsPerBatchCounter, this.creditsInUseCounter,
+                                                    this.creditStallTimeCounter, 0,
                                                     new NullAbortableOperationManager(), taskRunner);
     this.manager.setFixedBatchSize(10);
     this.batchAccounting = this.manager.getBatchAccounting();
@@ -128,7 +134,8 @@ public class RemoteTransactionManagerTest extends TestCase {
     this.manager = new RemoteTransactionManagerImpl(GroupID.NULL_ID, logger, this.batchFactory,
                                                     new TransactionIDGenerator(), new NullSessionManager(),
                                                     new MockChannel(), this.transactionSizeCounter,
-                                                    this.transactionsPerBatchCounter, ackOnExitTimeout * 1000,
+                                                    this.transactionsPerBatchCounter, this.creditsInUseCounter,
+                                                    this.creditStallTimeCounter, ackOnExitTimeout * 1000,
                                                     new NullAbortableOperationManager(), taskRunner);
     this.batchAccounting = this.manager.getBatchAccounting();
 
@@ -164,7 +171,8 @@ public class RemoteTransactionManagerTest extends TestCase {
     this.manager = new RemoteTransactionManagerImpl(GroupID.NULL_ID, logger, this.batchFactory,
                                                     new TransactionIDGenerator(), new NullSessionManager(),
                                                     new MockChannel(), this.transactionSizeCounter,
-                                                    this.transactionsPerBatchCounter, ackOnExitTimeout * 1000,
+                                                    this.transactionsPerBatchCounter, this.creditsInUseCounter,
+                                                    this.creditStallTimeCounter, ackOnExitTimeout * 1000,
                                                     new NullAbortableOperationManager(), taskRunner);
     this.batchAccounting = this.manager.getBatchAccounting();
 
@@ -54,12 +54,18 @@ public class TransactionSequencerTest extends TestCase {
   protected void setUp() throws Exception {
     TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.L1_TRANSACTIONMANAGER_MAXPENDING_BATCHES,
                                                  MAX_PENDING_BATCHES + "");
+    this.txnSequencer = createSequencer();
+  }
+
+  private TransactionSequencer createSequencer() {
     RemoteTransactionManagerImpl mockedRTMI = Mockito.mock(RemoteTransactionManagerImpl.class);
-    this.txnSequencer = new TransactionSequencer(GroupID.NULL_ID, new TransactionIDGenerator(),
+    return new TransactionSequencer(GroupID.NULL_ID, new TransactionIDGenerator(),
                                                  new TestTransactionBatchFactory(),
                                                  new TestLockAccounting(new NullAbortableOperationManager(), mockedRTMI),
                                                  new SampledRateCounterImpl(new SampledRateCounterConfig(1, 1, false)),
                                                  new SampledRateCounterImpl(new SampledRateCounterConfig(1, 1, false)),
+                                                 new SampledRateCounterImpl(new SampledRateCounterConfig(1, 1, false)),
+                                                 new SampledRateCounterImpl(new SampledRateCounterConfig(1, 1, false)),
                                                  new NullAbortableOperationManager(),
  mockedRTMI);
   }
@@ -159,6 +165,60 @@ public class TransactionSequencerTest extends TestCase {
     assertFalse(failed.get());
   }
 
+  public void testCreditFlowControl() throws Exception {
+    folding = false;
+    TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.L1_TRANSACTIONMANAGER_CREDIT_FLOW_CONTROL_ENABLED,
+                                                 "true");
+    TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.L1_TRANSACTIONMANAGER_CREDIT_FLOW_CONTROL_CREDITS,
+                                                 "3");
+    try {
+      this.txnSequencer = createSequencer();
+    } finally {
+      TCPropertiesImpl.getProperties()
+          .setProperty(TCPropertiesConsts.L1_TRANSACTIONMANAGER_CREDIT_FLOW_CONTROL_ENABLED, "false");
+      TCPropertiesImpl.getProperties()
+          .setProperty(TCPropertiesConsts.L1_TRANSACTIONMANAGER_CREDIT_FLOW_CONTROL_CREDITS, "0");
+    }
+
+    // every transaction after the first seals the previous batch, which then holds a credit
+    for (int i = 0; i < 4; i++) {
+      assertFalse(this.txnSequencer.throttleIfNecesary());
+      this.txnSequencer.addTransaction(new TestClientTransaction());
+    }
+    assertEquals(3, this.txnSequencer.getCreditsInUse());
+
+    final AtomicBoolean throttled = new AtomicBoolean(false);
+    final Thread writer = new Thread("writer") {
+      @Override
+      public void run() {
+        try {
+          throttled.set(txnSequencer.throttleIfNecesary());
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    writer.setDaemon(true);
+    writer.start();
+    CallableWaiter.waitOnCallable(new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        return writer.getState() == State.TIMED_WAITING;
+      }
+    });
+
+    // sending a batch does not give its credit back, only the acknowledgement does
+    assertNotNull(this.txnSequencer.getNextBatch());
+    assertEquals(3, this.txnSequencer.getCreditsInUse());
+    writer.join(500);
+    assertTrue(writer.isAlive());
+
+    this.txnSequencer.batchAcknowledged();
+    writer.join();
+    assertTrue(throttled.get());
+    assertEquals(2, this.txnSequencer.getCreditsInUse());
+  }
+
   private static class Producer implements Runnable {
     private final TransactionSequencer txnSequencer;
 
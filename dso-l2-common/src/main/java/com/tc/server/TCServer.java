@@ -97,6 +97,8 @@ public interface TCServer {
 
   String getBackupFailureReason(String name) throws IOException;
 
+  int getBackupProgress(String name) throws IOException;
+
   Map<String, String> getBackupStatuses() throws IOException;
 
   void backup(String name) throws IOException;
@@ -0,0 +1,36 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.l2.context;
+
+import com.tc.async.api.EventContext;
+
+/**
+ * A step of a delta passive resync that walks over all the objects of an L2 and so should not hold up the stage that
+ * received the message asking for it.
+ */
+public class RangeResyncContext implements EventContext {
+
+  private final Runnable task;
+
+  public RangeResyncContext(Runnable task) {
+    this.task = task;
+  }
+
+  public void run() {
+    task.run();
+  }
+}
@@ -31,6 +31,7 @@ import com.tc.l2.handler.L2IndexSyncHandler;
 import com.tc.l2.handler.L2IndexSyncRequestHandler;
 import com.tc.l2.handler.L2ObjectSyncHandler;
 import com.tc.l2.handler.L2ObjectSyncRequestHandler;
+import com.tc.l2.handler.L2RangeResyncHandler;
 import com.tc.l2.handler.L2ObjectSyncSendHandler;
 import com.tc.l2.handler.L2StateChangeHandler;
 import com.tc.l2.handler.L2StateMessageHandler;
@@ -198,6 +199,8 @@ public class L2HACoordinator implements L2Coordinator, GroupEventsListener, Sequ
                                                                  new L2ObjectSyncRequestHandler(this.sequenceGenerator,
                                                                                                 objectStateManager), 1,
                                                                  MAX_STAGE_SIZE).getSink();
+    final Sink rangeResyncSink = stageManager.createStage(ServerConfigurationContext.PASSIVE_RANGE_RESYNC_STAGE,
+                                                          new L2RangeResyncHandler(), 1, MAX_STAGE_SIZE).getSink();
     final Sink objectsSyncSink = stageManager.createStage(ServerConfigurationContext.OBJECTS_SYNC_STAGE,
                                                           new L2ObjectSyncHandler(serverTransactionFactory,
                                                                                   objectSyncAckManager, this.server
@@ -242,10 +245,10 @@ public class L2HACoordinator implements L2Coordinator, GroupEventsListener, Sequ
 
     this.rObjectManager = new ReplicatedObjectManagerImpl(this.groupManager, this.stateManager,
                                                           this.l2PassiveSyncStateManager, this.l2ObjectStateManager,
-                                                          objectManager, transactionManager, objectsSyncRequestSink,
-                                                          indexSyncRequestSink, transactionRelaySink,
-                                                          this.sequenceGenerator, this.indexSequenceGenerator,
-                                                          dataStorage, statePersistor);
+                                                          objectManager, transactionManager, this.rTxnManager,
+                                                          objectsSyncRequestSink, indexSyncRequestSink,
+                                                          transactionRelaySink, rangeResyncSink, this.sequenceGenerator,
+                                                          this.indexSequenceGenerator, dataStorage, statePersistor);
 
     objectStateManager.registerForL2ObjectStateChangeEvents(this.rObjectManager);
     l2IndexStateManager.registerForL2IndexStateChangeEvents(this.rObjectManager);
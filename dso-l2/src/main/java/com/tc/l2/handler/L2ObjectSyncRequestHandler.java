@@ -56,6 +56,10 @@ public class L2ObjectSyncRequestHandler extends AbstractEventHandler {
   private static final int           L2_OBJECT_SYNC_BATCH_SIZE       = TCPropertiesImpl
                                                                          .getProperties()
                                                                          .getInt(TCPropertiesConsts.L2_OBJECTMANAGER_PASSIVE_SYNC_BATCH_SIZE);
+  private static final boolean       STREAMING_SYNC_ENABLED          = TCPropertiesImpl
+                                                                         .getProperties()
+                                                                         .getBoolean(TCPropertiesConsts.L2_OBJECTMANAGER_PASSIVE_SYNC_STREAMING_ENABLED,
+                                                                                     false);
 
   private static final int           MAX_L2_OBJECT_SYNC_BATCH_SIZE   = 5000;
   private static final int           MAX_L2_OBJECT_SYNC_MESSAGE_SIZE = 250 * 1024 * 1024;
@@ -101,11 +105,17 @@ public class L2ObjectSyncRequestHandler extends AbstractEventHandler {
     NodeID nodeID = request.getNodeID();
     ManagedObjectSyncContext mosc = l2ObjectStateMgr.getSomeObjectsToSyncContext(nodeID, L2_OBJECT_SYNC_BATCH_SIZE);
     if (mosc != null) {
-      doSyncObjectsDehydrate(mosc);
+      if (doSyncObjectsDehydrate(mosc) && STREAMING_SYNC_ENABLED && mosc.hasMore()) {
+        // Dehydrate the next batch while this one is sent, as long as the window of unacked batches allows it
+        l2ObjectStateMgr.syncMore(nodeID);
+      }
+    } else if (STREAMING_SYNC_ENABLED) {
+      // Nothing left to hand out right now, give the window slot back
+      l2ObjectStateMgr.ackSync(nodeID);
     }
   }
 
-  private void doSyncObjectsDehydrate(ManagedObjectSyncContext context) {
+  private boolean doSyncObjectsDehydrate(ManagedObjectSyncContext context) {
     final ManagedObjectSyncContext mosc = context;
     ObjectIDSet oids = mosc.getRequestedObjectIDs();
 
@@ -120,7 +130,7 @@ public class L2ObjectSyncRequestHandler extends AbstractEventHandler {
       logger.error("Error generating a sequence number ", e);
       this.groupManager.zapNode(mosc.getNodeID(), L2HAZapNodeRequestProcessor.PROGRAM_ERROR,
                                 "Error sending objects." + L2HAZapNodeRequestProcessor.getErrorString(e));
-      return;
+      return false;
     }
 
     final ObjectStringSerializer serializer = new ObjectStringSerializerImpl();
@@ -149,6 +159,7 @@ public class L2ObjectSyncRequestHandler extends AbstractEventHandler {
     }
     mosc.setDehydratedBytes(synced, notSynced, out.toArray(), synced.size(), serializer, deletedOids);
     this.sendSink.add(mosc);
+    return true;
   }
 
   @Override
@@ -54,6 +54,10 @@ public class L2ObjectSyncSendHandler extends AbstractEventHandler {
   private static final long              TIME_TO_THROTTLE_ON_OBJECT_SEND      = TCPropertiesImpl
                                                                                   .getProperties()
                                                                                   .getLong(TCPropertiesConsts.L2_OBJECTMANAGER_PASSIVE_SYNC_THROTTLE_TIME);
+  private static final boolean           STREAMING_SYNC_ENABLED               = TCPropertiesImpl
+                                                                                  .getProperties()
+                                                                                  .getBoolean(TCPropertiesConsts.L2_OBJECTMANAGER_PASSIVE_SYNC_STREAMING_ENABLED,
+                                                                                              false);
 
   private final SyncLogger               syncLogger                           = new SyncLogger();
 
@@ -76,7 +80,10 @@ public class L2ObjectSyncSendHandler extends AbstractEventHandler {
       if (sendObjects(mosc)) {
         if (mosc.hasMore()) {
           throttleOnObjectSync();
-          this.objectStateManager.syncMore(mosc.getNodeID());
+          // when streaming, the request stage already asked for the next batch
+          if (!STREAMING_SYNC_ENABLED) {
+            this.objectStateManager.syncMore(mosc.getNodeID());
+          }
         }
       }
     } else if (context instanceof ServerTxnAckMessage) {
@@ -0,0 +1,118 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.l2.msg;
+
+import com.tc.io.TCByteBufferInput;
+import com.tc.io.TCByteBufferOutput;
+import com.tc.l2.objectserver.ObjectIDRangeDigests;
+import com.tc.net.groups.AbstractGroupMessage;
+
+import java.io.IOException;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Exchanged between the active and a restarted passive before a delta object sync. The passive sends the digests of
+ * the objects it kept, the active answers with the ranges whose digests differ and the passive acknowledges once it
+ * dropped its objects in those ranges.
+ */
+public class ObjectRangeDigestMessage extends AbstractGroupMessage {
+
+  public static final int      DIGESTS        = 0x00;
+  public static final int      RESYNC_RANGES  = 0x01;
+  public static final int      RANGES_DROPPED = 0x02;
+
+  private ObjectIDRangeDigests digests;
+  private SortedSet<Long>      ranges;
+
+  // To make serialization happy
+  public ObjectRangeDigestMessage() {
+    super(-1);
+  }
+
+  private ObjectRangeDigestMessage(int type) {
+    super(type);
+  }
+
+  public static ObjectRangeDigestMessage createDigestsMessage(ObjectIDRangeDigests digests) {
+    ObjectRangeDigestMessage msg = new ObjectRangeDigestMessage(DIGESTS);
+    msg.digests = digests;
+    return msg;
+  }
+
+  public static ObjectRangeDigestMessage createResyncRangesMessage(SortedSet<Long> ranges) {
+    ObjectRangeDigestMessage msg = new ObjectRangeDigestMessage(RESYNC_RANGES);
+    msg.ranges = ranges;
+    return msg;
+  }
+
+  public static ObjectRangeDigestMessage createRangesDroppedMessage() {
+    return new ObjectRangeDigestMessage(RANGES_DROPPED);
+  }
+
+  @Override
+  protected void basicDeserializeFrom(TCByteBufferInput in) throws IOException {
+    switch (getType()) {
+      case DIGESTS:
+        digests = ObjectIDRangeDigests.readFrom(in);
+        break;
+      case RESYNC_RANGES:
+        ranges = new TreeSet<Long>();
+        for (int i = in.readInt(); i > 0; i--) {
+          ranges.add(in.readLong());
+        }
+        break;
+      case RANGES_DROPPED:
+        break;
+      default:
+        throw new AssertionError("Unknown type : " + getType());
+    }
+  }
+
+  @Override
+  protected void basicSerializeTo(TCByteBufferOutput out) {
+    switch (getType()) {
+      case DIGESTS:
+        digests.writeTo(out);
+        break;
+      case RESYNC_RANGES:
+        out.writeInt(ranges.size());
+        for (Long range : ranges) {
+          out.writeLong(range);
+        }
+        break;
+      case RANGES_DROPPED:
+        break;
+      default:
+        throw new AssertionError("Unknown type : " + getType());
+    }
+  }
+
+  public ObjectIDRangeDigests getDigests() {
+    return digests;
+  }
+
+  public SortedSet<Long> getRanges() {
+    return ranges;
+  }
+
+  @Override
+  public String toString() {
+    return "ObjectRangeDigestMessage [ type = " + getType() + ", digests = " + digests + ", ranges = "
+           + (ranges == null ? null : ranges.size()) + " ]";
+  }
+}
@@ -24,4 +24,9 @@ public interface L2ObjectStateListener {
 
   public void objectSyncCompleteFor(NodeID nodeID);
 
+  /**
+   * The passive sent range digests of the objects it kept, they need to be compared before the sync can start.
+   */
+  public void compareRangeDigestsFor(NodeID nodeID);
+
 }
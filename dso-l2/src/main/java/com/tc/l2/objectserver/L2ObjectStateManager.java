@@ -21,6 +21,7 @@ import com.tc.net.NodeID;
 
 import java.util.Collection;
 import java.util.Set;
+import java.util.SortedSet;
 
 public interface L2ObjectStateManager {
 
@@ -48,4 +49,23 @@ public interface L2ObjectStateManager {
 
   public void ackSync(NodeID nodeID);
 
+  /**
+   * Keeps the range digests a restarted passive sent ahead of its sync begin response. The objects to sync to it are
+   * then narrowed down to the ranges where they differ from the local ones.
+   */
+  public void setRangeDigests(NodeID nodeID, ObjectIDRangeDigests digests);
+
+  /**
+   * Compares the local range digests with the ones the passive sent and keeps only the objects in differing ranges as
+   * missing. This walks all the objects, so it should not run on a stage that other messages are waiting on.
+   *
+   * @return the differing ranges, or null if the passive is gone
+   */
+  public SortedSet<Long> restrictToDifferingRanges(NodeID nodeID);
+
+  /**
+   * The passive dropped its objects in the differing ranges, the objects missing in those ranges can be synced now.
+   */
+  public void differingRangesDropped(NodeID nodeID);
+
 }
\ No newline at end of file
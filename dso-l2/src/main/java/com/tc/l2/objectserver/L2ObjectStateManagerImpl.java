@@ -34,9 +34,14 @@ import com.tc.util.concurrent.CopyOnWriteSequentialMap;
 import com.tc.util.concurrent.ThrottledTaskExecutor;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
@@ -48,12 +53,25 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
   private final CopyOnWriteArrayList<L2ObjectStateListener>         listeners              = new CopyOnWriteArrayList<L2ObjectStateListener>();
   private final ServerTransactionManager transactionManager;
   private final CopyOnWriteSequentialMap<NodeID, SyncExecutorContext> syncExecutorContextMap = new CopyOnWriteSequentialMap<NodeID, SyncExecutorContext>();
+  private final Map<NodeID, ObjectIDRangeDigests>                   rangeDigests           = new ConcurrentHashMap<NodeID, ObjectIDRangeDigests>();
   private final int                      syncMaxPendingMsgs;
+  private final boolean                  streamingSync;
   private long                           currentSessionId       = 0;
 
   public L2ObjectStateManagerImpl(final ObjectManager objectManager, final ServerTransactionManager transactionManager) {
+    this(objectManager, transactionManager, TCPropertiesImpl.getProperties()
+        .getBoolean(TCPropertiesConsts.L2_OBJECTMANAGER_PASSIVE_SYNC_STREAMING_ENABLED, false));
+  }
+
+  /**
+   * @param streamingSync when true, more than one batch of objects can be handed out to a syncing passive before the
+   *        previous ones are closed.
+   */
+  public L2ObjectStateManagerImpl(final ObjectManager objectManager, final ServerTransactionManager transactionManager,
+                                  final boolean streamingSync) {
     this.objectManager = objectManager;
     this.transactionManager = transactionManager;
+    this.streamingSync = streamingSync;
     int maxSyncPendingMsgs = TCPropertiesImpl.getProperties()
         .getInt(TCPropertiesConsts.L2_OBJECTMANAGER_PASSIVE_SYNC_THROTTLE_PENDING_MSGS);
     if (maxSyncPendingMsgs <= 0) {
@@ -81,6 +99,12 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
     }
   }
 
+  private void fireCompareRangeDigestsEvent(final NodeID nodeID) {
+    for (L2ObjectStateListener l : this.listeners) {
+      l.compareRangeDigestsFor(nodeID);
+    }
+  }
+
   @Override
   public int getL2Count() {
     return this.nodes.size();
@@ -93,6 +117,7 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
       logger.warn("L2State Not found for " + nodeID);
     }
     this.syncExecutorContextMap.remove(nodeID);
+    this.rangeDigests.remove(nodeID);
   }
 
   @Override
@@ -104,7 +129,7 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
         logger.warn("L2State already present for " + nodeID + ". " + l2State);
         return false;
       }
-      l2State = new L2ObjectStateImpl(nodeID, this.currentSessionId++);
+      l2State = new L2ObjectStateImpl(nodeID, this.currentSessionId++, this.rangeDigests.remove(nodeID));
       this.nodes.put(nodeID, l2State);
     }
     final L2ObjectStateImpl _l2State = l2State;
@@ -139,7 +164,11 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
   public void close(final ManagedObjectSyncContext mosc) {
     final L2ObjectStateImpl l2State = this.nodes.get(mosc.getNodeID());
     if (l2State != null) {
-      l2State.close(mosc);
+      if (l2State.close(mosc) && this.streamingSync) {
+        // Objects that did not fit in the message went back to the missing set, later batches may already have seen
+        // it empty.
+        syncMore(mosc.getNodeID());
+      }
     } else {
       logger.warn("close() : L2 State Object Not found for " + mosc.getNodeID());
     }
@@ -185,6 +214,32 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
     }
   }
 
+  @Override
+  public void setRangeDigests(final NodeID nodeID, final ObjectIDRangeDigests digests) {
+    this.rangeDigests.put(nodeID, digests);
+  }
+
+  @Override
+  public SortedSet<Long> restrictToDifferingRanges(final NodeID nodeID) {
+    final L2ObjectStateImpl l2State = this.nodes.get(nodeID);
+    if (l2State != null) {
+      return l2State.restrictToDifferingRanges();
+    } else {
+      logger.warn("restrictToDifferingRanges() : L2 State Object Not found for " + nodeID);
+      return null;
+    }
+  }
+
+  @Override
+  public void differingRangesDropped(final NodeID nodeID) {
+    final L2ObjectStateImpl l2State = this.nodes.get(nodeID);
+    if (l2State != null) {
+      l2State.differingRangesDropped();
+    } else {
+      logger.warn("differingRangesDropped() : L2 State Object Not found for " + nodeID);
+    }
+  }
+
   @Override
   public String toString() {
     StringBuilder strBuilder = new StringBuilder();
@@ -214,6 +269,8 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
 
   private static final State START                  = new State("START");
   private static final State READY_TO_SYNC          = new State("READY_TO_SYNC");
+  private static final State COMPARING_DIGESTS      = new State("COMPARING_DIGESTS");
+  private static final State DROPPING_RANGES        = new State("DROPPING_RANGES");
   private static final State SYNC_STARTED           = new State("SYNC_STARTED");
   private static final State IN_SYNC_PENDING_NOTIFY = new State("IN_SYNC_PENDING_NOTIFY");
   private static final State IN_SYNC                = new State("IN_SYNC");
@@ -227,30 +284,35 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
 
     private volatile State           state          = START;
 
-    private ManagedObjectSyncContext syncingContext = null;
+    private final Set<ManagedObjectSyncContext> syncingContexts = Collections
+                                                                    .newSetFromMap(new IdentityHashMap<ManagedObjectSyncContext, Boolean>());
 
     private int                      totalObjectsToSync;
     private int                      totalObjectsSynced;
     private final long               sessionId;
+    private ObjectIDRangeDigests     passiveDigests;
 
-    public L2ObjectStateImpl(final NodeID nodeID, final long currentSessionId) {
+    public L2ObjectStateImpl(final NodeID nodeID, final long currentSessionId, final ObjectIDRangeDigests passiveDigests) {
       this.nodeID = nodeID;
       this.sessionId = currentSessionId;
+      this.passiveDigests = passiveDigests;
     }
 
-    private void close(final ManagedObjectSyncContext mosc) {
+    /**
+     * @return true if objects of this context that were not synced were put back to the missing set
+     */
+    private synchronized boolean close(final ManagedObjectSyncContext mosc) {
       if (this.sessionId != mosc.getSessionId()) {
         logger.warn("An old request for object sync for " + this.nodeID + " is being ignored");
-        return;
+        return false;
       }
-      if (mosc != this.syncingContext) { throw new AssertionError("expected: " + this.syncingContext + " actual: "
-                                                                  + mosc); }
-      this.syncingContext = null;
+      if (!this.syncingContexts.remove(mosc)) { throw new AssertionError("expected one of: " + this.syncingContexts
+                                                                         + " actual: " + mosc); }
       // NotSynchedOids are picked up first as its a stored set and thus prefetching that happened is not a waste.
-      missingOids.addAll(mosc.getNotSynchedOids());
+      final boolean notSynced = missingOids.addAll(mosc.getNotSynchedOids());
       totalObjectsSynced += mosc.getSynchedOids().size();
       totalObjectsSynced += mosc.getDeletedOids().size();
-      if (this.missingOids.isEmpty()) {
+      if (this.missingOids.isEmpty() && this.syncingContexts.isEmpty()) {
         this.state = IN_SYNC_PENDING_NOTIFY;
         L2ObjectStateManagerImpl.this.transactionManager
             .callBackOnTxnsInSystemCompletion(new TxnsInSystemCompletionListener() {
@@ -260,18 +322,26 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
               }
             });
       }
+      return notSynced;
     }
 
-    private ManagedObjectSyncContext getSomeObjectsToSyncContext(final int count) {
-      Assert.assertTrue(this.state == SYNC_STARTED);
-      Assert.assertNull(this.syncingContext);
+    private synchronized ManagedObjectSyncContext getSomeObjectsToSyncContext(final int count) {
+      if (L2ObjectStateManagerImpl.this.streamingSync) {
+        // Everything left is in flight, the batch that closes last hands out what it could not send.
+        if (this.state != SYNC_STARTED || this.missingOids.isEmpty()) { return null; }
+      } else {
+        Assert.assertTrue(this.state == SYNC_STARTED);
+        Assert.assertTrue(this.syncingContexts.isEmpty());
+      }
       if (isRootsMissing()) { return getMissingRootsSynccontext(); }
       final ObjectIDSet oids = new BitSetObjectIDSet();
       addSomeMissingObjectIDsTo(oids, count);
-      this.syncingContext = new ManagedObjectSyncContext(this.nodeID, oids, !this.missingOids.isEmpty(),
-                                                         this.totalObjectsToSync, this.totalObjectsSynced,
-                                                         this.sessionId);
-      return this.syncingContext;
+      final ManagedObjectSyncContext mosc = new ManagedObjectSyncContext(this.nodeID, oids,
+                                                                         !this.missingOids.isEmpty(),
+                                                                         this.totalObjectsToSync,
+                                                                         this.totalObjectsSynced, this.sessionId);
+      this.syncingContexts.add(mosc);
+      return mosc;
     }
 
     private void addSomeMissingObjectIDsTo(final ObjectIDSet oids, int count) {
@@ -294,11 +364,14 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
         // Get some objects anyways
         addSomeMissingObjectIDsTo(oids, this.missingRoots.size());
       }
-      this.syncingContext = new ManagedObjectSyncContext(this.nodeID, new HashMap<String, ObjectID>(this.missingRoots), oids,
-                                                         !this.missingOids.isEmpty(), this.totalObjectsToSync,
-                                                         this.totalObjectsSynced, this.sessionId);
+      final ManagedObjectSyncContext mosc = new ManagedObjectSyncContext(this.nodeID,
+                                                                         new HashMap<String, ObjectID>(this.missingRoots),
+                                                                         oids, !this.missingOids.isEmpty(),
+                                                                         this.totalObjectsToSync,
+                                                                         this.totalObjectsSynced, this.sessionId);
       this.missingRoots.clear();
-      return this.syncingContext;
+      this.syncingContexts.add(mosc);
+      return mosc;
     }
 
     private boolean isRootsMissing() {
@@ -313,7 +386,10 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
       logger.info(this.nodeID + " : is missing " + this.missingOids.size() + " out of " + objectCount
                   + " objects of which missing roots = " + this.missingRoots.size());
       final int missingCount = this.missingOids.size();
-      if (missingCount == 0) {
+      if (this.passiveDigests != null) {
+        // The passive kept its objects, it could still have to drop some even if there is nothing to send
+        this.state = COMPARING_DIGESTS;
+      } else if (missingCount == 0) {
         this.state = IN_SYNC;
       } else {
         this.state = SYNC_STARTED;
@@ -321,6 +397,31 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
       return missingCount;
     }
 
+    private synchronized SortedSet<Long> restrictToDifferingRanges() {
+      Assert.assertTrue(this.state == COMPARING_DIGESTS);
+      final ObjectIDRangeDigests localDigests = ObjectIDRangeDigests
+          .compute(this.missingOids, L2ObjectStateManagerImpl.this.objectManager);
+      final SortedSet<Long> ranges = localDigests.differingRanges(this.passiveDigests);
+      final int objectCount = this.missingOids.size();
+      this.missingOids = ObjectIDRangeDigests.objectsIn(this.missingOids, ranges);
+      this.totalObjectsToSync = this.missingOids.size();
+      logger.info(this.nodeID + " : " + ranges.size() + " ObjectID ranges differ, is missing " + this.missingOids.size()
+                  + " out of " + objectCount + " objects");
+      this.passiveDigests = null;
+      this.state = DROPPING_RANGES;
+      return ranges;
+    }
+
+    private void differingRangesDropped() {
+      final int missingCount;
+      synchronized (this) {
+        Assert.assertTrue(this.state == DROPPING_RANGES);
+        missingCount = this.missingOids.size();
+        this.state = (missingCount == 0 ? IN_SYNC : SYNC_STARTED);
+      }
+      fireMissingObjectsStateEvent(this.nodeID, missingCount);
+    }
+
     @Override
     public NodeID getNodeID() {
       return this.nodeID;
@@ -335,7 +436,11 @@ public class L2ObjectStateManagerImpl implements L2ObjectStateManager {
     private void moveToReadyToSyncState() {
       this.state = READY_TO_SYNC;
       final int missingObjects = computeDiff();
-      fireMissingObjectsStateEvent(this.nodeID, missingObjects);
+      if (this.state == COMPARING_DIGESTS) {
+        fireCompareRangeDigestsEvent(this.nodeID);
+      } else {
+        fireMissingObjectsStateEvent(this.nodeID, missingObjects);
+      }
     }
 
     private void moveToInSyncState() {
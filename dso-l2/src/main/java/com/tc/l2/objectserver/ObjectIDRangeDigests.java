@@ -0,0 +1,156 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.l2.objectserver;
+
+import com.tc.io.TCByteBufferInput;
+import com.tc.io.TCByteBufferOutput;
+import com.tc.object.ObjectID;
+import com.tc.objectserver.api.ObjectManager;
+import com.tc.objectserver.core.api.ManagedObject;
+import com.tc.util.BitSetObjectIDSet;
+import com.tc.util.ObjectIDSet;
+
+import java.io.IOException;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A digest per range of 2^{@link #RANGE_SHIFT} ObjectIDs over the ids and versions of the objects an L2 holds. A
+ * restarted passive and the active exchange these to find out which ranges changed while the passive was away, so
+ * only the objects in those ranges have to be synced again.
+ * <p>
+ * A range digest is the sum of a 64 bit mix of each (ObjectID, version) pair in it, so it does not depend on the
+ * order the objects are visited in. Ranges without objects have no digest.
+ */
+public class ObjectIDRangeDigests {
+
+  public static final int             RANGE_SHIFT = 12;
+
+  private final SortedMap<Long, Long> digests;
+
+  public ObjectIDRangeDigests() {
+    this(new TreeMap<Long, Long>());
+  }
+
+  private ObjectIDRangeDigests(SortedMap<Long, Long> digests) {
+    this.digests = digests;
+  }
+
+  /**
+   * Computes the digests of the given objects, looking up their current versions in the object manager. Objects that
+   * are gone by the time they are looked up still count, with a version that never matches a live object.
+   */
+  public static ObjectIDRangeDigests compute(ObjectIDSet oids, ObjectManager objectManager) {
+    ObjectIDRangeDigests rv = new ObjectIDRangeDigests();
+    for (ObjectID oid : oids) {
+      long version = -1;
+      ManagedObject mo = objectManager.getObjectByIDReadOnly(oid);
+      if (mo != null) {
+        try {
+          version = mo.getVersion();
+        } finally {
+          objectManager.releaseReadOnly(mo);
+        }
+      }
+      rv.add(oid, version);
+    }
+    return rv;
+  }
+
+  public static long rangeOf(ObjectID oid) {
+    return oid.toLong() >>> RANGE_SHIFT;
+  }
+
+  /**
+   * @return the ids in the given set that fall in one of the given ranges
+   */
+  public static ObjectIDSet objectsIn(ObjectIDSet oids, Set<Long> ranges) {
+    ObjectIDSet rv = new BitSetObjectIDSet();
+    if (ranges.isEmpty()) { return rv; }
+    for (ObjectID oid : oids) {
+      if (ranges.contains(rangeOf(oid))) {
+        rv.add(oid);
+      }
+    }
+    return rv;
+  }
+
+  public void add(ObjectID oid, long version) {
+    Long range = rangeOf(oid);
+    Long current = digests.get(range);
+    digests.put(range, (current == null ? 0 : current) + mix(oid.toLong(), version));
+  }
+
+  /**
+   * @return the ranges that have a digest on only one side or different digests on both sides
+   */
+  public SortedSet<Long> differingRanges(ObjectIDRangeDigests other) {
+    SortedSet<Long> rv = new TreeSet<Long>();
+    for (Entry<Long, Long> e : digests.entrySet()) {
+      if (!e.getValue().equals(other.digests.get(e.getKey()))) {
+        rv.add(e.getKey());
+      }
+    }
+    for (Long range : other.digests.keySet()) {
+      if (!digests.containsKey(range)) {
+        rv.add(range);
+      }
+    }
+    return rv;
+  }
+
+  public int size() {
+    return digests.size();
+  }
+
+  public void writeTo(TCByteBufferOutput out) {
+    out.writeInt(digests.size());
+    for (Entry<Long, Long> e : digests.entrySet()) {
+      out.writeLong(e.getKey());
+      out.writeLong(e.getValue());
+    }
+  }
+
+  public static ObjectIDRangeDigests readFrom(TCByteBufferInput in) throws IOException {
+    SortedMap<Long, Long> digests = new TreeMap<Long, Long>();
+    for (int i = in.readInt(); i > 0; i--) {
+      long range = in.readLong();
+      digests.put(range, in.readLong());
+    }
+    return new ObjectIDRangeDigests(digests);
+  }
+
+  private static long mix(long oid, long version) {
+    // murmur3 finalizer over both longs, so that neighbouring ids and versions spread across all bits
+    long h = oid * 0x9E3779B97F4A7C15L ^ version;
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  @Override
+  public String toString() {
+    return "ObjectIDRangeDigests [ ranges = " + digests.size() + " ]";
+  }
+}
@@ -17,6 +17,7 @@
 package com.tc.l2.objectserver;
 
 import com.tc.async.api.Sink;
+import com.tc.l2.context.RangeResyncContext;
 import com.tc.l2.context.SyncIndexesRequest;
 import com.tc.l2.context.SyncObjectsRequest;
 import com.tc.l2.ha.L2HAZapNodeRequestProcessor;
@@ -25,6 +26,7 @@ import com.tc.l2.msg.IndexSyncCompleteAckMessage;
 import com.tc.l2.msg.IndexSyncCompleteMessage;
 import com.tc.l2.msg.IndexSyncStartMessage;
 import com.tc.l2.msg.ObjectListSyncMessage;
+import com.tc.l2.msg.ObjectRangeDigestMessage;
 import com.tc.l2.msg.ObjectSyncCompleteAckMessage;
 import com.tc.l2.msg.ObjectSyncCompleteMessage;
 import com.tc.l2.msg.PassiveSyncBeginMessage;
@@ -45,6 +47,8 @@ import com.tc.objectserver.persistence.ClusterStatePersistor;
 import com.tc.objectserver.tx.ServerTransactionManager;
 import com.tc.objectserver.tx.TransactionBatchContext;
 import com.tc.objectserver.tx.TxnsInSystemCompletionListener;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 import com.tc.util.Conversion;
 import com.tc.util.ObjectIDSet;
@@ -68,14 +72,20 @@ public class ReplicatedObjectManagerImpl implements ReplicatedObjectManager, Gro
     L2ObjectStateListener, L2IndexStateListener {
 
   private static final TCLogger              logger = TCLogging.getLogger(ReplicatedObjectManagerImpl.class);
+  private static final boolean               DELTA_SYNC_ENABLED = TCPropertiesImpl
+                                                                    .getProperties()
+                                                                    .getBoolean(TCPropertiesConsts.L2_OBJECTMANAGER_PASSIVE_SYNC_DELTA_ENABLED,
+                                                                                false);
 
   private final ObjectManager                objectManager;
   private final GroupManager                 groupManager;
   private final StateManager                 stateManager;
   private final ServerTransactionManager     transactionManager;
+  private final ReplicatedTransactionManager replicatedTransactionManager;
   private final Sink                         objectsSyncRequestSink;
   private final Sink                         indexSyncRequestSink;
   private final Sink                         transactionRelaySink;
+  private final Sink                         rangeResyncSink;
   private final SequenceGenerator            sequenceGenerator;
   private final SequenceGenerator            indexSequenceGenerator;
   private final GCMonitor                    gcMonitor;
@@ -86,22 +96,29 @@ public class ReplicatedObjectManagerImpl implements ReplicatedObjectManager, Gro
 
   private final AtomicBoolean                syncStarted = new AtomicBoolean();
 
+  // ObjectIDs this passive kept from before it went down, the ones in ranges that differ on the active get dropped
+  private volatile ObjectIDSet               resyncBaseline;
+
   public ReplicatedObjectManagerImpl(final GroupManager groupManager, final StateManager stateManager,
                                      final L2PassiveSyncStateManager l2PassiveSyncStateManager,
                                      L2ObjectStateManager l2ObjectStateManager,
                                      final ObjectManager objectManager,
                                      final ServerTransactionManager transactionManager,
+                                     final ReplicatedTransactionManager replicatedTransactionManager,
                                      final Sink objectsSyncRequestSink, final Sink indexSyncRequestSink,
-                                     final Sink transactionRelaySink, final SequenceGenerator sequenceGenerator,
+                                     final Sink transactionRelaySink, final Sink rangeResyncSink,
+                                     final SequenceGenerator sequenceGenerator,
                                      final SequenceGenerator indexSequenceGenerator, final DataStorage dataStorage,
                                      final ClusterStatePersistor clusterStatePersistor) {
     this.groupManager = groupManager;
     this.stateManager = stateManager;
     this.objectManager = objectManager;
     this.transactionManager = transactionManager;
+    this.replicatedTransactionManager = replicatedTransactionManager;
     this.objectsSyncRequestSink = objectsSyncRequestSink;
     this.indexSyncRequestSink = indexSyncRequestSink;
     this.transactionRelaySink = transactionRelaySink;
+    this.rangeResyncSink = rangeResyncSink;
     this.sequenceGenerator = sequenceGenerator;
     this.indexSequenceGenerator = indexSequenceGenerator;
     this.clusterStatePersistor = clusterStatePersistor;
@@ -111,6 +128,7 @@ public class ReplicatedObjectManagerImpl implements ReplicatedObjectManager, Gro
     this.groupManager.registerForMessages(ObjectListSyncMessage.class, this);
     this.groupManager.registerForMessages(ObjectSyncCompleteAckMessage.class, this);
     this.groupManager.registerForMessages(IndexSyncCompleteAckMessage.class, this);
+    this.groupManager.registerForMessages(ObjectRangeDigestMessage.class, this);
     this.passiveSyncStateManager = l2PassiveSyncStateManager;
     this.l2ObjectStateManager = l2ObjectStateManager;
     this.dataStorage = dataStorage;
@@ -192,6 +210,8 @@ public class ReplicatedObjectManagerImpl implements ReplicatedObjectManager, Gro
       NodeID nodeID = msg.messageFrom();
       logger.info("Received IndexSyncCompleteAckMessage from " + nodeID);
       indexesInSyncOnNode(nodeID);
+    } else if (msg instanceof ObjectRangeDigestMessage) {
+      handleObjectRangeDigestMessage(fromNode, (ObjectRangeDigestMessage) msg);
     } else {
       throw new AssertionError("ReplicatedObjectManagerImpl : Received wrong message type :" + msg.getClass().getName()
                                + " : " + msg);
@@ -203,7 +223,11 @@ public class ReplicatedObjectManagerImpl implements ReplicatedObjectManager, Gro
       // Reject subsequent sync begin requests
       try {
         if (syncStarted.compareAndSet(false, true)) {
-          groupManager.sendTo(fromNode, PassiveSyncBeginMessage.beginResponse(stateManager.getCurrentState()));
+          if (isDeltaResync()) {
+            sendRangeDigestsAndBeginResponse(fromNode);
+          } else {
+            groupManager.sendTo(fromNode, PassiveSyncBeginMessage.beginResponse(stateManager.getCurrentState()));
+          }
         } else {
           groupManager.sendTo(fromNode, PassiveSyncBeginMessage.beginError());
         }
@@ -221,6 +245,103 @@ public class ReplicatedObjectManagerImpl implements ReplicatedObjectManager, Gro
     }
    }
 
+  private void handleObjectRangeDigestMessage(final NodeID fromNode, final ObjectRangeDigestMessage message) {
+    switch (message.getType()) {
+      case ObjectRangeDigestMessage.DIGESTS:
+        logger.info("Received digests of " + message.getDigests().size() + " ObjectID ranges from " + fromNode);
+        l2ObjectStateManager.setRangeDigests(fromNode, message.getDigests());
+        break;
+      case ObjectRangeDigestMessage.RESYNC_RANGES:
+        dropRanges(fromNode, message.getRanges());
+        break;
+      case ObjectRangeDigestMessage.RANGES_DROPPED:
+        logger.info("Received RANGES_DROPPED from " + fromNode);
+        l2ObjectStateManager.differingRangesDropped(fromNode);
+        break;
+      default:
+        throw new AssertionError("Unknown type : " + message);
+    }
+  }
+
+  /**
+   * A passive that went down as PASSIVE-STANDBY can keep its objects and only resync the ObjectID ranges that changed
+   * on the active while it was away.
+   */
+  private boolean isDeltaResync() {
+    return DELTA_SYNC_ENABLED && StateManager.PASSIVE_STANDBY.equals(clusterStatePersistor.getInitialState());
+  }
+
+  private void sendRangeDigestsAndBeginResponse(final NodeID nodeID) {
+    rangeResyncSink.add(new RangeResyncContext(new Runnable() {
+      @Override
+      public void run() {
+        // Nothing is relayed to this node before the active gets the begin response, so all these objects are from
+        // before the restart.
+        final ObjectIDSet baseline = objectManager.getAllObjectIDs();
+        final ObjectIDRangeDigests digests = ObjectIDRangeDigests.compute(baseline, objectManager);
+        resyncBaseline = baseline;
+        logger.info("Sending digests of " + digests.size() + " ObjectID ranges over " + baseline.size()
+                    + " kept objects to " + nodeID);
+        try {
+          groupManager.sendTo(nodeID, ObjectRangeDigestMessage.createDigestsMessage(digests));
+          groupManager.sendTo(nodeID, PassiveSyncBeginMessage.beginResponse(stateManager.getCurrentState()));
+        } catch (GroupException e) {
+          logger.error("Error sending response to active.", e);
+        }
+      }
+    }));
+  }
+
+  private void dropRanges(final NodeID nodeID, final SortedSet<Long> ranges) {
+    rangeResyncSink.add(new RangeResyncContext(new Runnable() {
+      @Override
+      public void run() {
+        final ObjectIDSet baseline = resyncBaseline;
+        resyncBaseline = null;
+        Assert.assertNotNull(baseline);
+        // Objects created by relayed transactions are not in the baseline, the active might not send them again.
+        final ObjectIDSet dropped = ObjectIDRangeDigests.objectsIn(baseline, ranges);
+        logger.info("Dropping " + dropped.size() + " out of " + baseline.size() + " kept objects in " + ranges.size()
+                    + " ObjectID ranges that differ on the active");
+        // Hold back changes to the dropped objects from now on, and delete them once the transactions that already
+        // went thru are done with them.
+        replicatedTransactionManager.removeKnownObjectIDs(dropped);
+        transactionManager.callBackOnTxnsInSystemCompletion(new TxnsInSystemCompletionListener() {
+          @Override
+          public void onCompletion() {
+            rangeResyncSink.add(new RangeResyncContext(new Runnable() {
+              @Override
+              public void run() {
+                transactionManager.cleanup(dropped);
+                try {
+                  groupManager.sendTo(nodeID, ObjectRangeDigestMessage.createRangesDroppedMessage());
+                } catch (GroupException e) {
+                  logger.error("Error sending ranges dropped message to active.", e);
+                }
+              }
+            }));
+          }
+        });
+      }
+    }));
+  }
+
+  private void sendDifferingRanges(final NodeID nodeID) {
+    final SortedSet<Long> ranges = l2ObjectStateManager.restrictToDifferingRanges(nodeID);
+    if (ranges == null) { return; }
+    if (ranges.isEmpty()) {
+      l2ObjectStateManager.differingRangesDropped(nodeID);
+      return;
+    }
+    try {
+      groupManager.sendTo(nodeID, ObjectRangeDigestMessage.createResyncRangesMessage(ranges));
+    } catch (GroupException e) {
+      logger.error("Error sending differing ranges to " + nodeID, e);
+      groupManager.zapNode(nodeID, L2HAZapNodeRequestProcessor.COMMUNICATION_ERROR,
+                           "Error sending differing ranges " + L2HAZapNodeRequestProcessor.getErrorString(e));
+    }
+  }
+
   private void moveNodeToPassiveStandByIfPossible(NodeID nodeID) {
     if (this.passiveSyncStateManager.isSyncComplete(nodeID)) {
       this.gcMonitor.syncCompleteFor(nodeID);
@@ -324,6 +445,16 @@ public class ReplicatedObjectManagerImpl implements ReplicatedObjectManager, Gro
     }
   }
 
+  @Override
+  public void compareRangeDigestsFor(final NodeID nodeID) {
+    rangeResyncSink.add(new RangeResyncContext(new Runnable() {
+      @Override
+      public void run() {
+        sendDifferingRanges(nodeID);
+      }
+    }));
+  }
+
   @Override
   public void objectSyncCompleteFor(final NodeID nodeID) {
     try {
@@ -412,7 +543,12 @@ public class ReplicatedObjectManagerImpl implements ReplicatedObjectManager, Gro
           // Handle requests multiple list requests from the same instance of the active. This could happen when the active
           // first starts up. This node joining could trigger one object list request while the active running the sync() method
           // will trigger the other.
-          boolean syncAllowed = !syncStarted.get() && clusterStatePersistor.getInitialState() == null;
+          boolean deltaResync = isDeltaResync();
+          boolean syncAllowed = !syncStarted.get() && (clusterStatePersistor.getInitialState() == null || deltaResync);
+          if (syncAllowed && deltaResync) {
+            // Relayed transactions start after this response, let them thru to the objects kept from before the restart
+            replicatedTransactionManager.init(objectManager.getAllObjectIDs());
+          }
           logger.info("Send response to Active's query : syncAllowed = " + syncAllowed +
                       " currentState=" + stateManager.getCurrentState() +
                       " resource total=" + getDataStorageSize());
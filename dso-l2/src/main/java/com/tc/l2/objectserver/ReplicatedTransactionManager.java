@@ -19,6 +19,7 @@ package com.tc.l2.objectserver;
 import com.tc.l2.state.StateChangeListener;
 import com.tc.net.NodeID;
 import com.tc.net.groups.GroupException;
+import com.tc.object.ObjectID;
 
 import java.util.Set;
 
@@ -28,4 +29,10 @@ public interface ReplicatedTransactionManager extends StateChangeListener, Passi
 
   public void init(Set knownObjectIDs);
 
+  /**
+   * Forgets objects a PASSIVE-UNINITIALIZED L2 is about to drop, so that changes to them are held back until the
+   * objects come again through object sync.
+   */
+  public void removeKnownObjectIDs(Set<ObjectID> objectIDs);
+
 }
@@ -100,6 +100,15 @@ public class ReplicatedTransactionManagerImpl implements ReplicatedTransactionMa
     }
   }
 
+  @Override
+  public synchronized void removeKnownObjectIDs(Set<ObjectID> objectIDs) {
+    if (delegate == passiveUninitTxnMgr) {
+      passiveUninitTxnMgr.removeKnownObjectIDs(objectIDs);
+    } else {
+      logger.info("Not removing known Ids since not in UNINITIALIZED state : " + objectIDs.size());
+    }
+  }
+
   @Override
   public synchronized void clearTransactionsBelowLowWaterMark(GlobalTransactionID lowGlobalTransactionIDWatermark) {
     delegate.clearTransactionsBelowLowWaterMark(lowGlobalTransactionIDWatermark);
@@ -318,6 +327,10 @@ public class ReplicatedTransactionManagerImpl implements ReplicatedTransactionMa
       }
     }
 
+    public void removeKnownObjectIDs(Set<ObjectID> objectIDs) {
+      existingOIDs.removeAll(objectIDs);
+    }
+
     @Override
     public void addObjectSyncTransaction(ServerTransaction txn, final Set<ObjectID> deletedObjects) {
       clearPendingChangesFor(deletedObjects);
@@ -35,5 +35,10 @@ public interface BackupManager {
 
   String getRunningBackup();
 
+  /**
+   * Percentage of the named backup copied so far.
+   */
+  int getBackupProgress(String name) throws IOException;
+
   void backup(String name) throws IOException;
 }
@@ -0,0 +1,48 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.api;
+
+import java.util.Map;
+
+/**
+ * Decides which of the entries sampled from an {@link EvictableMap} are evicted. Every map segment gets its own policy
+ * instance, fed with the keys read from that segment.
+ */
+public interface EvictionPolicy {
+  /**
+   * Called each time a value is served from the map.
+   *
+   * @param key the portable key that was read
+   */
+  void recordAccess(Object key);
+
+  /**
+   * @param count   number of victims wanted
+   * @param mapSize current size of the map segment
+   * @return number of entries to sample so the policy has enough candidates to choose <code>count</code> victims from
+   */
+  int getSampleSize(int count, int mapSize);
+
+  /**
+   * Choose the victims among the sampled candidates.
+   *
+   * @param candidates the sampled entries
+   * @param count      number of victims wanted
+   * @return at most <code>count</code> entries from <code>candidates</code>
+   */
+  Map<Object, EvictableEntry> selectVictims(Map<Object, EvictableEntry> candidates, int count);
+}
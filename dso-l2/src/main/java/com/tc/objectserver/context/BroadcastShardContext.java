@@ -0,0 +1,79 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.context;
+
+import com.google.common.collect.Multimap;
+import com.tc.async.api.MultiThreadedEventContext;
+import com.tc.net.ClientID;
+import com.tc.net.protocol.tcm.MessageChannel;
+import com.tc.server.ServerEvent;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The part of a transaction broadcast that goes to the clients of one broadcast shard. All shard contexts of a
+ * transaction share a countdown, the one completing last finishes the broadcast.
+ */
+public class BroadcastShardContext implements MultiThreadedEventContext {
+
+  private final int                               shard;
+  private final BroadcastChangeContext            broadcastChangeContext;
+  private final Multimap<ClientID, ServerEvent>   serverEventsPerClient;
+  private final List<MessageChannel>              clients;
+  private final AtomicInteger                     pendingShards;
+
+  public BroadcastShardContext(int shard, BroadcastChangeContext broadcastChangeContext,
+                               Multimap<ClientID, ServerEvent> serverEventsPerClient, List<MessageChannel> clients,
+                               AtomicInteger pendingShards) {
+    this.shard = shard;
+    this.broadcastChangeContext = broadcastChangeContext;
+    this.serverEventsPerClient = serverEventsPerClient;
+    this.clients = clients;
+    this.pendingShards = pendingShards;
+  }
+
+  public BroadcastChangeContext getBroadcastChangeContext() {
+    return broadcastChangeContext;
+  }
+
+  public Multimap<ClientID, ServerEvent> getServerEventsPerClient() {
+    return serverEventsPerClient;
+  }
+
+  public List<MessageChannel> getClients() {
+    return clients;
+  }
+
+  /**
+   * @return true if this was the last shard of the transaction to complete
+   */
+  public boolean shardCompleted() {
+    return pendingShards.decrementAndGet() == 0;
+  }
+
+  @Override
+  public Object getKey() {
+    return shard;
+  }
+
+  @Override
+  public String toString() {
+    return "BroadcastShardContext [shard=" + shard + ", txn=" + broadcastChangeContext.getServerTransactionID()
+           + ", clients=" + clients.size() + "]";
+  }
+}
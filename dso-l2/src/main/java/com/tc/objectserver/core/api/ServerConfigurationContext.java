@@ -43,6 +43,7 @@ public interface ServerConfigurationContext extends ConfigurationContext {
   public final static String APPLY_CHANGES_STAGE                                = "apply_changes_stage";
   public static final String APPLY_COMPLETE_STAGE                               = "apply_complete_stage";
   public final static String BROADCAST_CHANGES_STAGE                            = "broadcast_changes_stage";
+  public final static String BROADCAST_CHANGES_SHARD_STAGE                      = "broadcast_changes_shard_stage";
   public final static String MANAGED_ROOT_REQUEST_STAGE                         = "send_managed_object_stage";
   public final static String RESPOND_TO_OBJECT_REQUEST_STAGE                    = "respond_to_request_stage";
   public final static String MANAGED_OBJECT_REQUEST_STAGE                       = "managed_object_request_stage";
@@ -70,6 +71,7 @@ public interface ServerConfigurationContext extends ConfigurationContext {
   public static final String OBJECTS_SYNC_DEHYDRATE_STAGE                       = "objects_sync_dehydrate_stage";
   public static final String OBJECTS_SYNC_SEND_STAGE                            = "object_sync_send_stage";
   public static final String OBJECTS_SYNC_STAGE                                 = "objects_sync_stage";
+  public static final String PASSIVE_RANGE_RESYNC_STAGE                         = "passive_range_resync_stage";
   public static final String TRANSACTION_RELAY_STAGE                            = "transaction_relay_stage";
   public static final String SERVER_TRANSACTION_ACK_PROCESSING_STAGE            = "server_transaction_ack_processing_stage";
   public static final String GROUP_EVENTS_DISPATCH_STAGE                        = "group_events_dispatch_stage";
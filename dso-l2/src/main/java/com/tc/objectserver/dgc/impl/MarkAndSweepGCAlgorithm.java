@@ -23,32 +23,63 @@ import com.tc.objectserver.core.impl.GarbageCollectionID;
 import com.tc.objectserver.dgc.api.GarbageCollectionInfo;
 import com.tc.objectserver.dgc.api.GarbageCollectionInfoPublisher;
 import com.tc.objectserver.dgc.api.GarbageCollector;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.BitSetObjectIDSet;
 import com.tc.util.ObjectIDSet;
 import com.tc.util.TCCollections;
 import com.tc.util.UUID;
 import com.tc.util.concurrent.LifeCycleState;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 final class MarkAndSweepGCAlgorithm {
 
+  private static final int                     MARK_PARALLELISM = TCPropertiesImpl
+                                                                    .getProperties()
+                                                                    .getInt(TCPropertiesConsts.L2_OBJECTMANAGER_DGC_MARK_PARALLELISM,
+                                                                            0);
+  private static final int                     MARK_SLICE_SIZE  = TCPropertiesImpl
+                                                                    .getProperties()
+                                                                    .getInt(TCPropertiesConsts.L2_OBJECTMANAGER_DGC_MARK_SLICE_SIZE,
+                                                                            1000);
+
   private final GCHook                         gcHook;
   private final long                           gcIteration;
   private final GarbageCollector               collector;
   private final GarbageCollectionInfoPublisher gcPublisher;
   private final LifeCycleState                 gcState;
+  private final int                            markParallelism;
+  private final int                            markSliceSize;
   private final String                         uuid = UUID.getUUID().toString();
 
   public MarkAndSweepGCAlgorithm(GarbageCollector collector, GCHook gcHook, GarbageCollectionInfoPublisher gcPublisher,
                                  LifeCycleState gcState, long gcIteration) {
+    this(collector, gcHook, gcPublisher, gcState, gcIteration, MARK_PARALLELISM, MARK_SLICE_SIZE);
+  }
+
+  MarkAndSweepGCAlgorithm(GarbageCollector collector, GCHook gcHook, GarbageCollectionInfoPublisher gcPublisher,
+                          LifeCycleState gcState, long gcIteration, int markParallelism, int markSliceSize) {
     this.collector = collector;
     this.gcHook = gcHook;
     this.gcPublisher = gcPublisher;
     this.gcState = gcState;
     this.gcIteration = gcIteration;
+    this.markParallelism = markParallelism;
+    this.markSliceSize = Math.max(1, markSliceSize);
   }
 
   void doGC() {
@@ -146,6 +177,8 @@ final class MarkAndSweepGCAlgorithm {
 
   public ObjectIDSet collect(Filter filter, Collection rootIds, ObjectIDSet managedObjectIds,
                              LifeCycleState lifeCycleState) {
+    if (markParallelism > 0) { return collectInParallel(filter, rootIds, managedObjectIds, lifeCycleState); }
+
     long start = System.currentTimeMillis();
     logstart_collect(rootIds, managedObjectIds);
 
@@ -187,6 +220,45 @@ final class MarkAndSweepGCAlgorithm {
     }
   }
 
+  /**
+   * Marks from the roots on a fork-join pool. The candidate set is only read while marking, reached candidates are
+   * recorded in a shared {@link MarkBitmap} and removed from the candidate set once all markers are done.
+   */
+  private ObjectIDSet collectInParallel(Filter filter, Collection rootIds, ObjectIDSet managedObjectIds,
+                                        LifeCycleState lifeCycleState) {
+    long start = System.currentTimeMillis();
+    logstart_collect(rootIds, managedObjectIds);
+
+    ParallelMark mark = new ParallelMark(filter, managedObjectIds, lifeCycleState);
+    Deque<ObjectID> roots = new ArrayDeque<ObjectID>();
+    for (Iterator i = rootIds.iterator(); i.hasNext();) {
+      ObjectID rootId = (ObjectID) i.next();
+      if (managedObjectIds.contains(rootId) && !mark.mark(rootId)) continue;
+      roots.push(rootId);
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(markParallelism, MarkerThreadFactory.INSTANCE, null, false);
+    try {
+      pool.invoke(mark.newTask(roots));
+    } finally {
+      pool.shutdown();
+    }
+
+    if (lifeCycleState.isStopRequested()) return TCCollections.EMPTY_OBJECT_ID_SET;
+
+    if (mark.allMarked()) {
+      managedObjectIds.clear();
+    } else {
+      for (Iterator<ObjectID> i = managedObjectIds.iterator(); i.hasNext();) {
+        if (mark.isMarked(i.next())) i.remove();
+      }
+    }
+
+    profile_collect(start);
+
+    return managedObjectIds;
+  }
+
   private ObjectIDSet rescue(final ObjectIDSet gcResults) {
     Set<ObjectID> rescueIds = gcHook.getRescueIDs();
     rescueIds.retainAll(gcResults);
@@ -205,4 +277,147 @@ final class MarkAndSweepGCAlgorithm {
         .debug("collect: " + (System.currentTimeMillis() - start) + " ms.");
   }
 
-}
\ No newline at end of file
+  /**
+   * State shared by the tasks of one parallel mark.
+   */
+  private final class ParallelMark {
+    private final Filter         filter;
+    private final ObjectIDSet    candidates;
+    private final LifeCycleState lifeCycleState;
+    private final MarkBitmap     marked = new MarkBitmap();
+    private final AtomicLong     unmarked;
+
+    ParallelMark(Filter filter, ObjectIDSet candidates, LifeCycleState lifeCycleState) {
+      this.filter = filter;
+      this.candidates = candidates;
+      this.lifeCycleState = lifeCycleState;
+      this.unmarked = new AtomicLong(candidates.size());
+    }
+
+    boolean mark(ObjectID id) {
+      if (!marked.mark(id)) return false;
+      unmarked.decrementAndGet();
+      return true;
+    }
+
+    boolean isMarked(ObjectID id) {
+      return marked.isMarked(id);
+    }
+
+    boolean allMarked() {
+      return unmarked.get() <= 0;
+    }
+
+    MarkTask newTask(Deque<ObjectID> toBeVisited) {
+      return new MarkTask(this, toBeVisited);
+    }
+
+    void visit(ObjectID id, Deque<ObjectID> toBeVisited) {
+      Set<ObjectID> references = gcHook.getObjectReferencesFrom(id);
+      for (final ObjectID mid : references) {
+        if (mid == null) {
+          // see CDV-765
+          MarkAndSweepGarbageCollector.logger.error("null value returned from getObjectReferences() on " + id);
+          continue;
+        }
+        if (mid.isNull() || !candidates.contains(mid) || !mark(mid)) continue;
+        if (filter.shouldVisit(mid)) toBeVisited.push(mid);
+      }
+    }
+  }
+
+  /**
+   * Visits its own stack of objects and hands half of it to a new task whenever the pool runs out of queued work.
+   * Between slices of {@code markSliceSize} objects it checks for a stop request and yields.
+   */
+  private final class MarkTask extends RecursiveAction {
+    private final ParallelMark    mark;
+    private final Deque<ObjectID> toBeVisited;
+
+    MarkTask(ParallelMark mark, Deque<ObjectID> toBeVisited) {
+      this.mark = mark;
+      this.toBeVisited = toBeVisited;
+    }
+
+    @Override
+    protected void compute() {
+      List<MarkTask> forked = new ArrayList<MarkTask>();
+      long visited = 0;
+      while (!toBeVisited.isEmpty()) {
+        if (visited % markSliceSize == 0) {
+          if (mark.allMarked() || mark.lifeCycleState.isStopRequested()) break;
+          if (visited > 0) Thread.yield();
+        }
+        if (toBeVisited.size() > 1 && getSurplusQueuedTaskCount() <= 0) {
+          MarkTask task = new MarkTask(mark, split());
+          task.fork();
+          forked.add(task);
+        }
+        mark.visit(toBeVisited.pop(), toBeVisited);
+        visited++;
+      }
+      for (MarkTask task : forked) {
+        task.join();
+      }
+    }
+
+    private Deque<ObjectID> split() {
+      Deque<ObjectID> half = new ArrayDeque<ObjectID>();
+      for (int i = toBeVisited.size() / 2; i > 0; i--) {
+        half.push(toBeVisited.pollLast());
+      }
+      return half;
+    }
+  }
+
+  /**
+   * Mark bits for the parallel markers, one page of bits per range of ObjectIDs.
+   */
+  private static final class MarkBitmap {
+    private static final int                           PAGE_SHIFT = 16;
+    private static final long                          PAGE_MASK  = (1L << PAGE_SHIFT) - 1;
+
+    private final ConcurrentMap<Long, AtomicLongArray> pages      = new ConcurrentHashMap<Long, AtomicLongArray>();
+
+    /**
+     * @return true if this call marked the id, false if it was already marked
+     */
+    boolean mark(ObjectID id) {
+      long lid = id.toLong();
+      Long key = lid >> PAGE_SHIFT;
+      AtomicLongArray page = pages.get(key);
+      if (page == null) {
+        page = new AtomicLongArray(1 << (PAGE_SHIFT - 6));
+        AtomicLongArray existing = pages.putIfAbsent(key, page);
+        if (existing != null) page = existing;
+      }
+      int bit = (int) (lid & PAGE_MASK);
+      long mask = 1L << bit;
+      while (true) {
+        long bits = page.get(bit >>> 6);
+        if ((bits & mask) != 0) return false;
+        if (page.compareAndSet(bit >>> 6, bits, bits | mask)) return true;
+      }
+    }
+
+    boolean isMarked(ObjectID id) {
+      long lid = id.toLong();
+      AtomicLongArray page = pages.get(lid >> PAGE_SHIFT);
+      if (page == null) return false;
+      int bit = (int) (lid & PAGE_MASK);
+      return (page.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+  }
+
+  private static final class MarkerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+    static final MarkerThreadFactory INSTANCE = new MarkerThreadFactory();
+
+    @Override
+    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      thread.setName("DGC-Marker-" + thread.getPoolIndex());
+      return thread;
+    }
+  }
+
+}
@@ -38,6 +38,7 @@ import com.tc.object.msg.BroadcastTransactionMessage;
 import com.tc.object.net.DSOChannelManager;
 import com.tc.object.tx.TransactionID;
 import com.tc.objectserver.context.BroadcastChangeContext;
+import com.tc.objectserver.context.BroadcastShardContext;
 import com.tc.objectserver.context.ObjectRequestServerContextImpl;
 import com.tc.objectserver.core.api.ServerConfigurationContext;
 import com.tc.objectserver.l1.api.ClientStateManager;
@@ -51,12 +52,14 @@ import com.tc.stats.counter.sampled.SampledCounter;
 import com.tc.stats.counter.sampled.derived.SampledRateCounter;
 import com.tc.util.BitSetObjectIDSet;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Broadcast the change to all connected clients
@@ -74,21 +77,32 @@ public class BroadcastChangeHandler extends AbstractEventHandler {
   private final SampledRateCounter      changesPerBroadcast;
   private final InvalidateObjectManager invalidateObjMgr;
   private final BroadcastDurabilityLevel broadcastDurabilityLevel;
+  private final int                     shards;
+  private Sink                          broadcastShardSink;
 
   public BroadcastChangeHandler(final SampledCounter broadcastCounter, final ObjectStatsRecorder objectStatsRecorder,
                                 final SampledRateCounter changesPerBroadcast, InvalidateObjectManager invalidateObjMgr) {
+    this(broadcastCounter, objectStatsRecorder, changesPerBroadcast, invalidateObjMgr, 0);
+  }
+
+  /**
+   * @param shards number of {@link ServerConfigurationContext#BROADCAST_CHANGES_SHARD_STAGE} workers the per client
+   *        broadcasts are handed to, 0 to broadcast to all clients from this stage
+   */
+  public BroadcastChangeHandler(final SampledCounter broadcastCounter, final ObjectStatsRecorder objectStatsRecorder,
+                                final SampledRateCounter changesPerBroadcast, InvalidateObjectManager invalidateObjMgr,
+                                final int shards) {
     this.broadcastCounter = broadcastCounter;
     this.objectStatsRecorder = objectStatsRecorder;
     this.changesPerBroadcast = changesPerBroadcast;
     this.invalidateObjMgr = invalidateObjMgr;
     this.broadcastDurabilityLevel = BroadcastDurabilityLevel.getFromProperties(TCPropertiesImpl.getProperties());
+    this.shards = shards;
   }
 
   @Override
   public void handleEvent(final EventContext context) {
     final BroadcastChangeContext bcc = (BroadcastChangeContext) context;
-    final NodeID committerID = bcc.getNodeID();
-    final TransactionID txnID = bcc.getTransactionID();
     final MessageChannel[] channels = this.channelManager.getActiveChannels();
 
     final Multimap<ClientID, ServerEvent> serverEventsPerClient = bcc.getApplyInfo()
@@ -103,78 +117,140 @@ public class BroadcastChangeHandler extends AbstractEventHandler {
       }
     }
 
+    if (this.shards > 0) {
+      dispatchToShards(bcc, channels, serverEventsPerClient);
+      return;
+    }
+
     for (final MessageChannel client : channels) {
-      // TODO:: make message channel return clientID and short channelManager call.
-      final ClientID clientID = this.channelManager.getClientIDFor(client.getChannelID());
+      final BroadcastTransactionMessage responseMessage = createBroadcastMessage(bcc, client, serverEventsPerClient);
+      if (responseMessage != null) {
+        responseMessage.send();
+      }
+    }
+    broadcastCompleted(bcc);
+  }
 
-      final Map newRoots = bcc.getNewRoots();
-      final Set notifiedWaiters = bcc.getNewlyPendingWaiters().getNotifiedFor(clientID);
-      List<DNA> prunedChanges;
-      final SortedSet<ObjectID> lookupObjectIDs = new BitSetObjectIDSet();
-      final Invalidations invalidateObjectIDs = new Invalidations();
-
-      if (!clientID.equals(committerID) || !bcc.getApplyInfo().getObjectsToEchoChangesFor().isEmpty()) {
-        prunedChanges = this.clientStateManager.createPrunedChangesAndAddObjectIDTo(bcc.getChanges(),
-            bcc.getApplyInfo(), clientID, lookupObjectIDs, invalidateObjectIDs);
-      }  else {
-        prunedChanges = Collections.emptyList();
+  /**
+   * Splits the clients over the shards by {@link ClientID}, so all the broadcasts to a client are handled by the same
+   * shard worker in transaction order.
+   */
+  private void dispatchToShards(final BroadcastChangeContext bcc, final MessageChannel[] channels,
+                                final Multimap<ClientID, ServerEvent> serverEventsPerClient) {
+    final List<List<MessageChannel>> clientsPerShard = new ArrayList<List<MessageChannel>>(
+        Collections.<List<MessageChannel>> nCopies(this.shards, null));
+    int usedShards = 0;
+    for (final MessageChannel client : channels) {
+      final ClientID clientID = this.channelManager.getClientIDFor(client.getChannelID());
+      final int shard = shardFor(clientID);
+      if (clientsPerShard.get(shard) == null) {
+        clientsPerShard.set(shard, new ArrayList<MessageChannel>());
+        usedShards++;
       }
+      clientsPerShard.get(shard).add(client);
+    }
 
-      Map<LogicalChangeID, LogicalChangeResult> logicalChangeResults = (clientID.equals(committerID) ?
-          bcc.getApplyInfo().getApplyResultRecorder().getResults() :
-          Collections.<LogicalChangeID, LogicalChangeResult>emptyMap());
+    if (usedShards == 0) {
+      broadcastCompleted(bcc);
+      return;
+    }
 
-      Collection<ServerEvent> serverEvents = serverEventsPerClient.get(clientID);
-      if (serverEvents == null) {
-        serverEvents = Collections.emptyList();
+    final AtomicInteger pendingShards = new AtomicInteger(usedShards);
+    for (int shard = 0; shard < this.shards; shard++) {
+      if (clientsPerShard.get(shard) != null) {
+        this.broadcastShardSink.add(new BroadcastShardContext(shard, bcc, serverEventsPerClient,
+                                                              clientsPerShard.get(shard), pendingShards));
       }
+    }
+  }
 
-      if (!invalidateObjectIDs.isEmpty()) {
-        invalidateObjMgr.invalidateObjectFor(clientID, invalidateObjectIDs);
-      }
+  private int shardFor(final ClientID clientID) {
+    return Math.abs(clientID.hashCode() % this.shards);
+  }
 
-      if (this.objectStatsRecorder.getBroadcastDebug()) {
-        updateStats(prunedChanges);
-      }
+  /**
+   * Prunes the changes of the transaction for one client and creates the broadcast message for it. Returns null if
+   * there is nothing to tell the client or if it has disconnected meanwhile, the message is not sent.
+   */
+  BroadcastTransactionMessage createBroadcastMessage(final BroadcastChangeContext bcc, final MessageChannel client,
+                                                     final Multimap<ClientID, ServerEvent> serverEventsPerClient) {
+    final NodeID committerID = bcc.getNodeID();
+    final TransactionID txnID = bcc.getTransactionID();
+    // TODO:: make message channel return clientID and short channelManager call.
+    final ClientID clientID = this.channelManager.getClientIDFor(client.getChannelID());
 
-      if (!prunedChanges.isEmpty() || !lookupObjectIDs.isEmpty() || !notifiedWaiters.isEmpty() || !newRoots.isEmpty()
-          || !logicalChangeResults.isEmpty() || !serverEvents.isEmpty()) {
-        this.transactionManager.addWaitingForAcknowledgement(committerID, txnID, clientID);
-
-        // check here if the client is already not disconnected
-        // if it is then we remove the clientID from the list of clients to acknowledge back
-        // otherwise the committerID will never receive the acknowledgment from the server
-        if (client.isClosed()) {
-          this.transactionManager.acknowledgement(committerID, txnID, clientID);
-          continue;
-        }
-
-        if (lookupObjectIDs.size() > 0) {
-          this.managedObjectRequestSink.add(new ObjectRequestServerContextImpl(clientID, ObjectRequestID.NULL_ID,
-                                                                               lookupObjectIDs, Thread.currentThread()
-                                                                                   .getName(), -1,
-                                                                               LOOKUP_STATE.SERVER_INITIATED));
-        }
-
-        final BroadcastTransactionMessage responseMessage = (BroadcastTransactionMessage) client
-            .createMessage(TCMessageType.BROADCAST_TRANSACTION_MESSAGE);
-        responseMessage.initialize(prunedChanges, bcc.getSerializer(), bcc.getLockIDs(), getNextChangeIDFor(clientID),
-                                   txnID, committerID, bcc.getGlobalTransactionID(), bcc.getTransactionType(),
-                                   bcc.getLowGlobalTransactionIDWatermark(), notifiedWaiters, newRoots,
-                                   logicalChangeResults, serverEvents);
+    final Map newRoots = bcc.getNewRoots();
+    final Set notifiedWaiters = bcc.getNewlyPendingWaiters().getNotifiedFor(clientID);
+    List<DNA> prunedChanges;
+    final SortedSet<ObjectID> lookupObjectIDs = new BitSetObjectIDSet();
+    final Invalidations invalidateObjectIDs = new Invalidations();
 
-        responseMessage.send();
+    if (!clientID.equals(committerID) || !bcc.getApplyInfo().getObjectsToEchoChangesFor().isEmpty()) {
+      prunedChanges = this.clientStateManager.createPrunedChangesAndAddObjectIDTo(bcc.getChanges(),
+          bcc.getApplyInfo(), clientID, lookupObjectIDs, invalidateObjectIDs);
+    }  else {
+      prunedChanges = Collections.emptyList();
+    }
 
-        if (logger.isDebugEnabled() && !notifiedWaiters.isEmpty()) {
-          logger.debug("Notified waiters " + clientID + " " + notifiedWaiters);
-        }
+    Map<LogicalChangeID, LogicalChangeResult> logicalChangeResults = (clientID.equals(committerID) ?
+        bcc.getApplyInfo().getApplyResultRecorder().getResults() :
+        Collections.<LogicalChangeID, LogicalChangeResult>emptyMap());
 
-        this.broadcastCounter.increment();
-        // changesPerBroadcast = number of changes/number of broadcasts
-        this.changesPerBroadcast.increment(prunedChanges.size(), 1);
-      }
+    Collection<ServerEvent> serverEvents = serverEventsPerClient.get(clientID);
+    if (serverEvents == null) {
+      serverEvents = Collections.emptyList();
+    }
+
+    if (!invalidateObjectIDs.isEmpty()) {
+      invalidateObjMgr.invalidateObjectFor(clientID, invalidateObjectIDs);
     }
-    this.transactionManager.broadcasted(committerID, txnID);
+
+    if (this.objectStatsRecorder.getBroadcastDebug()) {
+      updateStats(prunedChanges);
+    }
+
+    if (prunedChanges.isEmpty() && lookupObjectIDs.isEmpty() && notifiedWaiters.isEmpty() && newRoots.isEmpty()
+        && logicalChangeResults.isEmpty() && serverEvents.isEmpty()) { return null; }
+
+    this.transactionManager.addWaitingForAcknowledgement(committerID, txnID, clientID);
+
+    // check here if the client is already not disconnected
+    // if it is then we remove the clientID from the list of clients to acknowledge back
+    // otherwise the committerID will never receive the acknowledgment from the server
+    if (client.isClosed()) {
+      this.transactionManager.acknowledgement(committerID, txnID, clientID);
+      return null;
+    }
+
+    if (lookupObjectIDs.size() > 0) {
+      this.managedObjectRequestSink.add(new ObjectRequestServerContextImpl(clientID, ObjectRequestID.NULL_ID,
+                                                                           lookupObjectIDs, Thread.currentThread()
+                                                                               .getName(), -1,
+                                                                           LOOKUP_STATE.SERVER_INITIATED));
+    }
+
+    final BroadcastTransactionMessage responseMessage = (BroadcastTransactionMessage) client
+        .createMessage(TCMessageType.BROADCAST_TRANSACTION_MESSAGE);
+    responseMessage.initialize(prunedChanges, bcc.getSerializer(), bcc.getLockIDs(), getNextChangeIDFor(clientID),
+                               txnID, committerID, bcc.getGlobalTransactionID(), bcc.getTransactionType(),
+                               bcc.getLowGlobalTransactionIDWatermark(), notifiedWaiters, newRoots,
+                               logicalChangeResults, serverEvents);
+
+    if (logger.isDebugEnabled() && !notifiedWaiters.isEmpty()) {
+      logger.debug("Notified waiters " + clientID + " " + notifiedWaiters);
+    }
+
+    this.broadcastCounter.increment();
+    // changesPerBroadcast = number of changes/number of broadcasts
+    this.changesPerBroadcast.increment(prunedChanges.size(), 1);
+    return responseMessage;
+  }
+
+  /**
+   * Called once the transaction has been broadcasted to all clients.
+   */
+  void broadcastCompleted(final BroadcastChangeContext bcc) {
+    this.transactionManager.broadcasted(bcc.getNodeID(), bcc.getTransactionID());
     if (bcc.getServerTransactionID().isServerGeneratedTransaction()) {
       bcc.getApplyInfo().getServerEventBuffer().removeEventsForTransaction(bcc.getGlobalTransactionID());
     }
@@ -204,5 +280,8 @@ public class BroadcastChangeHandler extends AbstractEventHandler {
     this.clientStateManager = scc.getClientStateManager();
     this.transactionManager = scc.getTransactionManager();
     this.managedObjectRequestSink = scc.getStage(ServerConfigurationContext.MANAGED_OBJECT_REQUEST_STAGE).getSink();
+    if (this.shards > 0) {
+      this.broadcastShardSink = scc.getStage(ServerConfigurationContext.BROADCAST_CHANGES_SHARD_STAGE).getSink();
+    }
   }
 }
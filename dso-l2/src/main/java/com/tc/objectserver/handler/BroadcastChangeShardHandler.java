@@ -0,0 +1,85 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.handler;
+
+import com.tc.async.api.AbstractEventHandler;
+import com.tc.async.api.EventContext;
+import com.tc.net.protocol.tcm.MessageChannel;
+import com.tc.object.msg.BroadcastTransactionMessage;
+import com.tc.objectserver.context.BroadcastChangeContext;
+import com.tc.objectserver.context.BroadcastShardContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Broadcasts transactions to the clients of one shard. When the stage hands over a batch of consecutive transactions
+ * the messages are prepared for the whole batch first and then sent client by client, so the messages for a client go
+ * out back to back and the comms layer can group them into a single write. The order of the messages to a client is
+ * always the transaction order.
+ */
+public class BroadcastChangeShardHandler extends AbstractEventHandler {
+
+  private final BroadcastChangeHandler broadcastChangeHandler;
+
+  public BroadcastChangeShardHandler(final BroadcastChangeHandler broadcastChangeHandler) {
+    this.broadcastChangeHandler = broadcastChangeHandler;
+  }
+
+  @Override
+  public void handleEvent(final EventContext context) {
+    handleEvents(Collections.singletonList(context));
+  }
+
+  @Override
+  public void handleEvents(final Collection contexts) {
+    final Map<MessageChannel, List<BroadcastTransactionMessage>> messagesPerClient = new LinkedHashMap<MessageChannel, List<BroadcastTransactionMessage>>();
+    for (final Object o : contexts) {
+      final BroadcastShardContext context = (BroadcastShardContext) o;
+      final BroadcastChangeContext bcc = context.getBroadcastChangeContext();
+      for (final MessageChannel client : context.getClients()) {
+        final BroadcastTransactionMessage message = this.broadcastChangeHandler
+            .createBroadcastMessage(bcc, client, context.getServerEventsPerClient());
+        if (message != null) {
+          List<BroadcastTransactionMessage> messages = messagesPerClient.get(client);
+          if (messages == null) {
+            messages = new ArrayList<BroadcastTransactionMessage>();
+            messagesPerClient.put(client, messages);
+          }
+          messages.add(message);
+        }
+      }
+    }
+
+    for (final List<BroadcastTransactionMessage> messages : messagesPerClient.values()) {
+      for (final BroadcastTransactionMessage message : messages) {
+        message.send();
+      }
+    }
+
+    for (final Object o : contexts) {
+      final BroadcastShardContext context = (BroadcastShardContext) o;
+      if (context.shardCompleted()) {
+        this.broadcastChangeHandler.broadcastCompleted(context.getBroadcastChangeContext());
+      }
+    }
+  }
+}
@@ -0,0 +1,162 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.impl;
+
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+import com.tc.objectserver.api.BackupManager;
+import com.tc.objectserver.persistence.RestartablePersistor;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Takes online backups of a restartable server into sub directories of the configured backup path. Each backup runs on
+ * a thread of its own and copies a point in time image of the storage at a throttled rate while transactions keep
+ * being applied; only one backup runs at a time.
+ */
+public class BackupManagerImpl implements BackupManager {
+  private static final TCLogger             logger           = TCLogging.getLogger(BackupManagerImpl.class);
+
+  private static final String               WAL_DIRECTORY    = "wal";
+  private static final String               COMPLETE_MARKER  = "backup.complete";
+  private static final long                 BYTES_PER_SECOND = TCPropertiesImpl
+                                                                 .getProperties()
+                                                                 .getLong(TCPropertiesConsts.L2_WAL_BACKUP_BYTES_PER_SECOND,
+                                                                          50 * 1024 * 1024);
+
+  private final RestartablePersistor        persistor;
+  private final File                        backupPath;
+  private final Map<String, BackupStatus>   statuses         = new LinkedHashMap<String, BackupStatus>();
+  private final Map<String, String>         failureReasons   = new HashMap<String, String>();
+  private final Map<String, Integer>        progress         = new HashMap<String, Integer>();
+  private String                            runningBackup;
+
+  public BackupManagerImpl(RestartablePersistor persistor, File backupPath) {
+    this.persistor = persistor;
+    this.backupPath = backupPath;
+    loadExistingBackups();
+  }
+
+  private void loadExistingBackups() {
+    File[] backups = backupPath.listFiles();
+    if (backups == null) { return; }
+    for (File backup : backups) {
+      if (!backup.isDirectory()) {
+        continue;
+      }
+      if (new File(backup, COMPLETE_MARKER).exists()) {
+        statuses.put(backup.getName(), BackupStatus.COMPLETE);
+        progress.put(backup.getName(), 100);
+      } else {
+        statuses.put(backup.getName(), BackupStatus.FAILED);
+        failureReasons.put(backup.getName(), "Backup did not complete before the server stopped");
+      }
+    }
+  }
+
+  @Override
+  public synchronized BackupStatus getBackupStatus(String name) {
+    BackupStatus status = statuses.get(name);
+    return status == null ? BackupStatus.UNKNOWN : status;
+  }
+
+  @Override
+  public synchronized String getBackupFailureReason(String name) {
+    return failureReasons.get(name);
+  }
+
+  @Override
+  public synchronized Map<String, BackupStatus> getBackupStatuses() {
+    return Collections.unmodifiableMap(new LinkedHashMap<String, BackupStatus>(statuses));
+  }
+
+  @Override
+  public synchronized String getRunningBackup() {
+    return runningBackup;
+  }
+
+  @Override
+  public synchronized int getBackupProgress(String name) {
+    Integer percent = progress.get(name);
+    return percent == null ? 0 : percent;
+  }
+
+  @Override
+  public synchronized void backup(final String name) throws IOException {
+    if (runningBackup != null) { throw new IOException("Backup " + runningBackup + " is still running"); }
+    final File target = new File(backupPath, name);
+    if (statuses.containsKey(name) || target.exists()) { throw new IOException("Backup " + name + " already exists"); }
+    if (!target.mkdirs()) { throw new IOException("Unable to create " + target); }
+
+    runningBackup = name;
+    statuses.put(name, BackupStatus.INIT);
+    progress.put(name, 0);
+    Thread backupThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        runBackup(name, target);
+      }
+    }, "Backup " + name);
+    backupThread.setDaemon(true);
+    backupThread.start();
+  }
+
+  private void runBackup(final String name, File target) {
+    logger.info("Starting backup " + name + " to " + target);
+    setStatus(name, BackupStatus.RUNNING, null);
+    try {
+      persistor.backup(new File(target, WAL_DIRECTORY), BYTES_PER_SECOND, new RestartablePersistor.BackupListener() {
+        @Override
+        public void progress(long copiedBytes, long totalBytes) {
+          updateProgress(name, totalBytes == 0 ? 100 : (int) (copiedBytes * 100 / totalBytes));
+        }
+      });
+      if (!new File(target, COMPLETE_MARKER).createNewFile()) { throw new IOException("Unable to mark " + target
+                                                                                       + " complete"); }
+      updateProgress(name, 100);
+      setStatus(name, BackupStatus.COMPLETE, null);
+      logger.info("Backup " + name + " complete");
+    } catch (Throwable t) {
+      logger.error("Backup " + name + " failed", t);
+      setStatus(name, BackupStatus.FAILED, String.valueOf(t.getMessage()));
+    }
+  }
+
+  private synchronized void updateProgress(String name, int percent) {
+    Integer previous = progress.put(name, percent);
+    if (previous != null && previous / 10 != percent / 10) {
+      logger.info("Backup " + name + " " + percent + "% copied");
+    }
+  }
+
+  private synchronized void setStatus(String name, BackupStatus status, String failureReason) {
+    statuses.put(name, status);
+    if (failureReason != null) {
+      failureReasons.put(name, failureReason);
+    }
+    if (status == BackupStatus.COMPLETE || status == BackupStatus.FAILED) {
+      runningBackup = null;
+    }
+  }
+}
@@ -188,6 +188,7 @@ import com.tc.objectserver.gtx.ServerGlobalTransactionManager;
 import com.tc.objectserver.gtx.ServerGlobalTransactionManagerImpl;
 import com.tc.objectserver.handler.ApplyTransactionChangeHandler;
 import com.tc.objectserver.handler.BroadcastChangeHandler;
+import com.tc.objectserver.handler.BroadcastChangeShardHandler;
 import com.tc.objectserver.handler.ChannelLifeCycleHandler;
 import com.tc.objectserver.handler.ClientChannelOperatorEventlistener;
 import com.tc.objectserver.handler.ClientHandshakeHandler;
@@ -819,12 +820,20 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
     stageManager.createStage(ServerConfigurationContext.VALIDATE_OBJECTS_STAGE,
                              new ValidateObjectsHandler(invalidateObjMgr, objectManager, objectStore), 1, maxStageSize);
 
+    final int broadcastShards = TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.L2_SEDA_BROADCAST_SHARDS, 0);
     final BroadcastChangeHandler broadcastChangeHandler = new BroadcastChangeHandler(broadcastCounter,
                                                                                      this.objectStatsRecorder,
                                                                                      changesPerBroadcast,
-                                                                                     invalidateObjMgr);
+                                                                                     invalidateObjMgr,
+                                                                                     broadcastShards);
     stageManager.createStage(ServerConfigurationContext.BROADCAST_CHANGES_STAGE, broadcastChangeHandler, 1,
         maxStageSize);
+    if (broadcastShards > 0) {
+      // one queue per worker, a shard always lands on the same worker
+      stageManager.createStage(ServerConfigurationContext.BROADCAST_CHANGES_SHARD_STAGE,
+                               new BroadcastChangeShardHandler(broadcastChangeHandler), broadcastShards, 1,
+                               maxStageSize);
+    }
     final Stage requestLock = stageManager.createStage(ServerConfigurationContext.REQUEST_LOCK_STAGE,
                                                        new RequestLockUnLockHandler(), stageWorkerThreadCount, 1,
                                                        maxStageSize);
@@ -1091,7 +1100,8 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
     this.managementContext = new ServerManagementContext(this.transactionManager, this.objectRequestManager,
                                                          this.lockManager, (DSOChannelManagerMBean) channelManager,
                                                          serverStats, channelStats, instanceMonitor,
-                                                         indexHACoordinator, connectionPolicy, remoteManagement);
+                                                         indexHACoordinator, connectionPolicy, remoteManagement,
+                                                         stageManager);
     this.safeMode.enter(l2State, managementStartup, () -> {
       final CallbackOnExitHandler handler = new CallbackGroupExceptionHandler(logger, consoleLogger);
       this.threadGroup.addCallbackOnExitExceptionHandler(GroupException.class, handler);
@@ -0,0 +1,65 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.impl;
+
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+import com.tc.objectserver.api.EvictionPolicy;
+import com.tc.properties.TCProperties;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
+
+/**
+ * Creates the {@link EvictionPolicy} of a cache. The policy comes from <code>ehcache.evictor.policy.&lt;cacheName&gt;</code>
+ * when set, <code>ehcache.evictor.policy</code> otherwise. Either names a built in policy or the class name of an
+ * {@link EvictionPolicy} implementation with a public no-arg constructor.
+ */
+public final class EvictionPolicies {
+
+  public static final String     RANDOM    = "random";
+  public static final String     FREQUENCY = "frequency";
+
+  private static final TCLogger  logger    = TCLogging.getLogger(EvictionPolicies.class);
+
+  private EvictionPolicies() {
+    //
+  }
+
+  public static EvictionPolicy forCache(final String cacheName) {
+    final TCProperties props = TCPropertiesImpl.getProperties();
+    String name = null;
+    if (cacheName != null) {
+      name = props.getProperty(TCPropertiesConsts.EHCACHE_EVICTOR_POLICY + "." + cacheName, true);
+    }
+    if (name == null) {
+      name = props.getProperty(TCPropertiesConsts.EHCACHE_EVICTOR_POLICY, true);
+    }
+    return create(name);
+  }
+
+  static EvictionPolicy create(final String name) {
+    if (name == null || RANDOM.equalsIgnoreCase(name.trim())) { return RandomEvictionPolicy.INSTANCE; }
+    if (FREQUENCY.equalsIgnoreCase(name.trim())) { return new FrequencySketchEvictionPolicy(); }
+
+    try {
+      return (EvictionPolicy) Class.forName(name.trim()).newInstance();
+    } catch (Exception e) {
+      logger.warn("Unable to create eviction policy " + name + ", falling back to " + RANDOM, e);
+      return RandomEvictionPolicy.INSTANCE;
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.impl;
+
+/**
+ * A count-min sketch of 4-bit counters estimating how often a key was seen. Sixteen counters are packed in each long,
+ * and each key maps to four counters in the same long. Once enough increments have been recorded all counters are
+ * halved so that old popularity fades away.
+ * <p>
+ * Updates are not synchronized: a lost increment only makes an estimate slightly low, which an approximate frequency
+ * can live with.
+ */
+final class FrequencySketch {
+
+  static final int            MAX_CAPACITY = 1 << 16;
+
+  private static final long[] SEEDS        = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+      0xcbf29ce484222325L                 };
+  private static final long   RESET_MASK   = 0x7777777777777777L;
+  private static final long   ONE_MASK     = 0x1111111111111111L;
+  private static final int    MAX_COUNT    = 15;
+
+  private volatile long[]     table;
+  private int                 sampleSize;
+  private int                 additions;
+
+  FrequencySketch(int capacity) {
+    ensureCapacity(capacity);
+  }
+
+  /**
+   * Grows the sketch so it can tell apart about <code>capacity</code> keys. Growing starts over from empty counters.
+   */
+  void ensureCapacity(int capacity) {
+    final int maximum = Math.max(16, Math.min(capacity, MAX_CAPACITY));
+    final long[] current = table;
+    if (current != null && current.length >= maximum) { return; }
+
+    sampleSize = 10 * maximum;
+    additions = 0;
+    table = new long[Integer.highestOneBit(maximum - 1) << 1];
+  }
+
+  int capacity() {
+    return table.length;
+  }
+
+  /**
+   * @return the estimated number of times <code>key</code> was seen, at most 15
+   */
+  int frequency(Object key) {
+    final long[] t = table;
+    final int hash = spread(key.hashCode());
+    final int start = (hash & 3) << 2;
+    int frequency = MAX_COUNT;
+    for (int i = 0; i < 4; i++) {
+      final int index = indexOf(t, hash, i);
+      final int count = (int) ((t[index] >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  void increment(Object key) {
+    final long[] t = table;
+    final int hash = spread(key.hashCode());
+    final int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(t, indexOf(t, hash, i), start + i);
+    }
+    if (added && ++additions >= sampleSize) {
+      reset(t);
+    }
+  }
+
+  private static boolean incrementAt(long[] t, int index, int counter) {
+    final int offset = counter << 2;
+    final long mask = 0xfL << offset;
+    if ((t[index] & mask) != mask) {
+      t[index] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Halves every counter. Odd counters lose their remainder, which is taken off the addition count as well.
+   */
+  private void reset(long[] t) {
+    int odd = 0;
+    for (int i = 0; i < t.length; i++) {
+      odd += Long.bitCount(t[i] & ONE_MASK);
+      t[i] = (t[i] >>> 1) & RESET_MASK;
+    }
+    additions = Math.max(0, (additions >>> 1) - (odd >>> 2));
+  }
+
+  private static int indexOf(long[] t, int hash, int i) {
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    h += h >>> 32;
+    return ((int) h) & (t.length - 1);
+  }
+
+  private static int spread(int x) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+}
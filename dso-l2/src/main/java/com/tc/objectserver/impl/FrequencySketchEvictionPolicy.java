@@ -0,0 +1,74 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.impl;
+
+import com.tc.objectserver.api.EvictableEntry;
+import com.tc.objectserver.api.EvictionPolicy;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Approximate LFU eviction in the spirit of TinyLFU. Reads are counted in a {@link FrequencySketch} sized after the
+ * map segment, eviction samples a few times more entries than it needs and the least frequently read of them are
+ * evicted.
+ */
+public class FrequencySketchEvictionPolicy implements EvictionPolicy {
+
+  static final int              SAMPLE_FACTOR    = 4;
+  private static final int      INITIAL_CAPACITY = 1024;
+
+  private final FrequencySketch sketch           = new FrequencySketch(INITIAL_CAPACITY);
+
+  @Override
+  public void recordAccess(Object key) {
+    sketch.increment(key);
+  }
+
+  @Override
+  public int getSampleSize(int count, int mapSize) {
+    sketch.ensureCapacity(mapSize);
+    return (int) Math.min((long) count * SAMPLE_FACTOR, mapSize);
+  }
+
+  @Override
+  public Map<Object, EvictableEntry> selectVictims(Map<Object, EvictableEntry> candidates, int count) {
+    if (candidates.size() <= count) { return candidates; }
+
+    @SuppressWarnings("unchecked")
+    final Entry<Object, EvictableEntry>[] entries = candidates.entrySet().toArray(new Entry[candidates.size()]);
+    // frequency in the high bits, position in the low bits: sorting yields the least read entries first
+    final long[] order = new long[entries.length];
+    for (int i = 0; i < entries.length; i++) {
+      order[i] = ((long) sketch.frequency(entries[i].getKey()) << 32) | i;
+    }
+    Arrays.sort(order);
+
+    final Map<Object, EvictableEntry> victims = new HashMap<Object, EvictableEntry>(count * 4 / 3 + 1);
+    for (int i = 0; i < count; i++) {
+      final Entry<Object, EvictableEntry> e = entries[(int) order[i]];
+      victims.put(e.getKey(), e.getValue());
+    }
+    return victims;
+  }
+
+  int frequency(Object key) {
+    return sketch.frequency(key);
+  }
+}
@@ -43,6 +43,11 @@ public class NullBackupManager implements BackupManager {
     return null;
   }
 
+  @Override
+  public int getBackupProgress(final String name) {
+    return 0;
+  }
+
   @Override
   public void backup(final String name) {
     throw new UnsupportedOperationException("Backups not supported for non-restartable mode.");
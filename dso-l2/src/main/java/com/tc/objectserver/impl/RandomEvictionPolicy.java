@@ -0,0 +1,49 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.impl;
+
+import com.tc.objectserver.api.EvictableEntry;
+import com.tc.objectserver.api.EvictionPolicy;
+
+import java.util.Map;
+
+/**
+ * The default policy: every sampled entry is a victim, which leaves the choice to the sampling itself.
+ */
+public final class RandomEvictionPolicy implements EvictionPolicy {
+
+  public static final RandomEvictionPolicy INSTANCE = new RandomEvictionPolicy();
+
+  private RandomEvictionPolicy() {
+    //
+  }
+
+  @Override
+  public void recordAccess(Object key) {
+    // no access tracking
+  }
+
+  @Override
+  public int getSampleSize(int count, int mapSize) {
+    return count;
+  }
+
+  @Override
+  public Map<Object, EvictableEntry> selectVictims(Map<Object, EvictableEntry> candidates, int count) {
+    return candidates;
+  }
+}
@@ -233,6 +233,7 @@ public class ServerMapRequestManagerImpl implements ServerMapRequestManager {
         if (wrappedValue == null) {
           response.put(portableKey, ObjectID.NULL_ID);
         } else {
+          cdsmState.recordAccess(portableKey);
           ObjectID portableValue = wrappedValue.getObjectID();
           if ( logger.isDebugEnabled() ) {
             logger.debug("sending " + portableValue);
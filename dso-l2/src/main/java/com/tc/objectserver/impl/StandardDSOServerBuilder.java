@@ -72,18 +72,21 @@ import com.tc.objectserver.handshakemanager.ServerClientHandshakeManager;
 import com.tc.objectserver.l1.api.ClientStateManager;
 import com.tc.objectserver.locks.LockManager;
 import com.tc.objectserver.metadata.MetaDataManager;
-import com.tc.objectserver.metadata.NullMetaDataManager;
+import com.tc.objectserver.metadata.MetaDataManagerImpl;
 import com.tc.objectserver.mgmt.ObjectStatsRecorder;
 import com.tc.objectserver.persistence.ClusterStatePersistor;
 import com.tc.objectserver.persistence.HeapStorageManagerFactory;
 import com.tc.objectserver.persistence.OffheapStorageManagerFactory;
 import com.tc.objectserver.persistence.Persistor;
+import com.tc.objectserver.persistence.RestartablePersistor;
+import com.tc.objectserver.persistence.RestartableStorageManagerFactory;
+import com.tc.objectserver.persistence.StorageManagerFactory;
 import com.tc.objectserver.persistence.offheap.DataStorageConfig;
 import com.tc.objectserver.search.IndexHACoordinator;
 import com.tc.objectserver.search.IndexManager;
-import com.tc.objectserver.search.NullIndexHACoordinator;
-import com.tc.objectserver.search.NullSearchRequestManager;
 import com.tc.objectserver.search.SearchRequestManager;
+import com.tc.objectserver.search.memory.InMemoryIndexManager;
+import com.tc.objectserver.search.memory.InMemorySearchRequestManager;
 import com.tc.objectserver.tx.CommitTransactionMessageToTransactionBatchReader;
 import com.tc.objectserver.tx.PassThruTransactionFilter;
 import com.tc.objectserver.tx.ServerTransactionManager;
@@ -125,6 +128,8 @@ public class StandardDSOServerBuilder implements DSOServerBuilder {
   protected final TCLogger          logger;
   protected final DataStorageConfig offHeapConfig;
   protected final BufferManagerFactoryProvider bufferManagerFactoryProvider;
+  // shared by the search request manager and the search event stage, created by whichever needs it first
+  private InMemoryIndexManager      indexManager;
 
   public StandardDSOServerBuilder(final HaConfig haConfig, final TCLogger logger,
                                   final TCSecurityManager securityManager, L2DSOConfig l2Config,
@@ -155,13 +160,13 @@ public class StandardDSOServerBuilder implements DSOServerBuilder {
 
   @Override
   public MetaDataManager createMetaDataManager(Sink sink) {
-    return new NullMetaDataManager();
+    return new MetaDataManagerImpl(sink);
   }
 
   @Override
   public IndexHACoordinator createIndexHACoordinator(L2ConfigurationSetupManager configSetupManager, Sink sink, StorageManager storageManager)
       throws IOException {
-    return new NullIndexHACoordinator();
+    return getIndexManager();
   }
 
   @Override
@@ -188,7 +193,14 @@ public class StandardDSOServerBuilder implements DSOServerBuilder {
   @Override
   public SearchRequestManager createSearchRequestManager(DSOChannelManager channelManager,
                                                          Sink managedObjectRequestSink, TaskRunner runner) {
-    return new NullSearchRequestManager();
+    return new InMemorySearchRequestManager(channelManager, getIndexManager());
+  }
+
+  private InMemoryIndexManager getIndexManager() {
+    if (indexManager == null) {
+      indexManager = new InMemoryIndexManager();
+    }
+    return indexManager;
   }
 
   @Override
@@ -340,16 +352,24 @@ public class StandardDSOServerBuilder implements DSOServerBuilder {
       throw new IOException();
     }
 
-    if (persistent) throw new UnsupportedOperationException("Restartability is not supported in open source servers.");
+    StorageManagerFactory storageManagerFactory;
     if (offHeapConfig.enabled()) {
-      return new Persistor(new OffheapStorageManagerFactory(offHeapConfig));
+      storageManagerFactory = new OffheapStorageManagerFactory(offHeapConfig);
     } else {
-      return new Persistor(HeapStorageManagerFactory.INSTANCE);
+      storageManagerFactory = HeapStorageManagerFactory.INSTANCE;
     }
+    if (persistent) {
+      return new RestartablePersistor(new RestartableStorageManagerFactory(storageManagerFactory,
+                                                                           new File(l2DataPath, "wal")));
+    }
+    return new Persistor(storageManagerFactory);
   }
 
   @Override
   public BackupManager createBackupManager(Persistor persistor, IndexManager indexManager, File backupPath, StageManager stageManager, boolean restartable, ServerTransactionManager serverTransactionManager) {
+    if (restartable && persistor instanceof RestartablePersistor) {
+      return new BackupManagerImpl((RestartablePersistor) persistor, backupPath);
+    }
     return NullBackupManager.INSTANCE;
   }
 
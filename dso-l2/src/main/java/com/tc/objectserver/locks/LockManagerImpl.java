@@ -54,6 +54,8 @@ public class LockManagerImpl implements LockManager, PrettyPrintable, LockManage
   private final LockHelper                              lockHelper;
   private final ReentrantReadWriteLock                  statusLock       = new ReentrantReadWriteLock();
   private boolean                                       isStarted        = false;
+  // set once the pending requests have been processed, lets the request paths skip the status lock from then on
+  private volatile boolean                              running          = false;
   private final LinkedBlockingQueue<RequestLockContext> lockRequestQueue = new LinkedBlockingQueue<RequestLockContext>();
 
   private static final TCLogger                         logger           = TCLogging.getLogger(LockManagerImpl.class);
@@ -257,6 +259,7 @@ public class LockManagerImpl implements LockManager, PrettyPrintable, LockManage
       lockHelper.getLockTimer().start();
 
       processPendingRequests();
+      running = true;
     } finally {
       statusLock.writeLock().unlock();
     }
@@ -311,6 +314,7 @@ public class LockManagerImpl implements LockManager, PrettyPrintable, LockManage
 
   private boolean queueIfNecessary(LockID lid, ClientID cid, ThreadID tid, ServerLockLevel level, RequestType type,
                                    long timeout) {
+    if (running) { return true; }
     statusLock.readLock().lock();
     try {
       if (!isStarted) {
@@ -332,6 +336,7 @@ public class LockManagerImpl implements LockManager, PrettyPrintable, LockManage
   }
 
   private boolean isValidStateFor(LockID lid, ClientID cid, ThreadID tid, String callType) {
+    if (running) { return true; }
     statusLock.readLock().lock();
     try {
       if (!isStarted) { throw new AssertionError(callType + " message received when lock manager was starting"
@@ -344,6 +349,7 @@ public class LockManagerImpl implements LockManager, PrettyPrintable, LockManage
   }
 
   private boolean isStarted() {
+    if (running) { return true; }
     statusLock.readLock().lock();
     try {
       return isStarted;
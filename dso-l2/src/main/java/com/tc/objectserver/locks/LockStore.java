@@ -19,106 +19,95 @@ package com.tc.objectserver.locks;
 import com.tc.object.locks.LockID;
 import com.tc.util.Assert;
 
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * LockStore is used for storing all the locks present in the system. Access to any lock can be obtained by checking out
- * a lock and then by checking it in. Locks will be distributed into segments and the location of the lock will be
- * decided on the basis of the a hash function
+ * a lock and then by checking it in. Every lock is guarded on its own, so checking out a lock only ever waits for
+ * somebody working on the very same lock. Lookups go to a concurrent table and do not block.
+ * <p>
+ * A lock removed while checked out stays in the table until it is checked in, a thread waiting to check it out at that
+ * point notices and looks it up again.
  * <p>
  * Apart from this getNextLock (for scanning all the locks) has been provided which takes care of the checking out/in of
  * lock.
  */
 public class LockStore {
-  private static final int                  DEFAULT_SEGMENTS = 32;
-  private final HashMap<LockID, ServerLock> segments[];
-  private final ReentrantLock[]             guards;
-  private final int                         segmentShift;
-  private final int                         segmentMask;
-  private final LockFactory                 lockFactory;
+  private static final int                          DEFAULT_SEGMENTS = Math.max(32, Runtime.getRuntime()
+                                                                         .availableProcessors() * 4);
+  private final ConcurrentHashMap<LockID, LockEntry> locks;
+  private final LockFactory                          lockFactory;
 
   public LockStore(LockFactory factory) {
     this(DEFAULT_SEGMENTS, factory);
   }
 
+  /**
+   * @param numberOfSegments the number of concurrently updating threads the lock table is sized for
+   */
   public LockStore(int numberOfSegments, LockFactory factory) {
     if (numberOfSegments <= 0) throw new IllegalArgumentException();
 
     this.lockFactory = factory;
-    // Find power-of-two sizes best matching arguments
-    int sshift = 0;
-    int ssize = 1;
-    while (ssize < numberOfSegments) {
-      ++sshift;
-      ssize <<= 1;
-    }
-    segmentShift = 32 - sshift;
-    segmentMask = ssize - 1;
-    numberOfSegments = ssize;
-
-    segments = new HashMap[numberOfSegments];
-    guards = new ReentrantLock[numberOfSegments];
-
-    for (int i = 0; i < segments.length; i++) {
-      segments[i] = new HashMap();
-      guards[i] = new ReentrantLock();
-    }
+    this.locks = new ConcurrentHashMap<LockID, LockEntry>(16, 0.75f, numberOfSegments);
   }
 
   public ServerLock checkOut(LockID lockID) {
-    int index = indexFor(lockID);
-    guards[index].lock();
-    ServerLock lock = segments[index].get(lockID);
-    if (lock == null) {
-      lock = lockFactory.createLock(lockID);
-      segments[index].put(lockID, lock);
+    while (true) {
+      LockEntry entry = locks.get(lockID);
+      if (entry == null) {
+        LockEntry created = new LockEntry(lockFactory.createLock(lockID));
+        entry = locks.putIfAbsent(lockID, created);
+        if (entry == null) {
+          entry = created;
+        }
+      }
+      entry.guard.lock();
+      if (!entry.removed) { return entry.lock; }
+      if (entry.guard.getHoldCount() > 1) {
+        entry.guard.unlock();
+        throw new AssertionError("Server Lock " + entry.lock + " was removed and checked out again by the same thread");
+      }
+      // removed while we were waiting for it, it is gone from the table once we get the guard
+      entry.guard.unlock();
     }
-    return lock;
   }
 
   // Assumption that the lock is already held i.e. checked out
   public ServerLock remove(LockID lockID) {
-    int index = indexFor(lockID);
-    Assert.assertTrue(guards[index].isHeldByCurrentThread());
-    ServerLock lock = segments[index].remove(lockID);
-    return lock;
+    LockEntry entry = locks.get(lockID);
+    if (entry == null || entry.removed) { return null; }
+    Assert.assertTrue(entry.guard.isHeldByCurrentThread());
+    entry.removed = true;
+    return entry.lock;
   }
 
   public void checkIn(ServerLock lock) {
     LockID lockID = lock.getLockID();
-    int index = indexFor(lockID);
-    if (!guards[index].isHeldByCurrentThread()) { throw new AssertionError("Server Lock " + lock
-                                                                           + " was not checked out by the same thread"); }
-    guards[index].unlock();
-  }
-
-  private final int indexFor(Object o) {
-    int hash = hash(o);
-    return ((hash >>> segmentShift) & segmentMask);
+    LockEntry entry = locks.get(lockID);
+    if (entry == null || entry.lock != lock || !entry.guard.isHeldByCurrentThread()) {
+      throw new AssertionError("Server Lock " + lock + " was not checked out by the same thread");
+    }
+    release(entry);
   }
 
-  /**
-   * Currently from CHM
-   */
-  private static int hash(Object x) {
-    int h = x.hashCode();
-    h += ~(h << 9);
-    h ^= (h >>> 14);
-    h += (h << 4);
-    h ^= (h >>> 10);
-    return h;
+  private void release(LockEntry entry) {
+    if (entry.removed && entry.guard.getHoldCount() == 1) {
+      locks.remove(entry.lock.getLockID(), entry);
+    }
+    entry.guard.unlock();
   }
 
   public void clear() {
-    for (int i = 0; i < guards.length; i++) {
-      guards[i].lock();
+    for (LockEntry entry : locks.values()) {
+      entry.guard.lock();
       try {
-        segments[i].clear();
+        entry.removed = true;
+        locks.remove(entry.lock.getLockID(), entry);
       } finally {
-        guards[i].unlock();
+        entry.guard.unlock();
       }
     }
   }
@@ -127,37 +116,59 @@ public class LockStore {
     return new LockIterator();
   }
 
+  private static final class LockEntry {
+    private final ServerLock    lock;
+    private final ReentrantLock guard = new ReentrantLock();
+    // only changed while holding the guard
+    private volatile boolean    removed;
+
+    private LockEntry(ServerLock lock) {
+      this.lock = lock;
+    }
+  }
+
   public class LockIterator {
-    private Iterator<Entry<LockID, ServerLock>> currentIter;
-    private int                                 currentIndex = -1;
-    private ServerLock                          oldLock;
+    private final Iterator<LockEntry> currentIter = locks.values().iterator();
+    private LockEntry                 current;
+    private ServerLock                oldLock;
 
     /**
      * This method basically fetches the next lock by checking it out and checks back in the oldLock (that was given
      * last by this method). This method is a replacement for iterator keeping in the check out/in logic. NOTE: If you
-     * do not complete the iteration then please check back in the lock. Otherwise it might result in a segment locked
+     * do not complete the iteration then please check back in the lock. Otherwise it might result in a lock held
      * forever.
      */
     public ServerLock getNextLock(ServerLock lock) {
       validateOldLock(lock);
-      while (currentIter == null || !currentIter.hasNext()) {
-        HashMap<LockID, ServerLock> nextSegment = fetchNextSegment();
-        if (nextSegment == null) { return null; }
-        currentIter = nextSegment.entrySet().iterator();
+      if (current != null) {
+        release(current);
+        current = null;
+        oldLock = null;
+      }
+      while (currentIter.hasNext()) {
+        LockEntry next = currentIter.next();
+        next.guard.lock();
+        if (next.removed) {
+          next.guard.unlock();
+          continue;
+        }
+        current = next;
+        oldLock = next.lock;
+        return oldLock;
       }
-      Assert.assertNotNull(currentIter);
-      oldLock = currentIter.next().getValue();
-      return oldLock;
+      return null;
     }
 
     public void remove() {
-      Assert.assertNotNull(currentIter);
-      currentIter.remove();
+      Assert.assertNotNull(current);
+      current.removed = true;
     }
 
     public void checkIn(ServerLock lock) {
       Assert.assertEquals(oldLock, lock);
-      LockStore.this.checkIn(lock);
+      release(current);
+      current = null;
+      oldLock = null;
     }
 
     private void validateOldLock(ServerLock lock) {
@@ -168,16 +179,5 @@ public class LockStore {
       }
 
     }
-
-    private HashMap<LockID, ServerLock> fetchNextSegment() {
-      if (currentIndex >= 0 && currentIndex < segments.length) {
-        guards[currentIndex].unlock();
-      }
-      currentIndex++;
-      if (currentIndex >= segments.length) { return null; }
-
-      guards[currentIndex].lock();
-      return segments[currentIndex];
-    }
   }
-}
\ No newline at end of file
+}
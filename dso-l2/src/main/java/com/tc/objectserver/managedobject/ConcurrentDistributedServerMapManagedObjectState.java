@@ -32,6 +32,8 @@ import com.tc.object.dna.api.PhysicalAction;
 import com.tc.object.dna.impl.UTF8ByteDataHolder;
 import com.tc.objectserver.api.EvictableEntry;
 import com.tc.objectserver.api.EvictableMap;
+import com.tc.objectserver.api.EvictionPolicy;
+import com.tc.objectserver.impl.EvictionPolicies;
 import com.tc.objectserver.impl.SamplingType;
 import com.tc.objectserver.l1.impl.ClientObjectReferenceSet;
 import com.tc.objectserver.persistence.PersistentObjectFactory;
@@ -52,6 +54,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class ConcurrentDistributedServerMapManagedObjectState extends PartialMapManagedObjectState implements
     EvictableMap {
@@ -77,6 +80,7 @@ public class ConcurrentDistributedServerMapManagedObjectState extends PartialMap
   protected int                 dsoLockType;
 
   private static final double   OVERSHOOT                      = getOvershoot();
+  private static final int      MAX_SAMPLE_SKIP                = 8;
 
   static {
     LOGGER.info("Eviction overshoot threshold is " + OVERSHOOT);
@@ -84,6 +88,7 @@ public class ConcurrentDistributedServerMapManagedObjectState extends PartialMap
 
   private SamplingType          samplingType                   = SamplingType.FOR_EVICTION;
   private Iterator<Object>      evictionIterator               = null;
+  private volatile EvictionPolicy evictionPolicy               = null;
 
   private boolean               invalidateOnChange;
   private int                   maxTTISeconds;
@@ -228,6 +233,7 @@ public class ConcurrentDistributedServerMapManagedObjectState extends PartialMap
     } else if (fieldName.equals(CACHE_NAME_FIELDNAME)) {
       Object value = action.getObject();
       this.cacheName = asString(value);
+      this.evictionPolicy = null;
     } else if (LOCAL_CACHE_ENABLED_FIELDNAME.equals(fieldName)) {
       this.localCacheEnabled = (Boolean) action.getObject();
     } else if (COMPRESSION_ENABLED_FIELDNAME.equals(fieldName)) {
@@ -716,17 +722,34 @@ public class ConcurrentDistributedServerMapManagedObjectState extends PartialMap
     }
   }
 
+  /**
+   * Samples are picked by a clock hand that keeps going around the key set from one call to the next, skipping a small
+   * random number of keys between two picks. A call touches O(count) keys and allocates nothing but the returned map,
+   * so the map is not held checked out for long even with millions of entries.
+   */
   @Override
   public Map<Object, EvictableEntry> getRandomSamples(final int count,
                                                       final ClientObjectReferenceSet clientObjectRefSet,
                                                       final SamplingType smpType) {
     this.samplingType = smpType;
-    final Map<Object, EvictableEntry> samples = new HashMap<Object, EvictableEntry>(count);
-    final Set<Object> ignored = new HashSet<Object>(count);
-    final Random r = new Random();
     final int size = getSize();
-    final int chance = count > size ? 100 : Math.max(10, (count / size) * 100);
-    for (int i = 0; samples.size() < count && i < size; i++) {
+    if (count <= 0 || size == 0) { return new HashMap<Object, EvictableEntry>(); }
+
+    if (smpType == SamplingType.FOR_EVICTION) {
+      final EvictionPolicy policy = getEvictionPolicy();
+      return policy.selectVictims(sampleKeys(policy.getSampleSize(count, size), clientObjectRefSet, size), count);
+    }
+    return sampleKeys(count, clientObjectRefSet, size);
+  }
+
+  private Map<Object, EvictableEntry> sampleKeys(final int count, final ClientObjectReferenceSet clientObjectRefSet,
+                                                 final int size) {
+    final Map<Object, EvictableEntry> samples = new HashMap<Object, EvictableEntry>(Math.min(count, size) * 4 / 3 + 1);
+    // spread a few samples over the map, but never skip enough keys to make a call walk much more than count keys
+    final int maxSkip = Math.min(MAX_SAMPLE_SKIP, size / count);
+    final Random r = ThreadLocalRandom.current();
+    int skip = maxSkip > 0 ? r.nextInt(maxSkip + 1) : 0;
+    for (int visited = 0; samples.size() < count && visited < size; visited++) {
       if (evictionIterator == null || !evictionIterator.hasNext()) {
         evictionIterator = references.keySet().iterator();
         if (!evictionIterator.hasNext()) {
@@ -736,29 +759,37 @@ public class ConcurrentDistributedServerMapManagedObjectState extends PartialMap
       }
       final Object k = evictionIterator.next();
       if (k == null) { throw new AssertionError("key is not null"); }
-      if (r.nextInt(100) < chance) {
-        CDSMValue value = getValueForKey(k);
-        if (value == null || clientObjectRefSet.contains(value.getObjectID())) {
-          continue;
-        }
-        samples.put(k, value);
-      } else {
-        ignored.add(k);
+      // stop skipping once the rest of the lap is needed to fill the samples
+      if (skip > 0 && size - visited > count - samples.size()) {
+        skip--;
+        continue;
       }
-    }
-    if (samples.size() < count) {
-      for (final Iterator<Object> i = ignored.iterator(); samples.size() < count && i.hasNext();) {
-        final Object k = i.next();
-        CDSMValue v = getValueForKey(k);
-        if (v == null || clientObjectRefSet.contains(v.getObjectID())) {
-          continue;
-        }
-        samples.put(k, v);
+      CDSMValue value = getValueForKey(k);
+      if (value == null || clientObjectRefSet.contains(value.getObjectID())) {
+        continue;
       }
+      samples.put(k, value);
+      skip = maxSkip > 0 ? r.nextInt(maxSkip + 1) : 0;
     }
     return samples;
   }
 
+  /**
+   * Feeds the eviction policy of this segment with a key read by a client.
+   */
+  public void recordAccess(final Object portableKey) {
+    getEvictionPolicy().recordAccess(portableKey);
+  }
+
+  private EvictionPolicy getEvictionPolicy() {
+    EvictionPolicy policy = this.evictionPolicy;
+    if (policy == null) {
+      policy = EvictionPolicies.forCache(this.cacheName);
+      this.evictionPolicy = policy;
+    }
+    return policy;
+  }
+
   @Override
   public String getCacheName() {
     return cacheName;
@@ -0,0 +1,175 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.metadata;
+
+import com.tc.async.api.Sink;
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+import com.tc.object.ObjectID;
+import com.tc.object.dna.api.MetaDataReader;
+import com.tc.object.metadata.MetaDataDescriptorInternal;
+import com.tc.objectserver.managedobject.ApplyTransactionInfo;
+import com.tc.objectserver.search.SearchClearContext;
+import com.tc.objectserver.search.SearchDeleteContext;
+import com.tc.objectserver.search.SearchDestroyContext;
+import com.tc.objectserver.search.SearchEventContext;
+import com.tc.objectserver.search.SearchIndexSnapshotContext;
+import com.tc.objectserver.search.SearchPutIfAbsentContext;
+import com.tc.objectserver.search.SearchRemoveIfValueEqualsContext;
+import com.tc.objectserver.search.SearchReplaceContext;
+import com.tc.objectserver.search.SearchUpsertContext;
+import com.tc.objectserver.tx.ServerTransaction;
+import com.tc.objectserver.tx.ServerTransactionManager;
+import com.terracottatech.search.NVPair;
+import com.terracottatech.search.QueryID;
+import com.terracottatech.search.SearchMetaData;
+import com.terracottatech.search.ValueID;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns the search meta data of a transaction into search events for the index manager. Every event completes the
+ * transaction's {@link MetaDataProcessingContext} once the index has applied it, so the transaction is only
+ * acknowledged when its index changes are visible to queries.
+ */
+public class MetaDataManagerImpl implements MetaDataManager {
+
+  private static final TCLogger    logger          = TCLogging.getLogger(MetaDataManagerImpl.class);
+
+  private static final String      SEARCH_CATEGORY = "SEARCH";
+  private static final String      ATTR_PREFIX     = SearchMetaData.ATTR.toString();
+
+  private final Sink               searchEventSink;
+  private ServerTransactionManager transactionManager;
+
+  public MetaDataManagerImpl(Sink searchEventSink) {
+    this.searchEventSink = searchEventSink;
+  }
+
+  @Override
+  public void setTransactionManager(ServerTransactionManager transactionManager) {
+    this.transactionManager = transactionManager;
+  }
+
+  @Override
+  public boolean processMetaData(ServerTransaction txn, ApplyTransactionInfo applyInfo) {
+    final MetaDataReader[] readers = txn.getMetaDataReaders();
+    if (readers.length == 0) { return true; }
+
+    final MetaDataProcessingContext context = new MetaDataProcessingContext(txn.getServerTransactionID(),
+                                                                            transactionManager);
+    final List<SearchEventContext> events = new ArrayList<SearchEventContext>();
+    for (MetaDataReader reader : readers) {
+      for (MetaDataDescriptorInternal mdd : reader) {
+        if (!SEARCH_CATEGORY.equals(mdd.getCategory())) {
+          continue;
+        }
+        final SearchEventContext event = toEvent(mdd, context, txn.isEviction());
+        if (event != null) {
+          events.add(event);
+        }
+      }
+    }
+    if (events.isEmpty()) { return true; }
+
+    for (SearchEventContext event : events) {
+      searchEventSink.add(event);
+    }
+    // the transaction completes when the last event has been applied, which may already be the case
+    context.setExpectedCount(events.size());
+    return false;
+  }
+
+  private static SearchEventContext toEvent(MetaDataDescriptorInternal mdd, MetaDataProcessingContext context,
+                                            boolean eviction) {
+    final ObjectID segmentOid = mdd.getObjectId();
+    String cacheName = null;
+    String command = null;
+    String key = null;
+    ValueID value = null;
+    ValueID previousValue = null;
+    long clientId = 0;
+    long requestId = 0;
+    final List<NVPair> attributes = new ArrayList<NVPair>();
+    // key and value pairs of a conditional remove, in order and after the count
+    final List<Object> unnamed = new ArrayList<Object>();
+
+    for (Iterator<NVPair> i = mdd.getMetaDatas(); i.hasNext();) {
+      final NVPair pair = i.next();
+      final String name = pair.getName();
+      if (name.startsWith(ATTR_PREFIX) && name.length() > ATTR_PREFIX.length()) {
+        attributes.add(pair.cloneWithNewName(name.substring(ATTR_PREFIX.length())));
+      } else if (SearchMetaData.CACHENAME.toString().equals(name)) {
+        cacheName = String.valueOf(pair.getObjectValue());
+      } else if (SearchMetaData.COMMAND.toString().equals(name)) {
+        command = String.valueOf(pair.getObjectValue());
+      } else if (SearchMetaData.KEY.toString().equals(name)) {
+        key = String.valueOf(pair.getObjectValue());
+      } else if (SearchMetaData.VALUE.toString().equals(name)) {
+        value = valueID(pair.getObjectValue());
+      } else if (SearchMetaData.PREV_VALUE.toString().equals(name)) {
+        previousValue = valueID(pair.getObjectValue());
+      } else if (SearchMetaData.CLIENT_ID.toString().equals(name)) {
+        clientId = ((Number) pair.getObjectValue()).longValue();
+      } else if (SearchMetaData.REQUEST_ID.toString().equals(name)) {
+        requestId = ((Number) pair.getObjectValue()).longValue();
+      } else {
+        unnamed.add(pair.getObjectValue());
+      }
+    }
+
+    if ("PUT".equals(command)) {
+      return new SearchUpsertContext(segmentOid, cacheName, key, value, attributes, context, false);
+    } else if ("PUT_IF_ABSENT".equals(command)) {
+      return new SearchPutIfAbsentContext(segmentOid, cacheName, key, value, attributes, context);
+    } else if ("REPLACE".equals(command)) {
+      return new SearchReplaceContext(segmentOid, cacheName, key, value, previousValue, attributes, context);
+    } else if ("REMOVE".equals(command)) {
+      return new SearchDeleteContext(segmentOid, cacheName, key, context);
+    } else if ("REMOVE_IF_VALUE_EQUAL".equals(command)) {
+      return new SearchRemoveIfValueEqualsContext(segmentOid, cacheName, removes(unnamed), context, eviction);
+    } else if ("CLEAR".equals(command)) {
+      return new SearchClearContext(segmentOid, cacheName, context);
+    } else if ("DESTROY".equals(command)) {
+      return new SearchDestroyContext(segmentOid, cacheName, context);
+    } else if ("SNAPSHOT".equals(command) || "RELEASE_RESULTS".equals(command)) {
+      return new SearchIndexSnapshotContext(segmentOid, cacheName, new QueryID(clientId, requestId),
+                                            "RELEASE_RESULTS".equals(command), context);
+    }
+    logger.warn("Ignoring search meta data with command " + command + " for " + cacheName);
+    return null;
+  }
+
+  private static Map<String, ValueID> removes(List<Object> unnamed) {
+    final Map<String, ValueID> removes = new HashMap<String, ValueID>();
+    if (unnamed.isEmpty()) { return removes; }
+    final int count = ((Number) unnamed.get(0)).intValue();
+    for (int i = 0; i < count && 2 * i + 2 < unnamed.size(); i++) {
+      removes.put(String.valueOf(unnamed.get(2 * i + 1)), valueID(unnamed.get(2 * i + 2)));
+    }
+    return removes;
+  }
+
+  private static ValueID valueID(Object value) {
+    if (value instanceof ValueID) { return (ValueID) value; }
+    return new ValueID(((ObjectID) value).toLong());
+  }
+}
@@ -0,0 +1,375 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.persistence;
+
+import org.terracotta.corestorage.KeyValueStorage;
+import org.terracotta.corestorage.KeyValueStorageConfig;
+import org.terracotta.corestorage.KeyValueStorageMutationListener;
+import org.terracotta.corestorage.Retriever;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Heap storage for long keyed maps. Keys live in primitive arrays of open addressed (linear probing) tables, striped
+ * over segments that are each guarded by their own lock, so an entry costs a <code>long</code> and a value reference
+ * instead of a hash entry and a boxed key, and lookups do not allocate.
+ * <p>
+ * Mutation listeners are called under the segment lock, so they see the mutations of a key in the order they happened.
+ */
+public class HeapLongKeyValueStorage<V> implements KeyValueStorage<Long, V>, LongKeyValueStorage<V> {
+  private static final int                                                SEGMENTS         = 64;
+  private static final int                                                INITIAL_CAPACITY = 64;
+
+  private final Segment<V>[]                                              segments;
+  private final List<KeyValueStorageMutationListener<? super Long, ? super V>> listeners;
+
+  @SuppressWarnings("unchecked")
+  public HeapLongKeyValueStorage(KeyValueStorageConfig<Long, V> config) {
+    this.listeners = new ArrayList<KeyValueStorageMutationListener<? super Long, ? super V>>();
+    for (KeyValueStorageMutationListener<? super Long, ? super V> listener : config.getMutationListeners()) {
+      listeners.add(listener);
+    }
+    this.segments = new Segment[SEGMENTS];
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment<V>();
+    }
+  }
+
+  private static long spread(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return key;
+  }
+
+  private Segment<V> segmentFor(long hash) {
+    return segments[(int) (hash >>> 58) & (SEGMENTS - 1)];
+  }
+
+  @Override
+  public void put(long key, V value) {
+    put(key, value, (byte) 0);
+  }
+
+  @Override
+  public void put(long key, V value, byte metadata) {
+    if (value == null) { throw new NullPointerException("Null value for key " + key); }
+    long hash = spread(key);
+    Segment<V> segment = segmentFor(hash);
+    synchronized (segment) {
+      segment.put(key, (int) hash, value);
+      if (!listeners.isEmpty()) {
+        Retriever<Long> keyRetriever = new Literal<Long>(key);
+        Retriever<V> valueRetriever = new Literal<V>(value);
+        for (KeyValueStorageMutationListener<? super Long, ? super V> listener : listeners) {
+          listener.added(keyRetriever, valueRetriever, metadata);
+        }
+      }
+    }
+  }
+
+  @Override
+  public V get(long key) {
+    long hash = spread(key);
+    Segment<V> segment = segmentFor(hash);
+    synchronized (segment) {
+      return segment.get(key, (int) hash);
+    }
+  }
+
+  @Override
+  public boolean remove(long key) {
+    long hash = spread(key);
+    Segment<V> segment = segmentFor(hash);
+    synchronized (segment) {
+      if (!segment.remove(key, (int) hash)) { return false; }
+      fireRemoved(key);
+      return true;
+    }
+  }
+
+  @Override
+  public boolean containsKey(long key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public long size() {
+    long size = 0;
+    for (Segment<V> segment : segments) {
+      synchronized (segment) {
+        size += segment.size;
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    for (Segment<V> segment : segments) {
+      synchronized (segment) {
+        if (!listeners.isEmpty()) {
+          for (long key : segment.keys()) {
+            fireRemoved(key);
+          }
+        }
+        segment.clear();
+      }
+    }
+  }
+
+  private void fireRemoved(long key) {
+    if (listeners.isEmpty()) { return; }
+    Retriever<Long> keyRetriever = new Literal<Long>(key);
+    for (KeyValueStorageMutationListener<? super Long, ? super V> listener : listeners) {
+      listener.removed(keyRetriever);
+    }
+  }
+
+  @Override
+  public void put(Long key, V value) {
+    put(key.longValue(), value);
+  }
+
+  @Override
+  public void put(Long key, V value, byte metadata) {
+    put(key.longValue(), value, metadata);
+  }
+
+  @Override
+  public V get(Long key) {
+    return get(key.longValue());
+  }
+
+  @Override
+  public boolean remove(Long key) {
+    return remove(key.longValue());
+  }
+
+  @Override
+  public void removeAll(Collection<Long> keys) {
+    for (Long key : keys) {
+      remove(key.longValue());
+    }
+  }
+
+  @Override
+  public boolean containsKey(Long key) {
+    return containsKey(key.longValue());
+  }
+
+  /**
+   * A live view whose iterators copy one segment at a time, so walking a large storage does not copy all of it.
+   */
+  @Override
+  public Set<Long> keySet() {
+    return new AbstractSet<Long>() {
+      @Override
+      public Iterator<Long> iterator() {
+        return new SegmentIterator<Long>() {
+          @Override
+          Long element(long key) {
+            return key;
+          }
+        };
+      }
+
+      @Override
+      public boolean contains(Object o) {
+        return o instanceof Long && containsKey(((Long) o).longValue());
+      }
+
+      @Override
+      public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, HeapLongKeyValueStorage.this.size());
+      }
+    };
+  }
+
+  @Override
+  public Collection<V> values() {
+    return new AbstractCollection<V>() {
+      @Override
+      public Iterator<V> iterator() {
+        return new SegmentIterator<V>() {
+          @Override
+          V element(long key) {
+            return get(key);
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, HeapLongKeyValueStorage.this.size());
+      }
+    };
+  }
+
+  private abstract class SegmentIterator<T> implements Iterator<T> {
+    private int    segment = 0;
+    private long[] keys    = new long[0];
+    private int    index   = 0;
+    private T      next;
+
+    abstract T element(long key);
+
+    @Override
+    public boolean hasNext() {
+      while (next == null) {
+        while (index == keys.length) {
+          if (segment == segments.length) { return false; }
+          Segment<V> s = segments[segment++];
+          synchronized (s) {
+            keys = s.keys();
+          }
+          index = 0;
+        }
+        // entries removed since the segment was copied are skipped
+        next = element(keys[index++]);
+      }
+      return true;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) { throw new NoSuchElementException(); }
+      T result = next;
+      next = null;
+      return result;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static class Literal<T> implements Retriever<T> {
+    private final T value;
+
+    Literal(T value) {
+      this.value = value;
+    }
+
+    @Override
+    public T retrieve() {
+      return value;
+    }
+  }
+
+  /**
+   * Linear probing table, a slot is free when its value is null. Removal shifts the following entries of the probe
+   * run back instead of leaving tombstones.
+   */
+  private static class Segment<V> {
+    private long[]   keys   = new long[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int      size   = 0;
+
+    private int indexOf(long key, int hash) {
+      int mask = keys.length - 1;
+      int i = hash & mask;
+      while (values[i] != null && keys[i] != key) {
+        i = (i + 1) & mask;
+      }
+      return i;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long key, int hash) {
+      return (V) values[indexOf(key, hash)];
+    }
+
+    void put(long key, int hash, V value) {
+      int i = indexOf(key, hash);
+      if (values[i] == null) {
+        if ((size + 1) * 4 > keys.length * 3) {
+          resize();
+          i = indexOf(key, hash);
+        }
+        keys[i] = key;
+        size++;
+      }
+      values[i] = value;
+    }
+
+    boolean remove(long key, int hash) {
+      int mask = keys.length - 1;
+      int i = indexOf(key, hash);
+      if (values[i] == null) { return false; }
+      values[i] = null;
+      size--;
+      int free = i;
+      for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+        int home = (int) spread(keys[j]) & mask;
+        // move back every entry whose home slot does not lie in (free, j]
+        if (free <= j ? (home <= free || home > j) : (home <= free && home > j)) {
+          keys[free] = keys[j];
+          values[free] = values[j];
+          values[j] = null;
+          free = j;
+        }
+      }
+      return true;
+    }
+
+    long[] keys() {
+      long[] copy = new long[size];
+      int n = 0;
+      for (int i = 0; i < values.length; i++) {
+        if (values[i] != null) {
+          copy[n++] = keys[i];
+        }
+      }
+      return copy;
+    }
+
+    void clear() {
+      keys = new long[INITIAL_CAPACITY];
+      values = new Object[INITIAL_CAPACITY];
+      size = 0;
+    }
+
+    private void resize() {
+      long[] oldKeys = keys;
+      Object[] oldValues = values;
+      keys = new long[oldKeys.length * 2];
+      values = new Object[oldValues.length * 2];
+      int mask = keys.length - 1;
+      for (int i = 0; i < oldValues.length; i++) {
+        if (oldValues[i] != null) {
+          int j = (int) spread(oldKeys[i]) & mask;
+          while (values[j] != null) {
+            j = (j + 1) & mask;
+          }
+          keys[j] = oldKeys[i];
+          values[j] = oldValues[i];
+        }
+      }
+    }
+  }
+}
@@ -20,7 +20,6 @@ import org.terracotta.corestorage.ImmutableKeyValueStorageConfig;
 import org.terracotta.corestorage.KeyValueStorageConfig;
 import org.terracotta.corestorage.StorageManager;
 import org.terracotta.corestorage.TransformerLookup;
-import org.terracotta.corestorage.heap.HeapStorageManager;
 
 import com.tc.logging.TCLogger;
 import com.tc.logging.TCLogging;
@@ -43,7 +42,7 @@ public class HeapStorageManagerFactory implements StorageManagerFactory {
   public StorageManager createStorageManager(final Map<String, KeyValueStorageConfig<?, ?>> configMap,
                                              final TransformerLookup transformerLookup) {
     logger.warn("Using heap L2 storage is not recommended. It can lead to inconsistent eviction behavior or OOMEs.");
-    return new HeapStorageManager(configMap);
+    return new LongKeyedHeapStorageManager(configMap);
   }
 
   @Override
@@ -0,0 +1,41 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.persistence;
+
+import java.util.Collection;
+
+/**
+ * The part of a {@link org.terracotta.corestorage.KeyValueStorage} keyed by <code>long</code> that the persistors use,
+ * without boxing the keys. Obtain one through {@link LongKeyValueStorages#of}.
+ */
+public interface LongKeyValueStorage<V> {
+  void put(long key, V value);
+
+  void put(long key, V value, byte metadata);
+
+  V get(long key);
+
+  boolean remove(long key);
+
+  boolean containsKey(long key);
+
+  Collection<V> values();
+
+  long size();
+
+  void clear();
+}
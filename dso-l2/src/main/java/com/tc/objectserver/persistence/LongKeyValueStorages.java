@@ -0,0 +1,88 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.persistence;
+
+import org.terracotta.corestorage.KeyValueStorage;
+
+import java.util.Collection;
+
+/**
+ * Helpers for {@link LongKeyValueStorage}.
+ */
+public final class LongKeyValueStorages {
+  private LongKeyValueStorages() {
+    // static helpers only
+  }
+
+  /**
+   * Views a long keyed storage through {@link LongKeyValueStorage}. Storages that store primitive keys themselves are
+   * used as they are, anything else gets its keys boxed on the way in.
+   */
+  @SuppressWarnings("unchecked")
+  public static <V> LongKeyValueStorage<V> of(KeyValueStorage<Long, V> storage) {
+    if (storage instanceof LongKeyValueStorage) { return (LongKeyValueStorage<V>) storage; }
+    return new BoxingLongKeyValueStorage<V>(storage);
+  }
+
+  private static class BoxingLongKeyValueStorage<V> implements LongKeyValueStorage<V> {
+    private final KeyValueStorage<Long, V> delegate;
+
+    BoxingLongKeyValueStorage(KeyValueStorage<Long, V> delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void put(long key, V value) {
+      delegate.put(key, value);
+    }
+
+    @Override
+    public void put(long key, V value, byte metadata) {
+      delegate.put(key, value, metadata);
+    }
+
+    @Override
+    public V get(long key) {
+      return delegate.get(key);
+    }
+
+    @Override
+    public boolean remove(long key) {
+      return delegate.remove(key);
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+      return delegate.containsKey(key);
+    }
+
+    @Override
+    public Collection<V> values() {
+      return delegate.values();
+    }
+
+    @Override
+    public long size() {
+      return delegate.size();
+    }
+
+    @Override
+    public void clear() {
+      delegate.clear();
+    }
+  }
+}
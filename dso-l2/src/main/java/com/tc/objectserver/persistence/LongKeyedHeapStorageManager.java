@@ -0,0 +1,103 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.persistence;
+
+import org.terracotta.corestorage.KeyValueStorage;
+import org.terracotta.corestorage.KeyValueStorageConfig;
+import org.terracotta.corestorage.StorageManager;
+import org.terracotta.corestorage.heap.HeapStorageManager;
+import org.terracotta.corestorage.monitoring.MonitoredResource;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * Heap {@link StorageManager} that keeps the storages configured with {@link Long} keys in
+ * {@link HeapLongKeyValueStorage}s and everything else in a {@link HeapStorageManager}.
+ */
+class LongKeyedHeapStorageManager implements StorageManager {
+  private final StorageManager                          delegate;
+  private final Map<String, HeapLongKeyValueStorage<?>> longKeyed;
+
+  @SuppressWarnings("unchecked")
+  LongKeyedHeapStorageManager(Map<String, KeyValueStorageConfig<?, ?>> configMap) {
+    Map<String, KeyValueStorageConfig<?, ?>> boxed = new HashMap<String, KeyValueStorageConfig<?, ?>>();
+    longKeyed = new HashMap<String, HeapLongKeyValueStorage<?>>();
+    for (Map.Entry<String, KeyValueStorageConfig<?, ?>> e : configMap.entrySet()) {
+      if (e.getValue().getKeyClass() == Long.class) {
+        longKeyed.put(e.getKey(),
+                      new HeapLongKeyValueStorage<Object>((KeyValueStorageConfig<Long, Object>) e.getValue()));
+      } else {
+        boxed.put(e.getKey(), e.getValue());
+      }
+    }
+    delegate = new HeapStorageManager(boxed);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <K, V> KeyValueStorage<K, V> getKeyValueStorage(String alias, Class<K> keyClass, Class<V> valueClass) {
+    HeapLongKeyValueStorage<?> storage = longKeyed.get(alias);
+    if (storage == null) { return delegate.getKeyValueStorage(alias, keyClass, valueClass); }
+    if (!keyClass.isAssignableFrom(Long.class)) { throw new IllegalArgumentException("Storage " + alias
+                                                                                      + " is keyed by Long, not "
+                                                                                      + keyClass); }
+    return (KeyValueStorage<K, V>) storage;
+  }
+
+  @Override
+  public Map<String, String> getProperties() {
+    return delegate.getProperties();
+  }
+
+  @Override
+  public void destroyKeyValueStorage(String alias) {
+    delegate.destroyKeyValueStorage(alias);
+  }
+
+  @Override
+  public <K, V> KeyValueStorage<K, V> createKeyValueStorage(String alias, KeyValueStorageConfig<K, V> config) {
+    return delegate.createKeyValueStorage(alias, config);
+  }
+
+  @Override
+  public void begin() {
+    delegate.begin();
+  }
+
+  @Override
+  public void commit() {
+    delegate.commit();
+  }
+
+  @Override
+  public Future<?> start() {
+    return delegate.start();
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+
+  @Override
+  public Collection<MonitoredResource> getMonitoredResources() {
+    return delegate.getMonitoredResources();
+  }
+}
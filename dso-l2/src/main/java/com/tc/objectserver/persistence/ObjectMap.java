@@ -46,13 +46,13 @@ class ObjectMap implements KeyValueStorage<ObjectID, ManagedObject> {
   private static final String NODE_OBJECT_DB = "node_object_db";
   private static final String LEAF_OBJECT_DB = "leaf_object_db";
 
-  private final KeyValueStorage<Long, byte[]> nodeObjects;
-  private final KeyValueStorage<Long, byte[]> leafObjects;
+  private final LongKeyValueStorage<byte[]> nodeObjects;
+  private final LongKeyValueStorage<byte[]> leafObjects;
   private final ManagedObjectSerializer serializer;
 
   ObjectMap(ManagedObjectPersistor persistor, StorageManager storageManager) {
-    this.nodeObjects = storageManager.getKeyValueStorage(NODE_OBJECT_DB, Long.class, byte[].class);
-    this.leafObjects = storageManager.getKeyValueStorage(LEAF_OBJECT_DB, Long.class, byte[].class);
+    this.nodeObjects = LongKeyValueStorages.of(storageManager.getKeyValueStorage(NODE_OBJECT_DB, Long.class, byte[].class));
+    this.leafObjects = LongKeyValueStorages.of(storageManager.getKeyValueStorage(LEAF_OBJECT_DB, Long.class, byte[].class));
     this.serializer = new ManagedObjectSerializer(new ManagedObjectStateSerializer(), persistor);
   }
 
@@ -0,0 +1,57 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.persistence;
+
+import org.terracotta.corestorage.KeyValueStorageConfig;
+import org.terracotta.corestorage.StorageManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * {@link Persistor} for restartable servers, keeps the committed transaction descriptors alongside the objects so
+ * resent transactions can be recognized after a restart.
+ */
+public class RestartablePersistor extends Persistor {
+  public interface BackupListener {
+    void progress(long copiedBytes, long totalBytes);
+  }
+
+  public RestartablePersistor(RestartableStorageManagerFactory storageManagerFactory) {
+    super(storageManagerFactory);
+  }
+
+  /**
+   * Copies a point in time image of the storage into the destination directory while the server keeps running. The
+   * destination can later be used as the write ahead log directory of a server started from the backup.
+   */
+  public void backup(File destination, long bytesPerSecond, BackupListener listener) throws IOException {
+    ((WriteAheadLogStorageManager) getStorageManager()).backup(destination, bytesPerSecond, listener);
+  }
+
+  @Override
+  protected void addAdditionalConfigs(Map<String, KeyValueStorageConfig<?, ?>> configMap,
+                                      StorageManagerFactory storageManagerFactory) {
+    TransactionPersistorImpl.addConfigsTo(configMap);
+  }
+
+  @Override
+  protected TransactionPersistor createTransactionPersistor(StorageManager storageManager) {
+    return new TransactionPersistorImpl(storageManager);
+  }
+}
@@ -0,0 +1,98 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.persistence;
+
+import org.terracotta.corestorage.ImmutableKeyValueStorageConfig;
+import org.terracotta.corestorage.KeyValueStorageConfig;
+import org.terracotta.corestorage.StorageManager;
+import org.terracotta.corestorage.TransformerLookup;
+
+import com.tc.properties.TCProperties;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Restartable storage built on top of a heap or off-heap {@link StorageManagerFactory}. The delegate keeps serving
+ * reads while every mutation is also appended to a group committed write ahead log in the given directory. The
+ * storages are snapshotted in the background so that starting the storage manager only has to load the latest snapshot
+ * and replay the log written after it.
+ */
+public class RestartableStorageManagerFactory implements StorageManagerFactory {
+  private static final TCProperties   PROPERTIES               = TCPropertiesImpl.getProperties();
+  private static final long           WINDOW_MILLIS            = PROPERTIES
+                                                                   .getLong(TCPropertiesConsts.L2_WAL_FSYNC_WINDOW_MILLIS, 2);
+  private static final int            MAX_GROUP_BYTES          = PROPERTIES
+                                                                   .getInt(TCPropertiesConsts.L2_WAL_GROUP_MAX_BYTES,
+                                                                           1024 * 1024);
+  private static final long           SNAPSHOT_INTERVAL_MILLIS = TimeUnit.SECONDS
+                                                                   .toMillis(PROPERTIES
+                                                                       .getLong(TCPropertiesConsts.L2_WAL_SNAPSHOT_INTERVAL_SECONDS,
+                                                                                300));
+  private static final long           SNAPSHOT_MIN_LOG_BYTES   = PROPERTIES
+                                                                   .getLong(TCPropertiesConsts.L2_WAL_SNAPSHOT_MIN_LOG_BYTES,
+                                                                            64 * 1024 * 1024);
+  private static final long           SNAPSHOT_SEGMENT_BYTES   = PROPERTIES
+                                                                   .getLong(TCPropertiesConsts.L2_WAL_SNAPSHOT_SEGMENT_BYTES,
+                                                                            64 * 1024 * 1024);
+
+  private final StorageManagerFactory delegate;
+  private final File                  logDirectory;
+
+  public RestartableStorageManagerFactory(StorageManagerFactory delegate, File logDirectory) {
+    this.delegate = delegate;
+    this.logDirectory = logDirectory;
+  }
+
+  @Override
+  public StorageManager createStorageManager(Map<String, KeyValueStorageConfig<?, ?>> configMap,
+                                             TransformerLookup transformerLookup) throws IOException {
+    if (!logDirectory.isDirectory() && !logDirectory.mkdirs()) { throw new IOException("Unable to create "
+                                                                                        + logDirectory); }
+    return new WriteAheadLogStorageManager(delegate.createStorageManager(configMap, transformerLookup), logDirectory,
+                                           new HashSet<String>(configMap.keySet()),
+                                           delegate.wrapMapConfig(PersistentObjectFactory.MAP_CONFIG), WINDOW_MILLIS,
+                                           MAX_GROUP_BYTES, SNAPSHOT_INTERVAL_MILLIS, SNAPSHOT_MIN_LOG_BYTES,
+                                           SNAPSHOT_SEGMENT_BYTES);
+  }
+
+  @Override
+  public <K, V> KeyValueStorageConfig<K, V> wrapObjectDBConfig(KeyValueStorageConfig<K, V> baseConfig, Type nt) {
+    return delegate.wrapObjectDBConfig(baseConfig, nt);
+  }
+
+  @Override
+  public <K, V> KeyValueStorageConfig<K, V> wrapObjectDBConfig(ImmutableKeyValueStorageConfig.Builder<K, V> builder,
+                                                                Type nt) {
+    return delegate.wrapObjectDBConfig(builder, nt);
+  }
+
+  @Override
+  public <K, V> KeyValueStorageConfig<K, V> wrapMapConfig(KeyValueStorageConfig<K, V> baseConfig) {
+    return delegate.wrapMapConfig(baseConfig);
+  }
+
+  @Override
+  public <K, V> KeyValueStorageConfig<K, V> wrapMapConfig(ImmutableKeyValueStorageConfig.Builder<K, V> builder) {
+    return delegate.wrapMapConfig(builder);
+  }
+}
@@ -17,7 +17,6 @@
 package com.tc.objectserver.persistence;
 
 import org.terracotta.corestorage.ImmutableKeyValueStorageConfig;
-import org.terracotta.corestorage.KeyValueStorage;
 import org.terracotta.corestorage.KeyValueStorageConfig;
 import org.terracotta.corestorage.Serializer;
 import org.terracotta.corestorage.StorageManager;
@@ -43,18 +42,17 @@ import java.util.SortedSet;
 public class TransactionPersistorImpl implements TransactionPersistor {
   private static final String                                                     TRANSACTION = "transaction";
 
-  private final KeyValueStorage<GlobalTransactionID, GlobalTransactionDescriptor> committed;
+  private final LongKeyValueStorage<GlobalTransactionDescriptor>                   committed;
 
   public TransactionPersistorImpl(StorageManager storageManager) {
-    this.committed = storageManager.getKeyValueStorage(TRANSACTION, GlobalTransactionID.class,
-                                                       GlobalTransactionDescriptor.class);
+    this.committed = LongKeyValueStorages.of(storageManager.getKeyValueStorage(TRANSACTION, Long.class,
+                                                                               GlobalTransactionDescriptor.class));
   }
 
   public static void addConfigsTo(Map<String, KeyValueStorageConfig<?, ?>> configMap) {
     configMap.put(TRANSACTION,
-                  ImmutableKeyValueStorageConfig.builder(GlobalTransactionID.class, GlobalTransactionDescriptor.class)
-                      .valueTransformer(GlobalTransactionDescriptorSerializer.INSTANCE)
-                      .keyTransformer(GlobalTransactionIDSerializer.INSTANCE).build());
+                  ImmutableKeyValueStorageConfig.builder(Long.class, GlobalTransactionDescriptor.class)
+                      .valueTransformer(GlobalTransactionDescriptorSerializer.INSTANCE).build());
   }
 
   @Override
@@ -64,24 +62,13 @@ public class TransactionPersistorImpl implements TransactionPersistor {
 
   @Override
   public void saveGlobalTransactionDescriptor(GlobalTransactionDescriptor gtx) {
-    committed.put(gtx.getGlobalTransactionID(), gtx);
+    committed.put(gtx.getGlobalTransactionID().toLong(), gtx);
   }
 
   @Override
   public void deleteAllGlobalTransactionDescriptors(SortedSet<GlobalTransactionID> globalTransactionIDs) {
-    committed.removeAll(globalTransactionIDs);
-  }
-
-  private static class GlobalTransactionIDSerializer extends AbstractIdentifierTransformer<GlobalTransactionID> {
-    static final GlobalTransactionIDSerializer INSTANCE = new GlobalTransactionIDSerializer();
-
-    GlobalTransactionIDSerializer() {
-      super(GlobalTransactionID.class);
-    }
-
-    @Override
-    protected GlobalTransactionID createIdentifier(final long id) {
-      return new GlobalTransactionID(id);
+    for (GlobalTransactionID globalTransactionID : globalTransactionIDs) {
+      committed.remove(globalTransactionID.toLong());
     }
   }
 
@@ -0,0 +1,252 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.persistence;
+
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of opaque records with group commit. Each record is framed as
+ * <code>[int length][int crc32][payload]</code>. Appenders queue their record and block until it is durable; a single
+ * writer thread drains everything queued within the batching window (or up to the group size limit) with one write and
+ * one fsync.
+ * <p>
+ * On recovery, framing stops at the first torn or corrupt record and the file is truncated there, so a partially
+ * written group is dropped as a whole at its first damaged record.
+ */
+public class WriteAheadLog {
+  private static final TCLogger logger      = TCLogging.getLogger(WriteAheadLog.class);
+
+  static final int              HEADER_SIZE = 8;
+
+  public interface RecordHandler {
+    void handle(byte[] payload) throws IOException;
+  }
+
+  private final File            file;
+  private final long            windowNanos;
+  private final int             maxGroupBytes;
+
+  private final Object          lock        = new Object();
+  private List<byte[]>          queued      = new ArrayList<byte[]>();
+  private int                   queuedBytes = 0;
+  private long                  appendedBytes;
+  private long                  lastQueued  = 0;
+  private long                  lastDurable = 0;
+  private IOException           failure;
+  private boolean               closed      = false;
+
+  private FileChannel           channel;
+  private Thread                writer;
+
+  public WriteAheadLog(File file, long windowMillis, int maxGroupBytes) {
+    this.file = file;
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    this.maxGroupBytes = maxGroupBytes;
+  }
+
+  /**
+   * Replays every intact record to the handler, truncates any damaged tail and opens the log for appending. Must be
+   * called once before {@link #append(byte[])}.
+   */
+  public void recover(RecordHandler handler) throws IOException {
+    long validLength = 0;
+    long records = 0;
+    if (file.exists()) {
+      long fileLength = file.length();
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      try {
+        byte[] payload;
+        while ((payload = readRecord(in, fileLength - validLength)) != null) {
+          handler.handle(payload);
+          validLength += HEADER_SIZE + payload.length;
+          records++;
+        }
+      } finally {
+        in.close();
+      }
+    }
+
+    channel = new RandomAccessFile(file, "rw").getChannel();
+    if (channel.size() > validLength) {
+      logger.warn("Truncating " + (channel.size() - validLength) + " bytes of incomplete records from " + file);
+      channel.truncate(validLength);
+      channel.force(true);
+    }
+    channel.position(validLength);
+    synchronized (lock) {
+      appendedBytes = validLength;
+    }
+    logger.info("Recovered " + records + " records from " + file);
+
+    writer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        writeGroups();
+      }
+    }, "WriteAheadLog Writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  private static byte[] readRecord(DataInputStream in, long available) throws IOException {
+    try {
+      int length = in.readInt();
+      int crc = in.readInt();
+      if (length < 0 || length > available - HEADER_SIZE) { return null; }
+      byte[] payload = new byte[length];
+      in.readFully(payload);
+      return crc == checksum(payload) ? payload : null;
+    } catch (EOFException e) {
+      return null;
+    }
+  }
+
+  static int checksum(byte[] payload) {
+    CRC32 crc = new CRC32();
+    crc.update(payload, 0, payload.length);
+    return (int) crc.getValue();
+  }
+
+  /**
+   * Bytes in the log, including everything appended since it was opened.
+   */
+  public long size() {
+    synchronized (lock) {
+      return appendedBytes;
+    }
+  }
+
+  /**
+   * Appends the record and waits until it, and everything queued before it, has been forced to disk.
+   */
+  public void append(byte[] payload) {
+    boolean interrupted = false;
+    synchronized (lock) {
+      if (closed) { throw new IllegalStateException("Write ahead log " + file + " is closed"); }
+      queued.add(payload);
+      queuedBytes += HEADER_SIZE + payload.length;
+      appendedBytes += HEADER_SIZE + payload.length;
+      long sequence = ++lastQueued;
+      lock.notifyAll();
+      while (lastDurable < sequence && failure == null) {
+        try {
+          lock.wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (lastDurable < sequence) { throw new AssertionError(new IOException("Write ahead log " + file + " failed",
+                                                                             failure)); }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void writeGroups() {
+    while (true) {
+      List<byte[]> group;
+      int groupBytes;
+      long groupEnd;
+      synchronized (lock) {
+        try {
+          while (queued.isEmpty() && !closed) {
+            lock.wait();
+          }
+          if (queued.isEmpty()) { return; }
+          long deadline = System.nanoTime() + windowNanos;
+          long remaining;
+          while (!closed && queuedBytes < maxGroupBytes && (remaining = deadline - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+          }
+        } catch (InterruptedException e) {
+          // close() is the only way out, keep draining what is queued
+        }
+        group = queued;
+        groupBytes = queuedBytes;
+        groupEnd = lastQueued;
+        queued = new ArrayList<byte[]>();
+        queuedBytes = 0;
+      }
+
+      try {
+        write(group, groupBytes);
+      } catch (IOException e) {
+        logger.error("Failed writing to " + file, e);
+        synchronized (lock) {
+          failure = e;
+          lock.notifyAll();
+        }
+        return;
+      }
+
+      synchronized (lock) {
+        lastDurable = groupEnd;
+        lock.notifyAll();
+      }
+    }
+  }
+
+  private void write(List<byte[]> group, int groupBytes) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(groupBytes);
+    for (byte[] payload : group) {
+      buffer.putInt(payload.length);
+      buffer.putInt(checksum(payload));
+      buffer.put(payload);
+    }
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    channel.force(false);
+  }
+
+  public void close() {
+    synchronized (lock) {
+      if (closed) { return; }
+      closed = true;
+      lock.notifyAll();
+    }
+    try {
+      if (writer != null) {
+        writer.join();
+      }
+      if (channel != null) {
+        channel.close();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      logger.warn("Error closing " + file, e);
+    }
+  }
+}
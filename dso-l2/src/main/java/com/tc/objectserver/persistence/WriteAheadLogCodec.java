@@ -0,0 +1,152 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.persistence;
+
+import com.tc.objectserver.gtx.GlobalTransactionDescriptor;
+import com.tc.util.AbstractIdentifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Encodes the keys and values stored in the L2 key value storages for the write ahead log. Covers the types the
+ * persistors actually store: object bytes, transaction descriptors, identifiers, the literals handled by
+ * {@link LiteralSerializer} and, as a last resort, anything {@link Serializable}.
+ */
+final class WriteAheadLogCodec {
+  private static final byte                                  NULL                   = 0;
+  private static final byte                                  BYTES                  = 1;
+  private static final byte                                  TRANSACTION_DESCRIPTOR = 2;
+  private static final byte                                  LITERAL                = 3;
+  private static final byte                                  IDENTIFIER             = 4;
+  private static final byte                                  SERIALIZED             = 5;
+
+  private static final ConcurrentMap<String, Constructor<?>> identifierConstructors = new ConcurrentHashMap<String, Constructor<?>>();
+
+  private WriteAheadLogCodec() {
+    // static helpers only
+  }
+
+  static void write(DataOutput out, Object o) throws IOException {
+    if (o == null) {
+      out.writeByte(NULL);
+    } else if (o instanceof byte[]) {
+      out.writeByte(BYTES);
+      writeBytes(out, (byte[]) o);
+    } else if (o instanceof GlobalTransactionDescriptor) {
+      out.writeByte(TRANSACTION_DESCRIPTOR);
+      writeBuffer(out, TransactionPersistorImpl.GlobalTransactionDescriptorSerializer.INSTANCE
+          .transform((GlobalTransactionDescriptor) o));
+    } else if (!writeLiteral(out, o)) {
+      if (o instanceof AbstractIdentifier) {
+        out.writeByte(IDENTIFIER);
+        out.writeUTF(o.getClass().getName());
+        out.writeLong(((AbstractIdentifier) o).toLong());
+      } else if (o instanceof Serializable) {
+        out.writeByte(SERIALIZED);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bytes);
+        oos.writeObject(o);
+        oos.close();
+        writeBytes(out, bytes.toByteArray());
+      } else {
+        throw new IOException("Can not log " + o + " of " + o.getClass());
+      }
+    }
+  }
+
+  private static boolean writeLiteral(DataOutput out, Object o) throws IOException {
+    ByteBuffer buffer;
+    try {
+      buffer = LiteralSerializer.INSTANCE.transform(o);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+    out.writeByte(LITERAL);
+    writeBuffer(out, buffer);
+    return true;
+  }
+
+  static Object read(DataInput in) throws IOException {
+    byte type = in.readByte();
+    switch (type) {
+      case NULL:
+        return null;
+      case BYTES:
+        return readBytes(in);
+      case TRANSACTION_DESCRIPTOR:
+        return TransactionPersistorImpl.GlobalTransactionDescriptorSerializer.INSTANCE.recover(ByteBuffer
+            .wrap(readBytes(in)));
+      case LITERAL:
+        return LiteralSerializer.INSTANCE.recover(ByteBuffer.wrap(readBytes(in)));
+      case IDENTIFIER:
+        return readIdentifier(in.readUTF(), in.readLong());
+      case SERIALIZED:
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(readBytes(in)));
+        try {
+          return ois.readObject();
+        } catch (ClassNotFoundException e) {
+          throw new IOException(e);
+        } finally {
+          ois.close();
+        }
+      default:
+        throw new IOException("Unknown value type " + type);
+    }
+  }
+
+  private static Object readIdentifier(String className, long id) throws IOException {
+    try {
+      Constructor<?> constructor = identifierConstructors.get(className);
+      if (constructor == null) {
+        constructor = Class.forName(className).getDeclaredConstructor(Long.TYPE);
+        constructor.setAccessible(true);
+        identifierConstructors.put(className, constructor);
+      }
+      return constructor.newInstance(id);
+    } catch (Exception e) {
+      throw new IOException("Can not recreate identifier " + className + " " + id, e);
+    }
+  }
+
+  private static void writeBuffer(DataOutput out, ByteBuffer buffer) throws IOException {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    writeBytes(out, bytes);
+  }
+
+  private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInput in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,163 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.persistence;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A snapshot of the storages behind a {@link WriteAheadLogStorageManager}, written as a directory of segment files.
+ * Each segment holds records framed the same way as the log, so a snapshot replays exactly like a log. Segments are
+ * memory mapped one at a time on recovery.
+ * <p>
+ * A snapshot is written to a temporary directory that is only renamed into place once every segment has been forced
+ * to disk, so an existing snapshot directory is always complete. The rename itself is forced to disk before the
+ * snapshot counts as complete, as the log generations it replaces are deleted right after.
+ */
+class WriteAheadLogSnapshot {
+  private static final String SEGMENT_PREFIX = "segment.";
+  private static final String TEMP_SUFFIX    = ".tmp";
+
+  private final File          directory;
+  private final File          tempDirectory;
+  private final long          segmentBytes;
+
+  private FileOutputStream    segment;
+  private long                segmentSize;
+  private int                 segmentCount   = 0;
+
+  WriteAheadLogSnapshot(File directory, long segmentBytes) throws IOException {
+    this.directory = directory;
+    this.tempDirectory = new File(directory.getParentFile(), directory.getName() + TEMP_SUFFIX);
+    this.segmentBytes = segmentBytes;
+    if (tempDirectory.exists()) {
+      delete(tempDirectory);
+    }
+    if (!tempDirectory.mkdirs()) { throw new IOException("Unable to create " + tempDirectory); }
+  }
+
+  static boolean isTemporary(File file) {
+    return file.getName().endsWith(TEMP_SUFFIX);
+  }
+
+  void add(byte[] record) throws IOException {
+    if (segment == null || segmentSize >= segmentBytes) {
+      closeSegment();
+      segment = new FileOutputStream(new File(tempDirectory, SEGMENT_PREFIX + segmentCount++));
+      segmentSize = 0;
+    }
+    ByteBuffer header = ByteBuffer.allocate(WriteAheadLog.HEADER_SIZE);
+    header.putInt(record.length).putInt(WriteAheadLog.checksum(record));
+    segment.write(header.array());
+    segment.write(record);
+    segmentSize += WriteAheadLog.HEADER_SIZE + record.length;
+  }
+
+  void complete() throws IOException {
+    closeSegment();
+    syncDirectory(tempDirectory);
+    Files.move(tempDirectory.toPath(), directory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    syncDirectory(directory.getParentFile());
+  }
+
+  void abandon() {
+    try {
+      if (segment != null) {
+        segment.close();
+      }
+    } catch (IOException e) {
+      // being thrown away anyway
+    }
+    delete(tempDirectory);
+  }
+
+  private void closeSegment() throws IOException {
+    if (segment != null) {
+      segment.getFD().sync();
+      segment.close();
+      segment = null;
+    }
+  }
+
+  /**
+   * Forces the entries of a directory to disk. Not every platform lets a directory be opened for that, where it can't
+   * the rename is left to the file system.
+   */
+  private static void syncDirectory(File dir) throws IOException {
+    final FileChannel channel;
+    try {
+      channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ);
+    } catch (IOException e) {
+      return;
+    }
+    try {
+      channel.force(true);
+    } finally {
+      channel.close();
+    }
+  }
+
+  static void read(File directory, WriteAheadLog.RecordHandler handler) throws IOException {
+    File[] segments = directory.listFiles();
+    int[] indices = new int[segments.length];
+    for (int i = 0; i < segments.length; i++) {
+      indices[i] = Integer.parseInt(segments[i].getName().substring(SEGMENT_PREFIX.length()));
+    }
+    Arrays.sort(indices);
+    for (int index : indices) {
+      readSegment(new File(directory, SEGMENT_PREFIX + index), handler);
+    }
+  }
+
+  private static void readSegment(File file, WriteAheadLog.RecordHandler handler) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      while (buffer.hasRemaining()) {
+        int length = buffer.getInt();
+        int crc = buffer.getInt();
+        byte[] record = new byte[length];
+        buffer.get(record);
+        if (crc != WriteAheadLog.checksum(record)) { throw new IOException("Corrupt record in snapshot segment "
+                                                                           + file); }
+        handler.handle(record);
+      }
+    } finally {
+      raf.close();
+    }
+  }
+
+  static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
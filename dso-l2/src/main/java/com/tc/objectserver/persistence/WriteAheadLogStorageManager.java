@@ -0,0 +1,996 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.persistence;
+
+import org.terracotta.corestorage.KeyValueStorage;
+import org.terracotta.corestorage.KeyValueStorageConfig;
+import org.terracotta.corestorage.StorageManager;
+import org.terracotta.corestorage.monitoring.MonitoredResource;
+
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Makes a heap or off-heap {@link StorageManager} restartable by logging every mutation to a {@link WriteAheadLog}.
+ * <p>
+ * Mutations made between {@link #begin()} and {@link #commit()} on a thread are buffered and appended as one record
+ * when the outermost transaction commits, so a transaction is recovered completely or not at all and concurrent
+ * committers share fsyncs. Mutations made outside of a transaction are logged as records of their own. The storage
+ * properties go to a separate log as they are read before the storage manager is started.
+ * <p>
+ * The data log is split into numbered generations. A snapshot switches appends over to a new generation, waiting for
+ * the open transactions to commit and holding off new ones only for the switch itself. It then builds a
+ * {@link WriteAheadLogSnapshot} numbered after the new generation from the previous snapshot and the generations the
+ * switch sealed, the same files a backup copies, keeping only the latest put of every entry still mapped. Committers
+ * carry on appending to the new generation meanwhile. Once the snapshot is in place the older generations are deleted,
+ * so recovery reads the latest snapshot plus the log written since, regardless of how long the server has been up.
+ * <p>
+ * The metadata byte of each entry is remembered on the side, as the storages have no way to read it back. Only
+ * entries with a non zero metadata byte are remembered.
+ */
+class WriteAheadLogStorageManager implements StorageManager {
+  private static final TCLogger                                   logger             = TCLogging
+                                                                                         .getLogger(WriteAheadLogStorageManager.class);
+
+  private static final byte                                       PUT                = 0;
+  private static final byte                                       PUT_WITH_METADATA  = 1;
+  private static final byte                                       REMOVE             = 2;
+  private static final byte                                       CLEAR              = 3;
+  private static final byte                                       CREATE             = 4;
+  private static final byte                                       DESTROY            = 5;
+
+  private static final String                                     PROPERTIES_LOG     = "properties.wal";
+  private static final String                                     DATA_LOG_PREFIX    = "data.";
+  private static final String                                     DATA_LOG_SUFFIX    = ".wal";
+  private static final String                                     SNAPSHOT_PREFIX    = "snapshot.";
+  private static final int                                        SNAPSHOT_BATCH     = 64 * 1024;
+  private static final long                                       THROTTLE_STEP      = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final StorageManager                                    delegate;
+  private final File                                              directory;
+  private final Set<String>                                       staticAliases;
+  private final KeyValueStorageConfig<Object, Object>             dynamicMapConfig;
+  private final long                                              windowMillis;
+  private final int                                               maxGroupBytes;
+  private final long                                              snapshotIntervalMillis;
+  private final long                                              snapshotMinLogBytes;
+  private final long                                              snapshotSegmentBytes;
+
+  private final WriteAheadLog                                     propertiesLog;
+  private final Map<String, String>                               properties;
+  private final ConcurrentMap<String, LoggedKeyValueStorage<?, ?>> storages           = new ConcurrentHashMap<String, LoggedKeyValueStorage<?, ?>>();
+  private final Set<String>                                       dynamicAliases     = Collections
+                                                                                         .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private final ConcurrentMap<String, ConcurrentMap<Object, Byte>> metadata           = new ConcurrentHashMap<String, ConcurrentMap<Object, Byte>>();
+  private final ThreadLocal<LogTransaction>                       currentTransaction = new ThreadLocal<LogTransaction>();
+
+  private final ReadWriteLock                                     logLock            = new ReentrantReadWriteLock();
+  // held shared by open transactions and writes outside of one, exclusively by a snapshot switching generations
+  private final ReadWriteLock                                     commitLock         = new ReentrantReadWriteLock();
+  private WriteAheadLog                                           dataLog;
+  private long                                                    generation;
+
+  private final Object                                            snapshotLock       = new Object();
+  private final Timer                                             snapshotTimer      = new Timer(
+                                                                                                 "WriteAheadLog Snapshot Timer",
+                                                                                                 true);
+  private volatile boolean                                        closed             = false;
+
+  WriteAheadLogStorageManager(StorageManager delegate, File directory, Set<String> staticAliases,
+                              KeyValueStorageConfig<Object, Object> dynamicMapConfig, long windowMillis,
+                              int maxGroupBytes, long snapshotIntervalMillis, long snapshotMinLogBytes,
+                              long snapshotSegmentBytes) throws IOException {
+    this.delegate = delegate;
+    this.directory = directory;
+    this.staticAliases = staticAliases;
+    this.dynamicMapConfig = dynamicMapConfig;
+    this.windowMillis = windowMillis;
+    this.maxGroupBytes = maxGroupBytes;
+    this.snapshotIntervalMillis = snapshotIntervalMillis;
+    this.snapshotMinLogBytes = snapshotMinLogBytes;
+    this.snapshotSegmentBytes = snapshotSegmentBytes;
+    this.propertiesLog = new WriteAheadLog(new File(directory, PROPERTIES_LOG), 0, maxGroupBytes);
+    this.properties = new LoggedProperties(delegate.getProperties());
+    recoverProperties();
+  }
+
+  private void recoverProperties() throws IOException {
+    final Map<String, String> target = delegate.getProperties();
+    propertiesLog.recover(new WriteAheadLog.RecordHandler() {
+      @Override
+      public void handle(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        String key = in.readUTF();
+        if (in.readBoolean()) {
+          target.put(key, in.readUTF());
+        } else {
+          target.remove(key);
+        }
+      }
+    });
+  }
+
+  @Override
+  public Future<?> start() {
+    FutureTask<Void> recovery = new FutureTask<Void>(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        delegate.start().get();
+        recover();
+        return null;
+      }
+    });
+    recovery.run();
+    if (snapshotIntervalMillis > 0) {
+      snapshotTimer.schedule(new TimerTask() {
+        @Override
+        public void run() {
+          snapshotIfNeeded();
+        }
+      }, snapshotIntervalMillis, snapshotIntervalMillis);
+    }
+    return recovery;
+  }
+
+  private void recover() throws IOException {
+    WriteAheadLog.RecordHandler replayer = new WriteAheadLog.RecordHandler() {
+      @Override
+      public void handle(byte[] payload) throws IOException {
+        replay(payload);
+      }
+    };
+
+    SortedMap<Long, File> snapshots = filesByGeneration(SNAPSHOT_PREFIX, "");
+    long base = 0;
+    if (!snapshots.isEmpty()) {
+      base = snapshots.lastKey();
+      logger.info("Loading snapshot " + snapshots.get(base));
+      WriteAheadLogSnapshot.read(snapshots.get(base), replayer);
+    }
+
+    long next = base;
+    for (Map.Entry<Long, File> log : filesByGeneration(DATA_LOG_PREFIX, DATA_LOG_SUFFIX).tailMap(base).entrySet()) {
+      WriteAheadLog replayed = new WriteAheadLog(log.getValue(), 0, maxGroupBytes);
+      replayed.recover(replayer);
+      replayed.close();
+      next = log.getKey() + 1;
+    }
+
+    generation = next;
+    dataLog = openLog(generation);
+    deleteObsolete(base);
+  }
+
+  private WriteAheadLog openLog(final long logGeneration) throws IOException {
+    WriteAheadLog log = new WriteAheadLog(new File(directory, DATA_LOG_PREFIX + logGeneration + DATA_LOG_SUFFIX),
+                                          windowMillis, maxGroupBytes);
+    log.recover(new WriteAheadLog.RecordHandler() {
+      @Override
+      public void handle(byte[] payload) {
+        throw new AssertionError("Log generation " + logGeneration + " reopened");
+      }
+    });
+    return log;
+  }
+
+  private SortedMap<Long, File> filesByGeneration(String prefix, String suffix) {
+    SortedMap<Long, File> files = new TreeMap<Long, File>();
+    File[] children = directory.listFiles();
+    if (children == null) { return files; }
+    for (File child : children) {
+      String name = child.getName();
+      if (name.startsWith(prefix) && name.endsWith(suffix) && !WriteAheadLogSnapshot.isTemporary(child)) {
+        try {
+          files.put(Long.valueOf(name.substring(prefix.length(), name.length() - suffix.length())), child);
+        } catch (NumberFormatException e) {
+          // not one of ours
+        }
+      }
+    }
+    return files;
+  }
+
+  private void deleteObsolete(long base) {
+    for (File log : filesByGeneration(DATA_LOG_PREFIX, DATA_LOG_SUFFIX).headMap(base).values()) {
+      log.delete();
+    }
+    for (File snapshot : filesByGeneration(SNAPSHOT_PREFIX, "").headMap(base).values()) {
+      WriteAheadLogSnapshot.delete(snapshot);
+    }
+    File[] children = directory.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        if (WriteAheadLogSnapshot.isTemporary(child)) {
+          WriteAheadLogSnapshot.delete(child);
+        }
+      }
+    }
+  }
+
+  /**
+   * Applies a logged transaction straight to the delegate. Storages are looked up with {@link Object} key and value
+   * classes since only the alias is logged, and storages created at runtime are recreated with the object factory map
+   * configuration as that is the only place they come from.
+   */
+  private void replay(byte[] payload) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+    while (in.available() > 0) {
+      byte op = in.readByte();
+      String alias = in.readUTF();
+      if (op == CREATE) {
+        if (delegate.getKeyValueStorage(alias, Object.class, Object.class) == null) {
+          delegate.createKeyValueStorage(alias, dynamicMapConfig);
+        }
+        dynamicAliases.add(alias);
+        continue;
+      } else if (op == DESTROY) {
+        delegate.destroyKeyValueStorage(alias);
+        dynamicAliases.remove(alias);
+        metadata.remove(alias);
+        continue;
+      }
+
+      KeyValueStorage<Object, Object> storage = delegate.getKeyValueStorage(alias, Object.class, Object.class);
+      if (storage == null) { throw new IOException("Log refers to unknown storage " + alias); }
+      switch (op) {
+        case PUT:
+          Object putKey = WriteAheadLogCodec.read(in);
+          storage.put(putKey, WriteAheadLogCodec.read(in));
+          forgetMetadata(alias, putKey);
+          break;
+        case PUT_WITH_METADATA:
+          Object key = WriteAheadLogCodec.read(in);
+          Object value = WriteAheadLogCodec.read(in);
+          byte meta = in.readByte();
+          storage.put(key, value, meta);
+          rememberMetadata(alias, key, meta);
+          break;
+        case REMOVE:
+          Object removed = WriteAheadLogCodec.read(in);
+          storage.remove(removed);
+          forgetMetadata(alias, removed);
+          break;
+        case CLEAR:
+          storage.clear();
+          forgetMetadata(alias, null);
+          break;
+        default:
+          throw new IOException("Unknown log operation " + op);
+      }
+    }
+  }
+
+  private ConcurrentMap<Object, Byte> metadataFor(String alias) {
+    ConcurrentMap<Object, Byte> map = metadata.get(alias);
+    if (map == null) {
+      map = new ConcurrentHashMap<Object, Byte>();
+      ConcurrentMap<Object, Byte> racer = metadata.putIfAbsent(alias, map);
+      if (racer != null) {
+        map = racer;
+      }
+    }
+    return map;
+  }
+
+  private void rememberMetadata(String alias, Object key, byte meta) {
+    if (meta == 0) {
+      forgetMetadata(alias, key);
+    } else {
+      metadataFor(alias).put(key, meta);
+    }
+  }
+
+  private void forgetMetadata(String alias, Object key) {
+    Map<Object, Byte> map = metadata.get(alias);
+    if (map != null) {
+      if (key == null) {
+        map.clear();
+      } else {
+        map.remove(key);
+      }
+    }
+  }
+
+  private void snapshotIfNeeded() {
+    long logBytes = 0;
+    for (File log : filesByGeneration(DATA_LOG_PREFIX, DATA_LOG_SUFFIX).values()) {
+      logBytes += log.length();
+    }
+    if (logBytes < snapshotMinLogBytes) { return; }
+    try {
+      snapshot();
+    } catch (Throwable t) {
+      logger.warn("Snapshot of " + directory + " failed, the log is kept until the next one", t);
+    }
+  }
+
+  /**
+   * Switches to a new log generation and compacts the previous snapshot and the generations before the switch into a
+   * snapshot for the new one, then drops what the snapshot covers. Only the switch holds off committers, the snapshot
+   * is read back from files nothing appends to anymore.
+   */
+  void snapshot() throws IOException {
+    synchronized (snapshotLock) {
+      if (closed) { return; }
+      final long snapshotGeneration;
+      commitLock.writeLock().lock();
+      try {
+        snapshotGeneration = rotate();
+      } finally {
+        commitLock.writeLock().unlock();
+      }
+
+      SortedMap<Long, File> snapshots = filesByGeneration(SNAPSHOT_PREFIX, "").headMap(snapshotGeneration);
+      long base = 0;
+      File previous = null;
+      if (!snapshots.isEmpty()) {
+        base = snapshots.lastKey();
+        previous = snapshots.get(base);
+      }
+      Collection<File> sealed = filesByGeneration(DATA_LOG_PREFIX, DATA_LOG_SUFFIX).subMap(base, snapshotGeneration)
+          .values();
+
+      LiveEntryScan scan = new LiveEntryScan();
+      if (!readSealed(previous, sealed, scan)) { return; }
+
+      WriteAheadLogSnapshot snapshot = new WriteAheadLogSnapshot(new File(directory, SNAPSHOT_PREFIX
+                                                                                     + snapshotGeneration),
+                                                                 snapshotSegmentBytes);
+      boolean completed = false;
+      try {
+        SnapshotWriter writer = new SnapshotWriter(scan, snapshot);
+        if (!readSealed(previous, sealed, writer)) { return; }
+        writer.flush();
+        snapshot.complete();
+        completed = true;
+      } finally {
+        if (!completed) {
+          snapshot.abandon();
+        }
+      }
+      deleteObsolete(snapshotGeneration);
+      logger.info("Snapshot " + snapshotGeneration + " of " + directory + " complete");
+    }
+  }
+
+  private long rotate() throws IOException {
+    WriteAheadLog next = openLog(generation + 1);
+    WriteAheadLog previous;
+    logLock.writeLock().lock();
+    try {
+      previous = dataLog;
+      dataLog = next;
+      generation++;
+    } finally {
+      logLock.writeLock().unlock();
+    }
+    previous.close();
+    return generation;
+  }
+
+  /**
+   * Feeds the previous snapshot and then the sealed generations to the handler. Returns false if the storage got closed
+   * on the way, in which case the snapshot is given up.
+   */
+  private boolean readSealed(File previous, Collection<File> sealed, SealedLogHandler handler) throws IOException {
+    if (previous != null) {
+      WriteAheadLogSnapshot.read(previous, handler);
+    }
+    for (File log : sealed) {
+      if (closed) { return false; }
+      WriteAheadLog replayed = new WriteAheadLog(log, 0, maxGroupBytes);
+      try {
+        replayed.recover(handler);
+      } finally {
+        replayed.close();
+      }
+    }
+    return !closed;
+  }
+
+  /**
+   * Splits logged records into their operations and numbers them. Both passes over the sealed files see the same
+   * operations in the same order, so the numbers identify an operation across passes.
+   */
+  private abstract static class SealedLogHandler implements WriteAheadLog.RecordHandler {
+    private long sequence = 0;
+
+    @Override
+    public void handle(byte[] payload) throws IOException {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+      while (in.available() > 0) {
+        byte op = in.readByte();
+        String alias = in.readUTF();
+        switch (op) {
+          case PUT:
+            operation(sequence++, op, alias, WriteAheadLogCodec.read(in), WriteAheadLogCodec.read(in), (byte) 0);
+            break;
+          case PUT_WITH_METADATA:
+            Object key = WriteAheadLogCodec.read(in);
+            Object value = WriteAheadLogCodec.read(in);
+            operation(sequence++, op, alias, key, value, in.readByte());
+            break;
+          case REMOVE:
+            operation(sequence++, op, alias, WriteAheadLogCodec.read(in), null, (byte) 0);
+            break;
+          case CLEAR:
+          case CREATE:
+          case DESTROY:
+            operation(sequence++, op, alias, null, null, (byte) 0);
+            break;
+          default:
+            throw new IOException("Unknown log operation " + op);
+        }
+      }
+    }
+
+    abstract void operation(long seq, byte op, String alias, Object key, Object value, byte meta) throws IOException;
+  }
+
+  /**
+   * First pass, finds the put that is still in effect for every mapped key and the storages created at runtime that
+   * still exist. Only keys are held on to, values are read past.
+   */
+  private static class LiveEntryScan extends SealedLogHandler {
+    private final Map<String, Map<Object, Long>> live           = new HashMap<String, Map<Object, Long>>();
+    private final Set<String>                    dynamicAliases = new LinkedHashSet<String>();
+
+    @Override
+    void operation(long seq, byte op, String alias, Object key, Object value, byte meta) {
+      Map<Object, Long> keys = live.get(alias);
+      switch (op) {
+        case PUT:
+        case PUT_WITH_METADATA:
+          if (keys == null) {
+            keys = new HashMap<Object, Long>();
+            live.put(alias, keys);
+          }
+          keys.put(key, seq);
+          break;
+        case REMOVE:
+          if (keys != null) {
+            keys.remove(key);
+          }
+          break;
+        case CLEAR:
+          live.remove(alias);
+          break;
+        case CREATE:
+          dynamicAliases.add(alias);
+          break;
+        case DESTROY:
+          dynamicAliases.remove(alias);
+          live.remove(alias);
+          break;
+        default:
+          throw new AssertionError(op);
+      }
+    }
+
+    boolean isLive(long seq, String alias, Object key) {
+      Map<Object, Long> keys = live.get(alias);
+      if (keys == null) { return false; }
+      Long latest = keys.get(key);
+      return latest != null && latest.longValue() == seq;
+    }
+  }
+
+  /**
+   * Second pass, writes the storages created at runtime followed by the puts found to be in effect.
+   */
+  private static class SnapshotWriter extends SealedLogHandler {
+    private final LiveEntryScan         scan;
+    private final WriteAheadLogSnapshot snapshot;
+    private final LogTransaction        batch = new LogTransaction();
+
+    SnapshotWriter(LiveEntryScan scan, WriteAheadLogSnapshot snapshot) throws IOException {
+      this.scan = scan;
+      this.snapshot = snapshot;
+      for (String alias : scan.dynamicAliases) {
+        batch.out.writeByte(CREATE);
+        batch.out.writeUTF(alias);
+      }
+    }
+
+    @Override
+    void operation(long seq, byte op, String alias, Object key, Object value, byte meta) throws IOException {
+      if ((op != PUT && op != PUT_WITH_METADATA) || !scan.isLive(seq, alias, key)) { return; }
+      batch.out.writeByte(op);
+      batch.out.writeUTF(alias);
+      WriteAheadLogCodec.write(batch.out, key);
+      WriteAheadLogCodec.write(batch.out, value);
+      if (op == PUT_WITH_METADATA) {
+        batch.out.writeByte(meta);
+      }
+      if (batch.bytes.size() >= SNAPSHOT_BATCH) {
+        flush();
+      }
+    }
+
+    void flush() throws IOException {
+      if (batch.bytes.size() > 0) {
+        snapshot.add(batch.bytes.toByteArray());
+        batch.bytes.reset();
+      }
+    }
+  }
+
+  /**
+   * Copies a consistent image of the storages into the target directory without holding up writers. Appends are
+   * switched to a new log generation first, so the latest snapshot and the now immutable generations before the switch
+   * hold exactly the transactions committed up to that point. Snapshots wait until the copy is done so the files being
+   * copied are not deleted underneath it. Closing the storage aborts the copy rather than waiting for it.
+   */
+  void backup(File target, long bytesPerSecond, RestartablePersistor.BackupListener listener) throws IOException {
+    synchronized (snapshotLock) {
+      if (closed) { throw new IOException("Storage in " + directory + " is closed"); }
+      long cut = rotate();
+      Map<File, File> copies = new LinkedHashMap<File, File>();
+      SortedMap<Long, File> snapshots = filesByGeneration(SNAPSHOT_PREFIX, "").headMap(cut);
+      long base = 0;
+      if (!snapshots.isEmpty()) {
+        base = snapshots.lastKey();
+        File snapshot = snapshots.get(base);
+        File targetSnapshot = new File(target, snapshot.getName());
+        for (File segment : snapshot.listFiles()) {
+          copies.put(segment, new File(targetSnapshot, segment.getName()));
+        }
+      }
+      for (File log : filesByGeneration(DATA_LOG_PREFIX, DATA_LOG_SUFFIX).subMap(base, cut).values()) {
+        copies.put(log, new File(target, log.getName()));
+      }
+      File properties = new File(directory, PROPERTIES_LOG);
+      copies.put(properties, new File(target, properties.getName()));
+
+      Map<File, Long> lengths = new HashMap<File, Long>();
+      long total = 0;
+      for (File source : copies.keySet()) {
+        lengths.put(source, source.length());
+        total += source.length();
+      }
+      ThrottledCopier copier = new ThrottledCopier(bytesPerSecond, total, listener);
+      for (Map.Entry<File, File> copy : copies.entrySet()) {
+        copier.copy(copy.getKey(), copy.getValue(), lengths.get(copy.getKey()));
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    snapshotTimer.cancel();
+    synchronized (snapshotLock) {
+      if (dataLog != null) {
+        dataLog.close();
+      }
+    }
+    propertiesLog.close();
+    delegate.close();
+  }
+
+  @Override
+  public Map<String, String> getProperties() {
+    return properties;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <K, V> KeyValueStorage<K, V> getKeyValueStorage(String alias, Class<K> keyClass, Class<V> valueClass) {
+    KeyValueStorage<K, V> storage = delegate.getKeyValueStorage(alias, keyClass, valueClass);
+    if (storage == null) { return null; }
+    LoggedKeyValueStorage<?, ?> logged = storages.get(alias);
+    if (logged == null || logged.delegate != storage) {
+      logged = new LoggedKeyValueStorage<K, V>(alias, storage);
+      storages.put(alias, logged);
+    }
+    return (KeyValueStorage<K, V>) logged;
+  }
+
+  @Override
+  public <K, V> KeyValueStorage<K, V> createKeyValueStorage(String alias, KeyValueStorageConfig<K, V> config) {
+    LogTransaction txn = startWrite();
+    try {
+      KeyValueStorage<K, V> storage = delegate.createKeyValueStorage(alias, config);
+      LoggedKeyValueStorage<K, V> logged = new LoggedKeyValueStorage<K, V>(alias, storage);
+      storages.put(alias, logged);
+      dynamicAliases.add(alias);
+      try {
+        txn.out.writeByte(CREATE);
+        txn.out.writeUTF(alias);
+      } catch (IOException e) {
+        throw new AssertionError(e);
+      }
+      endRecord(txn);
+      return logged;
+    } finally {
+      endWrite(txn);
+    }
+  }
+
+  @Override
+  public void destroyKeyValueStorage(String alias) {
+    LogTransaction txn = startWrite();
+    try {
+      delegate.destroyKeyValueStorage(alias);
+      storages.remove(alias);
+      dynamicAliases.remove(alias);
+      metadata.remove(alias);
+      try {
+        txn.out.writeByte(DESTROY);
+        txn.out.writeUTF(alias);
+      } catch (IOException e) {
+        throw new AssertionError(e);
+      }
+      endRecord(txn);
+    } finally {
+      endWrite(txn);
+    }
+  }
+
+  @Override
+  public void begin() {
+    delegate.begin();
+    LogTransaction txn = currentTransaction.get();
+    if (txn == null) {
+      commitLock.readLock().lock();
+      txn = new LogTransaction();
+      currentTransaction.set(txn);
+    }
+    txn.depth++;
+  }
+
+  @Override
+  public void commit() {
+    LogTransaction txn = currentTransaction.get();
+    if (txn == null) { throw new IllegalStateException("No transaction in progress"); }
+    if (--txn.depth > 0) {
+      delegate.commit();
+      return;
+    }
+    currentTransaction.remove();
+    try {
+      if (txn.bytes.size() > 0) {
+        append(txn.bytes.toByteArray());
+      }
+      delegate.commit();
+    } finally {
+      commitLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Collection<MonitoredResource> getMonitoredResources() {
+    return delegate.getMonitoredResources();
+  }
+
+  /**
+   * @return the transaction of the calling thread, or a record of its own for a write outside of one. Every write has
+   *         to be matched with a call to {@link #endWrite(LogTransaction)}.
+   */
+  private LogTransaction startWrite() {
+    LogTransaction txn = currentTransaction.get();
+    if (txn != null) { return txn; }
+    commitLock.readLock().lock();
+    return new LogTransaction();
+  }
+
+  private void endWrite(LogTransaction txn) {
+    if (txn.depth == 0) {
+      commitLock.readLock().unlock();
+    }
+  }
+
+  private void endRecord(LogTransaction txn) {
+    if (txn.depth == 0) {
+      append(txn.bytes.toByteArray());
+    }
+  }
+
+  private void append(byte[] record) {
+    logLock.readLock().lock();
+    try {
+      dataLog.append(record);
+    } finally {
+      logLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Copies files at no more than the given rate, the properties log is cut at the length it had when the backup
+   * started since it keeps being appended to. Gives up with an exception once the storage is closed.
+   */
+  private class ThrottledCopier {
+    private final long                                 bytesPerSecond;
+    private final long                                 total;
+    private final RestartablePersistor.BackupListener listener;
+    private final long                                 start  = System.nanoTime();
+    private final byte[]                               buffer = new byte[64 * 1024];
+    private long                                       copied = 0;
+
+    ThrottledCopier(long bytesPerSecond, long total, RestartablePersistor.BackupListener listener) {
+      this.bytesPerSecond = bytesPerSecond;
+      this.total = total;
+      this.listener = listener;
+    }
+
+    void copy(File source, File target, long length) throws IOException {
+      File parent = target.getParentFile();
+      if (!parent.isDirectory() && !parent.mkdirs()) { throw new IOException("Unable to create " + parent); }
+      FileInputStream in = new FileInputStream(source);
+      try {
+        FileOutputStream out = new FileOutputStream(target);
+        try {
+          long remaining = length;
+          while (remaining > 0) {
+            checkOpen();
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) { throw new IOException(source + " shrank while being copied"); }
+            out.write(buffer, 0, read);
+            remaining -= read;
+            copied += read;
+            listener.progress(copied, total);
+            throttle();
+          }
+          out.getFD().sync();
+        } finally {
+          out.close();
+        }
+      } finally {
+        in.close();
+      }
+    }
+
+    private void throttle() throws IOException {
+      if (bytesPerSecond <= 0) { return; }
+      long ahead = TimeUnit.SECONDS.toNanos(copied) / bytesPerSecond - (System.nanoTime() - start);
+      while (ahead > 0) {
+        // in short steps, so that closing the storage doesn't wait for a slow backup
+        try {
+          TimeUnit.NANOSECONDS.sleep(Math.min(ahead, THROTTLE_STEP));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted copying backup");
+        }
+        checkOpen();
+        ahead = TimeUnit.SECONDS.toNanos(copied) / bytesPerSecond - (System.nanoTime() - start);
+      }
+    }
+
+    private void checkOpen() throws IOException {
+      if (closed) { throw new IOException("Storage in " + directory + " closed during backup"); }
+    }
+  }
+
+  private static class LogTransaction {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream      out   = new DataOutputStream(bytes);
+    private int                         depth = 0;
+  }
+
+  private class LoggedKeyValueStorage<K, V> implements KeyValueStorage<K, V> {
+    private final String                alias;
+    private final KeyValueStorage<K, V> delegate;
+
+    LoggedKeyValueStorage(String alias, KeyValueStorage<K, V> delegate) {
+      this.alias = alias;
+      this.delegate = delegate;
+    }
+
+    @Override
+    public Set<K> keySet() {
+      return delegate.keySet();
+    }
+
+    @Override
+    public Collection<V> values() {
+      return delegate.values();
+    }
+
+    @Override
+    public long size() {
+      return delegate.size();
+    }
+
+    @Override
+    public void put(K key, V value) {
+      LogTransaction txn = startWrite();
+      try {
+        delegate.put(key, value);
+        forgetMetadata(alias, key);
+        log(txn, PUT, key, value, (byte) 0);
+      } finally {
+        endWrite(txn);
+      }
+    }
+
+    @Override
+    public void put(K key, V value, byte meta) {
+      LogTransaction txn = startWrite();
+      try {
+        delegate.put(key, value, meta);
+        rememberMetadata(alias, key, meta);
+        log(txn, PUT_WITH_METADATA, key, value, meta);
+      } finally {
+        endWrite(txn);
+      }
+    }
+
+    @Override
+    public V get(K key) {
+      return delegate.get(key);
+    }
+
+    @Override
+    public boolean remove(K key) {
+      LogTransaction txn = startWrite();
+      try {
+        boolean removed = delegate.remove(key);
+        if (removed) {
+          forgetMetadata(alias, key);
+          log(txn, REMOVE, key, null, (byte) 0);
+        }
+        return removed;
+      } finally {
+        endWrite(txn);
+      }
+    }
+
+    @Override
+    public void removeAll(Collection<K> keys) {
+      LogTransaction txn = startWrite();
+      try {
+        delegate.removeAll(keys);
+        try {
+          for (K key : keys) {
+            forgetMetadata(alias, key);
+            writeOp(txn.out, REMOVE);
+            WriteAheadLogCodec.write(txn.out, key);
+          }
+        } catch (IOException e) {
+          throw new AssertionError(e);
+        }
+        endRecord(txn);
+      } finally {
+        endWrite(txn);
+      }
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+      return delegate.containsKey(key);
+    }
+
+    @Override
+    public void clear() {
+      LogTransaction txn = startWrite();
+      try {
+        delegate.clear();
+        forgetMetadata(alias, null);
+        log(txn, CLEAR, null, null, (byte) 0);
+      } finally {
+        endWrite(txn);
+      }
+    }
+
+    private void log(LogTransaction txn, byte op, Object key, Object value, byte meta) {
+      try {
+        writeOp(txn.out, op);
+        if (op != CLEAR) {
+          WriteAheadLogCodec.write(txn.out, key);
+        }
+        if (op == PUT || op == PUT_WITH_METADATA) {
+          WriteAheadLogCodec.write(txn.out, value);
+        }
+        if (op == PUT_WITH_METADATA) {
+          txn.out.writeByte(meta);
+        }
+      } catch (IOException e) {
+        throw new AssertionError(e);
+      }
+      endRecord(txn);
+    }
+
+    private void writeOp(DataOutputStream out, byte op) throws IOException {
+      out.writeByte(op);
+      out.writeUTF(alias);
+    }
+  }
+
+  private class LoggedProperties extends AbstractMap<String, String> {
+    private final Map<String, String> delegate;
+
+    LoggedProperties(Map<String, String> delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public String get(Object key) {
+      return delegate.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return delegate.containsKey(key);
+    }
+
+    @Override
+    public String put(String key, String value) {
+      String old = delegate.put(key, value);
+      log(key, value);
+      return old;
+    }
+
+    @Override
+    public String remove(Object key) {
+      String old = delegate.remove(key);
+      if (old != null) {
+        log((String) key, null);
+      }
+      return old;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+      return Collections.unmodifiableMap(delegate).entrySet();
+    }
+
+    private void log(String key, String value) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      try {
+        out.writeUTF(key);
+        out.writeBoolean(value != null);
+        if (value != null) {
+          out.writeUTF(value);
+        }
+      } catch (IOException e) {
+        throw new AssertionError(e);
+      }
+      propertiesLog.append(bytes.toByteArray());
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.memory;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * Indexes of one attribute within a segment. Every value is in a hash index for equality lookups. Ranges are answered
+ * by a {@link NumericColumn} for numeric attributes and by a skip list for everything else; the skip list shares the
+ * row sets of the hash index. An attribute that starts out numeric and later sees a value of another kind is moved to
+ * the skip list. Callers hold the segment lock.
+ */
+final class AttributeIndex {
+
+  private final Map<Object, BitSet>             hash    = new HashMap<Object, BitSet>();
+  private final BitSet                          present = new BitSet();
+  private NumericColumn                         column;
+  private ConcurrentSkipListMap<Object, BitSet> sorted;
+
+  void add(int row, Object value) {
+    final Object key = key(value);
+    BitSet rows = hash.get(key);
+    final boolean newKey = rows == null;
+    if (newKey) {
+      rows = new BitSet();
+      hash.put(key, rows);
+    }
+    rows.set(row);
+    present.set(row);
+
+    if (column == null && sorted == null) {
+      if (ValueComparator.isIntegral(value) || ValueComparator.isFloating(value)) {
+        column = new NumericColumn(ValueComparator.isFloating(value));
+      } else {
+        sorted = new ConcurrentSkipListMap<Object, BitSet>(ValueComparator.INSTANCE);
+      }
+    }
+
+    if (column != null) {
+      if (column.accepts(value)) {
+        column.set(row, (Number) value);
+      } else {
+        column = null;
+        sorted = new ConcurrentSkipListMap<Object, BitSet>(ValueComparator.INSTANCE);
+        sorted.putAll(hash);
+      }
+    } else if (newKey) {
+      sorted.put(key, rows);
+    }
+  }
+
+  void remove(int row, Object value) {
+    final Object key = key(value);
+    final BitSet rows = hash.get(key);
+    if (rows == null) { return; }
+    rows.clear(row);
+    present.clear(row);
+    if (column != null) {
+      column.clear(row);
+    }
+    if (rows.isEmpty()) {
+      hash.remove(key);
+      if (sorted != null) {
+        sorted.remove(key);
+      }
+    }
+  }
+
+  BitSet present() {
+    return (BitSet) present.clone();
+  }
+
+  BitSet equal(Object value) {
+    if (column != null && value instanceof Number) { return column.range((Number) value, true, (Number) value, true); }
+    final BitSet rows = hash.get(key(value));
+    return rows == null ? new BitSet() : (BitSet) rows.clone();
+  }
+
+  /**
+   * Rows with a value within the given bounds, a null bound is open.
+   */
+  BitSet range(Object lower, boolean lowerInclusive, Object upper, boolean upperInclusive) {
+    if (column != null) {
+      if ((lower == null || lower instanceof Number) && (upper == null || upper instanceof Number)) {
+        return column.range((Number) lower, lowerInclusive, (Number) upper, upperInclusive);
+      }
+      return new BitSet();
+    }
+    if (sorted == null) { return new BitSet(); }
+
+    NavigableMap<Object, BitSet> view = sorted;
+    if (lower != null) {
+      view = view.tailMap(key(lower), lowerInclusive);
+    }
+    if (upper != null) {
+      view = view.headMap(key(upper), upperInclusive);
+    }
+    final BitSet result = new BitSet();
+    for (BitSet rows : view.values()) {
+      result.or(rows);
+    }
+    return result;
+  }
+
+  BitSet like(Pattern pattern) {
+    final BitSet result = new BitSet();
+    for (Map.Entry<Object, BitSet> e : hash.entrySet()) {
+      if (e.getKey() instanceof String && pattern.matcher((String) e.getKey()).matches()) {
+        result.or(e.getValue());
+      }
+    }
+    return result;
+  }
+
+  boolean isEmpty() {
+    return hash.isEmpty();
+  }
+
+  private static Object key(Object value) {
+    // arrays only have identity equality
+    return value instanceof byte[] ? ByteBuffer.wrap((byte[]) value) : value;
+  }
+}
@@ -0,0 +1,96 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.memory;
+
+import com.tc.object.ObjectID;
+import com.terracottatech.search.NVPair;
+import com.terracottatech.search.ValueID;
+import com.terracottatech.search.ValueType;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The indexes of one cache, one {@link SegmentIndex} per server map segment so that mutations of different segments
+ * don't contend.
+ */
+final class CacheIndex {
+
+  private final String                                name;
+  private final ConcurrentMap<ObjectID, SegmentIndex> segments       = new ConcurrentHashMap<ObjectID, SegmentIndex>();
+  private final ConcurrentMap<String, ValueType>      attributeTypes = new ConcurrentHashMap<String, ValueType>();
+
+  CacheIndex(String name) {
+    this.name = name;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  SegmentIndex getOrCreateSegment(ObjectID segmentOid) {
+    SegmentIndex segment = segments.get(segmentOid);
+    if (segment == null) {
+      segment = new SegmentIndex();
+      final SegmentIndex existing = segments.putIfAbsent(segmentOid, segment);
+      if (existing != null) {
+        segment = existing;
+      }
+    }
+    return segment;
+  }
+
+  SegmentIndex getSegment(ObjectID segmentOid) {
+    return segments.get(segmentOid);
+  }
+
+  void clear(ObjectID segmentOid) {
+    segments.remove(segmentOid);
+  }
+
+  Row newRow(String key, ValueID value, List<NVPair> attributes) {
+    final Map<String, NVPair> byName = new LinkedHashMap<String, NVPair>();
+    if (attributes != null) {
+      for (NVPair pair : attributes) {
+        byName.put(pair.getName(), pair);
+        if (pair.getType() != null) {
+          attributeTypes.put(pair.getName(), pair.getType());
+        }
+      }
+    }
+    return new Row(key, value, byName);
+  }
+
+  ValueType getAttributeType(String attributeName) {
+    return attributeTypes.get(attributeName);
+  }
+
+  SegmentIndex[] segments() {
+    return segments.values().toArray(new SegmentIndex[0]);
+  }
+
+  int size() {
+    int size = 0;
+    for (SegmentIndex segment : segments.values()) {
+      size += segment.size();
+    }
+    return size;
+  }
+}
@@ -0,0 +1,402 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.memory;
+
+import com.tc.l2.context.StateChangedEvent;
+import com.tc.net.ClientID;
+import com.tc.object.ObjectID;
+import com.tc.objectserver.metadata.MetaDataProcessingContext;
+import com.tc.objectserver.search.IndexHACoordinator;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
+import com.tc.search.SearchRequestID;
+import com.terracottatech.search.IndexException;
+import com.terracottatech.search.IndexFile;
+import com.terracottatech.search.IndexQueryResult;
+import com.terracottatech.search.NVPair;
+import com.terracottatech.search.QueryID;
+import com.terracottatech.search.SearchResult;
+import com.terracottatech.search.SyncSnapshot;
+import com.terracottatech.search.ValueID;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Search index manager keeping the indexes of every cache in server memory. Indexes are per cache and per server map
+ * segment; see {@link SegmentIndex} and {@link AttributeIndex} for how attributes are indexed. Queries are run by a
+ * {@link QueryExecutor} and paged through a {@link QueryCursor} kept per client request. The indexes are not
+ * persisted, passive servers build their own from the replicated transactions so there are no index files to sync
+ * or back up.
+ */
+public class InMemoryIndexManager implements IndexHACoordinator {
+
+  private static final int                        QUERY_PARALLELISM     = TCPropertiesImpl
+                                                                            .getProperties()
+                                                                            .getInt(TCPropertiesConsts.L2_SEARCH_QUERY_PARALLELISM,
+                                                                                    0);
+  private static final int                        MAX_PAGED_RESULT_SETS = TCPropertiesImpl
+                                                                            .getProperties()
+                                                                            .getInt(TCPropertiesConsts.L2_SEARCH_MAX_PAGED_RESULT_SETS,
+                                                                                    1000);
+
+  private final ConcurrentMap<String, CacheIndex> caches                = new ConcurrentHashMap<String, CacheIndex>();
+  private final QueryExecutor                     executor;
+  private final int                               maxPagedResultSets;
+  // open cursors in the order they were opened, guarded by itself
+  private final Map<CursorKey, QueryCursor>       cursors               = new LinkedHashMap<CursorKey, QueryCursor>();
+
+  public InMemoryIndexManager() {
+    this(QUERY_PARALLELISM, MAX_PAGED_RESULT_SETS);
+  }
+
+  InMemoryIndexManager(int queryParallelism, int maxPagedResultSets) {
+    this.executor = new QueryExecutor(queryParallelism);
+    this.maxPagedResultSets = maxPagedResultSets;
+  }
+
+  @Override
+  public void insert(String cacheName, String key, ValueID value, List<NVPair> attributes, ObjectID segmentOid,
+                     MetaDataProcessingContext metaDataContext) {
+    final CacheIndex cache = getOrCreateCache(cacheName);
+    cache.getOrCreateSegment(segmentOid).put(cache.newRow(key, value, attributes));
+    processed(metaDataContext);
+  }
+
+  @Override
+  public void update(String indexName, String key, ValueID value, List<NVPair> attributes, ObjectID segmentOid,
+                     MetaDataProcessingContext metaDataContext) {
+    insert(indexName, key, value, attributes, segmentOid, metaDataContext);
+  }
+
+  @Override
+  public void putIfAbsent(String indexName, String key, ValueID value, List<NVPair> attributes, ObjectID segmentOid,
+                          MetaDataProcessingContext metaDataContext) {
+    final CacheIndex cache = getOrCreateCache(indexName);
+    cache.getOrCreateSegment(segmentOid).putIfAbsent(cache.newRow(key, value, attributes));
+    processed(metaDataContext);
+  }
+
+  @Override
+  public void replace(String indexName, String key, ValueID value, ValueID previousValue, List<NVPair> attributes,
+                      ObjectID segmentOid, MetaDataProcessingContext metaDataContext) {
+    final CacheIndex cache = getOrCreateCache(indexName);
+    cache.getOrCreateSegment(segmentOid).replace(cache.newRow(key, value, attributes), previousValue);
+    processed(metaDataContext);
+  }
+
+  @Override
+  public void remove(String indexName, String key, ObjectID segmentOid, MetaDataProcessingContext metaDataContext) {
+    final SegmentIndex segment = getSegment(indexName, segmentOid);
+    if (segment != null) {
+      segment.remove(key);
+    }
+    processed(metaDataContext);
+  }
+
+  @Override
+  public void removeIfValueEqual(String indexName, Map<String, ValueID> toRemove, ObjectID segmentOid,
+                                 MetaDataProcessingContext metaDataContext, boolean fromEviction) {
+    final SegmentIndex segment = getSegment(indexName, segmentOid);
+    if (segment != null) {
+      for (Map.Entry<String, ValueID> e : toRemove.entrySet()) {
+        segment.removeIfValueEqual(e.getKey(), e.getValue());
+      }
+    }
+    processed(metaDataContext);
+  }
+
+  @Override
+  public void clear(String indexName, ObjectID segmentOid, MetaDataProcessingContext metaDataContext) {
+    final CacheIndex cache = caches.get(indexName);
+    if (cache != null) {
+      cache.clear(segmentOid);
+    }
+    processed(metaDataContext);
+  }
+
+  @Override
+  public void deleteIndex(String indexName, MetaDataProcessingContext processingContext) {
+    caches.remove(indexName);
+    processed(processingContext);
+  }
+
+  @Override
+  public SearchResult searchIndex(String indexName, ClientID clientId, SearchRequestID reqId, List queryStack,
+                                  boolean includeKeys, boolean includeValues, Set<String> attributeSet,
+                                  Set<String> groupByAttributes, List<NVPair> sortAttributes, List<NVPair> aggregators,
+                                  int maxResults, int fetchSize) throws IndexException {
+    return firstPage(indexName, clientId, reqId, queryStack, includeKeys, includeValues, attributeSet,
+                     groupByAttributes, sortAttributes, aggregators, maxResults, fetchSize).result;
+  }
+
+  /**
+   * Runs the query and returns its first page along with the total number of results, which is what a client needs
+   * to page through the rest with {@link #getSearchResults}.
+   */
+  FirstPage firstPage(String indexName, ClientID clientId, SearchRequestID reqId, List queryStack,
+                      boolean includeKeys, boolean includeValues, Set<String> attributeSet,
+                      Set<String> groupByAttributes, List<NVPair> sortAttributes, List<NVPair> aggregators,
+                      int maxResults, int fetchSize) throws IndexException {
+    final QueryCursor cursor = execute(indexName, queryStack, includeKeys, includeValues, attributeSet,
+                                       groupByAttributes, sortAttributes, aggregators, maxResults);
+    final FirstPage first;
+    try {
+      // hand out the first batch as soon as it is ready, the rest is pulled through getSearchResults()
+      final SearchResult<IndexQueryResult> result = cursor.page(0, fetchSize > 0 ? fetchSize : -1);
+      first = new FirstPage(result, cursor.size());
+    } catch (IndexException e) {
+      cursor.close();
+      throw e;
+    }
+    keepOrClose(new CursorKey(clientId, reqId), cursor);
+    return first;
+  }
+
+  @Override
+  public SearchResult getSearchResults(String name, ClientID clientId, SearchRequestID reqId, List queryStack,
+                                       boolean includeKeys, boolean includeValues, Set<String> attributeSet,
+                                       List<NVPair> sortAttributes, List<NVPair> aggregators, int maxResults,
+                                       int start, int pageSize) throws IndexException {
+    final CursorKey key = new CursorKey(clientId, reqId);
+    QueryCursor cursor;
+    synchronized (cursors) {
+      cursor = cursors.remove(key);
+    }
+    if (cursor == null) {
+      // the cursor was closed or evicted, run the query again. Grouped cursors are never evicted, see keepOrClose()
+      cursor = execute(name, queryStack, includeKeys, includeValues, attributeSet, Collections.<String> emptySet(),
+                       sortAttributes, aggregators, maxResults);
+    }
+    final SearchResult result;
+    try {
+      result = cursor.page(start, pageSize);
+    } catch (IndexException e) {
+      cursor.close();
+      throw e;
+    }
+    keepOrClose(key, cursor);
+    return result;
+  }
+
+  private QueryCursor execute(String indexName, List queryStack, boolean includeKeys, boolean includeValues,
+                              Set<String> attributeSet, Set<String> groupByAttributes, List<NVPair> sortAttributes,
+                              List<NVPair> aggregators, int maxResults) throws IndexException {
+    final QueryNode query = QueryParser.parse(queryStack);
+    final CacheIndex cache = caches.get(indexName);
+    final ResultBuilder builder = new ResultBuilder(cache, includeKeys, includeValues, attributeSet, groupByAttributes,
+                                                    sortAttributes, aggregators);
+    return executor.execute(cache, query, builder, maxResults);
+  }
+
+  /**
+   * Keeps the cursor for the next page unless it is exhausted. The number of open cursors is bounded, the oldest are
+   * closed first and their queries run again should the client still ask for more. Grouped cursors are left alone as
+   * their query can't be run again, they stay until they are exhausted or their client goes away.
+   */
+  private void keepOrClose(CursorKey key, QueryCursor cursor) {
+    if (cursor.isExhausted()) {
+      cursor.close();
+      return;
+    }
+    final List<QueryCursor> evicted = new ArrayList<QueryCursor>();
+    synchronized (cursors) {
+      cursors.put(key, cursor);
+      final Iterator<QueryCursor> i = cursors.values().iterator();
+      while (cursors.size() > maxPagedResultSets && i.hasNext()) {
+        final QueryCursor oldest = i.next();
+        if (!oldest.isGrouped()) {
+          evicted.add(oldest);
+          i.remove();
+        }
+      }
+    }
+    for (QueryCursor c : evicted) {
+      c.close();
+    }
+  }
+
+  @Override
+  public void snapshotForQuery(String indexName, QueryID query, MetaDataProcessingContext context) {
+    // queries run against the live indexes
+    processed(context);
+  }
+
+  @Override
+  public void releaseSearchResults(String indexName, QueryID query, MetaDataProcessingContext context) {
+    processed(context);
+  }
+
+  @Override
+  public void releaseAllResultsFor(ClientID clientId) {
+    closeCursors(Collections.singleton(clientId), false);
+  }
+
+  @Override
+  public void pruneSearchResults(Set<ClientID> clientFilter) {
+    closeCursors(clientFilter, true);
+  }
+
+  private void closeCursors(Set<ClientID> clients, boolean keepListed) {
+    final List<QueryCursor> closed = new ArrayList<QueryCursor>();
+    synchronized (cursors) {
+      for (Iterator<Map.Entry<CursorKey, QueryCursor>> i = cursors.entrySet().iterator(); i.hasNext();) {
+        final Map.Entry<CursorKey, QueryCursor> e = i.next();
+        if (clients.contains(e.getKey().clientId) != keepListed) {
+          closed.add(e.getValue());
+          i.remove();
+        }
+      }
+    }
+    for (QueryCursor cursor : closed) {
+      cursor.close();
+    }
+  }
+
+  @Override
+  public SyncSnapshot snapshot(String syncId) {
+    return new SyncSnapshot() {
+      @Override
+      public void release() {
+        //
+      }
+
+      @Override
+      public Map<String, List<IndexFile>> getFilesToSync() {
+        return Collections.emptyMap();
+      }
+    };
+  }
+
+  @Override
+  public void backup(File destDir, SyncSnapshot syncSnapshot) {
+    // nothing on disk
+  }
+
+  @Override
+  public void shutdown() {
+    closeCursors(Collections.<ClientID> emptySet(), true);
+    executor.shutdown();
+    caches.clear();
+  }
+
+  @Override
+  public void optimizeSearchIndex(String indexName) {
+    //
+  }
+
+  @Override
+  public String[] getSearchIndexNames() {
+    return caches.keySet().toArray(new String[0]);
+  }
+
+  @Override
+  public InputStream getIndexFile(String cacheName, String indexId, String fileName) throws IOException {
+    throw new IOException("In memory search indexes have no files: " + cacheName + "/" + indexId + "/" + fileName);
+  }
+
+  @Override
+  public void doSyncPrepare() {
+    //
+  }
+
+  @Override
+  public void applyIndexSync(String cacheName, String indexId, String fileName, byte[] fileData, boolean isTCFile,
+                             boolean isLast) {
+    //
+  }
+
+  @Override
+  public void applyTempJournalsAndSwitch() {
+    //
+  }
+
+  @Override
+  public int getNumberOfIndexesPerCache() {
+    return 1;
+  }
+
+  @Override
+  public void l2StateChanged(StateChangedEvent sce) {
+    //
+  }
+
+  private CacheIndex getOrCreateCache(String cacheName) {
+    CacheIndex cache = caches.get(cacheName);
+    if (cache == null) {
+      cache = new CacheIndex(cacheName);
+      final CacheIndex existing = caches.putIfAbsent(cacheName, cache);
+      if (existing != null) {
+        cache = existing;
+      }
+    }
+    return cache;
+  }
+
+  private SegmentIndex getSegment(String cacheName, ObjectID segmentOid) {
+    final CacheIndex cache = caches.get(cacheName);
+    return cache == null ? null : cache.getSegment(segmentOid);
+  }
+
+  private static void processed(MetaDataProcessingContext context) {
+    if (context != null) {
+      context.processed();
+    }
+  }
+
+  static final class FirstPage {
+    final SearchResult<IndexQueryResult> result;
+    final long                           totalResultCount;
+
+    FirstPage(SearchResult<IndexQueryResult> result, long totalResultCount) {
+      this.result = result;
+      this.totalResultCount = totalResultCount;
+    }
+  }
+
+  private static final class CursorKey {
+    private final ClientID        clientId;
+    private final SearchRequestID requestId;
+
+    CursorKey(ClientID clientId, SearchRequestID requestId) {
+      this.clientId = clientId;
+      this.requestId = requestId;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * clientId.hashCode() + requestId.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof CursorKey)) { return false; }
+      final CursorKey other = (CursorKey) obj;
+      return clientId.equals(other.clientId) && requestId.equals(other.requestId);
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.memory;
+
+import com.tc.async.api.ConfigurationContext;
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+import com.tc.net.ClientID;
+import com.tc.net.protocol.tcm.MessageChannel;
+import com.tc.net.protocol.tcm.TCMessageType;
+import com.tc.object.msg.SearchQueryRequestMessage;
+import com.tc.object.msg.SearchQueryResponseMessage;
+import com.tc.object.msg.SearchResultsRequestMessage;
+import com.tc.object.msg.SearchResultsResponseMessage;
+import com.tc.object.net.DSOChannelManager;
+import com.tc.object.net.DSOChannelManagerEventListener;
+import com.tc.object.net.NoSuchChannelException;
+import com.tc.objectserver.search.SearchRequestManager;
+import com.terracottatech.search.IndexException;
+import com.terracottatech.search.IndexQueryResult;
+import com.terracottatech.search.SearchResult;
+
+import java.util.Set;
+
+/**
+ * Answers client queries from the {@link InMemoryIndexManager}. The first page of a query is sent with the query
+ * response, later pages are served from the cursor the index manager keeps for the request. A client's cursors are
+ * closed when its channel goes away.
+ */
+public class InMemorySearchRequestManager implements SearchRequestManager, DSOChannelManagerEventListener {
+
+  private static final TCLogger      logger = TCLogging.getLogger(InMemorySearchRequestManager.class);
+
+  private final DSOChannelManager    channelManager;
+  private final InMemoryIndexManager indexManager;
+
+  public InMemorySearchRequestManager(DSOChannelManager channelManager, InMemoryIndexManager indexManager) {
+    this.channelManager = channelManager;
+    this.indexManager = indexManager;
+    this.channelManager.addEventListener(this);
+  }
+
+  @Override
+  public void queryRequest(SearchQueryRequestMessage request) {
+    final ClientID clientID = request.getClientID();
+    final MessageChannel channel;
+    try {
+      channel = channelManager.getActiveChannel(clientID);
+    } catch (NoSuchChannelException e) {
+      logger.info("Not running query " + request.getRequestID() + ", the client seems to have gone away: "
+                  + clientID);
+      return;
+    }
+
+    final SearchQueryResponseMessage response = (SearchQueryResponseMessage) channel
+        .createMessage(TCMessageType.SEARCH_QUERY_RESPONSE_MESSAGE);
+    final Set<String> groupByAttributes = request.getGroupByAttributes();
+    try {
+      final InMemoryIndexManager.FirstPage first = indexManager
+          .firstPage(request.getCachename(), clientID, request.getRequestID(), request.getQueryStack(),
+                     request.includeKeys(), request.includeValues(), request.getAttributes(), groupByAttributes,
+                     request.getSortAttributes(), request.getAggregators(), request.getMaxResults(),
+                     request.getValuePrefetchSize());
+      final SearchResult<IndexQueryResult> result = first.result;
+      response.initSearchResponseMessage(request.getRequestID(), request.getGroupIDFrom(), result.getQueryResults(),
+                                         result.getAggregators(), result.isAnyCriteriaMatched(),
+                                         groupByAttributes != null && !groupByAttributes.isEmpty(),
+                                         first.totalResultCount);
+    } catch (IndexException e) {
+      logger.error("Error running query " + request.getRequestID() + " for " + clientID, e);
+      response.initSearchResponseMessage(request.getRequestID(), request.getGroupIDFrom(), e.getMessage());
+    }
+    response.send();
+  }
+
+  @Override
+  public void resultsRequest(SearchResultsRequestMessage request) {
+    final ClientID clientID = request.getClientID();
+    final MessageChannel channel;
+    try {
+      channel = channelManager.getActiveChannel(clientID);
+    } catch (NoSuchChannelException e) {
+      logger.info("Not paging results of " + request.getRequestID() + ", the client seems to have gone away: "
+                  + clientID);
+      return;
+    }
+
+    final SearchResultsResponseMessage response = (SearchResultsResponseMessage) channel
+        .createMessage(TCMessageType.SEARCH_RESULTS_RESPONSE_MESSAGE);
+    try {
+      final SearchResult<IndexQueryResult> result = indexManager
+          .getSearchResults(request.getCachename(), clientID, request.getRequestID(), request.getQueryStack(),
+                            request.includeKeys(), request.includeValues(), request.getAttributes(),
+                            request.getSortAttributes(), request.getAggregators(), request.getMaxResults(),
+                            request.getStart(), request.getPageSize());
+      response.initSearchResultMessage(request.getRequestID(), request.getGroupIDFrom(), result.getQueryResults());
+    } catch (IndexException e) {
+      logger.error("Error paging results of " + request.getRequestID() + " for " + clientID, e);
+      response.initSearchResultMessage(request.getRequestID(), request.getGroupIDFrom(), e.getMessage());
+    }
+    response.send();
+  }
+
+  @Override
+  public void channelCreated(MessageChannel channel) {
+    //
+  }
+
+  @Override
+  public void channelRemoved(MessageChannel channel) {
+    indexManager.releaseAllResultsFor(channelManager.getClientIDFor(channel.getChannelID()));
+  }
+
+  @Override
+  public void initializeContext(ConfigurationContext context) {
+    //
+  }
+}
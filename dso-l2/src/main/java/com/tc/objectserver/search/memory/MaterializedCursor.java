@@ -0,0 +1,82 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.memory;
+
+import com.terracottatech.search.IndexQueryResult;
+import com.terracottatech.search.SearchResult;
+import com.terracottatech.search.aggregator.Aggregator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cursor over a query that had to see every match before producing its first result, i.e. a sorted, grouped or
+ * aggregated one. Only the ordered rows are kept, results are built as pages are requested.
+ */
+final class MaterializedCursor implements QueryCursor {
+
+  private final ResultBuilder          builder;
+  private final List<Row>              rows;
+  private final List<IndexQueryResult> groups;
+  private final List<Aggregator>       aggregators;
+  private final boolean                anyCriteriaMatched;
+  private volatile int                 served = 0;
+
+  /**
+   * @param rows the ordered rows, null for a grouped query
+   * @param groups the groups of a grouped query
+   */
+  MaterializedCursor(ResultBuilder builder, List<Row> rows, List<IndexQueryResult> groups,
+                     List<Aggregator> aggregators, boolean anyCriteriaMatched) {
+    this.builder = builder;
+    this.rows = rows;
+    this.groups = groups;
+    this.aggregators = aggregators;
+    this.anyCriteriaMatched = anyCriteriaMatched;
+  }
+
+  @Override
+  public SearchResult<IndexQueryResult> page(int start, int pageSize) {
+    final int size = rows == null ? groups.size() : rows.size();
+    final int from = Math.min(Math.max(start, 0), size);
+    final int to = pageSize < 0 ? size : (int) Math.min((long) from + pageSize, size);
+    served = Math.max(served, to);
+    final List<IndexQueryResult> results = rows == null ? new ArrayList<IndexQueryResult>(groups.subList(from, to))
+        : builder.results(rows.subList(from, to));
+    return new SearchResult<IndexQueryResult>(results, aggregators, anyCriteriaMatched);
+  }
+
+  @Override
+  public long size() {
+    return rows == null ? groups.size() : rows.size();
+  }
+
+  @Override
+  public boolean isExhausted() {
+    return served >= (rows == null ? groups.size() : rows.size());
+  }
+
+  @Override
+  public boolean isGrouped() {
+    return rows == null;
+  }
+
+  @Override
+  public void close() {
+    //
+  }
+}
@@ -0,0 +1,109 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.memory;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Dense column of a numeric attribute, indexed by row. Range predicates scan the primitive array instead of walking a
+ * tree of boxed values. Integral attributes are kept as longs and floating point ones as doubles so neither loses
+ * precision.
+ */
+final class NumericColumn {
+
+  private final boolean floating;
+  private final BitSet  present = new BitSet();
+  private long[]        longs;
+  private double[]      doubles;
+
+  NumericColumn(boolean floating) {
+    this.floating = floating;
+    if (floating) {
+      doubles = new double[16];
+    } else {
+      longs = new long[16];
+    }
+  }
+
+  /**
+   * @return true if values of this kind can be stored in this column
+   */
+  boolean accepts(Object value) {
+    return floating ? ValueComparator.isFloating(value) : ValueComparator.isIntegral(value);
+  }
+
+  void set(int row, Number value) {
+    if (floating) {
+      if (row >= doubles.length) {
+        doubles = Arrays.copyOf(doubles, Math.max(row + 1, doubles.length * 2));
+      }
+      doubles[row] = value.doubleValue();
+    } else {
+      if (row >= longs.length) {
+        longs = Arrays.copyOf(longs, Math.max(row + 1, longs.length * 2));
+      }
+      longs[row] = value.longValue();
+    }
+    present.set(row);
+  }
+
+  void clear(int row) {
+    present.clear(row);
+  }
+
+  /**
+   * Rows whose value lies within the given bounds, a null bound is open.
+   */
+  BitSet range(Number lower, boolean lowerInclusive, Number upper, boolean upperInclusive) {
+    final BitSet result = new BitSet();
+    final boolean loInc = lower == null || lowerInclusive;
+    final boolean hiInc = upper == null || upperInclusive;
+    if (floating) {
+      final double lo = lower == null ? Double.NEGATIVE_INFINITY : lower.doubleValue();
+      final double hi = upper == null ? Double.POSITIVE_INFINITY : upper.doubleValue();
+      for (int row = present.nextSetBit(0); row >= 0; row = present.nextSetBit(row + 1)) {
+        final double v = doubles[row];
+        if ((loInc ? v >= lo : v > lo) && (hiInc ? v <= hi : v < hi)) {
+          result.set(row);
+        }
+      }
+    } else {
+      // compare in the floating domain only when a bound isn't integral, e.g. "age > 17.5"
+      if ((lower != null && !ValueComparator.isIntegral(lower)) || (upper != null && !ValueComparator.isIntegral(upper))) {
+        final double lo = lower == null ? Double.NEGATIVE_INFINITY : lower.doubleValue();
+        final double hi = upper == null ? Double.POSITIVE_INFINITY : upper.doubleValue();
+        for (int row = present.nextSetBit(0); row >= 0; row = present.nextSetBit(row + 1)) {
+          final double v = longs[row];
+          if ((loInc ? v >= lo : v > lo) && (hiInc ? v <= hi : v < hi)) {
+            result.set(row);
+          }
+        }
+      } else {
+        final long lo = lower == null ? Long.MIN_VALUE : lower.longValue();
+        final long hi = upper == null ? Long.MAX_VALUE : upper.longValue();
+        for (int row = present.nextSetBit(0); row >= 0; row = present.nextSetBit(row + 1)) {
+          final long v = longs[row];
+          if ((loInc ? v >= lo : v > lo) && (hiInc ? v <= hi : v < hi)) {
+            result.set(row);
+          }
+        }
+      }
+    }
+    return result;
+  }
+}
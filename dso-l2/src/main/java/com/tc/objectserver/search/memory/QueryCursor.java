@@ -0,0 +1,50 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.memory;
+
+import com.terracottatech.search.IndexException;
+import com.terracottatech.search.IndexQueryResult;
+import com.terracottatech.search.SearchResult;
+
+/**
+ * The results of a query, handed out a page at a time.
+ */
+interface QueryCursor {
+
+  /**
+   * @param pageSize the number of results, negative for all remaining
+   */
+  SearchResult<IndexQueryResult> page(int start, int pageSize) throws IndexException;
+
+  /**
+   * @return the number of results of the query, i.e. the number of rows or groups it pages through
+   */
+  long size() throws IndexException;
+
+  /**
+   * @return true once the last result has been handed out
+   */
+  boolean isExhausted();
+
+  /**
+   * @return true if the results are groups. Requests for later pages don't carry the group by attributes, so such a
+   *         cursor can't be replaced by running the query again.
+   */
+  boolean isGrouped();
+
+  void close();
+}
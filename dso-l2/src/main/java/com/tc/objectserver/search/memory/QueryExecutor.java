@@ -0,0 +1,213 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.memory;
+
+import com.terracottatech.search.IndexException;
+import com.terracottatech.search.IndexQueryResult;
+import com.terracottatech.search.aggregator.Aggregator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Evaluates queries across the segments of a cache on a fork join pool. Queries that can be streamed get a
+ * {@link StreamingCursor}. The others are evaluated on all segments at once: sorted queries with a result limit keep
+ * only their top rows per segment and merge those. Aggregators of a query that isn't grouped are fed each segment's
+ * matches as the segment completes, rows are only kept in full when grouping needs them.
+ */
+final class QueryExecutor {
+
+  private final ForkJoinPool pool;
+  private final int          parallelism;
+
+  QueryExecutor(int parallelism) {
+    this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    this.pool = new ForkJoinPool(this.parallelism, QueryThreadFactory.INSTANCE, null, false);
+  }
+
+  /**
+   * @param maxResults the maximum number of results, negative for no limit
+   */
+  QueryCursor execute(CacheIndex cache, QueryNode query, ResultBuilder builder, int maxResults) throws IndexException {
+    final SegmentIndex[] segments = cache == null ? new SegmentIndex[0] : cache.segments();
+    if (builder.isStreamable()) { return new StreamingCursor(pool, segments, query, builder, maxResults, parallelism); }
+
+    // groups are built from all matching rows, none are returned as they are
+    final boolean keepAll = builder.isGrouped();
+    final Comparator<Row> comparator = builder.isGrouped() ? null : builder.comparator();
+    final int limit = builder.isGrouped() || !builder.includesRows() ? 0 : maxResults;
+    final List<Aggregator> aggregators = !builder.isGrouped() && builder.isAggregated() ? builder.newAggregators()
+        : Collections.<Aggregator> emptyList();
+    final Matches matches;
+    try {
+      matches = segments.length == 0 ? new Matches() : pool.invoke(new MatchTask(segments, 0, segments.length, query,
+                                                                                 comparator, limit, keepAll, builder,
+                                                                                 aggregators));
+    } catch (RuntimeException e) {
+      throw new IndexException(e);
+    }
+
+    final boolean anyCriteriaMatched = matches.count > 0;
+    if (builder.isGrouped()) {
+      return new MaterializedCursor(builder, null, builder.grouped(matches.all, maxResults),
+                                    Collections.<Aggregator> emptyList(), anyCriteriaMatched);
+    }
+    return new MaterializedCursor(builder, matches.top, Collections.<IndexQueryResult> emptyList(), aggregators,
+                                  anyCriteriaMatched);
+  }
+
+  void shutdown() {
+    pool.shutdownNow();
+  }
+
+  /**
+   * The matches of a range of segments.
+   */
+  private static final class Matches {
+    // every matching row, only kept for grouping
+    List<Row> all   = new ArrayList<Row>(0);
+    // the rows to return, in order and limited
+    List<Row> top   = new ArrayList<Row>(0);
+    long      count = 0;
+  }
+
+  private static final class MatchTask extends RecursiveTask<Matches> {
+    private final SegmentIndex[]  segments;
+    private final int             from;
+    private final int             to;
+    private final QueryNode       query;
+    private final Comparator<Row> comparator;
+    private final int             limit;
+    private final boolean          keepAll;
+    private final ResultBuilder    builder;
+    // shared by all tasks of a query, guarded by itself
+    private final List<Aggregator> aggregators;
+
+    MatchTask(SegmentIndex[] segments, int from, int to, QueryNode query, Comparator<Row> comparator, int limit,
+              boolean keepAll, ResultBuilder builder, List<Aggregator> aggregators) {
+      this.segments = segments;
+      this.from = from;
+      this.to = to;
+      this.query = query;
+      this.comparator = comparator;
+      this.limit = limit;
+      this.keepAll = keepAll;
+      this.builder = builder;
+      this.aggregators = aggregators;
+    }
+
+    @Override
+    protected Matches compute() {
+      if (to - from == 1) { return match(segments[from]); }
+
+      final int mid = (from + to) >>> 1;
+      final MatchTask left = new MatchTask(segments, from, mid, query, comparator, limit, keepAll, builder,
+                                           aggregators);
+      left.fork();
+      final Matches right = new MatchTask(segments, mid, to, query, comparator, limit, keepAll, builder, aggregators)
+          .compute();
+      return merge(left.join(), right);
+    }
+
+    private Matches match(SegmentIndex segment) {
+      final List<Row> rows = segment.query(query);
+      final Matches matches = new Matches();
+      matches.count = rows.size();
+      if (keepAll) {
+        matches.all = rows;
+      }
+      if (!aggregators.isEmpty()) {
+        synchronized (aggregators) {
+          try {
+            builder.accumulate(aggregators, rows);
+          } catch (IndexException e) {
+            throw new IllegalArgumentException(e);
+          }
+        }
+      }
+      matches.top = top(rows);
+      return matches;
+    }
+
+    private List<Row> top(List<Row> rows) {
+      if (limit == 0) { return new ArrayList<Row>(0); }
+      // copied so that the segment's other rows can go
+      if (comparator == null) { return limit > 0 && rows.size() > limit ? new ArrayList<Row>(rows.subList(0, limit))
+          : rows; }
+      if (limit < 0 || rows.size() <= limit) {
+        final List<Row> sorted = new ArrayList<Row>(rows);
+        Collections.sort(sorted, comparator);
+        return sorted;
+      }
+
+      // bounded heap with the worst of the kept rows on top
+      final PriorityQueue<Row> heap = new PriorityQueue<Row>(limit, Collections.reverseOrder(comparator));
+      for (Row row : rows) {
+        if (heap.size() < limit) {
+          heap.add(row);
+        } else if (comparator.compare(row, heap.peek()) < 0) {
+          heap.poll();
+          heap.add(row);
+        }
+      }
+      final List<Row> sorted = new ArrayList<Row>(heap);
+      Collections.sort(sorted, comparator);
+      return sorted;
+    }
+
+    private Matches merge(Matches a, Matches b) {
+      final Matches merged = new Matches();
+      merged.count = a.count + b.count;
+      if (keepAll) {
+        merged.all = new ArrayList<Row>(a.all.size() + b.all.size());
+        merged.all.addAll(a.all);
+        merged.all.addAll(b.all);
+      }
+
+      final int size = limit < 0 ? a.top.size() + b.top.size() : Math.min(limit, a.top.size() + b.top.size());
+      merged.top = new ArrayList<Row>(size);
+      int i = 0;
+      int j = 0;
+      while (merged.top.size() < size) {
+        if (j == b.top.size()
+            || (i < a.top.size() && (comparator == null || comparator.compare(a.top.get(i), b.top.get(j)) <= 0))) {
+          merged.top.add(a.top.get(i++));
+        } else {
+          merged.top.add(b.top.get(j++));
+        }
+      }
+      return merged;
+    }
+  }
+
+  private static final class QueryThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+    static final QueryThreadFactory INSTANCE = new QueryThreadFactory();
+
+    @Override
+    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      thread.setName("Search-Query-" + thread.getPoolIndex());
+      return thread;
+    }
+  }
+}
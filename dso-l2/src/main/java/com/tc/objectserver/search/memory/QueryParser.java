@@ -0,0 +1,311 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.memory;
+
+import com.terracottatech.search.IndexException;
+import com.terracottatech.search.NVPair;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the query stack sent by the client. The stack is in infix order: predicates are separated by AND and OR, AND
+ * binds tighter than OR, and BEGIN_GROUP/END_GROUP bracket a sub expression. Operators are matched by name so both the
+ * stack operation enum and its string form are accepted.
+ */
+final class QueryParser {
+
+  private final List<?> stack;
+  private int           position = 0;
+
+  private QueryParser(List<?> stack) {
+    this.stack = stack;
+  }
+
+  static QueryNode parse(List<?> stack) throws IndexException {
+    if (stack == null || stack.isEmpty()) { return new All(); }
+    final QueryParser parser = new QueryParser(stack);
+    final QueryNode query = parser.parseOr();
+    if (parser.position != stack.size()) {
+      throw new IndexException("Unexpected " + stack.get(parser.position) + " at position " + parser.position
+                               + " of query " + stack);
+    }
+    return query;
+  }
+
+  private QueryNode parseOr() throws IndexException {
+    QueryNode left = parseAnd();
+    while ("OR".equals(peekOperator())) {
+      position++;
+      left = new Or(left, parseAnd());
+    }
+    return left;
+  }
+
+  private QueryNode parseAnd() throws IndexException {
+    QueryNode left = parseUnary();
+    while (true) {
+      final String op = peekOperator();
+      if ("AND".equals(op)) {
+        position++;
+      } else if (op == null || "OR".equals(op) || "END_GROUP".equals(op)) {
+        return left;
+      }
+      // adjacent predicates without an operator are a conjunction
+      left = new And(left, parseUnary());
+    }
+  }
+
+  private QueryNode parseUnary() throws IndexException {
+    final String op = nextOperator();
+    if ("NOT".equals(op)) {
+      return new Not(parseUnary());
+    } else if ("BEGIN_GROUP".equals(op)) {
+      final QueryNode group = parseOr();
+      if (!"END_GROUP".equals(nextOperator())) { throw new IndexException("Unbalanced group in query " + stack); }
+      return group;
+    } else if ("ALL".equals(op)) {
+      return new All();
+    } else if ("TERM".equals(op)) {
+      final NVPair pair = nextPair();
+      return new Equal(pair.getName(), pair.getObjectValue());
+    } else if ("NOT_TERM".equals(op)) {
+      final NVPair pair = nextPair();
+      return new Not(new Equal(pair.getName(), pair.getObjectValue()));
+    } else if ("GREATER_THAN".equals(op)) {
+      final NVPair pair = nextPair();
+      return new Range(pair.getName(), pair.getObjectValue(), false, null, false);
+    } else if ("GREATER_THAN_EQUAL".equals(op)) {
+      final NVPair pair = nextPair();
+      return new Range(pair.getName(), pair.getObjectValue(), true, null, false);
+    } else if ("LESS_THAN".equals(op)) {
+      final NVPair pair = nextPair();
+      return new Range(pair.getName(), null, false, pair.getObjectValue(), false);
+    } else if ("LESS_THAN_EQUAL".equals(op)) {
+      final NVPair pair = nextPair();
+      return new Range(pair.getName(), null, false, pair.getObjectValue(), true);
+    } else if ("BETWEEN".equals(op)) {
+      final NVPair min = nextPair();
+      final NVPair max = nextPair();
+      final boolean minInclusive = nextFlag(true);
+      final boolean maxInclusive = nextFlag(true);
+      return new Range(min.getName(), min.getObjectValue(), minInclusive, max.getObjectValue(), maxInclusive);
+    } else if ("ILIKE".equals(op)) {
+      final NVPair pair = nextPair();
+      return new Like(pair.getName(), String.valueOf(pair.getObjectValue()));
+    } else if ("NOT_ILIKE".equals(op)) {
+      final NVPair pair = nextPair();
+      return new Not(new Like(pair.getName(), String.valueOf(pair.getObjectValue())));
+    } else if ("IS_NULL".equals(op)) {
+      return new Not(new Present(nextAttributeName()));
+    } else if ("NOT_NULL".equals(op)) {
+      return new Present(nextAttributeName());
+    } else if (op == null) {
+      throw new IndexException("Unexpected end of query " + stack);
+    } else {
+      throw new IndexException("Unsupported query operation " + op + " in query " + stack);
+    }
+  }
+
+  private String peekOperator() {
+    return position < stack.size() ? operatorName(stack.get(position)) : null;
+  }
+
+  private String nextOperator() {
+    return position < stack.size() ? operatorName(stack.get(position++)) : null;
+  }
+
+  private NVPair nextPair() throws IndexException {
+    final Object element = position < stack.size() ? stack.get(position++) : null;
+    if (!(element instanceof NVPair)) {
+      throw new IndexException("Expected an attribute but got " + element + " in query " + stack);
+    }
+    return (NVPair) element;
+  }
+
+  private String nextAttributeName() throws IndexException {
+    final Object element = position < stack.size() ? stack.get(position) : null;
+    if (element instanceof String) {
+      position++;
+      return (String) element;
+    }
+    return nextPair().getName();
+  }
+
+  private boolean nextFlag(boolean defaultValue) {
+    final Object element = position < stack.size() ? stack.get(position) : null;
+    if (element instanceof Boolean) {
+      position++;
+      return (Boolean) element;
+    }
+    return defaultValue;
+  }
+
+  private static String operatorName(Object element) {
+    if (element instanceof Enum) { return ((Enum<?>) element).name(); }
+    if (element instanceof String) { return (String) element; }
+    return null;
+  }
+
+  static Pattern likePattern(String expression) {
+    final StringBuilder regex = new StringBuilder(expression.length() + 8);
+    int literalStart = -1;
+    for (int i = 0; i < expression.length(); i++) {
+      final char c = expression.charAt(i);
+      if (c == '*' || c == '?') {
+        if (literalStart >= 0) {
+          regex.append(Pattern.quote(expression.substring(literalStart, i)));
+          literalStart = -1;
+        }
+        regex.append(c == '*' ? ".*" : ".");
+      } else if (literalStart < 0) {
+        literalStart = i;
+      }
+    }
+    if (literalStart >= 0) {
+      regex.append(Pattern.quote(expression.substring(literalStart)));
+    }
+    return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+  }
+
+  static final class All implements QueryNode {
+    @Override
+    public BitSet evaluate(SegmentIndex segment) {
+      return segment.live();
+    }
+  }
+
+  static final class And implements QueryNode {
+    private final QueryNode left;
+    private final QueryNode right;
+
+    And(QueryNode left, QueryNode right) {
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public BitSet evaluate(SegmentIndex segment) {
+      final BitSet result = left.evaluate(segment);
+      if (!result.isEmpty()) {
+        result.and(right.evaluate(segment));
+      }
+      return result;
+    }
+  }
+
+  static final class Or implements QueryNode {
+    private final QueryNode left;
+    private final QueryNode right;
+
+    Or(QueryNode left, QueryNode right) {
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public BitSet evaluate(SegmentIndex segment) {
+      final BitSet result = left.evaluate(segment);
+      result.or(right.evaluate(segment));
+      return result;
+    }
+  }
+
+  static final class Not implements QueryNode {
+    private final QueryNode node;
+
+    Not(QueryNode node) {
+      this.node = node;
+    }
+
+    @Override
+    public BitSet evaluate(SegmentIndex segment) {
+      final BitSet result = segment.live();
+      result.andNot(node.evaluate(segment));
+      return result;
+    }
+  }
+
+  static final class Equal implements QueryNode {
+    private final String name;
+    private final Object value;
+
+    Equal(String name, Object value) {
+      this.name = name;
+      this.value = value;
+    }
+
+    @Override
+    public BitSet evaluate(SegmentIndex segment) {
+      final AttributeIndex index = segment.attribute(name);
+      return index == null || value == null ? new BitSet() : index.equal(value);
+    }
+  }
+
+  static final class Range implements QueryNode {
+    private final String  name;
+    private final Object  lower;
+    private final boolean lowerInclusive;
+    private final Object  upper;
+    private final boolean upperInclusive;
+
+    Range(String name, Object lower, boolean lowerInclusive, Object upper, boolean upperInclusive) {
+      this.name = name;
+      this.lower = lower;
+      this.lowerInclusive = lowerInclusive;
+      this.upper = upper;
+      this.upperInclusive = upperInclusive;
+    }
+
+    @Override
+    public BitSet evaluate(SegmentIndex segment) {
+      final AttributeIndex index = segment.attribute(name);
+      return index == null ? new BitSet() : index.range(lower, lowerInclusive, upper, upperInclusive);
+    }
+  }
+
+  static final class Like implements QueryNode {
+    private final String  name;
+    private final Pattern pattern;
+
+    Like(String name, String expression) {
+      this.name = name;
+      this.pattern = likePattern(expression);
+    }
+
+    @Override
+    public BitSet evaluate(SegmentIndex segment) {
+      final AttributeIndex index = segment.attribute(name);
+      return index == null ? new BitSet() : index.like(pattern);
+    }
+  }
+
+  static final class Present implements QueryNode {
+    private final String name;
+
+    Present(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public BitSet evaluate(SegmentIndex segment) {
+      final AttributeIndex index = segment.attribute(name);
+      return index == null ? new BitSet() : index.present();
+    }
+  }
+}
@@ -0,0 +1,230 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.memory;
+
+import com.terracottatech.search.AggregatorOperations;
+import com.terracottatech.search.GroupedIndexQueryResultImpl;
+import com.terracottatech.search.IndexException;
+import com.terracottatech.search.IndexQueryResult;
+import com.terracottatech.search.NVPair;
+import com.terracottatech.search.NonGroupedIndexQueryResultImpl;
+import com.terracottatech.search.aggregator.Aggregator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turns the rows matched by a query into index query results: sorts them, groups them and feeds the aggregators.
+ */
+final class ResultBuilder {
+
+  private final CacheIndex   cache; // null when nothing was indexed for the cache yet
+  private final Set<String>  attributeSet;
+  private final List<String> groupBy;
+  private final List<NVPair> sortAttributes;
+  private final List<NVPair> aggregatorAttributes;
+  private final boolean      includeRows;
+
+  ResultBuilder(CacheIndex cache, boolean includeKeys, boolean includeValues, Set<String> attributeSet,
+                Set<String> groupByAttributes, List<NVPair> sortAttributes, List<NVPair> aggregators) {
+    this.cache = cache;
+    this.attributeSet = attributeSet == null ? Collections.<String> emptySet() : attributeSet;
+    this.groupBy = groupByAttributes == null ? Collections.<String> emptyList()
+        : new ArrayList<String>(groupByAttributes);
+    this.sortAttributes = sortAttributes == null ? Collections.<NVPair> emptyList() : sortAttributes;
+    this.aggregatorAttributes = aggregators == null ? Collections.<NVPair> emptyList() : aggregators;
+    // a query only asking for aggregates has no use for the individual rows
+    this.includeRows = includeKeys || includeValues || !this.attributeSet.isEmpty()
+                       || this.aggregatorAttributes.isEmpty();
+  }
+
+  boolean isGrouped() {
+    return !groupBy.isEmpty();
+  }
+
+  List<Aggregator> aggregate(List<Row> rows) throws IndexException {
+    final List<Aggregator> aggregators = newAggregators();
+    accumulate(aggregators, rows);
+    return aggregators;
+  }
+
+  /**
+   * @return the requested aggregators, not having seen any row yet
+   */
+  List<Aggregator> newAggregators() {
+    final List<Aggregator> aggregators = new ArrayList<Aggregator>(aggregatorAttributes.size());
+    for (NVPair pair : aggregatorAttributes) {
+      aggregators.add(Aggregator.aggregator((AggregatorOperations) pair.getObjectValue(), pair.getName(),
+                                            cache == null ? null : cache.getAttributeType(pair.getName())));
+    }
+    return aggregators;
+  }
+
+  /**
+   * Feeds the rows to aggregators obtained from {@link #newAggregators()}. Aggregators aren't thread safe, callers
+   * feeding the same ones from several threads have to serialize.
+   */
+  void accumulate(List<Aggregator> aggregators, List<Row> rows) throws IndexException {
+    for (Row row : rows) {
+      for (int i = 0; i < aggregators.size(); i++) {
+        try {
+          aggregators.get(i).accept(row.getAttributeValue(aggregatorAttributes.get(i).getName()));
+        } catch (IllegalArgumentException e) {
+          throw new IndexException(e);
+        }
+      }
+    }
+  }
+
+  boolean isSorted() {
+    return !sortAttributes.isEmpty();
+  }
+
+  boolean isAggregated() {
+    return !aggregatorAttributes.isEmpty();
+  }
+
+  /**
+   * @return false for a query only asking for aggregates, whose results carry no rows
+   */
+  boolean includesRows() {
+    return includeRows;
+  }
+
+  /**
+   * @return true if results can be handed out in the order segments produce them, without seeing every match first
+   */
+  boolean isStreamable() {
+    return !isGrouped() && !isSorted() && !isAggregated();
+  }
+
+  /**
+   * @return the order of the requested sort, null if the query isn't sorted
+   */
+  Comparator<Row> comparator() {
+    return isSorted() ? new RowComparator() : null;
+  }
+
+  /**
+   * Builds the non grouped results for the given rows.
+   */
+  List<IndexQueryResult> results(List<Row> rows) {
+    if (!includeRows) { return new ArrayList<IndexQueryResult>(0); }
+    final List<IndexQueryResult> results = new ArrayList<IndexQueryResult>(rows.size());
+    for (Row row : rows) {
+      results.add(new NonGroupedIndexQueryResultImpl(row.getKey(), row.getValue(), select(row, attributeSet),
+                                                     sortValues(row)));
+    }
+    return results;
+  }
+
+  /**
+   * @param maxResults the maximum number of groups, negative for no limit
+   */
+  List<IndexQueryResult> grouped(List<Row> rows, int maxResults) throws IndexException {
+    final Map<List<Object>, List<Row>> groups = new LinkedHashMap<List<Object>, List<Row>>();
+    for (Row row : rows) {
+      final List<Object> groupKey = new ArrayList<Object>(groupBy.size());
+      for (String name : groupBy) {
+        groupKey.add(row.getAttributeValue(name));
+      }
+      List<Row> group = groups.get(groupKey);
+      if (group == null) {
+        group = new ArrayList<Row>();
+        groups.put(groupKey, group);
+      }
+      group.add(row);
+    }
+
+    // a group is represented by its first row, which is what sorting and the selected attributes look at
+    final Map<Row, List<Row>> byRepresentative = new IdentityHashMap<Row, List<Row>>();
+    final List<Row> representatives = new ArrayList<Row>(groups.size());
+    for (List<Row> group : groups.values()) {
+      byRepresentative.put(group.get(0), group);
+      representatives.add(group.get(0));
+    }
+    if (isSorted()) {
+      Collections.sort(representatives, new RowComparator());
+    }
+
+    final int count = maxResults < 0 ? representatives.size() : Math.min(maxResults, representatives.size());
+    final List<IndexQueryResult> results = new ArrayList<IndexQueryResult>(count);
+    for (int i = 0; i < count; i++) {
+      final Row row = representatives.get(i);
+      results.add(new GroupedIndexQueryResultImpl(select(row, attributeSet), sortValues(row),
+                                                  new HashSet<NVPair>(select(row, groupBy)),
+                                                  aggregate(byRepresentative.get(row))));
+    }
+    return results;
+  }
+
+  private static List<NVPair> select(Row row, Iterable<String> names) {
+    final List<NVPair> selected = new ArrayList<NVPair>();
+    for (String name : names) {
+      final NVPair pair = row.getAttribute(name);
+      if (pair != null) {
+        selected.add(pair);
+      }
+    }
+    return selected;
+  }
+
+  private List<NVPair> sortValues(Row row) {
+    final List<NVPair> values = new ArrayList<NVPair>(sortAttributes.size());
+    for (NVPair sort : sortAttributes) {
+      final NVPair pair = row.getAttribute(sort.getName());
+      if (pair != null) {
+        values.add(pair);
+      }
+    }
+    return values;
+  }
+
+  private static boolean isDescending(NVPair sort) {
+    final Object direction = sort.getObjectValue();
+    final String name = direction instanceof Enum ? ((Enum<?>) direction).name() : String.valueOf(direction);
+    return "DESCENDING".equals(name);
+  }
+
+  private final class RowComparator implements Comparator<Row> {
+    private final String[]  names      = new String[sortAttributes.size()];
+    private final boolean[] descending = new boolean[sortAttributes.size()];
+
+    RowComparator() {
+      for (int i = 0; i < names.length; i++) {
+        names[i] = sortAttributes.get(i).getName();
+        descending[i] = isDescending(sortAttributes.get(i));
+      }
+    }
+
+    @Override
+    public int compare(Row a, Row b) {
+      for (int i = 0; i < names.length; i++) {
+        final int c = ValueComparator.INSTANCE.compare(a.getAttributeValue(names[i]), b.getAttributeValue(names[i]));
+        if (c != 0) { return descending[i] ? -c : c; }
+      }
+      return 0;
+    }
+  }
+}
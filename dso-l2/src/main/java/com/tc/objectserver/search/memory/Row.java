@@ -0,0 +1,58 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.memory;
+
+import com.terracottatech.search.NVPair;
+import com.terracottatech.search.ValueID;
+
+import java.util.Map;
+
+/**
+ * An indexed cache entry. Rows are immutable, an update replaces the row.
+ */
+final class Row {
+  private final String              key;
+  private final ValueID             value;
+  private final Map<String, NVPair> attributes;
+
+  Row(String key, ValueID value, Map<String, NVPair> attributes) {
+    this.key = key;
+    this.value = value;
+    this.attributes = attributes;
+  }
+
+  String getKey() {
+    return key;
+  }
+
+  ValueID getValue() {
+    return value;
+  }
+
+  Map<String, NVPair> getAttributes() {
+    return attributes;
+  }
+
+  NVPair getAttribute(String name) {
+    return attributes.get(name);
+  }
+
+  Object getAttributeValue(String name) {
+    final NVPair pair = attributes.get(name);
+    return pair == null ? null : pair.getObjectValue();
+  }
+}
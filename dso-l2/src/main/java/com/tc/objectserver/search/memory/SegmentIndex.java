@@ -0,0 +1,209 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.memory;
+
+import com.terracottatech.search.NVPair;
+import com.terracottatech.search.ValueID;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index of the entries of one cache segment. Each entry is a row, rows are numbered densely and the numbers of removed
+ * rows are reused so the row sets of the attribute indexes stay small.
+ */
+final class SegmentIndex {
+
+  private final ReentrantReadWriteLock      lock       = new ReentrantReadWriteLock();
+  private final Map<String, Integer>        rowByKey   = new HashMap<String, Integer>();
+  private final Map<String, AttributeIndex> attributes = new HashMap<String, AttributeIndex>();
+  private final BitSet                      live       = new BitSet();
+  private Row[]                             rows       = new Row[16];
+  private int[]                             freeRows   = new int[16];
+  private int                               freeCount  = 0;
+  private int                               nextRow    = 0;
+
+  /**
+   * Adds the row, replacing any row with the same key.
+   */
+  void put(Row row) {
+    lock.writeLock().lock();
+    try {
+      final Integer existing = rowByKey.get(row.getKey());
+      if (existing != null) {
+        removeRow(existing);
+      }
+      addRow(row);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  boolean putIfAbsent(Row row) {
+    lock.writeLock().lock();
+    try {
+      if (rowByKey.containsKey(row.getKey())) { return false; }
+      addRow(row);
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Replaces the row with the same key if it currently maps to the given value.
+   */
+  boolean replace(Row row, ValueID previousValue) {
+    lock.writeLock().lock();
+    try {
+      final Integer existing = rowByKey.get(row.getKey());
+      if (existing == null || !rows[existing].getValue().equals(previousValue)) { return false; }
+      removeRow(existing);
+      addRow(row);
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  boolean remove(String key) {
+    lock.writeLock().lock();
+    try {
+      final Integer existing = rowByKey.get(key);
+      if (existing == null) { return false; }
+      removeRow(existing);
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  boolean removeIfValueEqual(String key, ValueID value) {
+    lock.writeLock().lock();
+    try {
+      final Integer existing = rowByKey.get(key);
+      if (existing == null || !rows[existing].getValue().equals(value)) { return false; }
+      removeRow(existing);
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  int size() {
+    lock.readLock().lock();
+    try {
+      return rowByKey.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @return the rows matching the query, in row order
+   */
+  List<Row> query(QueryNode query) {
+    lock.readLock().lock();
+    try {
+      final BitSet matched = query.evaluate(this);
+      final List<Row> result = new ArrayList<Row>(matched.cardinality());
+      for (int row = matched.nextSetBit(0); row >= 0; row = matched.nextSetBit(row + 1)) {
+        result.add(rows[row]);
+      }
+      return result;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @return the number of rows matching the query
+   */
+  int count(QueryNode query) {
+    lock.readLock().lock();
+    try {
+      return query.evaluate(this).cardinality();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // the accessors below are used by query nodes while the read lock is held
+
+  BitSet live() {
+    return (BitSet) live.clone();
+  }
+
+  AttributeIndex attribute(String name) {
+    return attributes.get(name);
+  }
+
+  private void addRow(Row row) {
+    final int id;
+    if (freeCount > 0) {
+      id = freeRows[--freeCount];
+    } else {
+      id = nextRow++;
+      if (id == rows.length) {
+        rows = Arrays.copyOf(rows, rows.length * 2);
+      }
+    }
+    rows[id] = row;
+    live.set(id);
+    rowByKey.put(row.getKey(), id);
+
+    for (NVPair pair : row.getAttributes().values()) {
+      final Object value = pair.getObjectValue();
+      if (value == null) {
+        continue;
+      }
+      AttributeIndex index = attributes.get(pair.getName());
+      if (index == null) {
+        index = new AttributeIndex();
+        attributes.put(pair.getName(), index);
+      }
+      index.add(id, value);
+    }
+  }
+
+  private void removeRow(int id) {
+    final Row row = rows[id];
+    for (NVPair pair : row.getAttributes().values()) {
+      final Object value = pair.getObjectValue();
+      final AttributeIndex index = value == null ? null : attributes.get(pair.getName());
+      if (index != null) {
+        index.remove(id, value);
+        if (index.isEmpty()) {
+          attributes.remove(pair.getName());
+        }
+      }
+    }
+    rows[id] = null;
+    live.clear(id);
+    rowByKey.remove(row.getKey());
+
+    if (freeCount == freeRows.length) {
+      freeRows = Arrays.copyOf(freeRows, freeRows.length * 2);
+    }
+    freeRows[freeCount++] = id;
+  }
+}
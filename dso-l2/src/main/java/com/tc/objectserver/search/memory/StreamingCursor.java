@@ -0,0 +1,225 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.memory;
+
+import com.terracottatech.search.IndexException;
+import com.terracottatech.search.IndexQueryResult;
+import com.terracottatech.search.SearchResult;
+import com.terracottatech.search.aggregator.Aggregator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Cursor over a query whose results can be handed out in the order the segments produce them. Segments are evaluated
+ * on the query pool a few at a time ahead of the consumer: a page is returned as soon as enough segments are done, and
+ * no more than the read ahead window of segments is evaluated past the last requested page, so a large result set is
+ * never held on the heap at once. Segments not yet evaluated see mutations made after the query started. Asking for a
+ * page before the results already streamed runs the query again from the first segment.
+ */
+final class StreamingCursor implements QueryCursor {
+
+  private static final List<Aggregator>        NO_AGGREGATORS = Collections.emptyList();
+
+  private final ForkJoinPool                   pool;
+  private final SegmentIndex[]                 segments;
+  private final QueryNode                      query;
+  private final ResultBuilder                  builder;
+  private final int                            readAhead;
+  private final long                           maxResults;
+  private final Deque<ForkJoinTask<List<Row>>> inFlight       = new ArrayDeque<ForkJoinTask<List<Row>>>();
+  private final Deque<Row>                     buffered       = new ArrayDeque<Row>();
+  private int                                  nextSegment    = 0;
+  private long                                 position       = 0;
+  private long                                 remaining;
+  // matches of the segments joined since the query was last started, including those cut off by maxResults
+  private long                                 joinedMatches  = 0;
+  private boolean                              anyCriteriaMatched;
+  private long                                 size           = -1;
+  private boolean                              closed;
+
+  /**
+   * @param maxResults the maximum number of results, negative for no limit
+   */
+  StreamingCursor(ForkJoinPool pool, SegmentIndex[] segments, QueryNode query, ResultBuilder builder, int maxResults,
+                  int readAhead) {
+    this.pool = pool;
+    this.segments = segments;
+    this.query = query;
+    this.builder = builder;
+    this.readAhead = Math.max(1, readAhead);
+    this.maxResults = maxResults < 0 ? Long.MAX_VALUE : maxResults;
+    this.remaining = this.maxResults;
+    submitAhead();
+  }
+
+  @Override
+  public synchronized SearchResult<IndexQueryResult> page(int start, int pageSize) throws IndexException {
+    if (closed) { throw new IndexException("Query cursor is closed"); }
+    if (start < position) {
+      restart();
+    }
+    final long wanted = pageSize < 0 ? Long.MAX_VALUE : pageSize;
+    final long skip = start - position;
+    fill(wanted > Long.MAX_VALUE - skip ? Long.MAX_VALUE : skip + wanted);
+
+    while (position < start && !buffered.isEmpty()) {
+      buffered.poll();
+      position++;
+    }
+    final List<Row> rows = new ArrayList<Row>((int) Math.min(wanted, buffered.size()));
+    while (rows.size() < wanted && !buffered.isEmpty()) {
+      rows.add(buffered.poll());
+      position++;
+    }
+    // let the next page's segments run while this one is on its way to the client
+    submitAhead();
+    return new SearchResult<IndexQueryResult>(builder.results(rows), NO_AGGREGATORS, anyCriteriaMatched);
+  }
+
+  /**
+   * Counts the matches, unless all results have already been streamed. Segments already evaluated are not looked at
+   * again, those still in flight are waited for and the rest are counted in parallel on the query pool. The count
+   * reflects the segments as they are when it is first asked for.
+   */
+  @Override
+  public synchronized long size() throws IndexException {
+    if (size < 0) {
+      if (isExhausted()) {
+        size = position;
+      } else {
+        long count = joinedMatches;
+        try {
+          for (ForkJoinTask<List<Row>> task : inFlight) {
+            count += task.join().size();
+          }
+          if (nextSegment < segments.length) {
+            count += pool.invoke(new SegmentCount(segments, nextSegment, segments.length, query));
+          }
+        } catch (RuntimeException e) {
+          throw new IndexException(e);
+        }
+        size = Math.min(count, maxResults);
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public synchronized boolean isExhausted() {
+    return buffered.isEmpty() && (remaining == 0 || (inFlight.isEmpty() && nextSegment == segments.length));
+  }
+
+  @Override
+  public boolean isGrouped() {
+    return false;
+  }
+
+  @Override
+  public synchronized void close() {
+    closed = true;
+    cancel();
+    nextSegment = segments.length;
+  }
+
+  private void restart() {
+    cancel();
+    nextSegment = 0;
+    position = 0;
+    joinedMatches = 0;
+    remaining = maxResults;
+    submitAhead();
+  }
+
+  private void cancel() {
+    for (ForkJoinTask<List<Row>> task : inFlight) {
+      task.cancel(false);
+    }
+    inFlight.clear();
+    buffered.clear();
+  }
+
+  private void fill(long needed) throws IndexException {
+    while (buffered.size() < needed && remaining > 0 && (!inFlight.isEmpty() || nextSegment < segments.length)) {
+      submitAhead();
+      final List<Row> rows;
+      try {
+        rows = inFlight.poll().join();
+      } catch (RuntimeException e) {
+        throw new IndexException(e);
+      }
+      anyCriteriaMatched |= !rows.isEmpty();
+      joinedMatches += rows.size();
+      for (int i = 0; i < rows.size() && remaining > 0; i++) {
+        buffered.add(rows.get(i));
+        remaining--;
+      }
+    }
+  }
+
+  private void submitAhead() {
+    while (remaining > 0 && inFlight.size() < readAhead && nextSegment < segments.length) {
+      inFlight.add(pool.submit(new SegmentQuery(segments[nextSegment++], query)));
+    }
+  }
+
+  private static final class SegmentCount extends RecursiveTask<Long> {
+    private final SegmentIndex[] segments;
+    private final int            from;
+    private final int            to;
+    private final QueryNode      query;
+
+    SegmentCount(SegmentIndex[] segments, int from, int to, QueryNode query) {
+      this.segments = segments;
+      this.from = from;
+      this.to = to;
+      this.query = query;
+    }
+
+    @Override
+    protected Long compute() {
+      if (to - from == 1) { return (long) segments[from].count(query); }
+
+      final int mid = (from + to) >>> 1;
+      final SegmentCount left = new SegmentCount(segments, from, mid, query);
+      left.fork();
+      final long right = new SegmentCount(segments, mid, to, query).compute();
+      return left.join() + right;
+    }
+  }
+
+  private static final class SegmentQuery extends RecursiveTask<List<Row>> {
+    private final SegmentIndex segment;
+    private final QueryNode    query;
+
+    SegmentQuery(SegmentIndex segment, QueryNode query) {
+      this.segment = segment;
+      this.query = query;
+    }
+
+    @Override
+    protected List<Row> compute() {
+      return segment.query(query);
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.memory;
+
+import java.util.Comparator;
+
+/**
+ * Orders attribute values. Values of the same class use their natural order, numbers of different classes are compared
+ * numerically and anything else falls back to the class name so that a mistyped attribute can't break an index.
+ */
+final class ValueComparator implements Comparator<Object> {
+
+  static final ValueComparator INSTANCE = new ValueComparator();
+
+  private ValueComparator() {
+    //
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public int compare(Object a, Object b) {
+    if (a == b) { return 0; }
+    if (a == null) { return -1; }
+    if (b == null) { return 1; }
+
+    if (a.getClass() == b.getClass() && a instanceof Comparable) { return ((Comparable<Object>) a).compareTo(b); }
+    if (a instanceof Number && b instanceof Number) {
+      if (isIntegral(a) && isIntegral(b)) { return Long.compare(((Number) a).longValue(), ((Number) b).longValue()); }
+      return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+    }
+    final int byClass = a.getClass().getName().compareTo(b.getClass().getName());
+    return byClass != 0 ? byClass : String.valueOf(a).compareTo(String.valueOf(b));
+  }
+
+  static boolean isIntegral(Object value) {
+    return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+  }
+
+  static boolean isFloating(Object value) {
+    return value instanceof Double || value instanceof Float;
+  }
+}
@@ -18,6 +18,8 @@ package com.tc.stats;
 
 import org.apache.commons.collections.set.ListOrderedSet;
 
+import com.tc.async.api.StageLatencyStats;
+import com.tc.async.api.StageManager;
 import com.tc.logging.TCLogger;
 import com.tc.logging.TCLogging;
 import com.tc.management.RemoteManagement;
@@ -103,6 +105,7 @@ public class DSO extends AbstractNotifyingMBean implements DSOMBean {
   private final IndexManager                           indexManager;
   private final ConnectionPolicy                       connectionPolicy;
   private final RemoteManagement                       remoteManagement;
+  private final StageManager                           stageManager;
 
   public DSO(final ServerManagementContext managementContext, final ServerConfigurationContext configContext,
              final MBeanServer mbeanServer, final GCStatsEventPublisher gcStatsPublisher,
@@ -130,6 +133,7 @@ public class DSO extends AbstractNotifyingMBean implements DSOMBean {
     this.storageStats = storageStats;
     this.connectionPolicy = managementContext.getConnectionPolicy();
     this.remoteManagement = managementContext.getRemoteManagement();
+    this.stageManager = managementContext.getStageManager();
 
     // add various listeners (do this before the setupXXX() methods below so we don't ever miss anything)
     txnMgr.addRootListener(new TransactionManagerListener());
@@ -846,4 +850,10 @@ public class DSO extends AbstractNotifyingMBean implements DSOMBean {
   public RemoteManagement getRemoteManagement() {
     return remoteManagement;
   }
+
+  @Override
+  public StageLatencyStats[] getStageLatencyStats() {
+    if (stageManager == null) { return new StageLatencyStats[0]; }
+    return stageManager.getLatencyStats();
+  }
 }
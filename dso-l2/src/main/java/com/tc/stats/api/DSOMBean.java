@@ -16,6 +16,7 @@
  */
 package com.tc.stats.api;
 
+import com.tc.async.api.StageLatencyStats;
 import com.tc.management.RemoteManagement;
 import com.tc.management.TerracottaMBean;
 import com.tc.net.NodeID;
@@ -121,4 +122,9 @@ public interface DSOMBean extends DSOStats, OffheapStats, StorageDataStats, DGCM
 
   RemoteManagement getRemoteManagement();
 
+  /**
+   * @return queue wait and service time percentiles plus sampled queue depths of every SEDA stage
+   */
+  StageLatencyStats[] getStageLatencyStats();
+
 }
@@ -0,0 +1,210 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.l2.objectserver;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.l2.context.ManagedObjectSyncContext;
+import com.tc.net.NodeID;
+import com.tc.net.ServerID;
+import com.tc.object.ObjectID;
+import com.tc.object.dna.impl.ObjectStringSerializer;
+import com.tc.objectserver.api.ObjectManager;
+import com.tc.objectserver.tx.ServerTransactionManager;
+import com.tc.objectserver.tx.TxnsInSystemCompletionListener;
+import com.tc.util.BitSetObjectIDSet;
+import com.tc.util.ObjectIDSet;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class L2ObjectStateManagerImplTest {
+
+  private final NodeID             passive       = new ServerID("passive", new byte[] { 1, 2, 3 });
+  private final AtomicInteger      syncRequests  = new AtomicInteger();
+  private ObjectManager            objectManager;
+  private ServerTransactionManager transactionManager;
+  private L2ObjectStateListener    listener;
+
+  @Before
+  public void setUp() throws Exception {
+    objectManager = mock(ObjectManager.class);
+    ObjectIDSet allObjects = new BitSetObjectIDSet();
+    for (long i = 1; i <= 10; i++) {
+      allObjects.add(new ObjectID(i));
+    }
+    when(objectManager.getAllObjectIDs()).thenReturn(allObjects);
+    when(objectManager.getRootNamesToIDsMap()).thenReturn(new HashMap());
+
+    transactionManager = mock(ServerTransactionManager.class);
+    Answer<Void> completeNow = new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        Object callback = invocation.getArguments()[0];
+        if (callback instanceof Runnable) {
+          ((Runnable) callback).run();
+        } else {
+          ((TxnsInSystemCompletionListener) callback).onCompletion();
+        }
+        return null;
+      }
+    };
+    doAnswer(completeNow).when(transactionManager)
+        .callBackOnResentTxnsInSystemCompletion(any(TxnsInSystemCompletionListener.class));
+    doAnswer(completeNow).when(transactionManager)
+        .callBackOnTxnsInSystemCompletion(any(TxnsInSystemCompletionListener.class));
+    doAnswer(completeNow).when(transactionManager).callbackOnLowWaterMarkInSystemCompletion(any(Runnable.class));
+
+    listener = mock(L2ObjectStateListener.class);
+  }
+
+  @Test
+  public void testStreamingSyncHandsOutBatchesBeforeClose() throws Exception {
+    L2ObjectStateManagerImpl stateManager = startSync(true);
+
+    ManagedObjectSyncContext first = stateManager.getSomeObjectsToSyncContext(passive, 4);
+    ManagedObjectSyncContext second = stateManager.getSomeObjectsToSyncContext(passive, 4);
+    ManagedObjectSyncContext third = stateManager.getSomeObjectsToSyncContext(passive, 4);
+    assertEquals(4, first.getRequestedObjectIDs().size());
+    assertEquals(4, second.getRequestedObjectIDs().size());
+    assertEquals(2, third.getRequestedObjectIDs().size());
+    assertNull(stateManager.getSomeObjectsToSyncContext(passive, 4));
+
+    // one object of the first batch did not fit in the message, closing it asks for another batch
+    dehydrate(first, 1);
+    stateManager.close(first);
+    assertEquals(2, syncRequests.get());
+
+    ManagedObjectSyncContext fourth = stateManager.getSomeObjectsToSyncContext(passive, 4);
+    assertEquals(1, fourth.getRequestedObjectIDs().size());
+
+    for (ManagedObjectSyncContext mosc : new ManagedObjectSyncContext[] { second, third, fourth }) {
+      verify(listener, never()).objectSyncCompleteFor(passive);
+      dehydrate(mosc, 0);
+      stateManager.close(mosc);
+    }
+    verify(listener).objectSyncCompleteFor(passive);
+    assertEquals(2, syncRequests.get());
+  }
+
+  @Test(expected = AssertionError.class)
+  public void testOneBatchAtATimeWithoutStreaming() throws Exception {
+    L2ObjectStateManagerImpl stateManager = startSync(false);
+    stateManager.getSomeObjectsToSyncContext(passive, 4);
+    stateManager.getSomeObjectsToSyncContext(passive, 4);
+  }
+
+  @Test
+  public void testDeltaSyncOnlySyncsDifferingRanges() throws Exception {
+    long otherRange = 2L << ObjectIDRangeDigests.RANGE_SHIFT;
+    ObjectIDSet allObjects = new BitSetObjectIDSet();
+    ObjectIDRangeDigests passiveDigests = new ObjectIDRangeDigests();
+    for (long i = 1; i <= 10; i++) {
+      allObjects.add(new ObjectID(i));
+      allObjects.add(new ObjectID(otherRange + i));
+      // objects not in the object manager get version -1
+      passiveDigests.add(new ObjectID(i), -1);
+    }
+    when(objectManager.getAllObjectIDs()).thenReturn(allObjects);
+
+    L2ObjectStateManagerImpl stateManager = new L2ObjectStateManagerImpl(objectManager, transactionManager, false);
+    stateManager.registerForL2ObjectStateChangeEvents(listener);
+    stateManager.setRangeDigests(passive, passiveDigests);
+    stateManager.addL2(passive);
+    verify(listener).compareRangeDigestsFor(passive);
+    verify(listener, never()).missingObjectsFor(any(NodeID.class), anyInt());
+
+    assertEquals(Collections.singleton(2L), stateManager.restrictToDifferingRanges(passive));
+    stateManager.differingRangesDropped(passive);
+    verify(listener).missingObjectsFor(passive, 10);
+
+    stateManager.initiateSync(passive, new Runnable() {
+      @Override
+      public void run() {
+        syncRequests.incrementAndGet();
+      }
+    });
+    ManagedObjectSyncContext mosc = stateManager.getSomeObjectsToSyncContext(passive, 20);
+    assertEquals(10, mosc.getRequestedObjectIDs().size());
+    for (ObjectID oid : mosc.getRequestedObjectIDs()) {
+      assertEquals(2L, ObjectIDRangeDigests.rangeOf(oid));
+    }
+  }
+
+  @Test
+  public void testDeltaSyncWithMatchingDigestsIsInSync() throws Exception {
+    ObjectIDRangeDigests passiveDigests = new ObjectIDRangeDigests();
+    for (long i = 1; i <= 10; i++) {
+      passiveDigests.add(new ObjectID(i), -1);
+    }
+    L2ObjectStateManagerImpl stateManager = new L2ObjectStateManagerImpl(objectManager, transactionManager, false);
+    stateManager.registerForL2ObjectStateChangeEvents(listener);
+    stateManager.setRangeDigests(passive, passiveDigests);
+    stateManager.addL2(passive);
+
+    assertTrue(stateManager.restrictToDifferingRanges(passive).isEmpty());
+    stateManager.differingRangesDropped(passive);
+    verify(listener).missingObjectsFor(passive, 0);
+  }
+
+  private L2ObjectStateManagerImpl startSync(boolean streaming) {
+    L2ObjectStateManagerImpl stateManager = new L2ObjectStateManagerImpl(objectManager, transactionManager, streaming);
+    stateManager.registerForL2ObjectStateChangeEvents(listener);
+    stateManager.addL2(passive);
+    verify(listener).missingObjectsFor(passive, 10);
+    stateManager.initiateSync(passive, new Runnable() {
+      @Override
+      public void run() {
+        syncRequests.incrementAndGet();
+      }
+    });
+    assertEquals(1, syncRequests.get());
+    return stateManager;
+  }
+
+  private static void dehydrate(ManagedObjectSyncContext mosc, int notSyncedCount) {
+    ObjectIDSet synced = new BitSetObjectIDSet();
+    ObjectIDSet notSynced = new BitSetObjectIDSet();
+    for (Iterator<ObjectID> i = mosc.getRequestedObjectIDs().iterator(); i.hasNext();) {
+      ObjectID oid = i.next();
+      if (notSynced.size() < notSyncedCount) {
+        notSynced.add(oid);
+      } else {
+        synced.add(oid);
+      }
+    }
+    mosc.setDehydratedBytes(synced, notSynced, new TCByteBuffer[0], synced.size(), mock(ObjectStringSerializer.class),
+                            new BitSetObjectIDSet());
+  }
+}
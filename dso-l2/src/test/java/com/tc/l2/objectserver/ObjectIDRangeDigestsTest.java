@@ -0,0 +1,112 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.l2.objectserver;
+
+import com.tc.object.ObjectID;
+import com.tc.objectserver.api.ObjectManager;
+import com.tc.objectserver.core.api.ManagedObject;
+import com.tc.util.BitSetObjectIDSet;
+import com.tc.util.ObjectIDSet;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ObjectIDRangeDigestsTest extends TestCase {
+
+  private static final long RANGE = 1L << ObjectIDRangeDigests.RANGE_SHIFT;
+
+  public void testSameObjectsInAnyOrderHaveNoDifferingRanges() {
+    ObjectIDRangeDigests forward = new ObjectIDRangeDigests();
+    ObjectIDRangeDigests backward = new ObjectIDRangeDigests();
+    for (long i = 0; i < 3 * RANGE; i += 5) {
+      forward.add(new ObjectID(i), i + 100);
+    }
+    for (long i = 3 * RANGE - 3; i >= 0; i -= 5) {
+      backward.add(new ObjectID(i), i + 100);
+    }
+    assertEquals(3, forward.size());
+    assertTrue(forward.differingRanges(backward).isEmpty());
+    assertTrue(backward.differingRanges(forward).isEmpty());
+  }
+
+  public void testChangedAddedAndMissingObjectsShowUpAsDifferingRanges() {
+    ObjectIDRangeDigests active = new ObjectIDRangeDigests();
+    ObjectIDRangeDigests passive = new ObjectIDRangeDigests();
+    for (long i = 0; i < 4 * RANGE; i += 3) {
+      active.add(new ObjectID(i), 1);
+      passive.add(new ObjectID(i), 1);
+    }
+    // newer version on the active in range 1
+    active.add(new ObjectID(RANGE + 1), 2);
+    passive.add(new ObjectID(RANGE + 1), 1);
+    // only on the passive in range 3
+    passive.add(new ObjectID(3 * RANGE + 1), 1);
+    // only on the active in a range the passive has nothing in
+    active.add(new ObjectID(7 * RANGE), 1);
+
+    SortedSet<Long> expected = new TreeSet<Long>(Arrays.asList(1L, 3L, 7L));
+    assertEquals(expected, active.differingRanges(passive));
+    assertEquals(expected, passive.differingRanges(active));
+  }
+
+  public void testObjectsIn() {
+    ObjectIDSet oids = new BitSetObjectIDSet();
+    for (long i = 0; i < 4 * RANGE; i += RANGE / 2) {
+      oids.add(new ObjectID(i));
+    }
+    ObjectIDSet in = ObjectIDRangeDigests.objectsIn(oids, new HashSet<Long>(Arrays.asList(0L, 2L)));
+    ObjectIDSet expected = new BitSetObjectIDSet();
+    expected.add(new ObjectID(0));
+    expected.add(new ObjectID(RANGE / 2));
+    expected.add(new ObjectID(2 * RANGE));
+    expected.add(new ObjectID(2 * RANGE + RANGE / 2));
+    assertEquals(expected, in);
+    assertTrue(ObjectIDRangeDigests.objectsIn(oids, new HashSet<Long>()).isEmpty());
+  }
+
+  public void testComputeUsesVersionsAndReleasesObjects() {
+    ObjectManager objectManager = mock(ObjectManager.class);
+    ManagedObject mo = mock(ManagedObject.class);
+    when(mo.getVersion()).thenReturn(42L);
+    when(objectManager.getObjectByIDReadOnly(new ObjectID(1))).thenReturn(mo);
+    ObjectIDSet oids = new BitSetObjectIDSet();
+    oids.add(new ObjectID(1));
+    // object 2 is gone by the time it is looked up
+    oids.add(new ObjectID(2));
+
+    ObjectIDRangeDigests computed = ObjectIDRangeDigests.compute(oids, objectManager);
+    verify(objectManager).releaseReadOnly(mo);
+
+    ObjectIDRangeDigests expected = new ObjectIDRangeDigests();
+    expected.add(new ObjectID(1), 42);
+    expected.add(new ObjectID(2), -1);
+    assertTrue(computed.differingRanges(expected).isEmpty());
+
+    ObjectIDRangeDigests stale = new ObjectIDRangeDigests();
+    stale.add(new ObjectID(1), 41);
+    stale.add(new ObjectID(2), -1);
+    assertEquals(1, computed.differingRanges(stale).size());
+  }
+}
@@ -22,11 +22,13 @@ import com.tc.l2.msg.ClusterStateMessage;
 import com.tc.l2.msg.GCResultMessage;
 import com.tc.l2.msg.L2StateMessage;
 import com.tc.l2.msg.ObjectListSyncMessage;
+import com.tc.l2.msg.ObjectRangeDigestMessage;
 import com.tc.l2.msg.ObjectSyncCompleteMessage;
 import com.tc.l2.msg.ObjectSyncMessage;
 import com.tc.l2.msg.ObjectSyncResetMessage;
 import com.tc.l2.msg.RelayedCommitTransactionMessage;
 import com.tc.l2.msg.ServerRelayedTxnAckMessage;
+import com.tc.l2.objectserver.ObjectIDRangeDigests;
 import com.tc.l2.state.Enrollment;
 import com.tc.net.NodeID;
 import com.tc.net.ServerID;
@@ -66,11 +68,14 @@ import com.tc.util.ObjectIDSet;
 import com.tc.util.TCCollections;
 import com.tc.util.UUID;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -235,6 +240,24 @@ public class TCGroupMessageWrapperTest extends TestCase {
     sendGroupMessage(sendMesg);
   }
 
+  public void testObjectRangeDigestMessage() throws Exception {
+    ObjectIDRangeDigests digests = new ObjectIDRangeDigests();
+    for (long i = 1; i <= 10000; i += 7) {
+      digests.add(new ObjectID(i), i * 3);
+    }
+    ObjectRangeDigestMessage received = (ObjectRangeDigestMessage) sendGroupMessage(ObjectRangeDigestMessage
+        .createDigestsMessage(digests));
+    assertEquals(digests.size(), received.getDigests().size());
+    assertTrue(digests.differingRanges(received.getDigests()).isEmpty());
+  }
+
+  public void testObjectRangeDigestResyncRangesMessage() throws Exception {
+    SortedSet<Long> ranges = new TreeSet<Long>(Arrays.asList(1L, 5L, 42L));
+    ObjectRangeDigestMessage received = (ObjectRangeDigestMessage) sendGroupMessage(ObjectRangeDigestMessage
+        .createResyncRangesMessage(ranges));
+    assertEquals(ranges, received.getRanges());
+  }
+
   public void testObjectSyncCompleteMessage() throws Exception {
     GroupMessage sendMesg = new ObjectSyncCompleteMessage(100);
     sendGroupMessage(sendMesg);
@@ -31,7 +31,9 @@ import com.tc.objectserver.persistence.impl.TestMutableSequence;
 import com.tc.util.sequence.DGCSequenceProvider;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import junit.framework.TestCase;
@@ -63,8 +65,8 @@ public class MarkAndSweepGarbageCollectorTest extends TestCase {
   @Override
   protected void setUp() throws Exception {
     super.setUp();
-    this.lookedUp = new HashSet<ObjectID>();
-    this.released = new HashSet<ObjectID>();
+    this.lookedUp = Collections.synchronizedSet(new HashSet<ObjectID>());
+    this.released = Collections.synchronizedSet(new HashSet<ObjectID>());
     this.objectManager = new GCTestObjectManager(this.lookedUp, this.released, this.transactionProvider);
     this.stateManager = new TestClientStateManager();
     this.garbageCollectionManager = mock(GarbageCollectionManager.class);
@@ -194,6 +196,46 @@ public class MarkAndSweepGarbageCollectorTest extends TestCase {
     assertTrue(this.lookedUp.equals(this.released));
   }
 
+  public void testParallelMarkMatchesSerialMark() {
+    List<TestManagedObject> live = new ArrayList<TestManagedObject>();
+    live.add(this.root1);
+    for (int i = 1; i < 2000; i++) {
+      TestManagedObject tmo = createObject(4);
+      live.get((i - 1) / 4).setReference((i - 1) % 4, tmo.getID());
+      live.add(tmo);
+    }
+    // a back reference from a leaf, so the graph is not a tree
+    live.get(1999).setReference(0, this.root1.getID());
+
+    Set<ObjectID> garbage = new HashSet<ObjectID>();
+    TestManagedObject previous = null;
+    for (int i = 0; i < 300; i++) {
+      TestManagedObject tmo = createObject(2);
+      tmo.setReference(0, live.get(i).getID());
+      if (previous != null) {
+        tmo.setReference(1, previous.getID());
+      }
+      garbage.add(tmo.getID());
+      previous = tmo;
+    }
+
+    FullGCHook hook = new FullGCHook(this.collector, this.objectManager, this.stateManager, false);
+    Set serial = this.collector.collect(hook, this.filter, this.objectManager.getRootIDs(),
+                                        this.objectManager.getAllObjectIDs());
+
+    MarkAndSweepGCAlgorithm parallelGC = new MarkAndSweepGCAlgorithm(this.collector, hook,
+                                                                     new GarbageCollectionInfoPublisherImpl(),
+                                                                     MarkAndSweepGarbageCollector.NULL_LIFECYCLE_STATE,
+                                                                     1, 4, 16);
+    Set parallel = parallelGC.collect(this.filter, this.objectManager.getRootIDs(),
+                                      this.objectManager.getAllObjectIDs(),
+                                      MarkAndSweepGarbageCollector.NULL_LIFECYCLE_STATE);
+
+    assertEquals(garbage, new HashSet<ObjectID>(serial));
+    assertEquals(garbage, new HashSet<ObjectID>(parallel));
+    assertTrue(this.lookedUp.equals(this.released));
+  }
+
   public void testIsInGCPause() throws Exception {
     assertFalse(this.collector.isPausingOrPaused());
     this.collector.requestGCPause();
@@ -20,11 +20,13 @@ import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
+import com.tc.async.api.EventContext;
 import com.tc.async.impl.MockStage;
 import com.tc.net.ClientID;
 import com.tc.net.ServerID;
@@ -40,6 +42,7 @@ import com.tc.object.net.DSOChannelManager;
 import com.tc.object.tx.ServerTransactionID;
 import com.tc.object.tx.TransactionID;
 import com.tc.objectserver.context.BroadcastChangeContext;
+import com.tc.objectserver.context.BroadcastShardContext;
 import com.tc.objectserver.core.api.ServerConfigurationContext;
 import com.tc.objectserver.core.api.TestDNA;
 import com.tc.objectserver.event.ClientChannelMonitor;
@@ -172,6 +175,54 @@ public class BroadcastChangeHandlerTest extends TCTestCase {
     verify(serverEventBuffer).removeEventsForTransaction(gid);
   }
 
+  public void testShardedBroadcast() throws Exception {
+    MockStage shardStage = new MockStage(ServerConfigurationContext.BROADCAST_CHANGES_SHARD_STAGE);
+    when(serverCfgCxt.getStage(ServerConfigurationContext.BROADCAST_CHANGES_SHARD_STAGE)).thenReturn(shardStage);
+    this.handler = new BroadcastChangeHandler(sci, new ObjectStatsRecorder(), srci, mock(InvalidateObjectManager.class), 2);
+    this.handler.initialize(this.serverCfgCxt);
+    BroadcastChangeShardHandler shardHandler = new BroadcastChangeShardHandler(handler);
+
+    createChannels(3);
+    MessageChannel[] channels = channelManager.getActiveChannels();
+    for (int i = 0; i < channels.length; i++) {
+      clientStateManager.addReference(new ClientID(i), new ObjectID(1));
+    }
+
+    ServerTransaction txn2 = createTransaction(1, 2, 2);
+    handler.handleEvent(new BroadcastChangeContext(txn, new GlobalTransactionID(1), new NotifiedWaiters(),
+                                                   applyTransactionInfo));
+    handler.handleEvent(new BroadcastChangeContext(txn2, new GlobalTransactionID(2), new NotifiedWaiters(),
+                                                   new ApplyTransactionInfo()));
+
+    // nothing is broadcasted until the shards ran
+    verify(transactionManager, never()).broadcasted(new ClientID(1), new TransactionID(1));
+    List<EventContext> shardContexts = Lists.newArrayList(shardStage.sink.queue);
+    assertTrue(shardContexts.size() >= 2);
+    assertTrue(shardContexts.size() <= 4);
+
+    // run the first transaction's shards one at a time, the second one's as a batch
+    for (EventContext shardContext : shardContexts) {
+      if (((BroadcastShardContext) shardContext).getBroadcastChangeContext().getTransactionID()
+          .equals(new TransactionID(1))) {
+        shardHandler.handleEvent(shardContext);
+      }
+    }
+    verify(transactionManager).broadcasted(new ClientID(1), new TransactionID(1));
+    verify(transactionManager, never()).broadcasted(new ClientID(1), new TransactionID(2));
+
+    shardHandler.handleEvents(shardContexts.subList(shardContexts.size() / 2, shardContexts.size()));
+    verify(transactionManager).broadcasted(new ClientID(1), new TransactionID(2));
+
+    // the committer, client 1, has nothing to be told
+    for (int i = 0; i < channels.length; i += 2) {
+      BroadcastTransactionMessage message = (BroadcastTransactionMessage) channels[i]
+          .createMessage(TCMessageType.BROADCAST_TRANSACTION_MESSAGE);
+      verify(message, times(2)).send();
+      verify(transactionManager).addWaitingForAcknowledgement(new ClientID(1), new TransactionID(1), new ClientID(i));
+      verify(transactionManager).addWaitingForAcknowledgement(new ClientID(1), new TransactionID(2), new ClientID(i));
+    }
+  }
+
   private static ServerTransaction createTransaction(long sourceID, long txID, long gid) {
     ServerTransaction transaction = mock(ServerTransaction.class);
     when(transaction.getSourceID()).thenReturn(new ClientID(sourceID));
@@ -0,0 +1,117 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.impl;
+
+import org.junit.Test;
+
+import com.tc.objectserver.api.EvictableEntry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class FrequencySketchEvictionPolicyTest {
+
+  @Test
+  public void testSketchCountsAccesses() {
+    FrequencySketch sketch = new FrequencySketch(1024);
+    for (int i = 0; i < 5; i++) {
+      sketch.increment("hot");
+    }
+    sketch.increment("warm");
+    assertEquals(5, sketch.frequency("hot"));
+    assertTrue(sketch.frequency("warm") >= 1);
+    assertTrue(sketch.frequency("hot") > sketch.frequency("cold"));
+  }
+
+  @Test
+  public void testSketchCountersSaturate() {
+    FrequencySketch sketch = new FrequencySketch(1024);
+    for (int i = 0; i < 100; i++) {
+      sketch.increment("hot");
+    }
+    assertEquals(15, sketch.frequency("hot"));
+  }
+
+  @Test
+  public void testSketchAgesCounters() {
+    FrequencySketch sketch = new FrequencySketch(16);
+    for (int i = 0; i < 15; i++) {
+      sketch.increment("old");
+    }
+    // enough distinct additions to trigger a reset
+    for (int i = 0; i < 10 * 16; i++) {
+      sketch.increment("key-" + i);
+    }
+    assertTrue(sketch.frequency("old") < 15);
+  }
+
+  @Test
+  public void testSketchCapacityIsBounded() {
+    FrequencySketch sketch = new FrequencySketch(16);
+    sketch.ensureCapacity(Integer.MAX_VALUE);
+    assertEquals(FrequencySketch.MAX_CAPACITY, sketch.capacity());
+  }
+
+  @Test
+  public void testSampleSize() {
+    FrequencySketchEvictionPolicy policy = new FrequencySketchEvictionPolicy();
+    assertEquals(10 * FrequencySketchEvictionPolicy.SAMPLE_FACTOR, policy.getSampleSize(10, 1000));
+    assertEquals(25, policy.getSampleSize(10, 25));
+  }
+
+  @Test
+  public void testSelectsLeastFrequentlyRead() {
+    FrequencySketchEvictionPolicy policy = new FrequencySketchEvictionPolicy();
+    Map<Object, EvictableEntry> candidates = new HashMap<Object, EvictableEntry>();
+    for (int i = 0; i < 40; i++) {
+      String key = "key-" + i;
+      candidates.put(key, mock(EvictableEntry.class));
+      // key-0 .. key-9 are never read
+      for (int j = 0; j < i / 10; j++) {
+        policy.recordAccess(key);
+      }
+    }
+
+    Map<Object, EvictableEntry> victims = policy.selectVictims(candidates, 10);
+    assertEquals(10, victims.size());
+    for (int i = 0; i < 10; i++) {
+      assertSame(candidates.get("key-" + i), victims.get("key-" + i));
+    }
+  }
+
+  @Test
+  public void testKeepsAllCandidatesWhenTooFew() {
+    FrequencySketchEvictionPolicy policy = new FrequencySketchEvictionPolicy();
+    Map<Object, EvictableEntry> candidates = new HashMap<Object, EvictableEntry>();
+    candidates.put("a", mock(EvictableEntry.class));
+    assertSame(candidates, policy.selectVictims(candidates, 10));
+  }
+
+  @Test
+  public void testPolicySelection() {
+    assertSame(RandomEvictionPolicy.INSTANCE, EvictionPolicies.create(null));
+    assertSame(RandomEvictionPolicy.INSTANCE, EvictionPolicies.create(EvictionPolicies.RANDOM));
+    assertTrue(EvictionPolicies.create(EvictionPolicies.FREQUENCY) instanceof FrequencySketchEvictionPolicy);
+    assertTrue(EvictionPolicies.create(FrequencySketchEvictionPolicy.class.getName()) instanceof FrequencySketchEvictionPolicy);
+    assertSame(RandomEvictionPolicy.INSTANCE, EvictionPolicies.create("no.such.Policy"));
+  }
+}
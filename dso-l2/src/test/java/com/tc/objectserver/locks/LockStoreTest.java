@@ -0,0 +1,154 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.locks;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.tc.object.locks.LockID;
+import com.tc.object.locks.StringLockID;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+public class LockStoreTest extends TestCase {
+
+  private LockStore store;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    store = new LockStore(4, new LockFactory() {
+      @Override
+      public ServerLock createLock(LockID lid) {
+        ServerLock lock = mock(ServerLock.class);
+        when(lock.getLockID()).thenReturn(lid);
+        return lock;
+      }
+    });
+  }
+
+  public void testCheckOutReturnsSameLockUntilRemoved() {
+    LockID lid = new StringLockID("timmy");
+    ServerLock lock = store.checkOut(lid);
+    store.checkIn(lock);
+    ServerLock again = store.checkOut(lid);
+    assertSame(lock, again);
+    assertSame(lock, store.remove(lid));
+    store.checkIn(again);
+
+    ServerLock fresh = store.checkOut(lid);
+    assertNotSame(lock, fresh);
+    store.checkIn(fresh);
+  }
+
+  public void testUnrelatedLocksDoNotBlock() throws Exception {
+    final ServerLock held = store.checkOut(new StringLockID("held"));
+    final CountDownLatch done = new CountDownLatch(1);
+    Thread other = new Thread() {
+      @Override
+      public void run() {
+        // whatever the hashing, no other lock waits for the one held by the test thread
+        for (int i = 0; i < 1000; i++) {
+          ServerLock lock = store.checkOut(new StringLockID("other" + i));
+          store.checkIn(lock);
+        }
+        done.countDown();
+      }
+    };
+    other.start();
+    assertTrue(done.await(30, TimeUnit.SECONDS));
+    store.checkIn(held);
+  }
+
+  public void testWaiterSeesRemoval() throws Exception {
+    final LockID lid = new StringLockID("timmy");
+    final ServerLock lock = store.checkOut(lid);
+    final AtomicReference<ServerLock> waited = new AtomicReference<ServerLock>();
+    final CountDownLatch started = new CountDownLatch(1);
+    Thread waiter = new Thread() {
+      @Override
+      public void run() {
+        started.countDown();
+        ServerLock l = store.checkOut(lid);
+        waited.set(l);
+        store.checkIn(l);
+      }
+    };
+    waiter.start();
+    started.await();
+    Thread.sleep(100);
+    store.remove(lid);
+    store.checkIn(lock);
+    waiter.join(30000);
+
+    assertNotNull(waited.get());
+    assertNotSame(lock, waited.get());
+  }
+
+  public void testCheckInByOtherThreadFails() throws Exception {
+    final ServerLock lock = store.checkOut(new StringLockID("timmy"));
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    Thread other = new Thread() {
+      @Override
+      public void run() {
+        try {
+          store.checkIn(lock);
+        } catch (Throwable t) {
+          error.set(t);
+        }
+      }
+    };
+    other.start();
+    other.join(30000);
+    assertTrue(error.get() instanceof AssertionError);
+    store.checkIn(lock);
+  }
+
+  public void testIteratorRemove() {
+    for (int i = 0; i < 10; i++) {
+      store.checkIn(store.checkOut(new StringLockID("lock" + i)));
+    }
+
+    LockStore.LockIterator iter = store.iterator();
+    ServerLock lock = iter.getNextLock(null);
+    int seen = 0;
+    while (lock != null) {
+      seen++;
+      if (seen % 2 == 0) {
+        iter.remove();
+      }
+      lock = iter.getNextLock(lock);
+    }
+    assertEquals(10, seen);
+
+    iter = store.iterator();
+    lock = iter.getNextLock(null);
+    int left = 0;
+    while (lock != null) {
+      left++;
+      lock = iter.getNextLock(lock);
+    }
+    assertEquals(5, left);
+
+    store.clear();
+    assertNull(store.iterator().getNextLock(null));
+  }
+}
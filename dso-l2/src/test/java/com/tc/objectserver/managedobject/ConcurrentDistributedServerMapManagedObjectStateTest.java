@@ -45,6 +45,7 @@ import com.tc.object.dna.api.DNA.DNAType;
 import com.tc.object.dna.api.DNAWriter;
 import com.tc.object.dna.api.PhysicalAction;
 import com.tc.object.tx.ServerTransactionID;
+import com.tc.objectserver.api.EvictableEntry;
 import com.tc.objectserver.event.ClientChannelMonitor;
 import com.tc.objectserver.event.MutationEventPublisher;
 import com.tc.objectserver.impl.SamplingType;
@@ -54,7 +55,10 @@ import com.tc.server.ServerEventType;
 import com.tc.test.TCTestCase;
 import com.tc.util.Events;
 
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 
 public class ConcurrentDistributedServerMapManagedObjectStateTest extends TCTestCase {
@@ -364,6 +368,47 @@ public class ConcurrentDistributedServerMapManagedObjectStateTest extends TCTest
                                                 new CDSMValue(ObjectID.NULL_ID), null);
   }
 
+  public void testRandomSamplesSkipReferencedValues() throws Exception {
+    ClientObjectReferenceSet clientObjectReferenceSet = mockKeys(100);
+    Map<Object, EvictableEntry> samples = state.getRandomSamples(10, clientObjectReferenceSet,
+                                                                 SamplingType.FOR_EVICTION);
+    assertEquals(10, samples.size());
+    for (EvictableEntry entry : samples.values()) {
+      assertFalse(clientObjectReferenceSet.contains(entry.getObjectID()));
+    }
+
+    // only half of the keys can be evicted, a full lap must find all of them
+    samples = state.getRandomSamples(80, clientObjectReferenceSet, SamplingType.FOR_EVICTION);
+    assertEquals(50, samples.size());
+  }
+
+  public void testRandomSamplesMoveAroundTheMap() throws Exception {
+    ClientObjectReferenceSet clientObjectReferenceSet = mockKeys(1000);
+    Map<Object, EvictableEntry> first = state.getRandomSamples(10, clientObjectReferenceSet, SamplingType.FOR_EVICTION);
+    Map<Object, EvictableEntry> second = state.getRandomSamples(10, clientObjectReferenceSet, SamplingType.FOR_EVICTION);
+    assertEquals(10, first.size());
+    assertEquals(10, second.size());
+    assertTrue(Collections.disjoint(first.keySet(), second.keySet()));
+  }
+
+  /**
+   * Backs the map with <code>count</code> keys, the values of the even keys are referenced by a client.
+   */
+  private ClientObjectReferenceSet mockKeys(int count) {
+    Set<Object> keys = new LinkedHashSet<Object>();
+    ClientObjectReferenceSet clientObjectReferenceSet = mock(ClientObjectReferenceSet.class);
+    for (int i = 0; i < count; i++) {
+      String key = "key" + i;
+      ObjectID valueID = new ObjectID(1000 + i);
+      keys.add(key);
+      when(keyValueStorage.get(key)).thenReturn(new CDSMValue(valueID, 0, 0, 0, 0));
+      when(clientObjectReferenceSet.contains(valueID)).thenReturn(i % 2 == 0);
+    }
+    when(keyValueStorage.size()).thenReturn((long) count);
+    when(keyValueStorage.keySet()).thenReturn(keys);
+    return clientObjectReferenceSet;
+  }
+
   public static final class OperationCountChangeEventListener {
     private int count;
 
@@ -0,0 +1,97 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.persistence;
+
+import org.terracotta.corestorage.ImmutableKeyValueStorageConfig;
+import org.terracotta.corestorage.KeyValueStorageMutationListener;
+import org.terracotta.corestorage.Retriever;
+
+import com.tc.test.TCTestCase;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class HeapLongKeyValueStorageTest extends TCTestCase {
+
+  public void testMatchesHashMap() throws Exception {
+    HeapLongKeyValueStorage<String> storage = new HeapLongKeyValueStorage<String>(ImmutableKeyValueStorageConfig
+        .builder(Long.class, String.class).build());
+    Map<Long, String> expected = new HashMap<Long, String>();
+    Random r = new Random(42);
+    for (int i = 0; i < 200000; i++) {
+      // a small key range so removals hit and probe runs get shifted
+      long key = r.nextInt(5000) - 100;
+      switch (r.nextInt(3)) {
+        case 0:
+        case 1:
+          storage.put(key, "v" + i);
+          expected.put(key, "v" + i);
+          break;
+        default:
+          assertEquals(expected.remove(key) != null, storage.remove(key));
+      }
+    }
+    assertEquals(expected.size(), storage.size());
+    for (long key = -100; key < 4900; key++) {
+      assertEquals(expected.get(key), storage.get(key));
+      assertEquals(expected.containsKey(key), storage.containsKey(key));
+    }
+    assertEquals(expected.keySet(), new HashSet<Long>(storage.keySet()));
+    assertEquals(new HashSet<String>(expected.values()), new HashSet<String>(storage.values()));
+
+    storage.clear();
+    assertEquals(0, storage.size());
+    assertNull(storage.get(1L));
+  }
+
+  public void testListenersSeeMutations() throws Exception {
+    final Set<Long> live = new HashSet<Long>();
+    final Map<Long, Byte> metadata = new HashMap<Long, Byte>();
+    KeyValueStorageMutationListener<Long, byte[]> listener = new KeyValueStorageMutationListener<Long, byte[]>() {
+      @Override
+      public void added(Retriever<? extends Long> key, Retriever<? extends byte[]> value, byte meta) {
+        live.add(key.retrieve());
+        metadata.put(key.retrieve(), meta);
+      }
+
+      @Override
+      public void removed(Retriever<? extends Long> key) {
+        live.remove(key.retrieve());
+      }
+    };
+    HeapLongKeyValueStorage<byte[]> storage = new HeapLongKeyValueStorage<byte[]>(ImmutableKeyValueStorageConfig
+        .builder(Long.class, byte[].class).listener(listener).build());
+    storage.put(1L, new byte[0], (byte) 7);
+    storage.put(Long.valueOf(2), new byte[0]);
+    storage.remove(3L);
+    assertEquals(2, live.size());
+    assertEquals(Byte.valueOf((byte) 7), metadata.get(1L));
+    storage.remove(Long.valueOf(1));
+    assertEquals(1, live.size());
+    storage.clear();
+    assertTrue(live.isEmpty());
+  }
+
+  public void testPrimitiveStorageIsUsedDirectly() throws Exception {
+    HeapLongKeyValueStorage<String> storage = new HeapLongKeyValueStorage<String>(ImmutableKeyValueStorageConfig
+        .builder(Long.class, String.class).build());
+    assertSame(storage, LongKeyValueStorages.of(storage));
+  }
+}
@@ -0,0 +1,303 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.persistence;
+
+import org.terracotta.corestorage.ImmutableKeyValueStorageConfig;
+import org.terracotta.corestorage.KeyValueStorage;
+import org.terracotta.corestorage.KeyValueStorageConfig;
+import org.terracotta.corestorage.StorageManager;
+import org.terracotta.corestorage.heap.HeapStorageManager;
+
+import com.tc.object.ObjectID;
+import com.tc.test.TCTestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class WriteAheadLogStorageManagerTest extends TCTestCase {
+  private static final String OBJECTS = "objects";
+  private static final String ROOTS   = "roots";
+
+  private File                directory;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    directory = getTempDirectory();
+  }
+
+  public void testRecoverFromLog() throws Exception {
+    WriteAheadLogStorageManager manager = start();
+    KeyValueStorage<Long, byte[]> objects = manager.getKeyValueStorage(OBJECTS, Long.class, byte[].class);
+    manager.begin();
+    objects.put(1L, new byte[] { 1 }, (byte) 3);
+    objects.put(2L, new byte[] { 2 });
+    manager.commit();
+    objects.remove(2L);
+    manager.getKeyValueStorage(ROOTS, String.class, ObjectID.class).put("root", new ObjectID(1));
+    manager.createKeyValueStorage("dynamic", PersistentObjectFactory.MAP_CONFIG).put("key", 42L);
+    manager.getProperties().put("state", "ACTIVE");
+    manager.close();
+
+    manager = start();
+    assertEquals("ACTIVE", manager.getProperties().get("state"));
+    objects = manager.getKeyValueStorage(OBJECTS, Long.class, byte[].class);
+    assertEquals(1, objects.size());
+    assertEquals(1, objects.get(1L)[0]);
+    assertEquals(new ObjectID(1), manager.getKeyValueStorage(ROOTS, String.class, ObjectID.class).get("root"));
+    assertEquals(42L, manager.getKeyValueStorage("dynamic", Object.class, Object.class).get("key"));
+    manager.close();
+  }
+
+  public void testUncommittedTransactionIsNotRecovered() throws Exception {
+    WriteAheadLogStorageManager manager = start();
+    KeyValueStorage<Long, byte[]> objects = manager.getKeyValueStorage(OBJECTS, Long.class, byte[].class);
+    objects.put(1L, new byte[] { 1 });
+    manager.begin();
+    objects.put(2L, new byte[] { 2 });
+    manager.close();
+
+    manager = start();
+    objects = manager.getKeyValueStorage(OBJECTS, Long.class, byte[].class);
+    assertEquals(1, objects.size());
+    assertNull(objects.get(2L));
+    manager.close();
+  }
+
+  public void testRecoverFromSnapshotAndLogTail() throws Exception {
+    WriteAheadLogStorageManager manager = start();
+    KeyValueStorage<Long, byte[]> objects = manager.getKeyValueStorage(OBJECTS, Long.class, byte[].class);
+    for (long i = 0; i < 100; i++) {
+      objects.put(i, new byte[] { (byte) i }, (byte) 1);
+    }
+    KeyValueStorage<Object, Object> dynamic = manager.createKeyValueStorage("dynamic", PersistentObjectFactory.MAP_CONFIG);
+    dynamic.put("before", 1L);
+    manager.createKeyValueStorage("destroyed", PersistentObjectFactory.MAP_CONFIG).put("gone", 1L);
+    manager.snapshot();
+    assertFalse(new File(directory, "data.0.wal").exists());
+    assertTrue(new File(directory, "snapshot.1").isDirectory());
+
+    objects.remove(0L);
+    objects.put(1L, new byte[] { 42 });
+    dynamic.put("after", 2L);
+    manager.destroyKeyValueStorage("destroyed");
+    manager.close();
+
+    manager = start();
+    objects = manager.getKeyValueStorage(OBJECTS, Long.class, byte[].class);
+    assertEquals(99, objects.size());
+    assertNull(objects.get(0L));
+    assertEquals(42, objects.get(1L)[0]);
+    assertEquals(99, objects.get(99L)[0]);
+    dynamic = manager.getKeyValueStorage("dynamic", Object.class, Object.class);
+    assertEquals(1L, dynamic.get("before"));
+    assertEquals(2L, dynamic.get("after"));
+    assertNull(manager.getKeyValueStorage("destroyed", Object.class, Object.class));
+
+    manager.snapshot();
+    manager.close();
+    manager = start();
+    assertEquals(99, manager.getKeyValueStorage(OBJECTS, Long.class, byte[].class).size());
+    manager.close();
+  }
+
+  public void testSnapshotKeepsOnlyTheLatestPuts() throws Exception {
+    WriteAheadLogStorageManager manager = start();
+    KeyValueStorage<Long, byte[]> objects = manager.getKeyValueStorage(OBJECTS, Long.class, byte[].class);
+    for (int round = 0; round < 10; round++) {
+      for (long i = 0; i < 100; i++) {
+        objects.put(i, new byte[1024], (byte) round);
+      }
+    }
+    for (long i = 0; i < 50; i++) {
+      objects.remove(i);
+    }
+    KeyValueStorage<Object, Object> cleared = manager.createKeyValueStorage("cleared", PersistentObjectFactory.MAP_CONFIG);
+    cleared.put("before", 1L);
+    cleared.clear();
+    cleared.put("after", 2L);
+    manager.createKeyValueStorage("recreated", PersistentObjectFactory.MAP_CONFIG).put("old", 1L);
+    manager.destroyKeyValueStorage("recreated");
+    manager.createKeyValueStorage("recreated", PersistentObjectFactory.MAP_CONFIG).put("new", 2L);
+    manager.snapshot();
+    assertTrue(sizeOf(new File(directory, "snapshot.1")) < 100 * 1024);
+
+    objects.put(50L, new byte[] { 50 });
+    manager.snapshot();
+    assertFalse(new File(directory, "snapshot.1").exists());
+    manager.close();
+
+    manager = start();
+    objects = manager.getKeyValueStorage(OBJECTS, Long.class, byte[].class);
+    assertEquals(50, objects.size());
+    assertNull(objects.get(49L));
+    assertEquals(50, objects.get(50L)[0]);
+    assertEquals(1024, objects.get(99L).length);
+    KeyValueStorage<Object, Object> recovered = manager.getKeyValueStorage("cleared", Object.class, Object.class);
+    assertEquals(1, recovered.size());
+    assertEquals(2L, recovered.get("after"));
+    recovered = manager.getKeyValueStorage("recreated", Object.class, Object.class);
+    assertEquals(1, recovered.size());
+    assertEquals(2L, recovered.get("new"));
+    manager.close();
+  }
+
+  public void testSnapshotOnlyHoldsCommittedTransactions() throws Exception {
+    final WriteAheadLogStorageManager manager = start();
+    final KeyValueStorage<Long, byte[]> objects = manager.getKeyValueStorage(OBJECTS, Long.class, byte[].class);
+    objects.put(1L, new byte[] { 1 });
+
+    final CountDownLatch written = new CountDownLatch(1);
+    final CountDownLatch commit = new CountDownLatch(1);
+    Thread committer = new Thread() {
+      @Override
+      public void run() {
+        manager.begin();
+        objects.put(2L, new byte[] { 2 });
+        written.countDown();
+        try {
+          commit.await();
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
+        manager.commit();
+      }
+    };
+    committer.start();
+    assertTrue(written.await(30, TimeUnit.SECONDS));
+
+    Thread snapshotter = new Thread() {
+      @Override
+      public void run() {
+        try {
+          manager.snapshot();
+        } catch (Exception e) {
+          throw new AssertionError(e);
+        }
+      }
+    };
+    snapshotter.start();
+    snapshotter.join(500);
+    assertTrue(snapshotter.isAlive());
+    assertFalse(new File(directory, "snapshot.1").exists());
+
+    commit.countDown();
+    committer.join(30000);
+    snapshotter.join(30000);
+    assertTrue(new File(directory, "snapshot.1").isDirectory());
+    assertFalse(new File(directory, "data.0.wal").exists());
+    manager.close();
+
+    WriteAheadLogStorageManager recovered = start();
+    assertEquals(2, recovered.getKeyValueStorage(OBJECTS, Long.class, byte[].class).size());
+    recovered.close();
+  }
+
+  public void testBackupIsPointInTime() throws Exception {
+    WriteAheadLogStorageManager manager = start();
+    KeyValueStorage<Long, byte[]> objects = manager.getKeyValueStorage(OBJECTS, Long.class, byte[].class);
+    objects.put(1L, new byte[] { 1 });
+    manager.snapshot();
+    objects.put(2L, new byte[] { 2 });
+    manager.getProperties().put("state", "ACTIVE");
+
+    final long[] copied = new long[2];
+    File backup = new File(getTempDirectory(), "backup");
+    manager.backup(backup, 0, new RestartablePersistor.BackupListener() {
+      @Override
+      public void progress(long copiedBytes, long totalBytes) {
+        copied[0] = copiedBytes;
+        copied[1] = totalBytes;
+      }
+    });
+    objects.put(3L, new byte[] { 3 });
+    manager.close();
+    assertTrue(copied[1] > 0);
+    assertEquals(copied[1], copied[0]);
+
+    directory = backup;
+    manager = start();
+    assertEquals("ACTIVE", manager.getProperties().get("state"));
+    objects = manager.getKeyValueStorage(OBJECTS, Long.class, byte[].class);
+    assertEquals(2, objects.size());
+    assertNull(objects.get(3L));
+    manager.close();
+  }
+
+  public void testCloseAbortsBackup() throws Exception {
+    final WriteAheadLogStorageManager manager = start();
+    KeyValueStorage<Long, byte[]> objects = manager.getKeyValueStorage(OBJECTS, Long.class, byte[].class);
+    for (long i = 0; i < 100; i++) {
+      objects.put(i, new byte[1024]);
+    }
+
+    final File backup = new File(getTempDirectory(), "backup");
+    final CountDownLatch copying = new CountDownLatch(1);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread backupThread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          // slow enough to take minutes
+          manager.backup(backup, 512, new RestartablePersistor.BackupListener() {
+            @Override
+            public void progress(long copiedBytes, long totalBytes) {
+              copying.countDown();
+            }
+          });
+        } catch (Throwable t) {
+          failure.set(t);
+        }
+      }
+    };
+    backupThread.start();
+    assertTrue(copying.await(30, TimeUnit.SECONDS));
+
+    long closeStart = System.nanoTime();
+    manager.close();
+    assertTrue(System.nanoTime() - closeStart < TimeUnit.SECONDS.toNanos(10));
+    backupThread.join(30000);
+    assertTrue(failure.get() instanceof IOException);
+  }
+
+  private static long sizeOf(File file) {
+    File[] children = file.listFiles();
+    if (children == null) { return file.length(); }
+    long size = 0;
+    for (File child : children) {
+      size += sizeOf(child);
+    }
+    return size;
+  }
+
+  private WriteAheadLogStorageManager start() throws Exception {
+    Map<String, KeyValueStorageConfig<?, ?>> configs = new HashMap<String, KeyValueStorageConfig<?, ?>>();
+    configs.put(OBJECTS, ImmutableKeyValueStorageConfig.builder(Long.class, byte[].class).build());
+    configs.put(ROOTS, ImmutableKeyValueStorageConfig.builder(String.class, ObjectID.class).build());
+    StorageManager delegate = new HeapStorageManager(configs);
+    WriteAheadLogStorageManager manager = new WriteAheadLogStorageManager(delegate, directory, configs.keySet(),
+                                                                          PersistentObjectFactory.MAP_CONFIG, 0,
+                                                                          1024 * 1024, 0, 0, 1024);
+    manager.start().get();
+    return manager;
+  }
+}
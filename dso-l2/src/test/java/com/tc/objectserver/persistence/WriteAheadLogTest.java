@@ -0,0 +1,135 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.persistence;
+
+import com.tc.test.TCTestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+public class WriteAheadLogTest extends TCTestCase {
+
+  public void testRecoverAppendedRecords() throws Exception {
+    File file = getTempFile("test.wal");
+    WriteAheadLog log = new WriteAheadLog(file, 0, 1024);
+    assertEquals(0, recover(log).size());
+    log.append(new byte[] { 1 });
+    log.append(new byte[] { 2, 3 });
+    log.append(new byte[0]);
+    log.close();
+
+    log = new WriteAheadLog(file, 0, 1024);
+    List<byte[]> records = recover(log);
+    log.close();
+    assertEquals(3, records.size());
+    assertEquals(2, records.get(1).length);
+    assertEquals(3, records.get(1)[1]);
+    assertEquals(0, records.get(2).length);
+  }
+
+  public void testTornTailIsTruncated() throws Exception {
+    File file = getTempFile("test.wal");
+    WriteAheadLog log = new WriteAheadLog(file, 0, 1024);
+    recover(log);
+    log.append(new byte[] { 1, 2, 3, 4 });
+    log.close();
+    long intactLength = file.length();
+
+    FileOutputStream out = new FileOutputStream(file, true);
+    out.write(new byte[] { 0, 0, 0, 16, 1, 2, 3, 4, 5 });
+    out.close();
+
+    log = new WriteAheadLog(file, 0, 1024);
+    assertEquals(1, recover(log).size());
+    assertEquals(intactLength, file.length());
+    log.append(new byte[] { 5 });
+    log.close();
+
+    log = new WriteAheadLog(file, 0, 1024);
+    List<byte[]> records = recover(log);
+    log.close();
+    assertEquals(2, records.size());
+    assertEquals(5, records.get(1)[0]);
+  }
+
+  public void testCorruptRecordEndsRecovery() throws Exception {
+    File file = getTempFile("test.wal");
+    WriteAheadLog log = new WriteAheadLog(file, 0, 1024);
+    recover(log);
+    log.append(new byte[] { 1 });
+    log.append(new byte[] { 2 });
+    log.close();
+
+    // flip the payload byte of the first record
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    raf.seek(WriteAheadLog.HEADER_SIZE);
+    raf.write(7);
+    raf.close();
+
+    log = new WriteAheadLog(file, 0, 1024);
+    assertEquals(0, recover(log).size());
+    log.close();
+    assertEquals(0, file.length());
+  }
+
+  public void testConcurrentAppendersShareGroups() throws Exception {
+    File file = getTempFile("test.wal");
+    final WriteAheadLog log = new WriteAheadLog(file, 5, 1024 * 1024);
+    recover(log);
+    Thread[] appenders = new Thread[8];
+    for (int i = 0; i < appenders.length; i++) {
+      final byte id = (byte) i;
+      appenders[i] = new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 50; j++) {
+            log.append(new byte[] { id, (byte) j });
+          }
+        }
+      };
+      appenders[i].start();
+    }
+    for (Thread appender : appenders) {
+      appender.join();
+    }
+    log.close();
+
+    WriteAheadLog reopened = new WriteAheadLog(file, 0, 1024);
+    List<byte[]> records = recover(reopened);
+    reopened.close();
+    assertEquals(400, records.size());
+    int[] next = new int[appenders.length];
+    for (byte[] record : records) {
+      assertEquals(next[record[0]]++, record[1]);
+    }
+  }
+
+  private static List<byte[]> recover(WriteAheadLog log) throws IOException {
+    final List<byte[]> records = new ArrayList<byte[]>();
+    log.recover(new WriteAheadLog.RecordHandler() {
+      @Override
+      public void handle(byte[] payload) {
+        records.add(payload);
+      }
+    });
+    return records;
+  }
+}
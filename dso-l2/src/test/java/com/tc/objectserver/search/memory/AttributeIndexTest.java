@@ -0,0 +1,89 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.memory;
+
+import com.tc.test.TCTestCase;
+
+import java.util.BitSet;
+
+public class AttributeIndexTest extends TCTestCase {
+
+  public void testNumericEqualityAndRanges() {
+    AttributeIndex index = new AttributeIndex();
+    for (int row = 0; row < 10; row++) {
+      index.add(row, Long.valueOf(row * 10));
+    }
+
+    assertEquals(bits(3), index.equal(30));
+    assertEquals(bits(3), index.equal(30L));
+    assertEquals(bits(), index.equal(35L));
+    assertEquals(bits(2, 3, 4), index.range(20, true, 40, true));
+    assertEquals(bits(3), index.range(20, false, 40, false));
+    assertEquals(bits(0, 1), index.range(null, false, 15.5d, false));
+    assertEquals(bits(8, 9), index.range(75L, true, null, false));
+
+    index.remove(3, 30L);
+    assertEquals(bits(), index.equal(30L));
+    assertEquals(bits(2, 4), index.range(20, true, 40, true));
+  }
+
+  public void testSortedRangesAndLike() {
+    AttributeIndex index = new AttributeIndex();
+    index.add(0, "apple");
+    index.add(1, "banana");
+    index.add(2, "cherry");
+    index.add(3, "banana");
+
+    assertEquals(bits(1, 3), index.equal("banana"));
+    assertEquals(bits(1, 2, 3), index.range("b", true, null, false));
+    assertEquals(bits(0), index.range(null, false, "banana", false));
+    assertEquals(bits(1, 3), index.like(QueryParser.likePattern("BAN*")));
+    assertEquals(bits(0), index.like(QueryParser.likePattern("a?p*e")));
+    assertEquals(bits(), index.like(QueryParser.likePattern("b.*")));
+
+    index.remove(1, "banana");
+    assertEquals(bits(3), index.equal("banana"));
+    assertEquals(bits(0, 2, 3), index.present());
+  }
+
+  public void testMixedTypesMoveToSortedIndex() {
+    AttributeIndex index = new AttributeIndex();
+    index.add(0, 1);
+    index.add(1, 2);
+    index.add(2, "three");
+
+    assertEquals(bits(1), index.range(2, true, 2, true));
+    assertEquals(bits(2), index.equal("three"));
+    assertEquals(bits(0, 1, 2), index.present());
+  }
+
+  public void testByteArraysCompareByContent() {
+    AttributeIndex index = new AttributeIndex();
+    index.add(0, new byte[] { 1, 2, 3 });
+    assertEquals(bits(0), index.equal(new byte[] { 1, 2, 3 }));
+    index.remove(0, new byte[] { 1, 2, 3 });
+    assertTrue(index.isEmpty());
+  }
+
+  private static BitSet bits(int... rows) {
+    BitSet bits = new BitSet();
+    for (int row : rows) {
+      bits.set(row);
+    }
+    return bits;
+  }
+}
@@ -0,0 +1,194 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.memory;
+
+import com.tc.net.ClientID;
+import com.tc.object.ObjectID;
+import com.tc.search.SearchRequestID;
+import com.tc.test.TCTestCase;
+import com.terracottatech.search.AbstractNVPair;
+import com.terracottatech.search.GroupedIndexQueryResultImpl;
+import com.terracottatech.search.IndexQueryResult;
+import com.terracottatech.search.NVPair;
+import com.terracottatech.search.NonGroupedIndexQueryResultImpl;
+import com.terracottatech.search.SearchResult;
+import com.terracottatech.search.ValueID;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class InMemoryIndexManagerTest extends TCTestCase {
+
+  private static final Set<String> NONE     = Collections.emptySet();
+  private static final ObjectID    SEGMENT1 = new ObjectID(1);
+  private static final ObjectID    SEGMENT2 = new ObjectID(2);
+
+  private final ClientID           client   = new ClientID(1);
+  private InMemoryIndexManager     manager;
+  private long                     nextRequest;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    manager = new InMemoryIndexManager(2, 10);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    manager.shutdown();
+    super.tearDown();
+  }
+
+  public void testInsertUpdateAndRemove() throws Exception {
+    manager.insert("cache", "a", new ValueID(1), attributes(10), SEGMENT1, null);
+    manager.insert("cache", "b", new ValueID(2), attributes(20), SEGMENT2, null);
+    manager.insert("cache", "c", new ValueID(3), attributes(30), SEGMENT2, null);
+    assertEquals(keys("a", "b", "c"), search("ALL"));
+    assertEquals(keys("b", "c"), search("GREATER_THAN", pair("age", 15)));
+
+    manager.update("cache", "a", new ValueID(4), attributes(40), SEGMENT1, null);
+    assertEquals(keys("a", "b", "c"), search("GREATER_THAN", pair("age", 15)));
+
+    manager.remove("cache", "b", SEGMENT2, null);
+    assertEquals(keys("a", "c"), search("ALL"));
+    manager.remove("cache", "missing", SEGMENT2, null);
+    manager.remove("other", "a", SEGMENT1, null);
+    assertEquals(keys("a", "c"), search("ALL"));
+  }
+
+  public void testConditionalMutations() throws Exception {
+    manager.putIfAbsent("cache", "a", new ValueID(1), attributes(10), SEGMENT1, null);
+    manager.putIfAbsent("cache", "a", new ValueID(2), attributes(20), SEGMENT1, null);
+    assertEquals(keys("a"), search("TERM", pair("age", 10)));
+
+    manager.replace("cache", "a", new ValueID(3), new ValueID(99), attributes(30), SEGMENT1, null);
+    assertEquals(keys("a"), search("TERM", pair("age", 10)));
+    manager.replace("cache", "a", new ValueID(3), new ValueID(1), attributes(30), SEGMENT1, null);
+    assertEquals(keys("a"), search("TERM", pair("age", 30)));
+
+    manager.insert("cache", "b", new ValueID(4), attributes(40), SEGMENT1, null);
+    Map<String, ValueID> removes = new HashMap<String, ValueID>();
+    removes.put("a", new ValueID(3));
+    removes.put("b", new ValueID(99));
+    manager.removeIfValueEqual("cache", removes, SEGMENT1, null, false);
+    assertEquals(keys("b"), search("ALL"));
+  }
+
+  public void testClearAndDeleteIndex() throws Exception {
+    manager.insert("cache", "a", new ValueID(1), attributes(10), SEGMENT1, null);
+    manager.insert("cache", "b", new ValueID(2), attributes(20), SEGMENT2, null);
+    manager.clear("cache", SEGMENT1, null);
+    assertEquals(keys("b"), search("ALL"));
+    assertEquals(Arrays.asList("cache"), Arrays.asList(manager.getSearchIndexNames()));
+
+    manager.deleteIndex("cache", null);
+    assertEquals(keys(), search("ALL"));
+    assertEquals(0, manager.getSearchIndexNames().length);
+  }
+
+  public void testPagesThroughKeptCursor() throws Exception {
+    for (int i = 0; i < 25; i++) {
+      manager.insert("cache", "k" + i, new ValueID(i), attributes(i), i % 2 == 0 ? SEGMENT1 : SEGMENT2, null);
+    }
+    SearchRequestID request = new SearchRequestID(nextRequest++);
+    List<?> query = Arrays.asList("LESS_THAN", pair("age", 20));
+    InMemoryIndexManager.FirstPage first = manager.firstPage("cache", client, request, query, true, false, NONE,
+                                                             NONE, null, null, -1, 8);
+    assertEquals(8, first.result.getQueryResults().size());
+    assertEquals(20, first.totalResultCount);
+
+    Set<String> seen = keys(first.result);
+    for (int start = 8; start < 20; start += 8) {
+      SearchResult<IndexQueryResult> page = manager.getSearchResults("cache", client, request, query, true, false,
+                                                                     NONE, null, null, -1, start, 8);
+      seen.addAll(keys(page));
+    }
+    assertEquals(20, seen.size());
+  }
+
+  public void testReleasedCursorIsRunAgain() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      manager.insert("cache", "k" + i, new ValueID(i), attributes(i), SEGMENT1, null);
+    }
+    SearchRequestID request = new SearchRequestID(nextRequest++);
+    List<NVPair> sort = Collections.singletonList(pair("age", "ASCENDING"));
+    List<?> query = Arrays.asList("ALL");
+    manager.firstPage("cache", client, request, query, true, false, NONE, NONE, sort, null, -1, 3);
+    manager.releaseAllResultsFor(client);
+
+    SearchResult<IndexQueryResult> page = manager.getSearchResults("cache", client, request, query, true, false,
+                                                                   NONE, sort, null, -1, 3, 3);
+    assertEquals(Arrays.asList("k3", "k4", "k5"), Arrays.asList(keys(page).toArray()));
+  }
+
+  public void testGroupedCursorIsNotEvicted() throws Exception {
+    manager.shutdown();
+    manager = new InMemoryIndexManager(2, 1);
+    for (int i = 0; i < 10; i++) {
+      manager.insert("cache", "k" + i, new ValueID(i), attributes(i % 5), SEGMENT1, null);
+    }
+    SearchRequestID request = new SearchRequestID(nextRequest++);
+    Set<String> groupBy = Collections.singleton("age");
+    List<?> query = Arrays.asList("ALL");
+    InMemoryIndexManager.FirstPage first = manager.firstPage("cache", client, request, query, false, false, groupBy,
+                                                             groupBy, null, null, -1, 2);
+    assertEquals(5, first.totalResultCount);
+
+    // only one cursor is kept and the grouped one is the oldest
+    for (int i = 0; i < 2; i++) {
+      manager.firstPage("cache", client, new SearchRequestID(nextRequest++), query, true, false, NONE, NONE, null,
+                        null, -1, 2);
+    }
+
+    SearchResult<IndexQueryResult> page = manager.getSearchResults("cache", client, request, query, false, false,
+                                                                   groupBy, null, null, -1, 2, 2);
+    assertEquals(2, page.getQueryResults().size());
+    for (IndexQueryResult result : page.getQueryResults()) {
+      assertEquals(1, ((GroupedIndexQueryResultImpl) result).getGroupedAttributes().size());
+    }
+  }
+
+  private Set<String> search(Object... query) throws Exception {
+    return keys(manager.searchIndex("cache", client, new SearchRequestID(nextRequest++), Arrays.asList(query), true,
+                                    false, NONE, NONE, null, null, -1, -1));
+  }
+
+  private static Set<String> keys(SearchResult<?> result) {
+    Set<String> keys = new TreeSet<String>();
+    for (Object r : result.getQueryResults()) {
+      keys.add(((NonGroupedIndexQueryResultImpl) r).getKey());
+    }
+    return keys;
+  }
+
+  private static List<NVPair> attributes(int age) {
+    return Collections.singletonList(pair("age", age));
+  }
+
+  private static NVPair pair(String name, Object value) {
+    return AbstractNVPair.createNVPair(name, value);
+  }
+
+  private static Set<String> keys(String... keys) {
+    return new TreeSet<String>(Arrays.asList(keys));
+  }
+}
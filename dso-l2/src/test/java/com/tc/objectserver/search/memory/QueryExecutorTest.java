@@ -0,0 +1,169 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.memory;
+
+import com.tc.object.ObjectID;
+import com.tc.test.TCTestCase;
+import com.terracottatech.search.AbstractNVPair;
+import com.terracottatech.search.AggregatorOperations;
+import com.terracottatech.search.IndexQueryResult;
+import com.terracottatech.search.NVPair;
+import com.terracottatech.search.NonGroupedIndexQueryResultImpl;
+import com.terracottatech.search.SearchResult;
+import com.terracottatech.search.ValueID;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class QueryExecutorTest extends TCTestCase {
+
+  private static final Set<String> NONE     = Collections.emptySet();
+  private static final int         SEGMENTS = 4;
+  private static final int         ROWS     = 40;
+
+  private QueryExecutor            executor;
+  private CacheIndex               cache;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    executor = new QueryExecutor(2);
+    cache = new CacheIndex("cache");
+    // ages are spread so that every segment holds some of the smallest ones
+    for (int i = 0; i < ROWS; i++) {
+      cache.getOrCreateSegment(new ObjectID(i % SEGMENTS))
+          .put(cache.newRow("k" + i, new ValueID(i), Collections.singletonList(pair("age", (i * 13) % ROWS))));
+    }
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    executor.shutdown();
+    super.tearDown();
+  }
+
+  public void testStreamsPagesAcrossSegments() throws Exception {
+    QueryCursor cursor = executor.execute(cache, new QueryParser.All(), builder(null), -1);
+    assertTrue(cursor instanceof StreamingCursor);
+
+    Set<String> seen = new HashSet<String>();
+    for (int start = 0; start < ROWS; start += 7) {
+      List<String> page = keys(cursor.page(start, 7));
+      assertEquals(Math.min(7, ROWS - start), page.size());
+      seen.addAll(page);
+    }
+    assertEquals(ROWS, seen.size());
+    assertTrue(cursor.isExhausted());
+    assertEquals(ROWS, cursor.size());
+    assertTrue(cursor.page(ROWS, 7).getQueryResults().isEmpty());
+  }
+
+  public void testStreamingCountsPartlyStreamedQueries() throws Exception {
+    QueryCursor cursor = executor.execute(cache, new QueryParser.All(), builder(null), -1);
+    assertEquals(7, keys(cursor.page(0, 7)).size());
+    assertEquals(ROWS, cursor.size());
+    assertEquals(ROWS - 7, keys(cursor.page(7, -1)).size());
+    assertEquals(ROWS, cursor.size());
+
+    cursor = executor.execute(cache, new QueryParser.All(), builder(null), -1);
+    assertEquals(ROWS, cursor.size());
+    assertEquals(ROWS, keys(cursor.page(0, -1)).size());
+  }
+
+  public void testStreamingStopsAtMaxResults() throws Exception {
+    QueryCursor cursor = executor.execute(cache, new QueryParser.All(), builder(null), 13);
+    assertEquals(13, cursor.size());
+    assertEquals(10, keys(cursor.page(0, 10)).size());
+    assertEquals(3, keys(cursor.page(10, 10)).size());
+    assertTrue(cursor.isExhausted());
+  }
+
+  public void testSortedQueriesKeepTheTopRowsOfEverySegment() throws Exception {
+    QueryCursor cursor = executor.execute(cache, new QueryParser.All(), builder(sort("age", "ASCENDING")), 5);
+    assertTrue(cursor instanceof MaterializedCursor);
+    assertEquals(5, cursor.size());
+    assertEquals(Arrays.asList(0, 1, 2, 3, 4), ages(cursor.page(0, -1)));
+
+    cursor = executor.execute(cache, new QueryParser.All(), builder(sort("age", "DESCENDING")), -1);
+    assertEquals(ROWS, cursor.size());
+    assertEquals(Arrays.asList(39, 38, 37), ages(cursor.page(0, 3)));
+    assertEquals(Arrays.asList(36, 35, 34), ages(cursor.page(3, 3)));
+  }
+
+  public void testMaterializedCursorRewinds() throws Exception {
+    QueryCursor cursor = executor.execute(cache, new QueryParser.All(), builder(sort("age", "ASCENDING")), -1);
+    assertEquals(ages(cursor.page(0, 5)), ages(cursor.page(0, 5)));
+    cursor.page(5, -1);
+    assertTrue(cursor.isExhausted());
+    assertEquals(Arrays.asList(2, 3), ages(cursor.page(2, 2)));
+  }
+
+  public void testAggregatesAreFedFromEverySegment() throws Exception {
+    List<NVPair> count = Collections.singletonList(pair("age", AggregatorOperations.COUNT));
+    QueryCursor cursor = executor.execute(cache, new QueryParser.All(),
+                                          new ResultBuilder(cache, false, false, NONE, NONE, null, count), -1);
+    SearchResult<IndexQueryResult> page = cursor.page(0, -1);
+    assertTrue(page.getQueryResults().isEmpty());
+    assertEquals(0, cursor.size());
+    assertEquals(ROWS, ((Number) page.getAggregators().get(0).getResult()).intValue());
+
+    cursor = executor.execute(cache, new QueryParser.All(), new ResultBuilder(cache, true, false, Collections
+        .singleton("age"), NONE, sort("age", "ASCENDING"), count), 3);
+    page = cursor.page(0, -1);
+    assertEquals(Arrays.asList(0, 1, 2), ages(page));
+    assertEquals(ROWS, ((Number) page.getAggregators().get(0).getResult()).intValue());
+  }
+
+  public void testEmptyCache() throws Exception {
+    QueryCursor cursor = executor.execute(null, new QueryParser.All(), builder(null), -1);
+    assertEquals(0, cursor.size());
+    assertTrue(cursor.page(0, 10).getQueryResults().isEmpty());
+    assertTrue(cursor.isExhausted());
+  }
+
+  private ResultBuilder builder(List<NVPair> sort) {
+    return new ResultBuilder(cache, true, false, Collections.singleton("age"), NONE, sort, null);
+  }
+
+  private static List<String> keys(SearchResult<IndexQueryResult> page) {
+    List<String> keys = new ArrayList<String>();
+    for (IndexQueryResult result : page.getQueryResults()) {
+      keys.add(((NonGroupedIndexQueryResultImpl) result).getKey());
+    }
+    return keys;
+  }
+
+  private static List<Integer> ages(SearchResult<IndexQueryResult> page) {
+    List<Integer> ages = new ArrayList<Integer>();
+    for (IndexQueryResult result : page.getQueryResults()) {
+      ages.add((Integer) result.getAttributes().get(0).getObjectValue());
+    }
+    return ages;
+  }
+
+  private static List<NVPair> sort(String name, String direction) {
+    return Collections.singletonList(pair(name, direction));
+  }
+
+  private static NVPair pair(String name, Object value) {
+    return AbstractNVPair.createNVPair(name, value);
+  }
+}
@@ -0,0 +1,135 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.memory;
+
+import com.tc.object.ObjectID;
+import com.tc.test.TCTestCase;
+import com.terracottatech.search.AbstractNVPair;
+import com.terracottatech.search.IndexException;
+import com.terracottatech.search.NVPair;
+import com.terracottatech.search.ValueID;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class QueryParserTest extends TCTestCase {
+
+  private SegmentIndex segment;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    CacheIndex cache = new CacheIndex("cache");
+    segment = cache.getOrCreateSegment(new ObjectID(1));
+    String[] names = { "alice", "bob", "carol", "dave", "eve" };
+    for (int i = 0; i < names.length; i++) {
+      List<NVPair> attributes = new ArrayList<NVPair>();
+      attributes.add(AbstractNVPair.createNVPair("name", names[i]));
+      attributes.add(AbstractNVPair.createNVPair("age", 20 + i * 10));
+      if (i % 2 == 0) {
+        attributes.add(AbstractNVPair.createNVPair("nickname", names[i].substring(0, 2)));
+      }
+      segment.put(cache.newRow("k" + i, new ValueID(i), attributes));
+    }
+  }
+
+  public void testEmptyStackMatchesEverything() throws Exception {
+    assertEquals(keys("k0", "k1", "k2", "k3", "k4"), query());
+    assertEquals(keys("k0", "k1", "k2", "k3", "k4"), query("ALL"));
+  }
+
+  public void testComparisons() throws Exception {
+    assertEquals(keys("k2"), query("TERM", pair("name", "carol")));
+    assertEquals(keys("k0", "k1", "k3", "k4"), query("NOT_TERM", pair("name", "carol")));
+    assertEquals(keys("k3", "k4"), query("GREATER_THAN", pair("age", 40)));
+    assertEquals(keys("k2", "k3", "k4"), query("GREATER_THAN_EQUAL", pair("age", 40)));
+    assertEquals(keys("k0"), query("LESS_THAN", pair("age", 30)));
+    assertEquals(keys("k0", "k1"), query("LESS_THAN_EQUAL", pair("age", 30)));
+  }
+
+  public void testBetweenHonoursInclusiveFlags() throws Exception {
+    assertEquals(keys("k1", "k2", "k3"), query("BETWEEN", pair("age", 30), pair("age", 50)));
+    assertEquals(keys("k2"), query("BETWEEN", pair("age", 30), pair("age", 50), Boolean.FALSE, Boolean.FALSE));
+    assertEquals(keys("k1", "k2"), query("BETWEEN", pair("age", 30), pair("age", 50), Boolean.TRUE, Boolean.FALSE));
+  }
+
+  public void testLikeAndNullChecks() throws Exception {
+    assertEquals(keys("k2", "k3"), query("ILIKE", pair("name", "?A*")));
+    assertEquals(keys("k0", "k1", "k4"), query("NOT_ILIKE", pair("name", "?a*")));
+    assertEquals(keys("k1", "k3"), query("IS_NULL", "nickname"));
+    assertEquals(keys("k0", "k2", "k4"), query("NOT_NULL", "nickname"));
+  }
+
+  public void testAndBindsTighterThanOr() throws Exception {
+    // name = alice OR (age >= 40 AND nickname is null)
+    assertEquals(keys("k0", "k3"), query("TERM", pair("name", "alice"), "OR", "GREATER_THAN_EQUAL", pair("age", 40),
+                                         "AND", "IS_NULL", "nickname"));
+    // (name = alice OR age >= 40) AND nickname is null
+    assertEquals(keys("k3"), query("BEGIN_GROUP", "TERM", pair("name", "alice"), "OR", "GREATER_THAN_EQUAL",
+                                   pair("age", 40), "END_GROUP", "AND", "IS_NULL", "nickname"));
+    // (name = bob OR age >= 40) AND NOT nickname is set
+    assertEquals(keys("k1", "k3"), query("BEGIN_GROUP", "TERM", pair("name", "bob"), "OR", "GREATER_THAN_EQUAL",
+                                         pair("age", 40), "END_GROUP", "NOT", "NOT_NULL", "nickname"));
+  }
+
+  public void testAdjacentPredicatesAreAConjunction() throws Exception {
+    assertEquals(keys("k2"), query("GREATER_THAN", pair("age", 20), "LESS_THAN", pair("age", 50), "NOT_NULL",
+                                   "nickname"));
+  }
+
+  public void testMalformedQueriesAreRejected() {
+    assertRejected("BEGIN_GROUP", "TERM", pair("name", "alice"));
+    assertRejected("TERM", pair("name", "alice"), "END_GROUP");
+    assertRejected("TERM", "name");
+    assertRejected("AND");
+    assertRejected("SOUNDS_LIKE", pair("name", "alice"));
+  }
+
+  public void testLikePatternQuotesLiterals() {
+    assertTrue(QueryParser.likePattern("a.b*").matcher("A.Bcd").matches());
+    assertFalse(QueryParser.likePattern("a.b*").matcher("axbcd").matches());
+    assertTrue(QueryParser.likePattern("?(x)").matcher("z(X)").matches());
+  }
+
+  private void assertRejected(Object... stack) {
+    try {
+      QueryParser.parse(Arrays.asList(stack));
+      fail("Expected " + Arrays.asList(stack) + " to be rejected");
+    } catch (IndexException e) {
+      // expected
+    }
+  }
+
+  private Set<String> query(Object... stack) throws IndexException {
+    Set<String> keys = new TreeSet<String>();
+    for (Row row : segment.query(QueryParser.parse(Arrays.asList(stack)))) {
+      keys.add(row.getKey());
+    }
+    return keys;
+  }
+
+  private static NVPair pair(String name, Object value) {
+    return AbstractNVPair.createNVPair(name, value);
+  }
+
+  private static Set<String> keys(String... keys) {
+    return new TreeSet<String>(Arrays.asList(keys));
+  }
+}
@@ -0,0 +1,143 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.memory;
+
+import com.tc.object.ObjectID;
+import com.tc.test.TCTestCase;
+import com.terracottatech.search.AbstractNVPair;
+import com.terracottatech.search.AggregatorOperations;
+import com.terracottatech.search.GroupedIndexQueryResultImpl;
+import com.terracottatech.search.IndexQueryResult;
+import com.terracottatech.search.NVPair;
+import com.terracottatech.search.NonGroupedIndexQueryResultImpl;
+import com.terracottatech.search.ValueID;
+import com.terracottatech.search.aggregator.Aggregator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class ResultBuilderTest extends TCTestCase {
+
+  private static final Set<String> NONE = Collections.emptySet();
+
+  private CacheIndex                cache;
+  private List<Row>                 rows;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    cache = new CacheIndex("cache");
+    SegmentIndex segment = cache.getOrCreateSegment(new ObjectID(1));
+    String[] cities = { "paris", "rome", "paris", "oslo", "rome", "paris" };
+    for (int i = 0; i < cities.length; i++) {
+      segment.put(cache.newRow("k" + i, new ValueID(i), Arrays.asList(pair("city", cities[i]),
+                                                                     pair("age", (i * 7) % 5))));
+    }
+    rows = segment.query(new QueryParser.All());
+  }
+
+  public void testQueryShape() {
+    assertTrue(builder(null, null, null).isStreamable());
+    assertTrue(builder(null, sort("age", "ASCENDING"), null).isSorted());
+    assertFalse(builder(null, sort("age", "ASCENDING"), null).isStreamable());
+    assertTrue(builder(set("city"), null, null).isGrouped());
+    assertTrue(builder(null, null, count("age")).isAggregated());
+    assertNull(builder(null, null, null).comparator());
+  }
+
+  public void testResultsCarryKeysAndSelectedAttributes() {
+    ResultBuilder builder = new ResultBuilder(cache, true, false, set("city"), NONE, null, null);
+    List<IndexQueryResult> results = builder.results(rows.subList(0, 2));
+    assertEquals(2, results.size());
+    NonGroupedIndexQueryResultImpl first = (NonGroupedIndexQueryResultImpl) results.get(0);
+    assertEquals("k0", first.getKey());
+    assertEquals(1, first.getAttributes().size());
+    assertEquals("city", first.getAttributes().get(0).getName());
+  }
+
+  public void testAggregateOnlyQueriesReturnNoRows() throws Exception {
+    ResultBuilder builder = new ResultBuilder(cache, false, false, NONE, NONE, null, count("age"));
+    assertTrue(builder.results(rows).isEmpty());
+    List<Aggregator> aggregators = builder.aggregate(rows);
+    assertEquals(1, aggregators.size());
+    assertEquals(6, ((Number) aggregators.get(0).getResult()).intValue());
+  }
+
+  public void testComparatorOrdersByEverySortAttribute() {
+    List<NVPair> sort = new ArrayList<NVPair>();
+    sort.add(pair("city", "ASCENDING"));
+    sort.add(pair("age", "DESCENDING"));
+    List<Row> sorted = new ArrayList<Row>(rows);
+    Collections.sort(sorted, builder(null, sort, null).comparator());
+
+    List<String> keys = new ArrayList<String>();
+    for (Row row : sorted) {
+      keys.add(row.getKey());
+    }
+    // oslo(k3: 1), paris(k0: 0, k2: 4, k5: 0), rome(k1: 2, k4: 3)
+    assertEquals(Arrays.asList("k3", "k2", "k0", "k5", "k4", "k1"), keys);
+  }
+
+  public void testGroupsAreSortedAggregatedAndLimited() throws Exception {
+    ResultBuilder builder = new ResultBuilder(cache, false, false, NONE, set("city"), sort("city", "DESCENDING"),
+                                              count("age"));
+    List<IndexQueryResult> groups = builder.grouped(rows, -1);
+    assertEquals(3, groups.size());
+    assertGroup(groups.get(0), "rome", 2);
+    assertGroup(groups.get(1), "paris", 3);
+    assertGroup(groups.get(2), "oslo", 1);
+
+    groups = builder.grouped(rows, 2);
+    assertEquals(2, groups.size());
+    assertGroup(groups.get(1), "paris", 3);
+  }
+
+  public void testNullCacheStillBuildsResults() throws Exception {
+    ResultBuilder builder = new ResultBuilder(null, true, true, NONE, NONE, null, count("age"));
+    assertEquals(0, ((Number) builder.aggregate(new ArrayList<Row>()).get(0).getResult()).intValue());
+  }
+
+  private static void assertGroup(IndexQueryResult result, String city, int count) {
+    GroupedIndexQueryResultImpl group = (GroupedIndexQueryResultImpl) result;
+    assertEquals(Collections.singleton(pair("city", city)), group.getGroupedAttributes());
+    assertEquals(count, ((Number) group.getAggregators().get(0).getResult()).intValue());
+  }
+
+  private ResultBuilder builder(Set<String> groupBy, List<NVPair> sort, List<NVPair> aggregators) {
+    return new ResultBuilder(cache, true, true, NONE, groupBy == null ? NONE : groupBy, sort, aggregators);
+  }
+
+  private static List<NVPair> sort(String name, String direction) {
+    return Collections.singletonList(pair(name, direction));
+  }
+
+  private static List<NVPair> count(String name) {
+    return Collections.singletonList(pair(name, AggregatorOperations.COUNT));
+  }
+
+  private static NVPair pair(String name, Object value) {
+    return AbstractNVPair.createNVPair(name, value);
+  }
+
+  private static Set<String> set(String... names) {
+    return new HashSet<String>(Arrays.asList(names));
+  }
+}
@@ -0,0 +1,143 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.tc.objectserver.search.memory;
+
+import com.tc.object.ObjectID;
+import com.tc.test.TCTestCase;
+import com.terracottatech.search.AbstractNVPair;
+import com.terracottatech.search.IndexException;
+import com.terracottatech.search.IndexQueryResult;
+import com.terracottatech.search.NonGroupedIndexQueryResultImpl;
+import com.terracottatech.search.SearchResult;
+import com.terracottatech.search.ValueID;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StreamingCursorTest extends TCTestCase {
+
+  private static final Set<String> NONE = Collections.emptySet();
+
+  private ForkJoinPool             pool;
+  private CacheIndex               cache;
+  private ResultBuilder            builder;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    pool = new ForkJoinPool(1);
+    cache = new CacheIndex("cache");
+    for (int i = 0; i < 20; i++) {
+      cache.getOrCreateSegment(new ObjectID(i / 5))
+          .put(cache.newRow("k" + i, new ValueID(i), Collections.singletonList(AbstractNVPair.createNVPair("age", i))));
+    }
+    builder = new ResultBuilder(cache, true, false, NONE, NONE, null, null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    pool.shutdownNow();
+    super.tearDown();
+  }
+
+  public void testRewindRunsTheQueryAgain() throws Exception {
+    CountingQuery query = new CountingQuery(null);
+    StreamingCursor cursor = new StreamingCursor(pool, cache.segments(), query, builder, -1, 1);
+    List<String> first = keys(cursor.page(0, 8));
+    List<String> second = keys(cursor.page(8, 8));
+    assertEquals(8, second.size());
+
+    assertEquals(first.subList(3, 8), keys(cursor.page(3, 5)));
+    assertEquals(second, keys(cursor.page(8, 8)));
+    assertEquals(4, keys(cursor.page(16, 8)).size());
+    assertTrue(cursor.isExhausted());
+
+    assertEquals(first, keys(cursor.page(0, 8)));
+    assertFalse(cursor.isExhausted());
+  }
+
+  public void testRewindHonoursMaxResults() throws Exception {
+    StreamingCursor cursor = new StreamingCursor(pool, cache.segments(), new CountingQuery(null), builder, 6, 2);
+    assertEquals(6, keys(cursor.page(0, -1)).size());
+    assertTrue(cursor.isExhausted());
+    assertEquals(4, keys(cursor.page(2, -1)).size());
+    assertTrue(cursor.isExhausted());
+  }
+
+  public void testCloseCancelsSegmentsNotYetEvaluated() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CountingQuery query = new CountingQuery(release);
+    // the single pool thread blocks in the first segment while the other three wait behind it
+    StreamingCursor cursor = new StreamingCursor(pool, cache.segments(), query, builder, -1, 4);
+    assertTrue(query.started.await(10, TimeUnit.SECONDS));
+
+    cursor.close();
+    release.countDown();
+    assertTrue(pool.awaitQuiescence(10, TimeUnit.SECONDS));
+    assertEquals(1, query.evaluated.get());
+    assertTrue(cursor.isExhausted());
+
+    try {
+      cursor.page(0, 10);
+      fail();
+    } catch (IndexException e) {
+      // expected
+    }
+  }
+
+  private static List<String> keys(SearchResult<IndexQueryResult> page) {
+    List<String> keys = new ArrayList<String>();
+    for (IndexQueryResult result : page.getQueryResults()) {
+      keys.add(((NonGroupedIndexQueryResultImpl) result).getKey());
+    }
+    return keys;
+  }
+
+  /**
+   * Matches every row, counting the segments evaluated and optionally blocking in the first one.
+   */
+  private static final class CountingQuery implements QueryNode {
+    final AtomicInteger          evaluated = new AtomicInteger();
+    final CountDownLatch         started   = new CountDownLatch(1);
+    private final CountDownLatch release;
+
+    CountingQuery(CountDownLatch release) {
+      this.release = release;
+    }
+
+    @Override
+    public BitSet evaluate(SegmentIndex segment) {
+      evaluated.incrementAndGet();
+      started.countDown();
+      if (release != null) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return segment.live();
+    }
+  }
+}
@@ -25,6 +25,7 @@ import com.tc.config.schema.setup.FailOverAction;
 import com.tc.config.schema.setup.TopologyReloadStatus;
 import com.tc.license.LicenseManager;
 import com.tc.license.ProductID;
+import com.tc.async.api.StageLatencyStats;
 import com.tc.management.beans.L2DumperMBean;
 import com.tc.management.beans.TCServerInfoMBean;
 import com.tc.management.beans.TCServerInfoMBean.RestartMode;
@@ -242,6 +243,14 @@ public class LocalManagementSource {
     }
   }
 
+  public StageLatencyStats[] getStageLatencyStats() throws ManagementSourceException {
+    try {
+      return (StageLatencyStats[])mBeanServer.getAttribute(dsoObjectName, "StageLatencyStats");
+    } catch (JMException jme) {
+      throw new ManagementSourceException(jme);
+    }
+  }
+
   public Map<String, Object> getServerInfoAttributes() throws ManagementSourceException {
     Map<String, Object> result = new HashMap<String, Object>();
 
@@ -299,6 +308,14 @@ public class LocalManagementSource {
     }
   }
 
+  public int getBackupProgress(String backupName) throws ManagementSourceException {
+    try {
+      return tcServerInfoMBean.getBackupProgress(backupName);
+    } catch (IOException ioe) {
+      throw new ManagementSourceException(ioe);
+    }
+  }
+
   public Collection<Notification> getNotifications(Long sinceWhen) throws ManagementSourceException {
     List<Notification> logNotifications;
     if (sinceWhen == null) {
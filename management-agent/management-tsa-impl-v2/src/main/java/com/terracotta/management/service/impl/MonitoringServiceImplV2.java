@@ -62,4 +62,9 @@ public class MonitoringServiceImplV2 implements MonitoringServiceV2 {
   public ResponseEntityV2<StatisticsEntityV2> getDgcStatistics(Set<String> serverNames) throws ServiceExecutionException {
     return serverManagementService.getDgcStatistics(serverNames, MAX_DGC_STATS_ENTRIES);
   }
+
+  @Override
+  public ResponseEntityV2<StatisticsEntityV2> getStageStatistics(Set<String> serverNames) throws ServiceExecutionException {
+    return serverManagementService.getStageStatistics(serverNames);
+  }
 }
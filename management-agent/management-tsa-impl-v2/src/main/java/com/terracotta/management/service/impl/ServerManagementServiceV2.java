@@ -20,6 +20,7 @@ import org.terracotta.management.ServiceExecutionException;
 import org.terracotta.management.resource.AbstractEntityV2;
 import org.terracotta.management.resource.ResponseEntityV2;
 
+import com.tc.async.api.StageLatencyStats;
 import com.tc.config.schema.L2Info;
 import com.tc.config.schema.ServerGroupInfo;
 import com.tc.config.schema.setup.TopologyReloadStatus;
@@ -236,6 +237,61 @@ public class ServerManagementServiceV2 implements L1MBeansSource {
     });
   }
 
+  public ResponseEntityV2<StatisticsEntityV2> getStageStatistics(Set<String> serverNames) throws ServiceExecutionException {
+    return forEachServer("getStageStatistics", serverNames, new ForEachServer<StatisticsEntityV2>() {
+      @Override
+      public Collection<StatisticsEntityV2> queryLocalServer(L2Info member) {
+        Collection<StatisticsEntityV2> localResult = new ArrayList<StatisticsEntityV2>();
+        try {
+          StageLatencyStats[] stages = localManagementSource.getStageLatencyStats();
+          for (StageLatencyStats stage : stages) {
+            StatisticsEntityV2 statisticsEntityV2 = new StatisticsEntityV2();
+            statisticsEntityV2.setSourceId(member.name());
+
+            statisticsEntityV2.getStatistics().put("Stage", stage.getName());
+            statisticsEntityV2.getStatistics().put("Depth", stage.getDepth());
+            statisticsEntityV2.getStatistics().put("DepthSamples", stage.getDepthSamples());
+            statisticsEntityV2.getStatistics().put("DepthSampleIntervalMillis", stage.getSampleIntervalMillis());
+            putLatency(statisticsEntityV2, "QueueWait", stage.getQueueWait());
+            putLatency(statisticsEntityV2, "ServiceTime", stage.getServiceTime());
+
+            localResult.add(statisticsEntityV2);
+          }
+        } catch (ManagementSourceException e) {
+          StatisticsEntityV2 statisticsEntityV2 = new StatisticsEntityV2();
+          statisticsEntityV2.setSourceId(member.name());
+
+          statisticsEntityV2.getStatistics().put("Error", e.getMessage());
+
+          localResult.add(statisticsEntityV2);
+        }
+        return localResult;
+      }
+
+      @Override
+      public ResponseEntityV2<StatisticsEntityV2> queryRemoteServer(L2Info member) throws Exception {
+        UriBuilder uriBuilder = UriBuilder.fromPath("tc-management-api")
+            .path("v2")
+            .path("agents")
+            .path("statistics")
+            .path("stages")
+            .matrixParam("serverNames", member.name());
+
+        return remoteManagementSource.getFromRemoteL2(member.name(), uriBuilder.build(), ResponseEntityV2.class, StatisticsEntityV2.class);
+      }
+    });
+  }
+
+  private static void putLatency(StatisticsEntityV2 statisticsEntityV2, String prefix, StageLatencyStats.Latency latency) {
+    statisticsEntityV2.getStatistics().put(prefix + "Count", latency.getCount());
+    statisticsEntityV2.getStatistics().put(prefix + "MeanMicros", latency.getMean());
+    statisticsEntityV2.getStatistics().put(prefix + "P50Micros", latency.get50thPercentile());
+    statisticsEntityV2.getStatistics().put(prefix + "P90Micros", latency.get90thPercentile());
+    statisticsEntityV2.getStatistics().put(prefix + "P99Micros", latency.get99thPercentile());
+    statisticsEntityV2.getStatistics().put(prefix + "P999Micros", latency.get999thPercentile());
+    statisticsEntityV2.getStatistics().put(prefix + "MaxMicros", latency.getMax());
+  }
+
   public ResponseEntityV2<ConfigEntityV2> getServerConfigs(final Set<String> serverNames) throws ServiceExecutionException {
     return forEachServer("getServerConfigs", serverNames, new ForEachServer<ConfigEntityV2>() {
       @Override
@@ -289,6 +345,7 @@ public class ServerManagementServiceV2 implements L1MBeansSource {
           backupEntityV2.setSourceId(member.name());
           backupEntityV2.setName(name);
           backupEntityV2.setStatus(status);
+          backupEntityV2.setProgress(localManagementSource.getBackupProgress(name));
           if ("FAILED".equals(status)) {
             backupEntityV2.setError(localManagementSource.getBackupFailureReason(name));
           }
@@ -98,6 +98,7 @@ public class ServerManagementServiceV2Test {
     when(localManagementSource.getBackupStatuses()).thenReturn(new HashMap<String, String>() {{
       put("backup1", "OK");
     }});
+    when(localManagementSource.getBackupProgress("backup1")).thenReturn(42);
 
     ServerManagementServiceV2 serverManagementService = new ServerManagementServiceV2(executorService, timeoutService, localManagementSource, remoteManagementSource, securityContextService);
 
@@ -109,6 +110,7 @@ public class ServerManagementServiceV2Test {
     assertThat(entity.getStatus(), equalTo("OK"));
     assertThat(entity.getSourceId(), equalTo("s1"));
     assertThat(entity.getError(), is((Object)null));
+    assertThat(entity.getProgress(), is(42));
 
     verify(remoteManagementSource).getFromRemoteL2(eq("s2"), eq(new URI("tc-management-api/v2/agents/backups;serverNames=s2")), eq(ResponseEntityV2.class), eq(BackupEntityV2.class));
     verify(remoteManagementSource).getFromRemoteL2(eq("s3"), eq(new URI("tc-management-api/v2/agents/backups;serverNames=s3")), eq(ResponseEntityV2.class), eq(BackupEntityV2.class));
@@ -25,6 +25,7 @@ public class BackupEntityV2 extends AbstractTsaEntityV2 {
   private String name;
   private String status;
   private String error;
+  private int progress;
 
   public String getSourceId() {
     return sourceId;
@@ -57,4 +58,15 @@ public class BackupEntityV2 extends AbstractTsaEntityV2 {
   public void setError(String error) {
     this.error = error;
   }
+
+  /**
+   * @return the percentage of the backup copied so far
+   */
+  public int getProgress() {
+    return progress;
+  }
+
+  public void setProgress(int progress) {
+    this.progress = progress;
+  }
 }
@@ -64,4 +64,14 @@ public interface MonitoringServiceV2 {
    */
   ResponseEntityV2<StatisticsEntityV2> getDgcStatistics(Set<String> serverNames) throws ServiceExecutionException;
 
+  /**
+   * Get the SEDA stage latency statistics.
+   *
+   * @param serverNames A set of server names, null meaning all of them.
+   * @return a {@link Collection} object of {@link StatisticsEntityV2} objects representing the queue wait and service
+   * time percentiles and sampled queue depths, one {@link StatisticsEntityV2} per stage.
+   * @throws ServiceExecutionException
+   */
+  ResponseEntityV2<StatisticsEntityV2> getStageStatistics(Set<String> serverNames) throws ServiceExecutionException;
+
 }
@@ -143,6 +143,8 @@ public interface TCServerInfoMBean extends TerracottaMBean, RuntimeStatisticCons
 
   String getBackupFailureReason(String name) throws IOException;
 
+  int getBackupProgress(String name) throws IOException;
+
   Map<String, String> getBackupStatuses() throws IOException;
 
   void backup(String name) throws IOException;
@@ -476,6 +476,14 @@ public class AggregateServerMap<K, V> implements DistributedToolkitType<Internal
     return getServerMapForKey(key).unlockedGet((K) key, quiet);
   }
 
+  /**
+   * Unlocked get that does not wait for the server, see {@link InternalToolkitMap#unlockedGetAsync(Object, boolean)}.
+   * Lets a caller have lookups for many keys in flight at once.
+   */
+  public Future<V> unlockedGetAsync(Object key, boolean quiet) {
+    return getServerMapForKey(key).unlockedGetAsync((K) key, quiet);
+  }
+
   @Override
   public void putNoReturn(K key, V value) {
     putNoReturn(key, value, timeSource.nowInSeconds(), ToolkitConfigFields.NO_MAX_TTI_SECONDS,
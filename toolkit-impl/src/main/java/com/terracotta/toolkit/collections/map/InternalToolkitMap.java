@@ -38,6 +38,7 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
 
 public interface InternalToolkitMap<K, V> extends ConcurrentMap<K, V>, TCServerMap, TCToolkitObject,
     ValuesResolver<K, V>, BufferBackend<K, V> {
@@ -91,6 +92,12 @@ public interface InternalToolkitMap<K, V> extends ConcurrentMap<K, V>, TCServerM
 
   V unlockedGet(K key, boolean quiet);
 
+  /**
+   * Like {@link #unlockedGet(Object, boolean)} but does not wait for the server, the value is resolved when the returned
+   * future is asked for it.
+   */
+  Future<V> unlockedGetAsync(K key, boolean quiet);
+
   int localSize();
 
   Set<K> localKeySet();
@@ -84,6 +84,11 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class ServerMap<K, V> extends AbstractTCToolkitObject implements InternalToolkitMap<K, V> {
@@ -1338,6 +1343,24 @@ public class ServerMap<K, V> extends AbstractTCToolkitObject implements Internal
     return doGet(key, GetType.UNLOCKED, quiet);
   }
 
+  @Override
+  public Future<V> unlockedGetAsync(final K key, final boolean quiet) {
+    if (!LiteralValues.isLiteralInstance(key)) {
+      // same as doGet(), a non literal key can never be mapped
+      return CompletableFuture.completedFuture(null);
+    }
+    assertKeyLiteral(key);
+    final Future<Object> value;
+    try {
+      value = this.tcObjectServerMap.getValueUnlockedAsync(this, key);
+    } catch (AbortedOperationException e) {
+      throw new ToolkitAbortableOperationException(e);
+    } catch (PlatformRejoinException e) {
+      throw new RejoinException(e);
+    }
+    return new UnlockedGetFuture(key, value, quiet);
+  }
+
   @Override
   public V unsafeLocalGet(final Object key) {
     return doGet(key, GetType.UNSAFE, true);
@@ -1870,6 +1893,70 @@ public class ServerMap<K, V> extends AbstractTCToolkitObject implements Internal
     }
   }
 
+  /**
+   * Future returned by {@link ServerMap#unlockedGetAsync}, turns the resolved value into the mapped one the way
+   * {@link ServerMap#unlockedGet} does, expiring it when necessary.
+   */
+  private class UnlockedGetFuture implements Future<V> {
+    private final Object         key;
+    private final Future<Object> value;
+    private final boolean        quiet;
+
+    UnlockedGetFuture(Object key, Future<Object> value, boolean quiet) {
+      this.key = key;
+      this.value = value;
+      this.quiet = quiet;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      return value.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return value.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+      return value.isDone();
+    }
+
+    @Override
+    public V get() throws InterruptedException, ExecutionException {
+      try {
+        return toMappedValue(value.get());
+      } catch (ExecutionException e) {
+        throw translate(e);
+      } catch (PlatformRejoinException e) {
+        throw new RejoinException(e);
+      }
+    }
+
+    @Override
+    public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      try {
+        return toMappedValue(value.get(timeout, unit));
+      } catch (ExecutionException e) {
+        throw translate(e);
+      } catch (PlatformRejoinException e) {
+        throw new RejoinException(e);
+      }
+    }
+
+    private V toMappedValue(Object resolved) {
+      return getNonExpiredValue(key, asSerializedMapValue(resolved), GetType.UNLOCKED, quiet);
+    }
+
+    private ExecutionException translate(ExecutionException e) {
+      if (e.getCause() instanceof AbortedOperationException) { throw new ToolkitAbortableOperationException(
+                                                                                                          (AbortedOperationException) e
+                                                                                                              .getCause()); }
+      return e;
+    }
+  }
+
   @Override
   public void addTxnInProgressKeys(Set<K> addSet, Set<K> removeSet) {
     tcObjectServerMap.addTxnInProgressKeys(addSet, removeSet);
@@ -0,0 +1,269 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.terracotta.toolkit.nonstop;
+
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Timer for the non stop deadlines. Timeouts are hashed into the buckets of a wheel by their deadline and a single
+ * worker thread expires one bucket per tick. Scheduling and cancelling only enqueue the timeout for the worker, so
+ * unlike a scheduled executor there is no shared heap or lock on the path of every non stop operation; in exchange
+ * deadlines are only as precise as the tick.
+ */
+final class HashedWheelTimer {
+  private static final TCLogger LOGGER                 = TCLogging.getLogger(HashedWheelTimer.class);
+
+  // bounds the time the worker spends moving new timeouts into the wheel before it expires the current tick
+  private static final int      MAX_TRANSFERS_PER_TICK = 100000;
+
+  private static final int      INIT                   = 0;
+  private static final int      STARTED                = 1;
+  private static final int      STOPPED                = 2;
+
+  private final String          name;
+  private final long            tickNanos;
+  private final Bucket[]        wheel;
+  private final int             mask;
+  private final Queue<Timeout>  scheduled              = new ConcurrentLinkedQueue<Timeout>();
+  private final Queue<Timeout>  cancelled              = new ConcurrentLinkedQueue<Timeout>();
+  private final AtomicInteger   state                  = new AtomicInteger(INIT);
+  private final long            startTime              = System.nanoTime();
+  private volatile Thread       worker;
+
+  /**
+   * @param wheelSize number of buckets, rounded up to a power of two
+   */
+  HashedWheelTimer(String name, long tickMillis, int wheelSize) {
+    if (tickMillis <= 0) { throw new IllegalArgumentException("tick must be positive: " + tickMillis); }
+    if (wheelSize <= 0 || wheelSize > (1 << 30)) { throw new IllegalArgumentException("invalid wheel size: " + wheelSize); }
+    this.name = name;
+    this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+    int size = 1;
+    while (size < wheelSize) {
+      size <<= 1;
+    }
+    this.wheel = new Bucket[size];
+    for (int i = 0; i < wheel.length; i++) {
+      wheel[i] = new Bucket();
+    }
+    this.mask = wheel.length - 1;
+  }
+
+  /**
+   * Runs the task on the timer thread once the delay has elapsed, unless the returned timeout is cancelled first.
+   */
+  Timeout schedule(Runnable task, long delayMillis) {
+    start();
+    long deadline = System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+    if (deadline < 0) {
+      // overflow, the task will never run in practice
+      deadline = Long.MAX_VALUE;
+    }
+    Timeout timeout = new Timeout(this, task, deadline);
+    scheduled.add(timeout);
+    return timeout;
+  }
+
+  void stop() {
+    Thread thread = worker;
+    if (state.getAndSet(STOPPED) == STARTED && thread != null) {
+      thread.interrupt();
+    }
+  }
+
+  private void start() {
+    if (state.get() == INIT && state.compareAndSet(INIT, STARTED)) {
+      Thread thread = new Thread(new Worker(), name);
+      thread.setDaemon(true);
+      worker = thread;
+      thread.start();
+    } else if (state.get() == STOPPED) { throw new IllegalStateException(name + " has been stopped"); }
+  }
+
+  private final class Worker implements Runnable {
+    private long tick = 0;
+
+    @Override
+    public void run() {
+      while (state.get() == STARTED) {
+        long now = waitForNextTick();
+        if (now < 0) {
+          break;
+        }
+        removeCancelled();
+        transferScheduled();
+        wheel[(int) (tick & mask)].expire(now);
+        tick++;
+      }
+    }
+
+    /**
+     * @return the time relative to the start of the timer, negative if the timer was stopped while waiting
+     */
+    private long waitForNextTick() {
+      long deadline = tickNanos * (tick + 1);
+      while (true) {
+        long now = System.nanoTime() - startTime;
+        long sleepMillis = (deadline - now + 999999) / 1000000;
+        if (sleepMillis <= 0) { return now; }
+        try {
+          Thread.sleep(sleepMillis);
+        } catch (InterruptedException e) {
+          if (state.get() == STOPPED) { return -1; }
+        }
+      }
+    }
+
+    private void removeCancelled() {
+      for (Timeout timeout = cancelled.poll(); timeout != null; timeout = cancelled.poll()) {
+        if (timeout.bucket != null) {
+          timeout.bucket.remove(timeout);
+        }
+      }
+    }
+
+    private void transferScheduled() {
+      for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+        Timeout timeout = scheduled.poll();
+        if (timeout == null) {
+          break;
+        }
+        if (timeout.state != Timeout.ST_INIT) {
+          continue;
+        }
+        long expiryTick = timeout.deadline / tickNanos;
+        timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+        // a deadline that has already passed goes into the current bucket
+        wheel[(int) (Math.max(expiryTick, tick) & mask)].add(timeout);
+      }
+    }
+  }
+
+  /**
+   * Doubly linked list of timeouts, only touched by the worker thread.
+   */
+  private static final class Bucket {
+    private Timeout head;
+    private Timeout tail;
+
+    void add(Timeout timeout) {
+      timeout.bucket = this;
+      if (head == null) {
+        head = tail = timeout;
+      } else {
+        tail.next = timeout;
+        timeout.prev = tail;
+        tail = timeout;
+      }
+    }
+
+    void expire(long now) {
+      Timeout timeout = head;
+      while (timeout != null) {
+        Timeout next = timeout.next;
+        if (timeout.state != Timeout.ST_INIT) {
+          remove(timeout);
+        } else if (timeout.remainingRounds <= 0 && timeout.deadline <= now) {
+          remove(timeout);
+          timeout.expire();
+        } else if (timeout.remainingRounds > 0) {
+          timeout.remainingRounds--;
+        }
+        timeout = next;
+      }
+    }
+
+    void remove(Timeout timeout) {
+      if (timeout.prev != null) {
+        timeout.prev.next = timeout.next;
+      }
+      if (timeout.next != null) {
+        timeout.next.prev = timeout.prev;
+      }
+      if (timeout == head) {
+        head = timeout.next;
+      }
+      if (timeout == tail) {
+        tail = timeout.prev;
+      }
+      timeout.prev = null;
+      timeout.next = null;
+      timeout.bucket = null;
+    }
+  }
+
+  static final class Timeout {
+    private static final int                                 ST_INIT      = 0;
+    private static final int                                 ST_CANCELLED = 1;
+    private static final int                                 ST_EXPIRED   = 2;
+    private static final AtomicIntegerFieldUpdater<Timeout> STATE        = AtomicIntegerFieldUpdater
+                                                                             .newUpdater(Timeout.class, "state");
+
+    private final HashedWheelTimer                           timer;
+    private final long                                       deadline;
+    private volatile int                                     state        = ST_INIT;
+    private Runnable                                         task;
+    // owned by the worker thread
+    private long                                             remainingRounds;
+    private Bucket                                           bucket;
+    private Timeout                                          prev;
+    private Timeout                                          next;
+
+    Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+      this.timer = timer;
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    /**
+     * @return false if the task has already run or the timeout was already cancelled
+     */
+    boolean cancel() {
+      if (!STATE.compareAndSet(this, ST_INIT, ST_CANCELLED)) { return false; }
+      task = null;
+      // let the worker unlink it so the wheel doesn't hold on to it until the deadline
+      timer.cancelled.add(this);
+      return true;
+    }
+
+    boolean isCancelled() {
+      return state == ST_CANCELLED;
+    }
+
+    boolean isExpired() {
+      return state == ST_EXPIRED;
+    }
+
+    private void expire() {
+      Runnable toRun = task;
+      if (!STATE.compareAndSet(this, ST_INIT, ST_EXPIRED)) { return; }
+      task = null;
+      try {
+        toRun.run();
+      } catch (Throwable t) {
+        LOGGER.warn("Non stop timeout task failed", t);
+      }
+    }
+  }
+}
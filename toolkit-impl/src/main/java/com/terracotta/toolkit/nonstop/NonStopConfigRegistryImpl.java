@@ -38,6 +38,7 @@ import org.terracotta.toolkit.nonstop.NonStopConfigurationRegistry;
 import java.util.EnumSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class NonStopConfigRegistryImpl implements NonStopConfigurationRegistry {
   public static final EnumSet<ToolkitObjectType>                      SUPPORTED_TOOLKIT_TYPES  = EnumSet
@@ -86,6 +87,8 @@ public class NonStopConfigRegistryImpl implements NonStopConfigurationRegistry {
   private final ConcurrentMap<NonStopConfigKey, NonStopConfiguration> allConfigs               = new ConcurrentHashMap<NonStopConfigKey, NonStopConfiguration>();
   private final ConcurrentMap<String, Long>                           searchTimeoutsCache      = new ConcurrentHashMap<String, Long>();
   private final ConcurrentMap<String, Long>                           searchTimeoutsStore      = new ConcurrentHashMap<String, Long>();
+  // bumped after every change to allConfigs so that lookups can cache what they resolved
+  private final AtomicLong                                            configVersion            = new AtomicLong();
 
   private void verify(NonStopConfiguration nonStopConfiguration, ToolkitObjectType... types) {
     if (types != null) {
@@ -120,6 +123,7 @@ public class NonStopConfigRegistryImpl implements NonStopConfigurationRegistry {
 
     for (ToolkitObjectType type : types) {
       allConfigs.put(new NonStopConfigKey(null, type, null), config);
+      configVersion.incrementAndGet();
     }
   }
 
@@ -128,6 +132,7 @@ public class NonStopConfigRegistryImpl implements NonStopConfigurationRegistry {
     verify(config, type);
 
     allConfigs.put(new NonStopConfigKey(null, type, toolkitTypeName), config);
+    configVersion.incrementAndGet();
   }
 
   @Override
@@ -135,6 +140,7 @@ public class NonStopConfigRegistryImpl implements NonStopConfigurationRegistry {
     verify(config, type);
 
     allConfigs.put(new NonStopConfigKey(methodName, type, null), config);
+    configVersion.incrementAndGet();
   }
 
   @Override
@@ -143,6 +149,7 @@ public class NonStopConfigRegistryImpl implements NonStopConfigurationRegistry {
     verify(config, type);
 
     allConfigs.put(new NonStopConfigKey(methodName, type, toolkitTypeName), config);
+    configVersion.incrementAndGet();
   }
 
   public void registerForThread(NonStopConfiguration config) {
@@ -239,6 +246,10 @@ public class NonStopConfigRegistryImpl implements NonStopConfigurationRegistry {
     return nonStopConfig;
   }
 
+  long getConfigVersion() {
+    return configVersion.get();
+  }
+
   public NonStopConfiguration getConfigForThread() {
     return threadLocalConfiguration.get();
   }
@@ -263,26 +274,34 @@ public class NonStopConfigRegistryImpl implements NonStopConfigurationRegistry {
   @Override
   public NonStopConfiguration deregisterForType(ToolkitObjectType type) {
     NonStopConfigKey nonStopConfigKey = new NonStopConfigKey(null, type, null);
-    return allConfigs.remove(nonStopConfigKey);
+    NonStopConfiguration removed = allConfigs.remove(nonStopConfigKey);
+    configVersion.incrementAndGet();
+    return removed;
   }
 
   @Override
   public NonStopConfiguration deregisterForInstance(String toolkitTypeName, ToolkitObjectType type) {
     NonStopConfigKey nonStopConfigKey = new NonStopConfigKey(null, type, toolkitTypeName);
-    return allConfigs.remove(nonStopConfigKey);
+    NonStopConfiguration removed = allConfigs.remove(nonStopConfigKey);
+    configVersion.incrementAndGet();
+    return removed;
   }
 
   @Override
   public NonStopConfiguration deregisterForTypeMethod(String methodName, ToolkitObjectType type) {
     NonStopConfigKey nonStopConfigKey = new NonStopConfigKey(methodName, type, null);
-    return allConfigs.remove(nonStopConfigKey);
+    NonStopConfiguration removed = allConfigs.remove(nonStopConfigKey);
+    configVersion.incrementAndGet();
+    return removed;
   }
 
   @Override
   public NonStopConfiguration deregisterForInstanceMethod(String methodName, String toolkitTypeName,
                                                           ToolkitObjectType type) {
     NonStopConfigKey nonStopConfigKey = new NonStopConfigKey(methodName, type, toolkitTypeName);
-    return allConfigs.remove(nonStopConfigKey);
+    NonStopConfiguration removed = allConfigs.remove(nonStopConfigKey);
+    configVersion.incrementAndGet();
+    return removed;
   }
 
   public NonStopConfiguration deregisterForThread() {
@@ -19,11 +19,17 @@ package com.terracotta.toolkit.nonstop;
 import org.terracotta.toolkit.ToolkitObjectType;
 import org.terracotta.toolkit.nonstop.NonStopConfiguration;
 import org.terracotta.toolkit.nonstop.NonStopConfigurationFields;
+import org.terracotta.toolkit.nonstop.NonStopConfigurationRegistry;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class NonStopConfigurationLookup {
-  private final NonStopContext    context;
-  private final ToolkitObjectType objectType;
-  private final String            name;
+  private final NonStopContext                             context;
+  private final ToolkitObjectType                          objectType;
+  private final String                                     name;
+  // configurations resolved per method name, valid as long as the registry version doesn't change
+  private final ConcurrentMap<String, MethodConfiguration> methodConfigurations = new ConcurrentHashMap<String, MethodConfiguration>();
 
   public NonStopConfigurationLookup(NonStopContext context, ToolkitObjectType objectType, String name) {
     this.context = context;
@@ -45,14 +51,45 @@ public class NonStopConfigurationLookup {
   }
 
   public NonStopConfiguration getNonStopConfigurationForMethod(String methodName) {
-    NonStopConfiguration config = context.getNonStopConfigurationRegistry()
-        .getConfigForInstanceMethod(methodName, name, objectType);
+    NonStopConfiguration config = resolveConfigurationForMethod(methodName);
     if (!context.isEnabledForCurrentThread()) {
       return new DisabledNonStopConfiguration(config);
     }
     return config;
   }
 
+  private NonStopConfiguration resolveConfigurationForMethod(String methodName) {
+    NonStopConfigurationRegistry registry = context.getNonStopConfigurationRegistry();
+    if (!(registry instanceof NonStopConfigRegistryImpl)) {
+      return registry.getConfigForInstanceMethod(methodName, name, objectType);
+    }
+
+    NonStopConfigRegistryImpl registryImpl = (NonStopConfigRegistryImpl) registry;
+    // a configuration registered for the current thread overrides all others and is never cached
+    NonStopConfiguration threadConfig = registryImpl.getConfigForThread();
+    if (threadConfig != null) { return threadConfig; }
+
+    // read the version before resolving so that a concurrent change invalidates what gets cached
+    long version = registryImpl.getConfigVersion();
+    MethodConfiguration resolved = methodConfigurations.get(methodName);
+    if (resolved == null || resolved.version != version) {
+      resolved = new MethodConfiguration(version, registryImpl.getConfigForInstanceMethod(methodName, name,
+                                                                                          objectType));
+      methodConfigurations.put(methodName, resolved);
+    }
+    return resolved.config;
+  }
+
+  private static final class MethodConfiguration {
+    private final long                 version;
+    private final NonStopConfiguration config;
+
+    MethodConfiguration(long version, NonStopConfiguration config) {
+      this.version = version;
+      this.config = config;
+    }
+  }
+
 
   private static final class DisabledNonStopConfiguration implements NonStopConfiguration {
 
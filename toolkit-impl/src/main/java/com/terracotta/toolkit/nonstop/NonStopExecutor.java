@@ -16,28 +16,25 @@
  */
 package com.terracotta.toolkit.nonstop;
 
-import net.sf.ehcache.util.NamedThreadFactory;
-
-import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import com.terracotta.toolkit.nonstop.HashedWheelTimer.Timeout;
 
 public class NonStopExecutor {
-  public final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
-      new NamedThreadFactory("NonStopExecutor", true));
+  // non stop timeouts are seconds long, a coarse tick keeps the timer thread mostly asleep
+  private static final long      TICK_MILLIS = 10;
+  private static final int       WHEEL_SIZE  = 1024;
+
+  private final HashedWheelTimer timer       = new HashedWheelTimer("NonStopExecutor", TICK_MILLIS, WHEEL_SIZE);
 
-  public Future schedule(Runnable task, long timeout) {
-    return executor.schedule(task, timeout, TimeUnit.MILLISECONDS);
+  public Timeout schedule(Runnable task, long timeout) {
+    return timer.schedule(task, timeout);
   }
 
-  public void remove(Future future) {
-    if (future instanceof Runnable) {
-      executor.remove((Runnable) future);
-    }
+  public void remove(Timeout timeout) {
+    timeout.cancel();
   }
 
   public void shutdown() {
-    executor.shutdown();
+    timer.stop();
   }
 
 }
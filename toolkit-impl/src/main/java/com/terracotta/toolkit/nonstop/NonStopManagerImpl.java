@@ -19,12 +19,12 @@ package com.terracotta.toolkit.nonstop;
 import com.tc.abortable.AbortableOperationManager;
 import com.tc.logging.TCLogger;
 import com.tc.logging.TCLogging;
+import com.terracotta.toolkit.nonstop.HashedWheelTimer.Timeout;
 
 import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.Future;
 
 public class NonStopManagerImpl implements NonStopManager {
   private static final TCLogger                           LOGGER   = TCLogging.getLogger(NonStopManagerImpl.class);
@@ -42,7 +42,7 @@ public class NonStopManagerImpl implements NonStopManager {
       abortableOperationManager.begin();
       NonStopTask task = new NonStopTask(Thread.currentThread(), abortableOperationManager);
       // Do not start timer for negative timeouts.
-      Future future = null;
+      Timeout future = null;
       if (timeout > 0 && (timeout + System.currentTimeMillis()) > 0) {
         future = executor.schedule(task, timeout);
       }
@@ -70,12 +70,11 @@ public class NonStopManagerImpl implements NonStopManager {
 
   @Override
   public void finish() {
-    NonStopTaskWrapper wrapper = tasks.get(Thread.currentThread());
+    NonStopTaskWrapper wrapper = tasks.remove(Thread.currentThread());
     if (wrapper != null) {
-      tasks.remove(Thread.currentThread());
       wrapper.getTask().cancelTaskIfRequired();
       if (wrapper.getFuture() != null) {
-        // this will remove the task from the queue of the executor
+        // this will remove the task from the timer wheel
         executor.remove(wrapper.getFuture());
       }
       abortableOperationManager.finish();
@@ -94,9 +93,9 @@ public class NonStopManagerImpl implements NonStopManager {
 
   static class NonStopTaskWrapper {
     private final NonStopTask task;
-    private final Future           future;
+    private final Timeout     future;
 
-    public NonStopTaskWrapper(NonStopTask task, Future future) {
+    public NonStopTaskWrapper(NonStopTask task, Timeout future) {
       this.task = task;
       this.future = future;
     }
@@ -105,7 +104,7 @@ public class NonStopManagerImpl implements NonStopManager {
       return task;
     }
 
-    public Future getFuture() {
+    public Timeout getFuture() {
       return future;
     }
 
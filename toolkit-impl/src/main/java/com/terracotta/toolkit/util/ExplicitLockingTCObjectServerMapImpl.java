@@ -36,6 +36,7 @@ import com.tc.platform.PlatformService;
 import java.lang.ref.WeakReference;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 public class ExplicitLockingTCObjectServerMapImpl<L> implements TCObjectServerMap<L> {
 
@@ -349,6 +350,12 @@ public class ExplicitLockingTCObjectServerMapImpl<L> implements TCObjectServerMa
     return delegate.getValueUnlocked(map, key);
   }
 
+  @Override
+  public Future<Object> getValueUnlockedAsync(TCServerMap map, Object key) throws AbortedOperationException {
+    assertLockAndRejoinState();
+    return delegate.getValueUnlockedAsync(map, key);
+  }
+
   @Override
   public Map<Object, Object> getAllValuesUnlocked(final SetMultimap<ObjectID, Object> mapIdToKeysMap) throws AbortedOperationException {
     assertLockAndRejoinState();
@@ -95,6 +95,8 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -276,6 +278,29 @@ public class ServerMapTest {
     assertThat(result, hasEntry("f", null));
   }
 
+  @Test
+  public void testUnlockedGetAsync() throws Exception {
+    ServerMap serverMap = getServerMap();
+
+    when(tcObjectServerMap.getValueUnlockedAsync(serverMap, "a"))
+        .thenReturn(CompletableFuture.<Object>completedFuture(mockSerializedMapValue("1")));
+    when(tcObjectServerMap.getValueUnlockedAsync(serverMap, "b"))
+        .thenReturn(CompletableFuture.<Object>completedFuture(mockSerializedMapValue("2", true)));
+    when(tcObjectServerMap.getValueUnlockedAsync(serverMap, "c"))
+        .thenReturn(CompletableFuture.<Object>completedFuture(null));
+
+    Future<String> a = serverMap.unlockedGetAsync("a", true);
+    Future<String> b = serverMap.unlockedGetAsync("b", true);
+    Future<String> c = serverMap.unlockedGetAsync("c", true);
+    Future<String> nonLiteral = serverMap.unlockedGetAsync(new Object(), true);
+
+    assertEquals("1", a.get());
+    assertThat(b.get(), nullValue());
+    assertThat(c.get(), nullValue());
+    assertThat(nonLiteral.get(), nullValue());
+    verify(tcObjectServerMap).getValueUnlockedAsync(serverMap, "a");
+  }
+
   private ServerMap getServerMap() {
     ServerMap serverMap = new ServerMap(configuration, "foo", platformService);
     serverMap.__tc_managed(tcObjectServerMap);
@@ -36,6 +36,7 @@ import java.lang.ref.WeakReference;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 
 public class MockTCObjectServerMap implements TCObjectServerMap<Object> {
 
@@ -367,6 +368,11 @@ public class MockTCObjectServerMap implements TCObjectServerMap<Object> {
     throw new ImplementMe();
   }
 
+  @Override
+  public Future<Object> getValueUnlockedAsync(TCServerMap serverMap, Object key) {
+    throw new ImplementMe();
+  }
+
   @Override
   public Map getAllValuesUnlocked(SetMultimap mapIdToKeysMap) {
     throw new ImplementMe();
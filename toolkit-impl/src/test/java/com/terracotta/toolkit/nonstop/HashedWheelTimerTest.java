@@ -0,0 +1,105 @@
+/* 
+ * The contents of this file are subject to the Terracotta Public License Version
+ * 2.0 (the "License"); You may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at 
+ *
+ *      http://terracotta.org/legal/terracotta-public-license.
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ * the specific language governing rights and limitations under the License.
+ *
+ * The Covered Software is Terracotta Platform.
+ *
+ * The Initial Developer of the Covered Software is 
+ *      Terracotta, Inc., a Software AG company
+ */
+package com.terracotta.toolkit.nonstop;
+
+import com.terracotta.toolkit.nonstop.HashedWheelTimer.Timeout;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class HashedWheelTimerTest extends TestCase {
+  private HashedWheelTimer timer;
+
+  @Override
+  protected void setUp() throws Exception {
+    // a small wheel so that the test deadlines wrap around it
+    timer = new HashedWheelTimer("test-timer", 10, 8);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    timer.stop();
+  }
+
+  public void testExpiresAfterDeadline() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(1);
+    long start = System.nanoTime();
+    Timeout timeout = timer.schedule(new Runnable() {
+      @Override
+      public void run() {
+        latch.countDown();
+      }
+    }, 250);
+
+    Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    Assert.assertTrue("expired after " + elapsed + "ms", elapsed >= 250);
+    Assert.assertTrue(timeout.isExpired());
+    Assert.assertFalse(timeout.cancel());
+  }
+
+  public void testCancelledTimeoutsDoNotRun() throws Exception {
+    final AtomicInteger runs = new AtomicInteger();
+    Runnable task = new Runnable() {
+      @Override
+      public void run() {
+        runs.incrementAndGet();
+      }
+    };
+    Timeout[] timeouts = new Timeout[1000];
+    for (int i = 0; i < timeouts.length; i++) {
+      timeouts[i] = timer.schedule(task, 50 + i % 200);
+    }
+    for (int i = 0; i < timeouts.length; i += 2) {
+      Assert.assertTrue(timeouts[i].cancel());
+      Assert.assertFalse(timeouts[i].cancel());
+    }
+
+    final CountDownLatch last = new CountDownLatch(1);
+    timer.schedule(new Runnable() {
+      @Override
+      public void run() {
+        last.countDown();
+      }
+    }, 400);
+    Assert.assertTrue(last.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals(timeouts.length / 2, runs.get());
+    for (int i = 0; i < timeouts.length; i++) {
+      Assert.assertEquals(i % 2 == 0, timeouts[i].isCancelled());
+      Assert.assertEquals(i % 2 != 0, timeouts[i].isExpired());
+    }
+  }
+
+  public void testScheduleAfterStopFails() {
+    timer.stop();
+    try {
+      timer.schedule(new Runnable() {
+        @Override
+        public void run() {
+          //
+        }
+      }, 10);
+      throw new AssertionError();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+}